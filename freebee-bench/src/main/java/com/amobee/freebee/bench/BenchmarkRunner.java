@@ -11,6 +11,7 @@ import com.amobee.freebee.bench.random.RandomBenchmarkConfigurationProperties;
 
 import java.util.Arrays;
 import java.util.List;
+import java.util.Set;
 import java.util.UUID;
 import java.util.stream.Collectors;
 import javax.annotation.Nonnull;
@@ -26,6 +27,7 @@ public class BenchmarkRunner
 
     // TODO externalize this configuration. For now, change this values in order to configure the benchmark
     private static final int INPUT_COUNT = 1_000;
+    private static final int BATCH_SIZE = 500;
     private static final int MAX_VALUES_PER_INPUT = 3_000;
     private static final int EXPRESSION_COUNT = 6_500;
     private static final int MAX_PREDICATES_PER_EXPRESSION = 5;
@@ -91,7 +93,7 @@ public class BenchmarkRunner
             }
             evaluatorBuilder.addExpression(e.getUuid(), e.getExpression());
         });
-        final BEEvaluator evaluator = evaluatorBuilder.build();
+        final BEEvaluator<UUID> evaluator = evaluatorBuilder.build();
 
         final long evaluatorBuilt = System.currentTimeMillis();
 
@@ -117,6 +119,18 @@ public class BenchmarkRunner
 
         final long evaluationsDone = System.currentTimeMillis();
 
+        /* * * *  EVALUATE INPUT REQUESTS IN BATCHES  * * * */
+
+        long batchMatchedRequestCount = 0;
+        for (int i = 0; i < inputRequests.size(); i += BATCH_SIZE)
+        {
+            final List<BEInput> batch = inputRequests.subList(i, Math.min(i + BATCH_SIZE, inputRequests.size()));
+            final List<Set<UUID>> batchResults = evaluator.evaluateBatch(batch);
+            batchMatchedRequestCount += batchResults.stream().filter(result -> !result.isEmpty()).count();
+        }
+
+        final long batchEvaluationsDone = System.currentTimeMillis();
+
         /* * * *  COMPUTE METRICS * * * */
 
         Arrays.sort(evalTimes);
@@ -147,10 +161,11 @@ public class BenchmarkRunner
 
         /* * * *  OUTPUT REPORT  * * * */
 
-        final long totalTime = evaluationsDone - startTime;
+        final long totalTime = batchEvaluationsDone - startTime;
         final long setupBenchmarkTime = benchmarkSetupComplete - startTime;
         final long buildEvaluatorTime = evaluatorBuilt - benchmarkSetupComplete;
         final long evaluationTime = evaluationsDone - evaluatorBuilt;
+        final long batchEvaluationTime = batchEvaluationsDone - evaluationsDone;
 
         final BEIndexMetrics metrics = ((BEHybridEvaluator) evaluator).getMetrics();
         final long expressionCount = metrics.getExpressionCount();
@@ -169,10 +184,12 @@ public class BenchmarkRunner
         System.out.println(String.format("  Setup benchmark:        %d ms", setupBenchmarkTime));
         System.out.println(String.format("  Build evaluator index:  %d ms", buildEvaluatorTime));
         System.out.println(String.format("  Evaluate requests:      %d ms", evaluationTime));
+        System.out.println(String.format("  Evaluate batches:       %d ms (%d requests per batch)", batchEvaluationTime, BATCH_SIZE));
 
         System.out.println("\nAverage and Max Metrics");
         System.out.println(String.format("  Average evaluation time:  %f ms (wall clock)", (double) evaluationTime / (double) INPUT_COUNT));
         System.out.println(String.format("  Average evaluation time:  %f ms (instrument)", averageEvalTime / 1_000_000.0));
+        System.out.println(String.format("  Average batch evaluation: %f ms per request (wall clock)", (double) batchEvaluationTime / (double) INPUT_COUNT));
         System.out.println(String.format("  Standard deviation:       %f ms", stdDeviation / 1_000_000.0));
         System.out.println(String.format("  50th percentile:          %f ms", percentile50 / 1_000_000.0));
         System.out.println(String.format("  75th percentile:          %f ms", percentile75 / 1_000_000.0));
@@ -185,6 +202,7 @@ public class BenchmarkRunner
         System.out.println("\nRequest Input Stats");
         System.out.println(String.format("  Matched:      %d requests", matchedRequestCount));
         System.out.println(String.format("  Not matched:  %d requests", INPUT_COUNT - matchedRequestCount));
+        System.out.println(String.format("  Matched in batches:  %d requests", batchMatchedRequestCount));
 
     }
 
@@ -2,7 +2,6 @@ package com.amobee.freebee.bench.random;
 
 import com.amobee.freebee.bench.DataValueProvider;
 
-import java.io.File;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -98,7 +97,7 @@ public class FileValueSelector implements DataValueProvider.RandomValueSelector
 
     private Set<String> loadValues(final String dataTypeName)
     {
-        final File valuesFile = findValuesFile(dataTypeName)
+        final URL valuesFile = findValuesFile(dataTypeName)
                 .orElseThrow(() -> new RuntimeException("Could not locate values file for " + dataTypeName));
         final Set<String> loadedValues = loadValues(valuesFile);
         if (loadedValues == null || loadedValues.isEmpty())
@@ -108,12 +107,13 @@ public class FileValueSelector implements DataValueProvider.RandomValueSelector
         return loadedValues;
     }
 
-    private Set<String> loadValues(final File valueFile)
+    private Set<String> loadValues(final URL valueFile)
     {
         Scanner s = null;
         try
         {
-            s = new Scanner(valueFile);
+            // read from a stream rather than a file so that values can be loaded from within a jar
+            s = new Scanner(valueFile.openStream(), "UTF-8");
             final Set<String> loadedValues = new HashSet<>();
             final int i = 0;
             while (s.hasNext())
@@ -134,7 +134,7 @@ public class FileValueSelector implements DataValueProvider.RandomValueSelector
         }
     }
 
-    private Optional<File> findValuesFile(final String dataTypeName)
+    private Optional<URL> findValuesFile(final String dataTypeName)
     {
         try
         {
@@ -155,14 +155,10 @@ public class FileValueSelector implements DataValueProvider.RandomValueSelector
                     {
                         final String valueFileLocation = classpathLocation + dataTypeName + fileExtension;
                         final URL classpathResourceUrl = getClass().getClassLoader().getResource(valueFileLocation);
-                        if (classpathResourceUrl != null && classpathResourceUrl.getFile() != null)
+                        if (classpathResourceUrl != null)
                         {
-                            final File valueFile = new File(classpathResourceUrl.getFile());
-                            if (valueFile.exists())
-                            {
-                                logger.debug("Found {} values file at {}", dataTypeName, valueFileLocation);
-                                return Optional.of(valueFile);
-                            }
+                            logger.debug("Found {} values file at {}", dataTypeName, valueFileLocation);
+                            return Optional.of(classpathResourceUrl);
                         }
                     }
                 }
@@ -0,0 +1,370 @@
+package com.amobee.freebee.evaluator;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Compact list of expression intervals (postings) for a single indexed attribute value.
+ *
+ * Rather than holding a {@link BEInterval} object (and its {@link BitSet}) per posting, postings are packed into a
+ * single contiguous int array with {@value #STRIDE} ints per posting: expression id, interval id and a word holding
+ * the interval start, end and flags. This keeps the index small and scans cache friendly, {@link BEInterval} views
+ * are only materialized when requested, e.g. when tracking matched input values.
+ *
+ * Posting lists can also be read-only views of packed postings held in an {@link IntBuffer}, e.g. a memory-mapped
+ * index file, see {@link #view(IntBuffer, int, int)}.
+ *
+ * Applications should never create instances of this class directly, use
+ * {@link com.amobee.freebee.evaluator.evaluator.BEEvaluatorBuilder} instead.
+ */
+public final class BEPostingList implements Serializable
+{
+    private static final long serialVersionUID = -5412006117553862393L;
+
+    /** Number of ints per posting in the packed representation */
+    public static final int STRIDE = 3;
+
+    private static final int EXPRESSION_ID = 0;
+    private static final int INTERVAL_ID = 1;
+    private static final int INTERVAL = 2;
+
+    private static final int END_BITS = 15;
+    private static final int END_MASK = (1 << END_BITS) - 1;
+    private static final int START_MASK = END_MASK << END_BITS;
+    private static final int NEGATIVE_FLAG = 1 << 30;
+    private static final int BIT_SET_MATCHING_FLAG = 1 << 31;
+    private static final int[] EMPTY = {};
+
+    private int[] postings;
+    private int size;
+
+    /** Buffer holding the packed postings of read-only views, {@code null} for posting lists held on the heap */
+    private transient IntBuffer buffer;
+    private transient int bufferOffset;
+
+    public BEPostingList()
+    {
+        this.postings = EMPTY;
+    }
+
+    public BEPostingList(@Nonnull final Collection<BEInterval> intervals)
+    {
+        this.postings = new int[intervals.size() * STRIDE];
+        intervals.forEach(this::add);
+    }
+
+    /**
+     * Creates a posting list from postings in their packed representation, e.g. as previously copied with
+     * {@link #copyPacked(int[], int)}.
+     *
+     * @param packed
+     *         Packed postings, {@value #STRIDE} ints per posting.
+     * @param offset
+     *         Offset of the first int of the first posting.
+     * @param size
+     *         Number of postings.
+     * @return New posting list holding a copy of the postings.
+     */
+    @Nonnull
+    public static BEPostingList fromPacked(@Nonnull final int[] packed, final int offset, final int size)
+    {
+        final BEPostingList postingList = new BEPostingList();
+        postingList.postings = size == 0 ? EMPTY : Arrays.copyOfRange(packed, offset, offset + size * STRIDE);
+        postingList.size = size;
+        return postingList;
+    }
+
+    /**
+     * Creates a read-only view of postings in their packed representation held in a buffer, the postings are read from
+     * the buffer on every access rather than copied.
+     *
+     * @param buffer
+     *         Buffer holding packed postings, {@value #STRIDE} ints per posting, indexed absolutely.
+     * @param offset
+     *         Index of the first int of the first posting in the buffer.
+     * @param size
+     *         Number of postings.
+     * @return New read-only posting list.
+     */
+    @Nonnull
+    public static BEPostingList view(@Nonnull final IntBuffer buffer, final int offset, final int size)
+    {
+        final BEPostingList postingList = new BEPostingList();
+        postingList.buffer = buffer;
+        postingList.bufferOffset = offset;
+        postingList.size = size;
+        return postingList;
+    }
+
+    /**
+     * Appends a posting for the specified interval.
+     *
+     * @param interval
+     *         Interval to add.
+     */
+    public void add(@Nonnull final BEInterval interval)
+    {
+        add(interval, interval.isNegative());
+    }
+
+    /**
+     * Appends a posting for the specified interval, overriding whether it is negative.
+     *
+     * @param interval
+     *         Interval to add.
+     * @param negative
+     *         Whether the posting is negative.
+     */
+    public void add(@Nonnull final BEInterval interval, final boolean negative)
+    {
+        checkWritable();
+        ensureCapacity(this.size + 1);
+        final int offset = this.size * STRIDE;
+        this.postings[offset + EXPRESSION_ID] = interval.getExpressionId();
+        this.postings[offset + INTERVAL_ID] = interval.getIntervalId();
+        this.postings[offset + INTERVAL] = interval.getStart() << END_BITS
+                | interval.getEnd()
+                | (negative ? NEGATIVE_FLAG : 0)
+                | (interval.isCanUseBitSetMatching() ? BIT_SET_MATCHING_FLAG : 0);
+        this.size++;
+    }
+
+    /**
+     * Appends a single posting of another posting list.
+     *
+     * @param other
+     *         Posting list to add a posting of.
+     * @param index
+     *         Index of the posting to add.
+     */
+    public void add(@Nonnull final BEPostingList other, final int index)
+    {
+        checkWritable();
+        ensureCapacity(this.size + 1);
+        final int offset = this.size * STRIDE;
+        for (int i = 0; i < STRIDE; i++)
+        {
+            this.postings[offset + i] = other.word(index * STRIDE + i);
+        }
+        this.size++;
+    }
+
+    /**
+     * Appends all postings of another posting list.
+     *
+     * @param other
+     *         Posting list to add.
+     */
+    public void addAll(@Nonnull final BEPostingList other)
+    {
+        checkWritable();
+        ensureCapacity(this.size + other.size);
+        other.copyPacked(this.postings, this.size * STRIDE);
+        this.size += other.size;
+    }
+
+    public int size()
+    {
+        return this.size;
+    }
+
+    public boolean isEmpty()
+    {
+        return this.size == 0;
+    }
+
+    public int getExpressionId(final int index)
+    {
+        return word(index * STRIDE + EXPRESSION_ID);
+    }
+
+    public int getIntervalId(final int index)
+    {
+        return word(index * STRIDE + INTERVAL_ID);
+    }
+
+    public short getStart(final int index)
+    {
+        return (short) ((word(index * STRIDE + INTERVAL) & START_MASK) >>> END_BITS);
+    }
+
+    public short getEnd(final int index)
+    {
+        return (short) (word(index * STRIDE + INTERVAL) & END_MASK);
+    }
+
+    public boolean isNegative(final int index)
+    {
+        return (word(index * STRIDE + INTERVAL) & NEGATIVE_FLAG) != 0;
+    }
+
+    public boolean canUseBitSetMatching(final int index)
+    {
+        return (word(index * STRIDE + INTERVAL) & BIT_SET_MATCHING_FLAG) != 0;
+    }
+
+    /**
+     * Materializes an interval object for the posting at the specified index.
+     *
+     * @param index
+     *         Index of posting.
+     * @return Interval for the posting.
+     */
+    @Nonnull
+    public BEInterval toInterval(final int index)
+    {
+        final BitSet bits = new BitSet(getEnd(index));
+        bits.set(getStart(index), getEnd(index));
+        return new BEInterval(getExpressionId(index), getIntervalId(index), canUseBitSetMatching(index), isNegative(index), bits);
+    }
+
+    /**
+     * Materializes interval objects for all postings.
+     *
+     * @return Intervals for all postings.
+     */
+    @Nonnull
+    public List<BEInterval> toIntervals()
+    {
+        final List<BEInterval> intervals = new ArrayList<>(this.size);
+        for (int i = 0; i < this.size; i++)
+        {
+            intervals.add(toInterval(i));
+        }
+        return intervals;
+    }
+
+    /**
+     * Copies the postings in their packed representation, {@value #STRIDE} ints per posting, to the specified array.
+     *
+     * @param destination
+     *         Array to copy postings to, must have room for {@code size() * STRIDE} ints after the offset.
+     * @param offset
+     *         Offset in the destination array to copy the first int to.
+     */
+    public void copyPacked(@Nonnull final int[] destination, final int offset)
+    {
+        if (null == this.buffer)
+        {
+            System.arraycopy(this.postings, 0, destination, offset, this.size * STRIDE);
+        }
+        else
+        {
+            for (int i = 0; i < this.size * STRIDE; i++)
+            {
+                destination[offset + i] = this.buffer.get(this.bufferOffset + i);
+            }
+        }
+    }
+
+    /**
+     * Minimize the amount of memory used by the posting list.
+     */
+    public void trimToSize()
+    {
+        if (this.postings.length > this.size * STRIDE)
+        {
+            this.postings = Arrays.copyOf(this.postings, this.size * STRIDE);
+        }
+    }
+
+    /**
+     * Estimates the heap retained by the posting list assuming compressed references, the postings of read-only views
+     * are held in their buffer rather than on the heap and are not included.
+     *
+     * @return Estimated number of bytes.
+     */
+    public long getRetainedBytes()
+    {
+        // object header and fields
+        long bytes = 32;
+        if (null == this.buffer && this.postings != EMPTY)
+        {
+            // array header and elements
+            bytes += 16 + 4L * this.postings.length;
+        }
+        return bytes;
+    }
+
+    private void writeObject(@Nonnull final ObjectOutputStream out) throws IOException
+    {
+        if (null != this.buffer)
+        {
+            throw new NotSerializableException("Posting list is a read-only view of a buffer");
+        }
+        out.defaultWriteObject();
+    }
+
+    private int word(final int index)
+    {
+        return null == this.buffer ? this.postings[index] : this.buffer.get(this.bufferOffset + index);
+    }
+
+    private void checkWritable()
+    {
+        if (null != this.buffer)
+        {
+            throw new UnsupportedOperationException("Posting list is a read-only view");
+        }
+    }
+
+    private void ensureCapacity(final int capacity)
+    {
+        if (this.postings.length < capacity * STRIDE)
+        {
+            this.postings = Arrays.copyOf(this.postings, Math.max(capacity, this.size * 2) * STRIDE);
+        }
+    }
+
+    @Override
+    public boolean equals(final Object o)
+    {
+        if (this == o)
+        {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass())
+        {
+            return false;
+        }
+        final BEPostingList that = (BEPostingList) o;
+        if (this.size != that.size)
+        {
+            return false;
+        }
+        for (int i = 0; i < this.size * STRIDE; i++)
+        {
+            if (word(i) != that.word(i))
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode()
+    {
+        int result = this.size;
+        for (int i = 0; i < this.size * STRIDE; i++)
+        {
+            result = 31 * result + word(i);
+        }
+        return result;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "BEPostingList{" + toIntervals() + '}';
+    }
+}
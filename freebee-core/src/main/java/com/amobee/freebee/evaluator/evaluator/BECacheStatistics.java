@@ -0,0 +1,88 @@
+package com.amobee.freebee.evaluator.evaluator;
+
+/**
+ * Snapshot of the result cache metrics of a {@link BECachingEvaluator}.
+ */
+public class BECacheStatistics
+{
+    private final long hitCount;
+    private final long missCount;
+    private final long evictionCount;
+    private final long invalidationCount;
+    private final long size;
+
+    BECacheStatistics(
+            final long hitCount,
+            final long missCount,
+            final long evictionCount,
+            final long invalidationCount,
+            final long size)
+    {
+        this.hitCount = hitCount;
+        this.missCount = missCount;
+        this.evictionCount = evictionCount;
+        this.invalidationCount = invalidationCount;
+        this.size = size;
+    }
+
+    /**
+     * @return Number of evaluations whose result was found in the cache.
+     */
+    public long getHitCount()
+    {
+        return this.hitCount;
+    }
+
+    /**
+     * @return Number of evaluations whose result was not found in the cache, including inputs that can't be cached.
+     */
+    public long getMissCount()
+    {
+        return this.missCount;
+    }
+
+    /**
+     * @return Number of results evicted from the cache because it was full.
+     */
+    public long getEvictionCount()
+    {
+        return this.evictionCount;
+    }
+
+    /**
+     * @return Number of times the cache was cleared because the index of the evaluator changed.
+     */
+    public long getInvalidationCount()
+    {
+        return this.invalidationCount;
+    }
+
+    /**
+     * @return Approximate number of results in the cache.
+     */
+    public long getSize()
+    {
+        return this.size;
+    }
+
+    /**
+     * @return Ratio of evaluations whose result was found in the cache, 1.0 if there were no evaluations.
+     */
+    public double getHitRate()
+    {
+        final long requestCount = this.hitCount + this.missCount;
+        return requestCount == 0 ? 1.0 : (double) this.hitCount / (double) requestCount;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "BECacheStatistics{" +
+                "hitCount=" + this.hitCount +
+                ", missCount=" + this.missCount +
+                ", evictionCount=" + this.evictionCount +
+                ", invalidationCount=" + this.invalidationCount +
+                ", size=" + this.size +
+                '}';
+    }
+}
@@ -0,0 +1,275 @@
+package com.amobee.freebee.evaluator.evaluator;
+
+import com.amobee.freebee.evaluator.index.BEEvaluationContext;
+import com.amobee.freebee.evaluator.index.BEIndexMetrics;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * Evaluator that caches the expressions matched by each distinct input in front of another evaluator. Inputs are
+ * keyed by their canonical form, the attribute category names and the sorted values of each, so inputs that repeat the
+ * same attribute values are only evaluated once while they stay in the cache.
+ *
+ * The cache holds a bounded number of results and evicts the least recently used results once it is full. Every
+ * result is tagged with the hash of the index it was evaluated with, when the hash of the evaluator changes, e.g. when
+ * expressions of an incremental evaluator are updated, the cache is cleared and results of the previous index are
+ * never returned. Results tracking matched input values are not cached, {@link #evaluateAndTrack(BEInput)} always
+ * evaluates the input. Inputs with attribute categories of types that have no canonical form are always evaluated.
+ *
+ * Applications should never create instances of this class directly, use {@link BEEvaluatorBuilder#cache(long)} or
+ * {@link BEEvaluatorBuilder#cached(BEEvaluator, long)} instead.
+ */
+public class BECachingEvaluator<T> implements BEEvaluator<T>
+{
+    private static final long serialVersionUID = 5163972650861449023L;
+
+    @Nonnull
+    private final BEEvaluator<T> evaluator;
+    private final long maximumSize;
+
+    @Nonnull
+    private transient Cache<BEInputKey, CachedResult<T>> cache;
+    private transient volatile int currentIndexHash;
+    @Nonnull
+    private transient LongAdder hitCount;
+    @Nonnull
+    private transient LongAdder missCount;
+    @Nonnull
+    private transient LongAdder invalidationCount;
+
+    BECachingEvaluator(@Nonnull final BEEvaluator<T> evaluator, final long maximumSize)
+    {
+        if (maximumSize < 1)
+        {
+            throw new IllegalArgumentException("maximumSize must be at least 1 but was " + maximumSize);
+        }
+        this.evaluator = evaluator;
+        this.maximumSize = maximumSize;
+        initCache();
+    }
+
+    /**
+     * @return Evaluator whose results are cached.
+     */
+    @Nonnull
+    public BEEvaluator<T> getEvaluator()
+    {
+        return this.evaluator;
+    }
+
+    /**
+     * Gets a snapshot of the metrics of the result cache.
+     *
+     * @return Cache statistics.
+     */
+    @Nonnull
+    public BECacheStatistics getCacheStatistics()
+    {
+        return new BECacheStatistics(
+                this.hitCount.sum(),
+                this.missCount.sum(),
+                this.cache.stats().evictionCount(),
+                this.invalidationCount.sum(),
+                this.cache.size());
+    }
+
+    @Nonnull
+    @Override
+    public Set<T> evaluate(@Nonnull final BEInput input)
+    {
+        return evaluate(input, this.evaluator::evaluate);
+    }
+
+    @Nonnull
+    @Override
+    public Set<T> evaluate(@Nonnull final BEInput input, @Nonnull final BEEvaluationContext context)
+    {
+        return evaluate(input, uncachedInput -> this.evaluator.evaluate(uncachedInput, context));
+    }
+
+    @Nonnull
+    @Override
+    public List<Set<T>> evaluateBatch(@Nonnull final List<BEInput> inputs)
+    {
+        final int indexHash = checkIndexHash();
+        final List<Set<T>> matchedExpressions = new ArrayList<>(inputs.size());
+        final List<BEInputKey> keys = new ArrayList<>(inputs.size());
+        final List<BEInput> uncachedInputs = new ArrayList<>();
+        for (final BEInput input : inputs)
+        {
+            final BEInputKey key = BEInputKey.of(input);
+            final Set<T> cached = get(key, indexHash);
+            matchedExpressions.add(cached);
+            keys.add(key);
+            if (null == cached)
+            {
+                uncachedInputs.add(input);
+            }
+        }
+
+        // evaluate all inputs that weren't cached as a single batch
+        if (!uncachedInputs.isEmpty())
+        {
+            final List<Set<T>> uncachedMatches = this.evaluator.evaluateBatch(uncachedInputs);
+            int next = 0;
+            for (int i = 0; i < matchedExpressions.size(); i++)
+            {
+                if (null == matchedExpressions.get(i))
+                {
+                    final Set<T> matches = uncachedMatches.get(next++);
+                    put(keys.get(i), indexHash, matches);
+                    matchedExpressions.set(i, matches);
+                }
+            }
+        }
+        return matchedExpressions;
+    }
+
+    @Nonnull
+    @Override
+    public BEEvaluatorResult<T> evaluateAndTrack(@Nonnull final BEInput input)
+    {
+        return this.evaluator.evaluateAndTrack(input);
+    }
+
+    @Nullable
+    @Override
+    public BEIndexMetrics getMetrics()
+    {
+        return this.evaluator.getMetrics();
+    }
+
+    @Nullable
+    @Override
+    public BEInputSchema getInputSchema()
+    {
+        return this.evaluator.getInputSchema();
+    }
+
+    @Nonnull
+    private Set<T> evaluate(@Nonnull final BEInput input, @Nonnull final Function<BEInput, Set<T>> evaluation)
+    {
+        final int indexHash = checkIndexHash();
+        final BEInputKey key = BEInputKey.of(input);
+        final Set<T> cached = get(key, indexHash);
+        if (null != cached)
+        {
+            return cached;
+        }
+
+        final Set<T> matches = evaluation.apply(input);
+        put(key, indexHash, matches);
+        return matches;
+    }
+
+    /**
+     * Gets a copy of the cached result for an input, evaluations return a new set that callers may modify.
+     */
+    @Nullable
+    private Set<T> get(@Nullable final BEInputKey key, final int indexHash)
+    {
+        final CachedResult<T> cached = null == key ? null : this.cache.getIfPresent(key);
+        if (null == cached || cached.indexHash != indexHash)
+        {
+            this.missCount.increment();
+            return null;
+        }
+        this.hitCount.increment();
+        return new HashSet<>(cached.matches);
+    }
+
+    private void put(@Nullable final BEInputKey key, final int indexHash, @Nonnull final Set<T> matches)
+    {
+        if (null != key)
+        {
+            this.cache.put(key, new CachedResult<>(indexHash, Collections.unmodifiableSet(new HashSet<>(matches))));
+        }
+    }
+
+    /**
+     * Clears the cache if the index of the evaluator changed since the last evaluation, results evaluated concurrently
+     * with the change are tagged with the hash read before evaluating so they are never returned for the new index.
+     *
+     * @return Hash of the current index.
+     */
+    private int checkIndexHash()
+    {
+        final int current = this.evaluator.hashCode();
+        if (current != this.currentIndexHash)
+        {
+            this.currentIndexHash = current;
+            this.cache.invalidateAll();
+            this.invalidationCount.increment();
+        }
+        return current;
+    }
+
+    private void initCache()
+    {
+        this.cache = CacheBuilder.newBuilder()
+                .maximumSize(this.maximumSize)
+                .recordStats()
+                .build();
+        this.currentIndexHash = this.evaluator.hashCode();
+        this.hitCount = new LongAdder();
+        this.missCount = new LongAdder();
+        this.invalidationCount = new LongAdder();
+    }
+
+    private void readObject(@Nonnull final ObjectInputStream in) throws IOException, ClassNotFoundException
+    {
+        in.defaultReadObject();
+        initCache();
+    }
+
+    @Override
+    public boolean equals(final Object o)
+    {
+        if (this == o)
+        {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass())
+        {
+            return false;
+        }
+        final BECachingEvaluator<?> that = (BECachingEvaluator<?>) o;
+        return Objects.equals(this.evaluator, that.evaluator);
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return this.evaluator.hashCode();
+    }
+
+    /**
+     * Expressions matched by an input and the hash of the index they were matched with.
+     */
+    private static final class CachedResult<T>
+    {
+        private final int indexHash;
+        @Nonnull
+        private final Set<T> matches;
+
+        private CachedResult(final int indexHash, @Nonnull final Set<T> matches)
+        {
+            this.indexHash = indexHash;
+            this.matches = matches;
+        }
+    }
+}
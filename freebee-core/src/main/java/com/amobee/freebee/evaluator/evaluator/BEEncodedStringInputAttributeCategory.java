@@ -0,0 +1,127 @@
+package com.amobee.freebee.evaluator.evaluator;
+
+import com.amobee.freebee.evaluator.BEPostingList;
+import com.amobee.freebee.evaluator.index.BEIndexAttributeCategory;
+import com.amobee.freebee.evaluator.index.BEValueDictionary;
+import lombok.EqualsAndHashCode;
+import org.eclipse.collections.api.list.primitive.MutableIntList;
+import org.eclipse.collections.impl.list.mutable.primitive.IntArrayList;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.function.Consumer;
+
+/**
+ * String input attribute category whose values are encoded to the ids of the {@link BEValueDictionary} of an index
+ * attribute category, so that postings are looked up by id without normalizing and hashing every value.
+ *
+ * Inputs that are evaluated many times, e.g. user profiles with thousands of segments, should be encoded once with
+ * {@link #encode(BEValueDictionary)}. Values are still kept, they are looked up by value when the category is evaluated
+ * against an index attribute category with a different dictionary (e.g. after the index was rebuilt) and for values
+ * that were not in the dictionary when they were encoded, as they may have been added to the index since.
+ */
+@EqualsAndHashCode(callSuper = true, exclude = {"valueIds", "dictionary"})
+public class BEEncodedStringInputAttributeCategory extends BEStringInputAttributeCategory
+{
+    /** Value ids by value index, only valid for the dictionary the values were encoded with */
+    private final MutableIntList valueIds = new IntArrayList();
+
+    @Nullable
+    private BEValueDictionary dictionary;
+
+    public BEEncodedStringInputAttributeCategory(@Nonnull final String attributeCategoryName)
+    {
+        super(attributeCategoryName);
+    }
+
+    public BEEncodedStringInputAttributeCategory(@Nonnull final String attributeCategoryName, final boolean trackingEnabled)
+    {
+        super(attributeCategoryName, trackingEnabled);
+    }
+
+    private BEEncodedStringInputAttributeCategory(@Nonnull final BEEncodedStringInputAttributeCategory category)
+    {
+        super(category);
+        this.valueIds.addAll(category.valueIds);
+        this.dictionary = category.dictionary;
+    }
+
+    /**
+     * Encode all values of this category to the ids of the specified dictionary, values added later are encoded as
+     * they are added.
+     *
+     * @param valueDictionary
+     *         Value dictionary of the index attribute category this category will be evaluated against.
+     * @return This category.
+     */
+    @Nonnull
+    public BEEncodedStringInputAttributeCategory encode(@Nonnull final BEValueDictionary valueDictionary)
+    {
+        this.dictionary = valueDictionary;
+        this.valueIds.clear();
+        this.values.forEach(value -> this.valueIds.add(valueDictionary.getValueId(value)));
+        return this;
+    }
+
+    @Override
+    public void add(final String value)
+    {
+        super.add(value);
+        this.valueIds.add(valueIdOf(value));
+    }
+
+    @Override
+    public void forEachMatchedPostings(
+            @Nonnull final BEIndexAttributeCategory indexAttributeCategory,
+            @Nonnull final Consumer<BEPostingList> consumer)
+    {
+        final boolean encoded = null != this.dictionary && indexAttributeCategory.getValueDictionary() == this.dictionary;
+
+        // indexed loop rather than forEach so that evaluation doesn't allocate a capturing lambda
+        final int size = this.values.size();
+        for (int i = 0; i < size; i++)
+        {
+            final int valueId = encoded ? this.valueIds.get(i) : BEValueDictionary.NO_VALUE_ID;
+            if (valueId != BEValueDictionary.NO_VALUE_ID)
+            {
+                indexAttributeCategory.getPostingsByValueId(valueId, consumer);
+            }
+            else
+            {
+                indexAttributeCategory.getPostings(this.values.get(i), consumer);
+            }
+        }
+    }
+
+    @Override
+    public <C extends BEInputAttributeCategory> void addAll(final C other)
+    {
+        final int size = this.values.size();
+        super.addAll(other);
+        for (int i = size; i < this.values.size(); i++)
+        {
+            this.valueIds.add(valueIdOf(this.values.get(i)));
+        }
+    }
+
+    private int valueIdOf(final String value)
+    {
+        return null != this.dictionary ? this.dictionary.getValueId(value) : BEValueDictionary.NO_VALUE_ID;
+    }
+
+    @Override
+    public BEEncodedStringInputAttributeCategory clone()
+    {
+        return new BEEncodedStringInputAttributeCategory(this);
+    }
+
+    @Override
+    public String toString()
+    {
+        return "BEEncodedStringInputAttributeCategory{" +
+                "name='" + this.name + '\'' +
+                ", trackingEnabled=" + this.trackingEnabled +
+                ", values=" + this.values +
+                '}';
+    }
+}
@@ -1,11 +1,14 @@
 package com.amobee.freebee.evaluator.evaluator;
 
+import com.amobee.freebee.evaluator.index.BEEvaluationContext;
 import com.amobee.freebee.evaluator.index.BEIndexMetrics;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import java.io.Serializable;
+import java.util.List;
 import java.util.Set;
+import java.util.stream.Collectors;
 
 /**
  * An interface for a free-form boolean expression evaluator.
@@ -27,6 +30,39 @@ public interface BEEvaluator<T> extends Serializable
     @Nonnull
     Set<T> evaluate(@Nonnull BEInput input);
 
+    /**
+     * Return the set of expressions that match the given input, using the given context to hold intermediate state.
+     *
+     * Implementations that support it reuse the context between calls so that evaluation does not allocate anything
+     * other than the result. The context must not be shared between threads. The default implementation ignores the
+     * context.
+     *
+     * @param input The input record / request to evaluate against
+     * @param context Reusable evaluation context
+     * @return the set of expressions that were matched, represented as the T data associated with each expression.
+     */
+    @Nonnull
+    default Set<T> evaluate(@Nonnull final BEInput input, @Nonnull final BEEvaluationContext context)
+    {
+        return evaluate(input);
+    }
+
+    /**
+     * Return the sets of expressions that match each of the given inputs.
+     *
+     * Implementations that support it resolve each distinct attribute value shared by several inputs of the batch only
+     * once, which is considerably cheaper than evaluating the inputs one at a time when inputs have many attribute
+     * values in common. The default implementation evaluates the inputs one at a time.
+     *
+     * @param inputs The input records / requests to evaluate against
+     * @return the sets of expressions that were matched, one per input in the same order as the inputs.
+     */
+    @Nonnull
+    default List<Set<T>> evaluateBatch(@Nonnull final List<BEInput> inputs)
+    {
+        return inputs.stream().map(this::evaluate).collect(Collectors.toList());
+    }
+
     /**
      * Evaluate expressions agains a given input, while tracking which input values
      * are used to satisfy each expression.
@@ -49,6 +85,19 @@ public interface BEEvaluator<T> extends Serializable
     @Nullable
     BEIndexMetrics getMetrics();
 
+    /**
+     * Get the schema of the attribute categories of the index that backs the evaluator. Inputs created with the schema,
+     * see {@link BEInput#BEInput(BEInputSchema)}, are evaluated by attribute category ordinal and only the attribute
+     * categories present in the input are visited.
+     *
+     * @return Input schema, or null if the evaluator doesn't evaluate inputs by ordinal.
+     */
+    @Nullable
+    default BEInputSchema getInputSchema()
+    {
+        return null;
+    }
+
     /**
      * Determine if two BEEvaluators are equal.
      *
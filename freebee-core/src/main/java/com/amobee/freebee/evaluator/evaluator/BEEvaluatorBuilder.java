@@ -1,13 +1,20 @@
 package com.amobee.freebee.evaluator.evaluator;
 
 import com.amobee.freebee.config.BEDataTypeConfig;
+import com.amobee.freebee.evaluator.index.BEEvaluationListener;
+import com.amobee.freebee.evaluator.index.BEIndex;
 import com.amobee.freebee.evaluator.index.BEIndexBuilder;
+import com.amobee.freebee.evaluator.index.BEShardingStrategy;
+import com.amobee.freebee.evaluator.index.BEValueProfiler;
 import com.amobee.freebee.expression.BENode;
 
 import java.io.IOException;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.stream.Collectors;
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
 /**
  * Expression evaluator builder.
@@ -21,7 +28,15 @@ import javax.annotation.Nonnull;
 @SuppressWarnings("unused")
 public class BEEvaluatorBuilder<T>
 {
+    private static final int DEFAULT_COMPACTION_THRESHOLD = 1024;
+
     private final BEIndexBuilder<T> indexBuilder = new BEIndexBuilder<>();
+    private int shardCount = 1;
+    private BEShardingStrategy shardingStrategy = BEShardingStrategy.SIZE_BALANCED;
+    private Executor shardExecutor;
+    private int compactionThreshold = DEFAULT_COMPACTION_THRESHOLD;
+    private Executor compactionExecutor;
+    private long cacheSize;
 
     public BEEvaluatorBuilder()
     {
@@ -182,11 +197,230 @@ public class BEEvaluatorBuilder<T>
         return this;
     }
 
+    /**
+     * Number of threads used to build the index, defaults to 1 which builds the index on the calling thread. The
+     * resulting evaluator is identical regardless of the number of threads.
+     *
+     * @param parallelism
+     *         Number of threads to build the index with.
+     * @return this Builder
+     */
+    @Nonnull
+    public BEEvaluatorBuilder<T> buildParallelism(final int parallelism)
+    {
+        this.indexBuilder.parallelism(parallelism);
+        return this;
+    }
+
+    /**
+     * Listener notified with the statistics of each evaluation, by default there is no listener and no statistics are
+     * collected. With shards or incremental updates the listener is notified once per index evaluated.
+     *
+     * @param evaluationListener
+     *         Listener to notify, null for none.
+     * @return this Builder
+     * @see com.amobee.freebee.evaluator.index.BEHistogramEvaluationListener
+     */
+    @Nonnull
+    public BEEvaluatorBuilder<T> evaluationListener(@Nullable final BEEvaluationListener evaluationListener)
+    {
+        this.indexBuilder.evaluationListener(evaluationListener);
+        return this;
+    }
+
+    /**
+     * Profiler that records sampled lookups of input values, by default lookups are not profiled. With shards or
+     * incremental updates the lookups of every index are recorded together.
+     *
+     * @param valueProfiler
+     *         Profiler to record lookups with, null for none.
+     * @return this Builder
+     */
+    @Nonnull
+    public BEEvaluatorBuilder<T> valueProfiler(@Nullable final BEValueProfiler valueProfiler)
+    {
+        this.indexBuilder.valueProfiler(valueProfiler);
+        return this;
+    }
+
+    /**
+     * Partition expressions into multiple shards, each with its own index, that are evaluated in parallel. Partial
+     * expressions are copied into every shard that references them. By default there is a single shard.
+     *
+     * @param shardCount
+     *         Maximum number of shards, fewer shards are used if there are not enough expressions.
+     * @param shardingStrategy
+     *         Strategy used to assign expressions to shards.
+     * @return this Builder
+     */
+    @Nonnull
+    public BEEvaluatorBuilder<T> shards(final int shardCount, @Nonnull final BEShardingStrategy shardingStrategy)
+    {
+        if (shardCount < 1)
+        {
+            throw new IllegalArgumentException("shardCount must be at least 1 but was " + shardCount);
+        }
+        this.shardCount = shardCount;
+        this.shardingStrategy = shardingStrategy;
+        return this;
+    }
+
+    /**
+     * Executor used to evaluate shards other than the first, which is always evaluated on the calling thread. Defaults
+     * to a shared pool of daemon threads sized to the number of processors. Only used if there are multiple shards.
+     *
+     * @param shardExecutor
+     *         Executor to evaluate shards on.
+     * @return this Builder
+     */
+    @Nonnull
+    public BEEvaluatorBuilder<T> shardExecutor(@Nonnull final Executor shardExecutor)
+    {
+        this.shardExecutor = shardExecutor;
+        return this;
+    }
+
+    /**
+     * Number of expressions that may be added, changed or removed in an incremental evaluator before its base index is
+     * rebuilt in the background. Defaults to 1024. Every update rebuilds the delta index of all expressions changed
+     * since the last compaction, so the threshold bounds the cost of an update as well as how often the base index is
+     * rebuilt.
+     *
+     * @param compactionThreshold
+     *         Number of changed expressions that triggers compaction.
+     * @return this Builder
+     * @see #buildIncremental()
+     */
+    @Nonnull
+    public BEEvaluatorBuilder<T> compactionThreshold(final int compactionThreshold)
+    {
+        if (compactionThreshold < 1)
+        {
+            throw new IllegalArgumentException("compactionThreshold must be at least 1 but was " + compactionThreshold);
+        }
+        this.compactionThreshold = compactionThreshold;
+        return this;
+    }
+
+    /**
+     * Executor used to compact incremental evaluators in the background. Defaults to a shared daemon thread. The
+     * executor is called once the update that reached the compaction threshold released its locks, an executor that
+     * runs on the calling thread compacts before that update returns.
+     *
+     * @param compactionExecutor
+     *         Executor to compact on.
+     * @return this Builder
+     * @see #buildIncremental()
+     */
+    @Nonnull
+    public BEEvaluatorBuilder<T> compactionExecutor(@Nonnull final Executor compactionExecutor)
+    {
+        this.compactionExecutor = compactionExecutor;
+        return this;
+    }
+
+    /**
+     * Cache the expressions matched by each distinct input, inputs that repeat the same attribute values are then only
+     * evaluated once while their result stays in the cache. By default results are not cached.
+     *
+     * @param maximumSize
+     *         Maximum number of results in the cache, the least recently used results are evicted once it is full.
+     * @return this Builder
+     * @see BECachingEvaluator
+     */
+    @Nonnull
+    public BEEvaluatorBuilder<T> cache(final long maximumSize)
+    {
+        if (maximumSize < 1)
+        {
+            throw new IllegalArgumentException("maximumSize must be at least 1 but was " + maximumSize);
+        }
+        this.cacheSize = maximumSize;
+        return this;
+    }
+
     @Nonnull
     public BEEvaluator<T> build()
     {
-        final BEHybridEvaluator<T> evaluator = new BEHybridEvaluator<>(this.indexBuilder.build());
-        return evaluator;
+        final BEEvaluator<T> evaluator = build(this.indexBuilder, this.shardCount, this.shardingStrategy, this.shardExecutor);
+        return this.cacheSize > 0 ? new BECachingEvaluator<>(evaluator, this.cacheSize) : evaluator;
+    }
+
+    /**
+     * Build an evaluator that supports adding, replacing and removing expressions after it was built without
+     * rebuilding the entire index. The base index of the evaluator is sharded according to the configuration of this
+     * builder.
+     *
+     * @return Incremental evaluator for the expressions added to this builder.
+     */
+    @Nonnull
+    public BEIncrementalEvaluator<T> buildIncremental()
+    {
+        final int baseShardCount = this.shardCount;
+        final BEShardingStrategy baseShardingStrategy = this.shardingStrategy;
+        final Executor baseShardExecutor = this.shardExecutor;
+        return new BEIncrementalEvaluator<>(
+                this.indexBuilder,
+                baseIndexBuilder -> build(baseIndexBuilder, baseShardCount, baseShardingStrategy, baseShardExecutor),
+                this.compactionThreshold,
+                this.compactionExecutor);
+    }
+
+    /**
+     * Create an evaluator for an index that was already built, e.g. an index loaded with
+     * {@link com.amobee.freebee.evaluator.index.BEIndexReader}.
+     *
+     * @param index
+     *         Index to evaluate.
+     * @return Evaluator for the index.
+     */
+    @Nonnull
+    public static <T> BEEvaluator<T> fromIndex(@Nonnull final BEIndex<T> index)
+    {
+        return new BEHybridEvaluator<>(index);
+    }
+
+    /**
+     * Cache the expressions matched by each distinct input in front of an evaluator that was already built, e.g. an
+     * incremental evaluator. The cache is cleared whenever the expressions of the evaluator change.
+     *
+     * @param evaluator
+     *         Evaluator whose results to cache.
+     * @param maximumSize
+     *         Maximum number of results in the cache, the least recently used results are evicted once it is full.
+     * @return Caching evaluator.
+     */
+    @Nonnull
+    public static <T> BECachingEvaluator<T> cached(@Nonnull final BEEvaluator<T> evaluator, final long maximumSize)
+    {
+        return new BECachingEvaluator<>(evaluator, maximumSize);
+    }
+
+    @Nonnull
+    private static <T> BEEvaluator<T> build(
+            @Nonnull final BEIndexBuilder<T> indexBuilder,
+            final int shardCount,
+            @Nonnull final BEShardingStrategy shardingStrategy,
+            final Executor shardExecutor)
+    {
+        if (shardCount > 1)
+        {
+            final List<BEEvaluator<T>> shards = indexBuilder.partition(shardCount, shardingStrategy)
+                    .stream()
+                    .map(shardIndexBuilder -> new BEHybridEvaluator<>(shardIndexBuilder.build()))
+                    .collect(Collectors.toList());
+            if (shards.size() == 1)
+            {
+                // all expressions ended up in a single shard, which is then the whole index
+                return shards.get(0);
+            }
+            if (shards.size() > 1)
+            {
+                return new BEShardedEvaluator<>(shards, shardExecutor);
+            }
+        }
+
+        return new BEHybridEvaluator<>(indexBuilder.build());
     }
 
     @Override
@@ -201,12 +435,16 @@ public class BEEvaluatorBuilder<T>
             return false;
         }
         final BEEvaluatorBuilder<?> that = (BEEvaluatorBuilder<?>) o;
-        return Objects.equals(this.indexBuilder, that.indexBuilder);
+        return this.shardCount == that.shardCount
+                && this.compactionThreshold == that.compactionThreshold
+                && this.cacheSize == that.cacheSize
+                && Objects.equals(this.indexBuilder, that.indexBuilder)
+                && this.shardingStrategy == that.shardingStrategy;
     }
 
     @Override
     public int hashCode()
     {
-        return Objects.hash(this.indexBuilder);
+        return Objects.hash(this.indexBuilder, this.shardCount, this.shardingStrategy, this.compactionThreshold, this.cacheSize);
     }
 }
@@ -5,6 +5,7 @@ import com.amobee.freebee.evaluator.index.BEIndexExpressionResult;
 
 import javax.annotation.Nonnull;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashSet;
@@ -35,6 +36,30 @@ public class BEEvaluatorResult<T>
         this.matchedExpressionIntervals.put(expressionData, matchedExpression);
     }
 
+    /**
+     * Adds all matched expressions of another result to this result.
+     *
+     * @param other
+     *         Result to add.
+     */
+    void addAll(@Nonnull final BEEvaluatorResult<T> other)
+    {
+        this.matchedExpressionData.addAll(other.matchedExpressionData);
+        other.matchedExpressionIntervals.forEach(this.matchedExpressionIntervals::putIfAbsent);
+    }
+
+    /**
+     * Removes matched expressions associated with any of the specified data from this result.
+     *
+     * @param expressionData
+     *         Data of expressions to remove.
+     */
+    void removeAll(@Nonnull final Collection<T> expressionData)
+    {
+        this.matchedExpressionData.removeAll(expressionData);
+        this.matchedExpressionIntervals.keySet().removeAll(expressionData);
+    }
+
     /**
      * Returns the set of expression data for all matched expressions.
      *
@@ -199,8 +224,11 @@ public class BEEvaluatorResult<T>
             final BEMatchedInterval nextInterval = remainingIntervalsOnPath.pop();
             if (nextInterval.isPartialExpressionReferenceInterval())
             {
-                final List<List<BEMatchedInterval>> possibleCompleteIntervalPathsThatSatisfyThePartialExpression =
-                        findAllPossibleIntervalPathsThatSatisfyTheExpression(nextInterval.getPartialExpressionIndexResult());
+                // partial expressions may themselves reference partial expressions so their paths are expanded too
+                final List<List<BEMatchedInterval>> possibleCompleteIntervalPathsThatSatisfyThePartialExpression = new ArrayList<>();
+                findAllPossibleIntervalPathsThatSatisfyTheExpression(nextInterval.getPartialExpressionIndexResult())
+                        .forEach(partialPath -> possibleCompleteIntervalPathsThatSatisfyThePartialExpression.addAll(
+                                replacePartialExpressionRefsWithIntervalPaths(partialPath)));
 
                 // multiply our current 2D list representing all paths for all expressions
                 // by the new 2D list representing all paths for the partial expression
@@ -2,6 +2,7 @@ package com.amobee.freebee.evaluator.evaluator;
 
 import com.amobee.freebee.evaluator.BEInterval;
 import com.amobee.freebee.evaluator.BEMatchedInterval;
+import com.amobee.freebee.evaluator.index.BEEvaluationContext;
 import com.amobee.freebee.evaluator.index.BEIndex;
 import com.amobee.freebee.evaluator.index.BEIndexExpressionResult;
 import com.amobee.freebee.evaluator.index.BEIndexMetrics;
@@ -9,11 +10,14 @@ import com.amobee.freebee.evaluator.index.BEIndexResults;
 import com.amobee.freebee.evaluator.interval.Interval;
 
 import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Objects;
 import java.util.Set;
-import java.util.stream.Collectors;
 
 /**
  * An implementation of {@link BEEvaluator} that uses a hybrid matching algorithm
@@ -25,6 +29,10 @@ import java.util.stream.Collectors;
  *
  * All other expressions (free-form) are matched using the standard matching algorithm.
  *
+ * {@link #evaluate(BEInput)} keeps its intermediate state in a per-thread {@link BEEvaluationContext} of the evaluator
+ * so that steady-state evaluation allocates nothing but the result, {@link #evaluateAndTrack(BEInput)} allocates
+ * tracking objects for every matched interval and should only be used when tracking is needed.
+ *
  * Note: Users of the FreeBEE library should not create instances of this class directly,
  * rather, {@link BEEvaluatorBuilder} should be used.
  *
@@ -39,6 +47,12 @@ public class BEHybridEvaluator<T> implements BEEvaluator<T>
 
     private final BEIndex<T> index;
 
+    /**
+     * Contexts are bound to the index they were last used with, they are owned by the evaluator rather than shared by
+     * all evaluators so that replacing an evaluator doesn't leave its index reachable from every thread that used it
+     */
+    private transient ThreadLocal<BEEvaluationContext> contexts = ThreadLocal.withInitial(BEEvaluationContext::new);
+
     BEHybridEvaluator(@Nonnull final BEIndex<T> index)
     {
         this.index = index;
@@ -55,12 +69,40 @@ public class BEHybridEvaluator<T> implements BEEvaluator<T>
         return this.index.getIndexMetrics();
     }
 
+    @Nonnull
+    @Override
+    public BEInputSchema getInputSchema()
+    {
+        return this.index.getInputSchema();
+    }
+
     @Nonnull
     @Override
     public Set<T> evaluate(@Nonnull final BEInput input)
     {
-        final BEEvaluatorResult<T> evaluatorResult = evaluateAndTrack(input);
-        return evaluatorResult.getMatchedExpressions();
+        return evaluate(input, this.contexts.get());
+    }
+
+    @Nonnull
+    @Override
+    public Set<T> evaluate(@Nonnull final BEInput input, @Nonnull final BEEvaluationContext context)
+    {
+        final Set<T> matchedExpressions = new HashSet<>();
+        this.index.findMatchingExpressions(input, context, matchedExpressions);
+        return matchedExpressions;
+    }
+
+    @Nonnull
+    @Override
+    public List<Set<T>> evaluateBatch(@Nonnull final List<BEInput> inputs)
+    {
+        final List<Set<T>> matchedExpressions = new ArrayList<>(inputs.size());
+        for (int i = 0; i < inputs.size(); i++)
+        {
+            matchedExpressions.add(new HashSet<>());
+        }
+        this.index.findMatchingExpressions(inputs, this.contexts.get(), matchedExpressions);
+        return matchedExpressions;
     }
 
     @Nonnull
@@ -93,16 +135,9 @@ public class BEHybridEvaluator<T> implements BEEvaluator<T>
         // Find all intervals for each expression that match the input.
         final BEIndexResults indexResults = this.index.findMatchingExpressionIntervals(input);
 
-        // Using the matched expression intervals, evaluate partial expressions that were fully matched by the input
-        final List<BEIndexExpressionResult> matchedPartialExpressions = indexResults.getExpressionResults()
-                .stream()
-                .filter(BEIndexExpressionResult::isPartial)
-                .filter(this::match)
-                .collect(Collectors.toList());
-
-        // If any partial expressions were matched, we must now add the referenced partial expression ids to the input
-        // and rerun the index query to find more intervals (for full expressions) that may now match.
-        this.index.addRefIntervalsForMatchedPartialExpressions(matchedPartialExpressions, indexResults);
+        // Add the reference intervals depending on partial expressions that were fully matched by the input, they may
+        // complete more full expressions.
+        this.index.addRefIntervalsForMatchedPartialExpressions(indexResults, this::match);
         return indexResults;
     }
 
@@ -115,8 +150,7 @@ public class BEHybridEvaluator<T> implements BEEvaluator<T>
 
     private boolean matchUsingBitSet(final BEIndexExpressionResult expressionIndexResult)
     {
-        // TODO there may be an even faster way to do this comparison check than .getMatchedBits().nextClearBit(...)
-        return expressionIndexResult.getMatchedBits().nextClearBit(0) >= expressionIndexResult.getMaxIntervalLength();
+        return expressionIndexResult.isBitSetMatched();
     }
 
     private boolean matchUsingIntervals(final BEIndexExpressionResult expressionIndexResult)
@@ -143,6 +177,12 @@ public class BEHybridEvaluator<T> implements BEEvaluator<T>
         return matched[matched.length - 1];
     }
 
+    private void readObject(@Nonnull final ObjectInputStream in) throws IOException, ClassNotFoundException
+    {
+        in.defaultReadObject();
+        this.contexts = ThreadLocal.withInitial(BEEvaluationContext::new);
+    }
+
     @Override
     public boolean equals(final Object o)
     {
@@ -0,0 +1,701 @@
+package com.amobee.freebee.evaluator.evaluator;
+
+import com.amobee.freebee.evaluator.index.BEEvaluationContext;
+import com.amobee.freebee.evaluator.index.BEExpressionInfo;
+import com.amobee.freebee.evaluator.index.BEIndexBuilder;
+import com.amobee.freebee.evaluator.index.BEIndexMetrics;
+import com.amobee.freebee.expression.BEConjunctionNode;
+import com.amobee.freebee.expression.BENode;
+import com.amobee.freebee.expression.BEReferenceNode;
+
+import java.io.NotSerializableException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Evaluator that supports adding, replacing and removing expressions and partial expressions without rebuilding the
+ * index for every expression.
+ *
+ * Expressions are indexed in two layers, a base index built from all expressions at the time of the last compaction
+ * and a small delta index of the expressions that were added or changed since then. Expressions of the base index
+ * that were removed or changed are tombstoned by their expression data and their matches are discarded during
+ * evaluation, so the data of an expression should identify it. An update only rebuilds the delta index, once the
+ * number of changed expressions reaches the compaction threshold a new base index is built in the background from all
+ * current expressions.
+ *
+ * The delta index is rebuilt from all expressions changed since the last compaction on every update, so the cost of an
+ * update grows with the number of pending changes up to the compaction threshold rather than being constant. Keep the
+ * threshold small enough that rebuilding a delta index of that many expressions is cheap, the base index is only
+ * rebuilt once per threshold updates. Changing a partial expression changes every expression that
+ * references it, directly or through other partial expressions.
+ *
+ * The base index, delta index and tombstones are published together as an immutable snapshot so evaluation never
+ * blocks on updates and always sees a consistent set of expressions. Updates are serialized, an update is visible to
+ * every evaluation that starts after it returns. An update that would result in an invalid index, e.g. removing a
+ * partial expression that is still referenced, fails with an exception and leaves the evaluator unchanged.
+ *
+ * Applications should never create instances of this class directly, use {@link BEEvaluatorBuilder#buildIncremental()}
+ * instead. Unlike other evaluators this evaluator can't be serialized.
+ */
+public class BEIncrementalEvaluator<T> implements BEEvaluator<T>
+{
+    private static final long serialVersionUID = -2417364939546003711L;
+
+    private static final Logger logger = LoggerFactory.getLogger(BEIncrementalEvaluator.class);
+
+    private final Object lock = new Object();
+    private final Object compactionLock = new Object();
+
+    private final BEIndexBuilder<T> configuration;
+    private final Function<BEIndexBuilder<T>, BEEvaluator<T>> baseEvaluatorFactory;
+    private final int compactionThreshold;
+    @Nullable
+    private final Executor compactionExecutor;
+
+    // current expressions, values are replaced rather than modified so that they can be compared with the expressions
+    // of the base index by identity
+    private final Map<T, List<BENode>> expressions = new LinkedHashMap<>();
+    private final Map<String, BENode> partialExpressions = new HashMap<>();
+    private final Map<String, Set<T>> referencingExpressions = new HashMap<>();
+
+    // expressions that were indexed by the base index
+    private Map<T, List<BENode>> baseExpressions;
+
+    // expressions and partial expressions that differ from the base index
+    private final Set<T> changedExpressions = new HashSet<>();
+    private final Set<String> changedPartialExpressions = new HashSet<>();
+    private boolean compactionScheduled;
+
+    private volatile Snapshot<T> snapshot;
+
+    BEIncrementalEvaluator(
+            @Nonnull final BEIndexBuilder<T> indexBuilder,
+            @Nonnull final Function<BEIndexBuilder<T>, BEEvaluator<T>> baseEvaluatorFactory,
+            final int compactionThreshold,
+            @Nullable final Executor compactionExecutor)
+    {
+        this.configuration = indexBuilder.copyConfiguration();
+        this.baseEvaluatorFactory = baseEvaluatorFactory;
+        this.compactionThreshold = compactionThreshold;
+        this.compactionExecutor = compactionExecutor;
+
+        final Map<T, List<BENode>> groupedExpressions = new LinkedHashMap<>();
+        for (final BEExpressionInfo<T> info : indexBuilder.getExpressions())
+        {
+            groupedExpressions.computeIfAbsent(info.getData(), data -> new ArrayList<>()).add(info.getExpression());
+        }
+        groupedExpressions.forEach((data, nodes) -> {
+            final List<BENode> expressionNodes = Collections.unmodifiableList(nodes);
+            this.expressions.put(data, expressionNodes);
+            addReferences(data, expressionNodes);
+        });
+        this.partialExpressions.putAll(indexBuilder.getPartialExpressions());
+
+        this.baseExpressions = new LinkedHashMap<>(this.expressions);
+        this.snapshot = new Snapshot<>(
+                baseEvaluatorFactory.apply(newIndexBuilder(this.baseExpressions, this.partialExpressions)),
+                null,
+                Collections.emptySet());
+    }
+
+    /**
+     * Add an expression, if there already are expressions associated with the data the expression is added to them.
+     *
+     * @param data
+     *         Data to associate with the expression.
+     * @param expression
+     *         Expression to add.
+     */
+    public void addExpression(@Nonnull final T data, @Nonnull final BENode expression)
+    {
+        synchronized (this.lock)
+        {
+            final List<BENode> nodes = new ArrayList<>(this.expressions.getOrDefault(data, Collections.emptyList()));
+            nodes.add(expression);
+            updateExpressions(data, Collections.unmodifiableList(nodes));
+        }
+        scheduleCompaction();
+    }
+
+    /**
+     * Replace all expressions associated with the data with a single expression.
+     *
+     * @param data
+     *         Data to associate with the expression.
+     * @param expression
+     *         Expression that replaces the current expressions.
+     */
+    public void replaceExpressions(@Nonnull final T data, @Nonnull final BENode expression)
+    {
+        synchronized (this.lock)
+        {
+            updateExpressions(data, Collections.singletonList(expression));
+        }
+        scheduleCompaction();
+    }
+
+    /**
+     * Remove all expressions associated with the data.
+     *
+     * @param data
+     *         Data associated with the expressions to remove.
+     */
+    public void removeExpressions(@Nonnull final T data)
+    {
+        synchronized (this.lock)
+        {
+            updateExpressions(data, null);
+        }
+        scheduleCompaction();
+    }
+
+    /**
+     * Add or replace a partial expression, expressions that reference the partial expression are re-indexed.
+     *
+     * @param id
+     *         Id of the partial expression.
+     * @param expression
+     *         Partial expression to add.
+     */
+    public void addPartialExpression(@Nonnull final String id, @Nonnull final BENode expression)
+    {
+        synchronized (this.lock)
+        {
+            updatePartialExpression(id, expression);
+        }
+        scheduleCompaction();
+    }
+
+    /**
+     * Remove a partial expression, fails if the partial expression is still referenced by any expression.
+     *
+     * @param id
+     *         Id of the partial expression to remove.
+     */
+    public void removePartialExpression(@Nonnull final String id)
+    {
+        synchronized (this.lock)
+        {
+            updatePartialExpression(id, null);
+        }
+        scheduleCompaction();
+    }
+
+    /**
+     * Rebuild the base index from all current expressions, discarding the delta index and tombstones. This is done
+     * automatically in the background once the compaction threshold is reached, evaluation and updates can continue
+     * while the base index is being built.
+     */
+    public void compact()
+    {
+        synchronized (this.compactionLock)
+        {
+            final Map<T, List<BENode>> compactedExpressions;
+            final Map<String, BENode> compactedPartialExpressions;
+            synchronized (this.lock)
+            {
+                compactedExpressions = new LinkedHashMap<>(this.expressions);
+                compactedPartialExpressions = new HashMap<>(this.partialExpressions);
+            }
+
+            final BEEvaluator<T> baseEvaluator = this.baseEvaluatorFactory.apply(
+                    newIndexBuilder(compactedExpressions, compactedPartialExpressions));
+
+            synchronized (this.lock)
+            {
+                // anything that was updated while the base index was being built still differs from it
+                this.baseExpressions = compactedExpressions;
+                this.changedPartialExpressions.removeIf(
+                        id -> this.partialExpressions.get(id) == compactedPartialExpressions.get(id));
+                this.changedExpressions.removeIf(
+                        data -> this.expressions.get(data) == compactedExpressions.get(data)
+                                && !referencesChangedPartialExpression(this.expressions.get(data)));
+                publish(baseEvaluator);
+            }
+        }
+        scheduleCompaction();
+    }
+
+    /**
+     * @return Number of expressions in the delta index, i.e. expressions added or changed since the last compaction.
+     */
+    public int getDeltaExpressionCount()
+    {
+        final BEEvaluator<T> delta = this.snapshot.delta;
+        return null == delta ? 0 : delta.getMetrics().getFullExpressionCount();
+    }
+
+    /**
+     * @return Number of expressions in the base index that were removed or changed since the last compaction.
+     */
+    public int getTombstoneCount()
+    {
+        return this.snapshot.tombstones.size();
+    }
+
+    @Nullable
+    @Override
+    public BEIndexMetrics getMetrics()
+    {
+        final Snapshot<T> current = this.snapshot;
+        final BEIndexMetrics metrics = new BEIndexMetrics();
+        final BEIndexMetrics baseMetrics = current.base.getMetrics();
+        if (null != baseMetrics)
+        {
+            metrics.add(baseMetrics);
+        }
+        if (null != current.delta)
+        {
+            metrics.add(current.delta.getMetrics());
+        }
+        return metrics;
+    }
+
+    @Nonnull
+    @Override
+    public Set<T> evaluate(@Nonnull final BEInput input)
+    {
+        final Snapshot<T> current = this.snapshot;
+        return current.merge(
+                current.base.evaluate(input),
+                null == current.delta ? null : current.delta.evaluate(input));
+    }
+
+    @Nonnull
+    @Override
+    public Set<T> evaluate(@Nonnull final BEInput input, @Nonnull final BEEvaluationContext context)
+    {
+        final Snapshot<T> current = this.snapshot;
+        return current.merge(
+                current.base.evaluate(input, context),
+                null == current.delta ? null : current.delta.evaluate(input, context));
+    }
+
+    @Nonnull
+    @Override
+    public List<Set<T>> evaluateBatch(@Nonnull final List<BEInput> inputs)
+    {
+        final Snapshot<T> current = this.snapshot;
+        final List<Set<T>> baseResults = current.base.evaluateBatch(inputs);
+        final List<Set<T>> deltaResults = null == current.delta ? null : current.delta.evaluateBatch(inputs);
+
+        final List<Set<T>> matchedExpressions = new ArrayList<>(inputs.size());
+        for (int i = 0; i < inputs.size(); i++)
+        {
+            matchedExpressions.add(current.merge(baseResults.get(i), null == deltaResults ? null : deltaResults.get(i)));
+        }
+        return matchedExpressions;
+    }
+
+    @Nonnull
+    @Override
+    public BEEvaluatorResult<T> evaluateAndTrack(@Nonnull final BEInput input)
+    {
+        final Snapshot<T> current = this.snapshot;
+        final BEEvaluatorResult<T> evaluatorResult = current.base.evaluateAndTrack(input);
+        evaluatorResult.removeAll(current.tombstones);
+        if (null != current.delta)
+        {
+            evaluatorResult.addAll(current.delta.evaluateAndTrack(input));
+        }
+        return evaluatorResult;
+    }
+
+    private void updateExpressions(@Nonnull final T data, @Nullable final List<BENode> nodes)
+    {
+        final List<BENode> previous = null == nodes ? this.expressions.remove(data) : this.expressions.put(data, nodes);
+        if (null == previous && null == nodes)
+        {
+            return;
+        }
+
+        final boolean changed = this.changedExpressions.add(data);
+        try
+        {
+            publish(this.snapshot.base);
+        }
+        catch (final RuntimeException e)
+        {
+            if (null == previous)
+            {
+                this.expressions.remove(data);
+            }
+            else
+            {
+                this.expressions.put(data, previous);
+            }
+            if (changed)
+            {
+                this.changedExpressions.remove(data);
+            }
+            throw e;
+        }
+
+        if (null != previous)
+        {
+            removeReferences(data, previous);
+        }
+        if (null != nodes)
+        {
+            addReferences(data, nodes);
+        }
+    }
+
+    private void updatePartialExpression(@Nonnull final String id, @Nullable final BENode expression)
+    {
+        if (null == expression)
+        {
+            this.partialExpressions.forEach((partialExpressionId, partialExpression) -> collectReferences(partialExpression, reference -> {
+                if (reference.equals(id))
+                {
+                    throw new IllegalArgumentException(
+                            "Partial expression " + id + " is still referenced by partial expression " + partialExpressionId);
+                }
+            }));
+        }
+        else if (collectTransitiveReferences(Collections.singletonList(expression)).contains(id))
+        {
+            // checked here as the delta index only contains referenced partial expressions
+            throw new IllegalArgumentException("Partial expression " + id + " references itself in a cycle");
+        }
+
+        final BENode previous = null == expression
+                ? this.partialExpressions.remove(id)
+                : this.partialExpressions.put(id, expression);
+        if (null == previous && null == expression)
+        {
+            return;
+        }
+
+        final boolean changed = this.changedPartialExpressions.add(id);
+        final List<T> changedReferencingExpressions = new ArrayList<>();
+        getReferencingPartialExpressions(id).forEach(
+                referencedId -> this.referencingExpressions.getOrDefault(referencedId, Collections.emptySet()).forEach(data -> {
+                    if (this.changedExpressions.add(data))
+                    {
+                        changedReferencingExpressions.add(data);
+                    }
+                }));
+        try
+        {
+            publish(this.snapshot.base);
+        }
+        catch (final RuntimeException e)
+        {
+            if (null == previous)
+            {
+                this.partialExpressions.remove(id);
+            }
+            else
+            {
+                this.partialExpressions.put(id, previous);
+            }
+            if (changed)
+            {
+                this.changedPartialExpressions.remove(id);
+            }
+            this.changedExpressions.removeAll(changedReferencingExpressions);
+            throw e;
+        }
+    }
+
+    /**
+     * Builds the delta index of all changed expressions and publishes a new snapshot, must be called with the lock
+     * held. Compaction is scheduled by the caller once the lock is released.
+     */
+    private void publish(@Nonnull final BEEvaluator<T> baseEvaluator)
+    {
+        final Set<T> tombstones = new HashSet<>();
+        final Map<T, List<BENode>> deltaExpressions = new LinkedHashMap<>();
+        for (final T data : this.changedExpressions)
+        {
+            if (this.baseExpressions.containsKey(data))
+            {
+                tombstones.add(data);
+            }
+            final List<BENode> nodes = this.expressions.get(data);
+            if (null != nodes)
+            {
+                deltaExpressions.put(data, nodes);
+            }
+        }
+
+        BEEvaluator<T> deltaEvaluator = null;
+        if (!deltaExpressions.isEmpty())
+        {
+            final Map<String, BENode> deltaPartialExpressions = new HashMap<>();
+            final Set<String> references = new HashSet<>();
+            deltaExpressions.values().forEach(nodes -> references.addAll(collectTransitiveReferences(nodes)));
+            references.forEach(id -> {
+                final BENode partialExpression = this.partialExpressions.get(id);
+                if (null != partialExpression)
+                {
+                    deltaPartialExpressions.put(id, partialExpression);
+                }
+            });
+            deltaEvaluator = new BEHybridEvaluator<>(newIndexBuilder(deltaExpressions, deltaPartialExpressions).build());
+        }
+
+        this.snapshot = new Snapshot<>(baseEvaluator, deltaEvaluator, Collections.unmodifiableSet(tombstones));
+    }
+
+    /**
+     * Submits a compaction once the compaction threshold is reached, must be called without any lock held as the
+     * executor may compact on the calling thread.
+     */
+    private void scheduleCompaction()
+    {
+        synchronized (this.lock)
+        {
+            if (this.compactionScheduled || this.changedExpressions.size() < this.compactionThreshold)
+            {
+                return;
+            }
+            this.compactionScheduled = true;
+        }
+
+        final Executor executor = null == this.compactionExecutor ? DefaultExecutor.INSTANCE : this.compactionExecutor;
+        executor.execute(this::runScheduledCompaction);
+    }
+
+    private void runScheduledCompaction()
+    {
+        boolean compacted = false;
+        try
+        {
+            compact();
+            compacted = true;
+        }
+        catch (final RuntimeException e)
+        {
+            logger.error("Failed to compact incremental evaluator", e);
+        }
+        finally
+        {
+            synchronized (this.lock)
+            {
+                this.compactionScheduled = false;
+            }
+        }
+
+        if (compacted)
+        {
+            // updates made while the base index was being built may have reached the threshold again, a failed
+            // compaction is retried by the next update rather than right away
+            scheduleCompaction();
+        }
+    }
+
+    @Nonnull
+    private BEIndexBuilder<T> newIndexBuilder(
+            @Nonnull final Map<T, List<BENode>> indexExpressions,
+            @Nonnull final Map<String, BENode> indexPartialExpressions)
+    {
+        final BEIndexBuilder<T> indexBuilder = this.configuration.copyConfiguration();
+        indexPartialExpressions.forEach(indexBuilder::addPartialExpression);
+        indexExpressions.forEach((data, nodes) -> nodes.forEach(node -> indexBuilder.addExpression(data, node)));
+        return indexBuilder;
+    }
+
+    private boolean referencesChangedPartialExpression(@Nullable final List<BENode> nodes)
+    {
+        if (null == nodes || this.changedPartialExpressions.isEmpty())
+        {
+            return false;
+        }
+        return !Collections.disjoint(collectTransitiveReferences(nodes), this.changedPartialExpressions);
+    }
+
+    /**
+     * @return Ids of the partial expressions referenced by the specified nodes, directly or through other partial
+     * expressions.
+     */
+    @Nonnull
+    private Set<String> collectTransitiveReferences(@Nonnull final List<BENode> nodes)
+    {
+        final Set<String> references = new HashSet<>();
+        final Deque<String> pending = new ArrayDeque<>();
+        final Consumer<String> reference = id -> {
+            if (references.add(id))
+            {
+                pending.add(id);
+            }
+        };
+        nodes.forEach(node -> collectReferences(node, reference));
+        while (!pending.isEmpty())
+        {
+            final BENode partialExpression = this.partialExpressions.get(pending.remove());
+            if (null != partialExpression)
+            {
+                collectReferences(partialExpression, reference);
+            }
+        }
+        return references;
+    }
+
+    /**
+     * @return Id of the specified partial expression and of all partial expressions referencing it, directly or through
+     * other partial expressions.
+     */
+    @Nonnull
+    private Set<String> getReferencingPartialExpressions(@Nonnull final String id)
+    {
+        final Set<String> referencing = new HashSet<>();
+        referencing.add(id);
+        this.partialExpressions.forEach((partialExpressionId, partialExpression) -> {
+            if (collectTransitiveReferences(Collections.singletonList(partialExpression)).contains(id))
+            {
+                referencing.add(partialExpressionId);
+            }
+        });
+        return referencing;
+    }
+
+    private void addReferences(@Nonnull final T data, @Nonnull final List<BENode> nodes)
+    {
+        nodes.forEach(node -> collectReferences(
+                node,
+                id -> this.referencingExpressions.computeIfAbsent(id, key -> new HashSet<>()).add(data)));
+    }
+
+    private void removeReferences(@Nonnull final T data, @Nonnull final List<BENode> nodes)
+    {
+        nodes.forEach(node -> collectReferences(node, id -> {
+            final Set<T> referencing = this.referencingExpressions.get(id);
+            if (null != referencing && referencing.remove(data) && referencing.isEmpty())
+            {
+                this.referencingExpressions.remove(id);
+            }
+        }));
+    }
+
+    private static void collectReferences(@Nonnull final BENode node, @Nonnull final Consumer<String> consumer)
+    {
+        if (node instanceof BEConjunctionNode)
+        {
+            ((BEConjunctionNode) node).getValues().forEach(child -> collectReferences(child, consumer));
+        }
+        else if (node instanceof BEReferenceNode)
+        {
+            ((BEReferenceNode) node).getValues().forEach(value -> consumer.accept(value.getId()));
+        }
+    }
+
+    /**
+     * Incremental evaluators are equal if their current base and delta indexes and tombstones are equal, the hash code
+     * changes whenever expressions are updated or compacted.
+     */
+    @Override
+    public boolean equals(final Object o)
+    {
+        if (this == o)
+        {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass())
+        {
+            return false;
+        }
+        final Snapshot<?> current = this.snapshot;
+        final Snapshot<?> other = ((BEIncrementalEvaluator<?>) o).snapshot;
+        return current.hashCode == other.hashCode
+                && current.base.equals(other.base)
+                && Objects.equals(current.delta, other.delta)
+                && current.tombstones.equals(other.tombstones);
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return this.snapshot.hashCode;
+    }
+
+    private void writeObject(@Nonnull final ObjectOutputStream out) throws NotSerializableException
+    {
+        throw new NotSerializableException(getClass().getName());
+    }
+
+    private void readObject(@Nonnull final ObjectInputStream in) throws NotSerializableException
+    {
+        throw new NotSerializableException(getClass().getName());
+    }
+
+    /**
+     * Immutable view of the indexed expressions used by evaluations.
+     */
+    private static final class Snapshot<T>
+    {
+        private final BEEvaluator<T> base;
+        @Nullable
+        private final BEEvaluator<T> delta;
+        private final Set<T> tombstones;
+        private final int hashCode;
+
+        private Snapshot(
+                @Nonnull final BEEvaluator<T> base,
+                @Nullable final BEEvaluator<T> delta,
+                @Nonnull final Set<T> tombstones)
+        {
+            this.base = base;
+            this.delta = delta;
+            this.tombstones = tombstones;
+            this.hashCode = Objects.hash(base, delta, tombstones);
+        }
+
+        /**
+         * Merges matches of the base and delta index, the base matches are modified in place as evaluators return a
+         * new set for every evaluation.
+         */
+        @Nonnull
+        private Set<T> merge(@Nonnull final Set<T> baseMatches, @Nullable final Set<T> deltaMatches)
+        {
+            if (!this.tombstones.isEmpty())
+            {
+                baseMatches.removeIf(this.tombstones::contains);
+            }
+            if (null != deltaMatches)
+            {
+                baseMatches.addAll(deltaMatches);
+            }
+            return baseMatches;
+        }
+    }
+
+    /**
+     * Executor used for background compaction when none was configured, a single daemon thread that is only created
+     * when first needed.
+     */
+    private static final class DefaultExecutor
+    {
+        private static final ExecutorService INSTANCE = Executors.newSingleThreadExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "freebee-compaction");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        private DefaultExecutor()
+        {
+        }
+    }
+}
@@ -1,33 +1,131 @@
 package com.amobee.freebee.evaluator.evaluator;
 
 import java.util.function.BiConsumer;
+import java.util.function.Function;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 
-import lombok.NoArgsConstructor;
+import com.amobee.freebee.util.CaseInsensitiveHashingStrategy;
 import lombok.ToString;
+import org.eclipse.collections.api.list.primitive.MutableIntList;
 import org.eclipse.collections.api.map.MutableMap;
-import org.eclipse.collections.impl.factory.Maps;
+import org.eclipse.collections.impl.list.mutable.primitive.IntArrayList;
+import org.eclipse.collections.impl.map.strategy.mutable.UnifiedMapWithHashingStrategy;
 
 /**
+ * Input attribute categories and their values to evaluate.
+ *
+ * Inputs created with the {@link BEInputSchema} of an evaluator also keep their attribute categories by ordinal, the
+ * evaluator then only visits the attribute categories present in the input.
+ *
  * @author Michael Bond
  */
-@ToString
-@NoArgsConstructor
+@ToString(exclude = {"schema", "categoriesByOrdinal", "ordinals"})
 public class BEInput implements Cloneable
 {
-    private final MutableMap<String, BEInputAttributeCategory> attributeCategories = Maps.mutable.of();
+    /** Attribute categories keyed by upper case name, looked up ignoring case */
+    private final MutableMap<String, BEInputAttributeCategory> attributeCategories =
+            new UnifiedMapWithHashingStrategy<>(CaseInsensitiveHashingStrategy.INSTANCE);
+
+    @Nullable
+    private final BEInputSchema schema;
+
+    /** Attribute categories by ordinal of the schema, null if there is no schema */
+    @Nullable
+    private final BEInputAttributeCategory[] categoriesByOrdinal;
+
+    /** Ordinals of the attribute categories present in the input */
+    private final MutableIntList ordinals = new IntArrayList();
+
+    public BEInput()
+    {
+        this.schema = null;
+        this.categoriesByOrdinal = null;
+    }
+
+    /**
+     * Create an input whose attribute categories are also kept by ordinal of the specified schema.
+     *
+     * @param schema
+     *         Input schema of the evaluator the input will be evaluated with.
+     */
+    public BEInput(@Nonnull final BEInputSchema schema)
+    {
+        this.schema = schema;
+        this.categoriesByOrdinal = new BEInputAttributeCategory[schema.size()];
+    }
+
+    /**
+     * Create a copy of an input whose attribute categories are also kept by ordinal of the specified schema.
+     *
+     * @param schema
+     *         Input schema of the evaluator the input will be evaluated with.
+     * @param beInput
+     *         Input to copy.
+     */
+    public BEInput(@Nonnull final BEInputSchema schema, @Nonnull final BEInput beInput)
+    {
+        this(schema);
+        beInput.attributeCategories.forEachKeyValue((name, category) -> putCategory(name, category.clone()));
+    }
 
     private BEInput(@Nonnull final BEInput beInput)
     {
-        this.attributeCategories
-                .putAll(beInput.attributeCategories.collectValues((key, category) -> category.clone()));
+        this.schema = beInput.schema;
+        this.categoriesByOrdinal = null != beInput.schema ? new BEInputAttributeCategory[beInput.schema.size()] : null;
+        beInput.attributeCategories.forEachKeyValue((name, category) -> putCategory(name, category.clone()));
     }
 
     @Nullable
     public BEInputAttributeCategory getCategory(@Nonnull final String attributeCategory)
     {
-        return this.attributeCategories.get(attributeCategory.toUpperCase());
+        return this.attributeCategories.get(attributeCategory);
+    }
+
+    /**
+     * @return Schema the attribute categories of the input are kept by ordinal of, or null.
+     */
+    @Nullable
+    public BEInputSchema getSchema()
+    {
+        return this.schema;
+    }
+
+    /**
+     * Get the attribute category with the specified ordinal of the {@link #getSchema() schema}.
+     *
+     * @param ordinal
+     *         Ordinal of attribute category.
+     * @return Attribute category or null if the input has no values for it.
+     */
+    @Nullable
+    public BEInputAttributeCategory getCategory(final int ordinal)
+    {
+        if (null == this.categoriesByOrdinal)
+        {
+            throw new IllegalStateException("Input has no schema");
+        }
+        return this.categoriesByOrdinal[ordinal];
+    }
+
+    /**
+     * @return Number of attribute categories present in the input that are in the {@link #getSchema() schema}.
+     */
+    public int getOrdinalCount()
+    {
+        return this.ordinals.size();
+    }
+
+    /**
+     * Get the ordinal of an attribute category present in the input.
+     *
+     * @param index
+     *         Index in [0, {@link #getOrdinalCount()}).
+     * @return Ordinal of attribute category.
+     */
+    public int getOrdinal(final int index)
+    {
+        return this.ordinals.get(index);
     }
 
     /**
@@ -40,9 +138,7 @@ public class BEInput implements Cloneable
     @Nonnull
     public BEByteInputAttributeCategory getOrCreateByteCategory(@Nonnull final String attributeCategory)
     {
-        return (BEByteInputAttributeCategory) this.attributeCategories.getIfAbsentPutWithKey(
-                attributeCategory.toUpperCase(),
-                BEByteInputAttributeCategory::new);
+        return (BEByteInputAttributeCategory) getOrCreateCategory(attributeCategory, BEByteInputAttributeCategory::new);
     }
 
     /**
@@ -55,9 +151,7 @@ public class BEInput implements Cloneable
     @Nonnull
     public BEDoubleInputAttributeCategory getOrCreateDoubleCategory(@Nonnull final String attributeCategory)
     {
-        return (BEDoubleInputAttributeCategory) this.attributeCategories.getIfAbsentPutWithKey(
-                attributeCategory.toUpperCase(),
-                BEDoubleInputAttributeCategory::new);
+        return (BEDoubleInputAttributeCategory) getOrCreateCategory(attributeCategory, BEDoubleInputAttributeCategory::new);
     }
 
     /**
@@ -70,9 +164,7 @@ public class BEInput implements Cloneable
     @Nonnull
     public BEIntInputAttributeCategory getOrCreateIntCategory(@Nonnull final String attributeCategory)
     {
-        return (BEIntInputAttributeCategory) this.attributeCategories.getIfAbsentPutWithKey(
-                attributeCategory.toUpperCase(),
-                BEIntInputAttributeCategory::new);
+        return (BEIntInputAttributeCategory) getOrCreateCategory(attributeCategory, BEIntInputAttributeCategory::new);
     }
 
     /**
@@ -85,9 +177,7 @@ public class BEInput implements Cloneable
     @Nonnull
     public BELongInputAttributeCategory getOrCreateLongCategory(@Nonnull final String attributeCategory)
     {
-        return (BELongInputAttributeCategory) this.attributeCategories.getIfAbsentPutWithKey(
-                attributeCategory.toUpperCase(),
-                BELongInputAttributeCategory::new);
+        return (BELongInputAttributeCategory) getOrCreateCategory(attributeCategory, BELongInputAttributeCategory::new);
     }
 
     /**
@@ -100,14 +190,35 @@ public class BEInput implements Cloneable
     @Nonnull
     public BEStringInputAttributeCategory getOrCreateStringCategory(@Nonnull final String attributeCategory)
     {
-        return (BEStringInputAttributeCategory) this.attributeCategories.getIfAbsentPutWithKey(
-                attributeCategory.toUpperCase(),
-                BEStringInputAttributeCategory::new);
+        return (BEStringInputAttributeCategory) getOrCreateCategory(attributeCategory, BEStringInputAttributeCategory::new);
+    }
+
+    /**
+     * Get or create a new string attribute category for the input whose values can be encoded to the value ids of an
+     * index attribute category.
+     *
+     * @param attributeCategory
+     *         Attribute category to create.
+     * @return New {@link BEEncodedStringInputAttributeCategory}.
+     */
+    @Nonnull
+    public BEEncodedStringInputAttributeCategory getOrCreateEncodedStringCategory(@Nonnull final String attributeCategory)
+    {
+        return (BEEncodedStringInputAttributeCategory) getOrCreateCategory(attributeCategory, BEEncodedStringInputAttributeCategory::new);
     }
 
     public void removeCategory(@Nonnull final String attributeCategory)
     {
-        this.attributeCategories.removeKey(attributeCategory.toUpperCase());
+        final BEInputAttributeCategory category = this.attributeCategories.removeKey(attributeCategory);
+        if (null != category && null != this.schema && null != this.categoriesByOrdinal)
+        {
+            final int ordinal = this.schema.getOrdinal(attributeCategory);
+            if (ordinal != BEInputSchema.NO_ORDINAL)
+            {
+                this.categoriesByOrdinal[ordinal] = null;
+                this.ordinals.remove(ordinal);
+            }
+        }
     }
 
     /**
@@ -121,6 +232,35 @@ public class BEInput implements Cloneable
         this.attributeCategories.forEach(consumer);
     }
 
+    @Nonnull
+    private BEInputAttributeCategory getOrCreateCategory(
+            @Nonnull final String attributeCategory,
+            @Nonnull final Function<String, BEInputAttributeCategory> factory)
+    {
+        BEInputAttributeCategory category = this.attributeCategories.get(attributeCategory);
+        if (null == category)
+        {
+            final String name = attributeCategory.toUpperCase();
+            category = factory.apply(name);
+            putCategory(name, category);
+        }
+        return category;
+    }
+
+    private void putCategory(@Nonnull final String name, @Nonnull final BEInputAttributeCategory category)
+    {
+        this.attributeCategories.put(name, category);
+        if (null != this.schema && null != this.categoriesByOrdinal)
+        {
+            final int ordinal = this.schema.getOrdinal(name);
+            if (ordinal != BEInputSchema.NO_ORDINAL)
+            {
+                this.categoriesByOrdinal[ordinal] = category;
+                this.ordinals.add(ordinal);
+            }
+        }
+    }
+
     @Override
     public BEInput clone()
     {
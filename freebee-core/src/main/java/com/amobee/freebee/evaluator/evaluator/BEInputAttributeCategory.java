@@ -1,6 +1,7 @@
 package com.amobee.freebee.evaluator.evaluator;
 
 import com.amobee.freebee.evaluator.BEInterval;
+import com.amobee.freebee.evaluator.BEPostingList;
 import com.amobee.freebee.evaluator.index.BEAttributeCategoryMatchedIntervalConsumer;
 import com.amobee.freebee.evaluator.index.BEIndexAttributeCategory;
 
@@ -22,19 +23,50 @@ public interface BEInputAttributeCategory extends Cloneable
      */
     String getName();
 
+    /**
+     * Returns the number of values in this input attribute category, including duplicates.
+     *
+     * The default implementation counts the distinct values by splitting the attribute category and should be
+     * overridden by implementations that can count their values without allocating.
+     *
+     * @return the number of values
+     */
+    default int getValueCount()
+    {
+        return split().size();
+    }
+
     /**
      * Iterates over all values in this input attribute category and invokes the consumer for each value that has
      * intervals in the specified index.
      *
      * @param indexAttributeCategory Index to find intervals matching the input values.
      * @param consumer               Consumer to call with matching intervals.
-     * @deprecated Use {@link #forEachMatchedInterval(BEIndexAttributeCategory, BEAttributeCategoryMatchedIntervalConsumer)}.
+     * @deprecated Use {@link #forEachMatchedPostings(BEIndexAttributeCategory, Consumer)}, this materializes interval
+     *             objects for every matched posting.
      */
     @Deprecated
     void forEachMatchedInterval(
             @Nonnull BEIndexAttributeCategory indexAttributeCategory,
             @Nonnull Consumer<List<BEInterval>> consumer);
 
+    /**
+     * Iterates over all values in this input attribute category and invokes the consumer for each value that has
+     * postings in the specified index.
+     *
+     * This variant does not track matched input values and is used on the allocation free evaluation path, so
+     * implementations should avoid allocating.
+     *
+     * @param indexAttributeCategory Index to find postings matching the input values.
+     * @param consumer               Consumer to call with matching postings.
+     */
+    default void forEachMatchedPostings(
+            @Nonnull final BEIndexAttributeCategory indexAttributeCategory,
+            @Nonnull final Consumer<BEPostingList> consumer)
+    {
+        forEachMatchedInterval(indexAttributeCategory, intervals -> consumer.accept(new BEPostingList(intervals)));
+    }
+
     void forEachMatchedInterval(
             @Nonnull BEIndexAttributeCategory indexAttributeCategory,
             @Nonnull BEAttributeCategoryMatchedIntervalConsumer consumer);
@@ -0,0 +1,103 @@
+package com.amobee.freebee.evaluator.evaluator;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * Canonical form of an input used as a cache key. Attribute categories are ordered by name and the values of each
+ * attribute category are sorted and de-duplicated, so inputs with the same attribute values have equal keys regardless
+ * of the order the values were added in. The key is a copy of the values, later changes to the input don't change it.
+ *
+ * @see BECachingEvaluator
+ */
+final class BEInputKey
+{
+    /** Attribute category names and canonical values, alternating */
+    private final Object[] parts;
+    private final int hashCode;
+
+    private BEInputKey(@Nonnull final Object[] parts)
+    {
+        this.parts = parts;
+        this.hashCode = Arrays.deepHashCode(parts);
+    }
+
+    /**
+     * Create the key of an input.
+     *
+     * @param input
+     *         Input to create key for.
+     * @return Key of the input, or null if the input has an attribute category of a type that has no canonical form.
+     */
+    @Nullable
+    static BEInputKey of(@Nonnull final BEInput input)
+    {
+        final List<String> names = new ArrayList<>();
+        input.forEach((name, category) -> names.add(name));
+        Collections.sort(names);
+
+        final Object[] parts = new Object[names.size() * 2];
+        for (int i = 0; i < names.size(); i++)
+        {
+            final Object values = canonicalValues(input.getCategory(names.get(i)));
+            if (null == values)
+            {
+                return null;
+            }
+            parts[i * 2] = names.get(i);
+            parts[i * 2 + 1] = values;
+        }
+        return new BEInputKey(parts);
+    }
+
+    @Nullable
+    private static Object canonicalValues(@Nullable final BEInputAttributeCategory category)
+    {
+        if (category instanceof BEStringInputAttributeCategory)
+        {
+            return ((BEStringInputAttributeCategory) category).getSortedDistinctValues();
+        }
+        if (category instanceof BEIntInputAttributeCategory)
+        {
+            return ((BEIntInputAttributeCategory) category).getSortedDistinctValues();
+        }
+        if (category instanceof BELongInputAttributeCategory)
+        {
+            return ((BELongInputAttributeCategory) category).getSortedDistinctValues();
+        }
+        if (category instanceof BEDoubleInputAttributeCategory)
+        {
+            return ((BEDoubleInputAttributeCategory) category).getSortedDistinctValues();
+        }
+        if (category instanceof BEByteInputAttributeCategory)
+        {
+            return ((BEByteInputAttributeCategory) category).getSortedDistinctValues();
+        }
+        return null;
+    }
+
+    @Override
+    public boolean equals(final Object o)
+    {
+        if (this == o)
+        {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass())
+        {
+            return false;
+        }
+        final BEInputKey that = (BEInputKey) o;
+        return this.hashCode == that.hashCode && Arrays.deepEquals(this.parts, that.parts);
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return this.hashCode;
+    }
+}
@@ -0,0 +1,81 @@
+package com.amobee.freebee.evaluator.evaluator;
+
+import com.amobee.freebee.util.CaseInsensitiveHashingStrategy;
+import org.eclipse.collections.api.map.primitive.MutableObjectIntMap;
+import org.eclipse.collections.impl.map.mutable.primitive.ObjectIntHashMapWithHashingStrategy;
+
+import javax.annotation.Nonnull;
+import java.io.Serializable;
+
+/**
+ * Attribute categories of an index, each identified by an ordinal. Inputs created with the schema of an evaluator keep
+ * their attribute categories in an array indexed by ordinal, so evaluating them only visits the attribute categories
+ * the input has values for (and those with negative predicates) rather than looking up every indexed attribute
+ * category of the index in the input by name.
+ *
+ * Ordinals are only meaningful for the index the schema was obtained from, inputs created with a different schema are
+ * evaluated by name.
+ *
+ * @see BEEvaluator#getInputSchema()
+ * @see BEInput#BEInput(BEInputSchema)
+ */
+public final class BEInputSchema implements Serializable
+{
+    /** Ordinal of attribute categories that are not in the schema */
+    public static final int NO_ORDINAL = -1;
+
+    private static final long serialVersionUID = -2113853431765316164L;
+
+    @Nonnull
+    private final String[] names;
+
+    @Nonnull
+    private final MutableObjectIntMap<String> ordinals =
+            new ObjectIntHashMapWithHashingStrategy<>(CaseInsensitiveHashingStrategy.INSTANCE);
+
+    /**
+     * @param names
+     *         Attribute category names, the ordinal of each attribute category is its index.
+     */
+    public BEInputSchema(@Nonnull final String[] names)
+    {
+        this.names = names.clone();
+        for (int i = 0; i < names.length; i++)
+        {
+            this.ordinals.put(names[i], i);
+        }
+    }
+
+    /**
+     * @return Number of attribute categories in the schema, ordinals are in [0, size).
+     */
+    public int size()
+    {
+        return this.names.length;
+    }
+
+    /**
+     * Get the ordinal of an attribute category, attribute category names are case insensitive.
+     *
+     * @param attributeCategory
+     *         Name of attribute category.
+     * @return Ordinal of the attribute category or {@link #NO_ORDINAL} if it is not in the schema.
+     */
+    public int getOrdinal(@Nonnull final String attributeCategory)
+    {
+        return this.ordinals.getIfAbsent(attributeCategory, NO_ORDINAL);
+    }
+
+    /**
+     * Get the name of the attribute category with the specified ordinal.
+     *
+     * @param ordinal
+     *         Ordinal of attribute category.
+     * @return Name of the attribute category.
+     */
+    @Nonnull
+    public String getName(final int ordinal)
+    {
+        return this.names[ordinal];
+    }
+}
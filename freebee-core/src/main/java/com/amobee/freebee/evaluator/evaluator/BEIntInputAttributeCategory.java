@@ -1,6 +1,7 @@
 package com.amobee.freebee.evaluator.evaluator;
 
 import com.amobee.freebee.evaluator.BEInterval;
+import com.amobee.freebee.evaluator.BEPostingList;
 import com.amobee.freebee.evaluator.index.BEAttributeCategoryMatchedIntervalConsumer;
 import com.amobee.freebee.evaluator.index.BEIndexAttributeCategory;
 import com.google.common.annotations.VisibleForTesting;
@@ -10,6 +11,7 @@ import org.eclipse.collections.api.list.primitive.MutableIntList;
 import org.eclipse.collections.impl.list.mutable.primitive.IntArrayList;
 
 import javax.annotation.Nonnull;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -52,6 +54,19 @@ public class BEIntInputAttributeCategory extends BEBaseInputAttributeCategory
         this.values.forEach(value -> indexAttributeCategory.getIntervals(value, consumer));
     }
 
+    @Override
+    public void forEachMatchedPostings(
+            @Nonnull final BEIndexAttributeCategory indexAttributeCategory,
+            @Nonnull final Consumer<BEPostingList> consumer)
+    {
+        // indexed loop rather than forEach so that evaluation doesn't allocate a capturing lambda
+        final int size = this.values.size();
+        for (int i = 0; i < size; i++)
+        {
+            indexAttributeCategory.getPostings(this.values.get(i), consumer);
+        }
+    }
+
     @Override
     public void forEachMatchedInterval(
             @Nonnull final BEIndexAttributeCategory indexAttributeCategory,
@@ -86,12 +101,38 @@ public class BEIntInputAttributeCategory extends BEBaseInputAttributeCategory
         return new BEIntInputAttributeCategory(this);
     }
 
+    @Override
+    public int getValueCount()
+    {
+        return this.values.size();
+    }
+
     @VisibleForTesting
     public ImmutableIntList getValues()
     {
         return this.values.toImmutable();
     }
 
+    /**
+     * Returns the distinct values of this category in ascending order without going through an intermediate
+     * immutable copy, for building canonical cache keys.
+     */
+    @Nonnull
+    int[] getSortedDistinctValues()
+    {
+        final int[] sorted = this.values.toArray();
+        Arrays.sort(sorted);
+        int size = 0;
+        for (final int value : sorted)
+        {
+            if (0 == size || value != sorted[size - 1])
+            {
+                sorted[size++] = value;
+            }
+        }
+        return size == sorted.length ? sorted : Arrays.copyOf(sorted, size);
+    }
+
     @Override
     public Set<? extends BEInputAttributeCategory> split()
     {
@@ -0,0 +1,87 @@
+package com.amobee.freebee.evaluator.evaluator;
+
+/**
+ * Snapshot of the evaluation latency of a single shard of a {@link BEShardedEvaluator}.
+ */
+public class BEShardStatistics
+{
+    private final int shard;
+    private final int expressionCount;
+    private final long evaluationCount;
+    private final long totalNanos;
+    private final long maxNanos;
+
+    BEShardStatistics(
+            final int shard,
+            final int expressionCount,
+            final long evaluationCount,
+            final long totalNanos,
+            final long maxNanos)
+    {
+        this.shard = shard;
+        this.expressionCount = expressionCount;
+        this.evaluationCount = evaluationCount;
+        this.totalNanos = totalNanos;
+        this.maxNanos = maxNanos;
+    }
+
+    /**
+     * @return Index of the shard.
+     */
+    public int getShard()
+    {
+        return this.shard;
+    }
+
+    /**
+     * @return Number of full expressions in the shard.
+     */
+    public int getExpressionCount()
+    {
+        return this.expressionCount;
+    }
+
+    /**
+     * @return Number of times the shard was evaluated, a batch counts as a single evaluation.
+     */
+    public long getEvaluationCount()
+    {
+        return this.evaluationCount;
+    }
+
+    /**
+     * @return Total time spent evaluating the shard in nanoseconds.
+     */
+    public long getTotalNanos()
+    {
+        return this.totalNanos;
+    }
+
+    /**
+     * @return Longest single evaluation of the shard in nanoseconds.
+     */
+    public long getMaxNanos()
+    {
+        return this.maxNanos;
+    }
+
+    /**
+     * @return Average time of a single evaluation of the shard in nanoseconds.
+     */
+    public double getAverageNanos()
+    {
+        return this.evaluationCount == 0 ? 0.0 : (double) this.totalNanos / (double) this.evaluationCount;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "BEShardStatistics{" +
+                "shard=" + this.shard +
+                ", expressionCount=" + this.expressionCount +
+                ", evaluationCount=" + this.evaluationCount +
+                ", totalNanos=" + this.totalNanos +
+                ", maxNanos=" + this.maxNanos +
+                '}';
+    }
+}
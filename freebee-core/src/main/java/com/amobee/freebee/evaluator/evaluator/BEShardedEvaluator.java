@@ -0,0 +1,284 @@
+package com.amobee.freebee.evaluator.evaluator;
+
+import com.amobee.freebee.evaluator.index.BEIndexMetrics;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * Evaluator that partitions expressions into shards, each with its own index, and evaluates the shards in parallel so
+ * that a single input can use multiple cores when there are a very large number of expressions.
+ *
+ * The first shard is evaluated on the calling thread while the remaining shards are evaluated on the configured
+ * executor, the results of all shards are merged, including tracking results. The latency of each shard is recorded
+ * and can be retrieved with {@link #getShardStatistics()}.
+ *
+ * Applications should never create instances of this class directly, use
+ * {@link BEEvaluatorBuilder#shards(int, com.amobee.freebee.evaluator.index.BEShardingStrategy)} instead.
+ */
+public class BEShardedEvaluator<T> implements BEEvaluator<T>
+{
+    private static final long serialVersionUID = 6127436245095861328L;
+
+    @Nonnull
+    private final List<BEEvaluator<T>> shards;
+    @Nullable
+    private final transient Executor executor;
+    @Nonnull
+    private transient ShardLatency[] latencies;
+
+    BEShardedEvaluator(@Nonnull final List<BEEvaluator<T>> shards, @Nullable final Executor executor)
+    {
+        if (shards.isEmpty())
+        {
+            throw new IllegalArgumentException("At least one shard is required");
+        }
+        this.shards = shards;
+        this.executor = executor;
+        this.latencies = newLatencies(shards.size());
+    }
+
+    /**
+     * @return Evaluators of each shard.
+     */
+    @Nonnull
+    public List<BEEvaluator<T>> getShards()
+    {
+        return this.shards;
+    }
+
+    /**
+     * Gets a snapshot of the evaluation latency of each shard.
+     *
+     * @return Statistics of each shard.
+     */
+    @Nonnull
+    public List<BEShardStatistics> getShardStatistics()
+    {
+        final List<BEShardStatistics> statistics = new ArrayList<>(this.shards.size());
+        for (int shard = 0; shard < this.shards.size(); shard++)
+        {
+            final BEIndexMetrics metrics = this.shards.get(shard).getMetrics();
+            final ShardLatency latency = this.latencies[shard];
+            statistics.add(new BEShardStatistics(
+                    shard,
+                    null == metrics ? 0 : metrics.getFullExpressionCount(),
+                    latency.count.sum(),
+                    latency.totalNanos.sum(),
+                    latency.maxNanos.get()));
+        }
+        return statistics;
+    }
+
+    /**
+     * Gets the metrics of all shards, partial expressions copied to several shards are counted once while their
+     * intervals are counted for every shard holding a copy.
+     *
+     * @return Metrics of all shards.
+     */
+    @Nullable
+    @Override
+    public BEIndexMetrics getMetrics()
+    {
+        final BEIndexMetrics aggregate = new BEIndexMetrics();
+        final Set<String> partialExpressions = new HashSet<>();
+        for (final BEEvaluator<T> shard : this.shards)
+        {
+            if (shard instanceof BEHybridEvaluator)
+            {
+                ((BEHybridEvaluator<T>) shard).getIndex().addMetricsTo(aggregate, partialExpressions);
+            }
+            else if (null != shard.getMetrics())
+            {
+                aggregate.add(shard.getMetrics());
+            }
+        }
+        return aggregate;
+    }
+
+    @Nonnull
+    @Override
+    public Set<T> evaluate(@Nonnull final BEInput input)
+    {
+        final Set<T> matchedExpressions = new HashSet<>();
+        evaluateShards(shard -> shard.evaluate(input)).forEach(matchedExpressions::addAll);
+        return matchedExpressions;
+    }
+
+    @Nonnull
+    @Override
+    public List<Set<T>> evaluateBatch(@Nonnull final List<BEInput> inputs)
+    {
+        final List<List<Set<T>>> shardResults = evaluateShards(shard -> shard.evaluateBatch(inputs));
+
+        final List<Set<T>> matchedExpressions = new ArrayList<>(inputs.size());
+        for (int i = 0; i < inputs.size(); i++)
+        {
+            final Set<T> matched = new HashSet<>();
+            for (final List<Set<T>> results : shardResults)
+            {
+                matched.addAll(results.get(i));
+            }
+            matchedExpressions.add(matched);
+        }
+        return matchedExpressions;
+    }
+
+    @Nonnull
+    @Override
+    public BEEvaluatorResult<T> evaluateAndTrack(@Nonnull final BEInput input)
+    {
+        final BEEvaluatorResult<T> evaluatorResult = new BEEvaluatorResult<>();
+        evaluateShards(shard -> shard.evaluateAndTrack(input)).forEach(evaluatorResult::addAll);
+        return evaluatorResult;
+    }
+
+    /**
+     * Applies an evaluation to every shard, the first shard on the calling thread and the others on the executor.
+     *
+     * @return Results of each shard in shard order.
+     */
+    @Nonnull
+    private <R> List<R> evaluateShards(@Nonnull final Function<BEEvaluator<T>, R> evaluation)
+    {
+        final Executor shardExecutor = null == this.executor ? DefaultExecutor.INSTANCE : this.executor;
+        final List<CompletableFuture<R>> futures = new ArrayList<>(this.shards.size() - 1);
+        for (int shard = 1; shard < this.shards.size(); shard++)
+        {
+            final int shardIndex = shard;
+            futures.add(CompletableFuture.supplyAsync(() -> evaluateShard(shardIndex, evaluation), shardExecutor));
+        }
+
+        final List<R> results = new ArrayList<>(this.shards.size());
+        results.add(evaluateShard(0, evaluation));
+        for (final CompletableFuture<R> future : futures)
+        {
+            try
+            {
+                results.add(future.join());
+            }
+            catch (final CompletionException e)
+            {
+                if (e.getCause() instanceof RuntimeException)
+                {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw e;
+            }
+        }
+        return results;
+    }
+
+    private <R> R evaluateShard(final int shard, @Nonnull final Function<BEEvaluator<T>, R> evaluation)
+    {
+        final long start = System.nanoTime();
+        try
+        {
+            return evaluation.apply(this.shards.get(shard));
+        }
+        finally
+        {
+            this.latencies[shard].record(System.nanoTime() - start);
+        }
+    }
+
+    private void readObject(@Nonnull final ObjectInputStream in) throws IOException, ClassNotFoundException
+    {
+        in.defaultReadObject();
+        this.latencies = newLatencies(this.shards.size());
+    }
+
+    @Nonnull
+    private static ShardLatency[] newLatencies(final int shardCount)
+    {
+        final ShardLatency[] latencies = new ShardLatency[shardCount];
+        for (int i = 0; i < shardCount; i++)
+        {
+            latencies[i] = new ShardLatency();
+        }
+        return latencies;
+    }
+
+    @Override
+    public boolean equals(final Object o)
+    {
+        if (this == o)
+        {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass())
+        {
+            return false;
+        }
+        final BEShardedEvaluator<?> that = (BEShardedEvaluator<?>) o;
+        return Objects.equals(this.shards, that.shards);
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return Objects.hash(this.shards);
+    }
+
+    /**
+     * Latency recorded for a single shard.
+     */
+    private static final class ShardLatency
+    {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        private void record(final long nanos)
+        {
+            this.count.increment();
+            this.totalNanos.add(nanos);
+            this.maxNanos.accumulateAndGet(nanos, Math::max);
+        }
+    }
+
+    /**
+     * Executor used when none was configured, a pool of daemon threads sized to the number of processors that is only
+     * created when first needed.
+     */
+    private static final class DefaultExecutor
+    {
+        private static final ExecutorService INSTANCE = Executors.newFixedThreadPool(
+                Runtime.getRuntime().availableProcessors(),
+                new ShardThreadFactory());
+
+        private DefaultExecutor()
+        {
+        }
+    }
+
+    private static final class ShardThreadFactory implements ThreadFactory
+    {
+        private final AtomicInteger nextThreadId = new AtomicInteger();
+
+        @Override
+        public Thread newThread(@Nonnull final Runnable runnable)
+        {
+            final Thread thread = new Thread(runnable, "freebee-shard-" + this.nextThreadId.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
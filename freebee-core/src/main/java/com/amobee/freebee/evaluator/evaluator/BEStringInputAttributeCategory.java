@@ -1,6 +1,7 @@
 package com.amobee.freebee.evaluator.evaluator;
 
 import com.amobee.freebee.evaluator.BEInterval;
+import com.amobee.freebee.evaluator.BEPostingList;
 import com.amobee.freebee.evaluator.index.BEAttributeCategoryMatchedIntervalConsumer;
 import com.amobee.freebee.evaluator.index.BEIndexAttributeCategory;
 import com.google.common.annotations.VisibleForTesting;
@@ -9,6 +10,7 @@ import lombok.EqualsAndHashCode;
 
 import javax.annotation.Nonnull;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -20,7 +22,7 @@ import java.util.function.Consumer;
 @EqualsAndHashCode(callSuper = true)
 public class BEStringInputAttributeCategory extends BEBaseInputAttributeCategory
 {
-    private final List<String> values = new ArrayList<>();
+    protected final List<String> values = new ArrayList<>();
 
     public BEStringInputAttributeCategory(@Nonnull final String attributeCategoryName)
     {
@@ -32,7 +34,7 @@ public class BEStringInputAttributeCategory extends BEBaseInputAttributeCategory
         super(attributeCategoryName, trackingEnabled);
     }
 
-    private BEStringInputAttributeCategory(@Nonnull final BEStringInputAttributeCategory category)
+    protected BEStringInputAttributeCategory(@Nonnull final BEStringInputAttributeCategory category)
     {
         super(category.getName(), category.isTrackingEnabled());
         this.values.addAll(category.values);
@@ -51,6 +53,19 @@ public class BEStringInputAttributeCategory extends BEBaseInputAttributeCategory
         this.values.forEach(value -> indexAttributeCategory.getIntervals(value, consumer));
     }
 
+    @Override
+    public void forEachMatchedPostings(
+            @Nonnull final BEIndexAttributeCategory indexAttributeCategory,
+            @Nonnull final Consumer<BEPostingList> consumer)
+    {
+        // indexed loop rather than forEach so that evaluation doesn't allocate a capturing lambda
+        final int size = this.values.size();
+        for (int i = 0; i < size; i++)
+        {
+            indexAttributeCategory.getPostings(this.values.get(i), consumer);
+        }
+    }
+
     @Override
     public void forEachMatchedInterval(
             @Nonnull final BEIndexAttributeCategory indexAttributeCategory,
@@ -85,12 +100,38 @@ public class BEStringInputAttributeCategory extends BEBaseInputAttributeCategory
         return new BEStringInputAttributeCategory(this);
     }
 
+    @Override
+    public int getValueCount()
+    {
+        return this.values.size();
+    }
+
     @VisibleForTesting
     public ImmutableList<String> getValues()
     {
         return ImmutableList.copyOf(this.values);
     }
 
+    /**
+     * Returns the distinct values of this category in ascending order without going through an intermediate
+     * immutable copy, for building canonical cache keys.
+     */
+    @Nonnull
+    String[] getSortedDistinctValues()
+    {
+        final String[] sorted = this.values.toArray(new String[0]);
+        Arrays.sort(sorted);
+        int size = 0;
+        for (final String value : sorted)
+        {
+            if (0 == size || !value.equals(sorted[size - 1]))
+            {
+                sorted[size++] = value;
+            }
+        }
+        return size == sorted.length ? sorted : Arrays.copyOf(sorted, size);
+    }
+
     @Override
     public Set<? extends BEInputAttributeCategory> split()
     {
@@ -1,12 +1,15 @@
 package com.amobee.freebee.evaluator.index;
 
 import com.amobee.freebee.evaluator.BEInterval;
-import com.amobee.freebee.evaluator.evaluator.BEInputAttributeCategory;
+import com.amobee.freebee.evaluator.BEPostingList;
 import com.amobee.freebee.util.RangeUtils;
+import com.google.common.collect.BoundType;
 import com.google.common.collect.Range;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import java.io.IOException;
+import java.util.AbstractMap;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -14,29 +17,47 @@ import java.util.Map;
 import java.util.function.Consumer;
 
 /**
+ * Index attribute category for range values.
+ *
+ * Postings are kept per unique range, the lookup structure of disjoint ranges (each mapped to the merged postings of
+ * all ranges that cover it) is derived from the unique ranges when the category is compacted, or lazily on the first
+ * lookup after an interval was added. The lookup structure is a {@link BERangeIndex} of primitive bounds, subclasses
+ * look up the primitive types they support without boxing.
+ *
  * @author Michael Bond
  * @author Kevin Doran
  */
+@SuppressWarnings("UnstableApiUsage")
 public abstract class BEAbstractRangeIndexAttributeCategory<T extends Comparable<T>> extends BEIndexAttributeCategory
 {
+    /** Flags describing the bounds of a range in the binary index format */
+    private static final byte LOWER_CLOSED = 1;
+    private static final byte LOWER_OPEN = 1 << 1;
+    private static final byte UPPER_CLOSED = 1 << 2;
+    private static final byte UPPER_OPEN = 1 << 3;
+
+    /** Estimated bytes of a range, its two bounds and their boxed endpoints */
+    private static final int RANGE_BYTES = 80;
+
+    /** Estimated bytes of a disjoint range of the range index, its primitive bounds and posting list reference */
+    private static final int RANGE_SEGMENT_BYTES = 20;
+
     /**
-     * Unique range -> list of intervals map is useful for troubleshooting or debugging
+     * Unique range -> postings map, the source the disjoint range lookup structure is built from
      */
     @Nonnull
-    private final Map<Range<T>, List<BEInterval>> unique = new HashMap<>();
+    private final Map<Range<T>, BEPostingList> unique = new HashMap<>();
 
-    private final RangeCollectionMap<T, BEInterval> rangeIndex = new RangeCollectionMapImpl<>(ArrayList::new);
+    @Nullable
+    private transient BERangeIndex rangeIndex;
 
     @Override
     public void addInterval(@Nonnull final Object attributeValue, @Nonnull final BEInterval interval)
     {
         final Range<T> range = RangeUtils.createRange(attributeValue.toString(), this::valueOf);
 
-        // Keeping track of a map of unique ranges -> intervals is not necessary to function, but useful for debugging
-        final List<BEInterval> existingIntervalsForRange = this.unique.computeIfAbsent(range, k -> new ArrayList<>());
-        existingIntervalsForRange.add(interval);
-
-        this.rangeIndex.putAdd(range, interval);
+        this.unique.computeIfAbsent(range, k -> new BEPostingList()).add(interval);
+        this.rangeIndex = null;
 
         // if interval is negative, add a "wildcard" interval
         if (interval.isNegative())
@@ -45,101 +66,173 @@ public abstract class BEAbstractRangeIndexAttributeCategory<T extends Comparable
         }
     }
 
+    @SuppressWarnings("unchecked")
     @Override
-    public void getIntervals(final byte attributeValue, @Nonnull final Consumer<List<BEInterval>> consumer)
-    {
-        callConsumer((List<BEInterval>) this.rangeIndex.get(valueOf(attributeValue)), consumer);
-    }
-
-    @Override
-    public void getIntervals(final byte attributeValue, @Nullable final BEInputAttributeCategory matchedInput, @Nonnull final BEAttributeCategoryMatchedIntervalConsumer consumer)
+    public void getPostings(@Nonnull final String attributeValue, @Nonnull final Consumer<BEPostingList> consumer)
     {
-        callConsumer((List<BEInterval>) this.rangeIndex.get(valueOf(attributeValue)), matchedInput, consumer);
-    }
-
-    @Override
-    public void getIntervals(final double attributeValue, @Nonnull final Consumer<List<BEInterval>> consumer)
-    {
-        callConsumer((List<BEInterval>) this.rangeIndex.get(valueOf(attributeValue)), consumer);
+        final Range<T> range = RangeUtils.createRange(attributeValue, this::valueOf);
+        getRangeIndex().forEachIntersecting((Range<? extends Number>) range, consumer);
     }
 
-    @Override
-    public void getIntervals(final double attributeValue, @Nullable final BEInputAttributeCategory matchedInput, @Nonnull final BEAttributeCategoryMatchedIntervalConsumer consumer)
+    /**
+     * Get postings of the range containing the specified attribute value, for subclasses of integral types.
+     */
+    protected void getRangePostings(final long attributeValue, @Nonnull final Consumer<BEPostingList> consumer)
     {
-        callConsumer((List<BEInterval>) this.rangeIndex.get(valueOf(attributeValue)), matchedInput, consumer);
+        callConsumer(getRangeIndex().get(attributeValue), consumer);
     }
 
-    @Override
-    public void getIntervals(final int attributeValue, @Nonnull final Consumer<List<BEInterval>> consumer)
+    /**
+     * Get postings of the range containing the specified attribute value, for subclasses of double types.
+     */
+    protected void getRangePostings(final double attributeValue, @Nonnull final Consumer<BEPostingList> consumer)
     {
-        callConsumer((List<BEInterval>) this.rangeIndex.get(valueOf(attributeValue)), consumer);
+        callConsumer(getRangeIndex().get(attributeValue), consumer);
     }
 
-    @Override
-    public void getIntervals(final int attributeValue, @Nullable final BEInputAttributeCategory matchedInput, @Nonnull final BEAttributeCategoryMatchedIntervalConsumer consumer)
+    protected T valueOf(@Nonnull final String value)
     {
-        callConsumer((List<BEInterval>) this.rangeIndex.get(valueOf(attributeValue)), matchedInput, consumer);
+        throw new UnsupportedOperationException("Cowardly refusal to risk loosing precision");
     }
 
     @Override
-    public void getIntervals(final long attributeValue, @Nonnull final Consumer<List<BEInterval>> consumer)
+    void collectStatistics(@Nonnull final BEStatisticsCollector collector)
     {
-        callConsumer((List<BEInterval>) this.rangeIndex.get(valueOf(attributeValue)), consumer);
-    }
+        this.unique.forEach((range, postings) -> collector.addValue(
+                postings,
+                RANGE_BYTES + BEStatisticsCollector.MAP_ENTRY_BYTES));
 
-    @Override
-    public void getIntervals(final long attributeValue, @Nullable final BEInputAttributeCategory matchedInput, @Nonnull final BEAttributeCategoryMatchedIntervalConsumer consumer)
-    {
-        callConsumer((List<BEInterval>) this.rangeIndex.get(valueOf(attributeValue)), matchedInput, consumer);
+        final BERangeIndex index = getRangeIndex();
+        final int size = index.size();
+        for (int i = 0; i < size; i++)
+        {
+            collector.addLookupPostings(index.getPostings(i), RANGE_SEGMENT_BYTES);
+        }
+        collector.setRangeSegmentCount(size);
     }
 
     @Override
-    public void getIntervals(@Nonnull final String attributeValue, @Nonnull final Consumer<List<BEInterval>> consumer)
-    {
-        final Range<T> range = RangeUtils.createRange(attributeValue, this::valueOf);
-        callConsumer((List<BEInterval>) this.rangeIndex.get(range), consumer);
+    void writeValues(@Nonnull final BEIndexOutput out) throws IOException
+    {
+        // ranges are written as a block of bound flags and a block of the bound values of all bounded ends
+        final List<Range<T>> ranges = new ArrayList<>(this.unique.keySet());
+        final byte[] boundFlags = new byte[ranges.size()];
+        final List<String> bounds = new ArrayList<>();
+        final List<BEPostingList> postings = new ArrayList<>(ranges.size());
+        for (int i = 0; i < boundFlags.length; i++)
+        {
+            final Range<T> range = ranges.get(i);
+            if (range.hasLowerBound())
+            {
+                boundFlags[i] |= range.lowerBoundType() == BoundType.CLOSED ? LOWER_CLOSED : LOWER_OPEN;
+                bounds.add(range.lowerEndpoint().toString());
+            }
+            if (range.hasUpperBound())
+            {
+                boundFlags[i] |= range.upperBoundType() == BoundType.CLOSED ? UPPER_CLOSED : UPPER_OPEN;
+                bounds.add(range.upperEndpoint().toString());
+            }
+            postings.add(this.unique.get(range));
+        }
+        out.writeBytes(boundFlags);
+        out.writeInt(bounds.size());
+        out.writeStrings(bounds);
+        out.writePostings(postings);
+        getRangeIndex().write(out);
     }
 
     @Override
-    public void getIntervals(
-            @Nonnull final String attributeValue,
-            @Nullable final BEInputAttributeCategory matchedInput,
-            @Nonnull final BEAttributeCategoryMatchedIntervalConsumer consumer)
+    void readValues(@Nonnull final BEIndexInput in) throws IOException
     {
-        final Range<T> range = RangeUtils.createRange(attributeValue, this::valueOf);
-        callConsumer((List<BEInterval>) this.rangeIndex.get(range), matchedInput, consumer);
-    }
+        final byte[] boundFlags = in.readBytes();
+        final String[] bounds = in.readStrings(in.readCount());
+        final BEPostingList[] postings = in.readPostings(boundFlags.length);
+        int bound = 0;
+        for (int i = 0; i < boundFlags.length; i++)
+        {
+            final T lower = (boundFlags[i] & (LOWER_CLOSED | LOWER_OPEN)) != 0 ? valueOf(bounds[bound++]) : null;
+            final T upper = (boundFlags[i] & (UPPER_CLOSED | UPPER_OPEN)) != 0 ? valueOf(bounds[bound++]) : null;
+            final BoundType lowerType = (boundFlags[i] & LOWER_CLOSED) != 0 ? BoundType.CLOSED : BoundType.OPEN;
+            final BoundType upperType = (boundFlags[i] & UPPER_CLOSED) != 0 ? BoundType.CLOSED : BoundType.OPEN;
+            final Range<T> range;
+            if (null != lower && null != upper)
+            {
+                range = Range.range(lower, lowerType, upper, upperType);
+            }
+            else if (null != lower)
+            {
+                range = Range.downTo(lower, lowerType);
+            }
+            else if (null != upper)
+            {
+                range = Range.upTo(upper, upperType);
+            }
+            else
+            {
+                range = Range.all();
+            }
+            this.unique.put(range, postings[i]);
+        }
 
-    protected T valueOf(final byte value)
-    {
-        throw new UnsupportedOperationException("Cowardly refusal to risk loosing precision");
+        if (hasDoubleValues())
+        {
+            final double[] lowers = in.readDoubles();
+            this.rangeIndex = new BEDoubleRangeIndex(lowers, in.readDoubles(), in.readPostings(lowers.length));
+        }
+        else
+        {
+            final long[] lowers = in.readLongs();
+            this.rangeIndex = new BELongRangeIndex(lowers, in.readLongs(), in.readPostings(lowers.length));
+        }
     }
 
-    protected T valueOf(final double value)
+    /**
+     * @return Whether the values of this category are doubles rather than integral values.
+     */
+    boolean hasDoubleValues()
     {
-        throw new UnsupportedOperationException("Cowardly refusal to risk loosing precision");
+        return false;
     }
 
-    protected T valueOf(final int value)
-    {
-        throw new UnsupportedOperationException("Cowardly refusal to risk loosing precision");
-    }
-
-    protected T valueOf(final long value)
+    @Override
+    protected void compact()
     {
-        throw new UnsupportedOperationException("Cowardly refusal to risk loosing precision");
+        super.compact();
+        this.unique.values().forEach(BEPostingList::trimToSize);
+        getRangeIndex();
     }
 
-    protected T valueOf(@Nonnull final String value)
+    @Nonnull
+    private BERangeIndex getRangeIndex()
     {
-        throw new UnsupportedOperationException("Cowardly refusal to risk loosing precision");
+        BERangeIndex index = this.rangeIndex;
+        if (null == index)
+        {
+            index = buildRangeIndex();
+            this.rangeIndex = index;
+        }
+        return index;
     }
 
-    @Override
-    protected void compact()
-    {
-        this.unique.values().forEach(value -> ((ArrayList<BEInterval>) value).trimToSize());
-        this.rangeIndex.compact();
+    /**
+     * Splits the unique ranges into disjoint ranges, each mapped to the merged postings of all unique ranges that
+     * cover it.
+     */
+    @SuppressWarnings("unchecked")
+    @Nonnull
+    private BERangeIndex buildRangeIndex()
+    {
+        final RangeCollectionMap<T, BEPostingList> disjointRanges = new RangeCollectionMapImpl<>();
+        this.unique.forEach(disjointRanges::putAdd);
+
+        final List<Map.Entry<Range<? extends Number>, BEPostingList>> mergedRanges = new ArrayList<>();
+        disjointRanges.forEach((range, postingLists) -> {
+            final BEPostingList postings = new BEPostingList();
+            postingLists.forEach(postings::addAll);
+            postings.trimToSize();
+            mergedRanges.add(new AbstractMap.SimpleImmutableEntry<>((Range<? extends Number>) range, postings));
+        });
+        return hasDoubleValues() ? BEDoubleRangeIndex.build(mergedRanges) : BELongRangeIndex.build(mergedRanges);
     }
 
 }
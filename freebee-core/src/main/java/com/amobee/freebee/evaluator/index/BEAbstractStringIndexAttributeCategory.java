@@ -1,11 +1,8 @@
 package com.amobee.freebee.evaluator.index;
 
-import com.amobee.freebee.evaluator.BEInterval;
-import com.amobee.freebee.evaluator.evaluator.BEInputAttributeCategory;
+import com.amobee.freebee.evaluator.BEPostingList;
 
 import javax.annotation.Nonnull;
-import javax.annotation.Nullable;
-import java.util.List;
 import java.util.function.Consumer;
 
 /**
@@ -21,59 +18,27 @@ public abstract class BEAbstractStringIndexAttributeCategory extends BEIndexAttr
     }
 
     @Override
-    public void getIntervals(final byte attributeValue, @Nonnull final Consumer<List<BEInterval>> consumer)
+    public void getPostings(final byte attributeValue, @Nonnull final Consumer<BEPostingList> consumer)
     {
-        getIntervals(String.valueOf(attributeValue), consumer);
+        getPostings(String.valueOf(attributeValue), consumer);
     }
 
     @Override
-    public void getIntervals(final byte attributeValue,
-                             @Nullable final BEInputAttributeCategory matchedInput,
-                             @Nonnull final BEAttributeCategoryMatchedIntervalConsumer consumer)
+    public void getPostings(final double attributeValue, @Nonnull final Consumer<BEPostingList> consumer)
     {
-        getIntervals(String.valueOf(attributeValue), matchedInput, consumer);
+        getPostings(String.valueOf(attributeValue), consumer);
     }
 
     @Override
-    public void getIntervals(final double attributeValue, @Nonnull final Consumer<List<BEInterval>> consumer)
+    public void getPostings(final int attributeValue, @Nonnull final Consumer<BEPostingList> consumer)
     {
-        getIntervals(String.valueOf(attributeValue), consumer);
+        getPostings(String.valueOf(attributeValue), consumer);
     }
 
     @Override
-    public void getIntervals(final double attributeValue,
-                             @Nullable final BEInputAttributeCategory matchedInput,
-                             @Nonnull final BEAttributeCategoryMatchedIntervalConsumer consumer)
+    public void getPostings(final long attributeValue, @Nonnull final Consumer<BEPostingList> consumer)
     {
-        getIntervals(String.valueOf(attributeValue), matchedInput, consumer);
-    }
-
-    @Override
-    public void getIntervals(final int attributeValue, @Nonnull final Consumer<List<BEInterval>> consumer)
-    {
-        getIntervals(String.valueOf(attributeValue), consumer);
-    }
-
-    @Override
-    public void getIntervals(final int attributeValue,
-                             @Nullable final BEInputAttributeCategory matchedInput,
-                             @Nonnull final BEAttributeCategoryMatchedIntervalConsumer consumer)
-    {
-        getIntervals(String.valueOf(attributeValue), matchedInput, consumer);
-    }
-
-    @Override
-    public void getIntervals(final long attributeValue, @Nonnull final Consumer<List<BEInterval>> consumer)
-    {
-        getIntervals(String.valueOf(attributeValue), consumer);
-    }
-
-    @Override
-    public void getIntervals(final long attributeValue,
-                             @Nullable final BEInputAttributeCategory matchedInput,
-                             @Nonnull final BEAttributeCategoryMatchedIntervalConsumer consumer)
-    {
-        getIntervals(String.valueOf(attributeValue), matchedInput, consumer);
+        getPostings(String.valueOf(attributeValue), consumer);
     }
 
     protected String getValue(@Nonnull final String value)
@@ -0,0 +1,56 @@
+package com.amobee.freebee.evaluator.index;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import javax.annotation.Nonnull;
+
+/**
+ * An array-backed implementation of {@link BEExpressionDataProvider} for indexes whose expression ids are assigned
+ * densely starting at 0, which is how {@link BEIndexBuilder} assigns them.
+ *
+ * @param <T> the type of data associated with each expression
+ */
+class BEArrayExpressionDataProvider<T> implements BEExpressionDataProvider<T>, Serializable
+{
+    private static final long serialVersionUID = 4606453947580813624L;
+
+    private final Object[] expressionData;
+
+    BEArrayExpressionDataProvider(final int expressionCount)
+    {
+        this.expressionData = new Object[expressionCount];
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public T get(final int expressionId)
+    {
+        return expressionId < this.expressionData.length ? (T) this.expressionData[expressionId] : null;
+    }
+
+    void put(final int expressionId, @Nonnull final T data)
+    {
+        this.expressionData[expressionId] = data;
+    }
+
+    @Override
+    public boolean equals(final Object o)
+    {
+        if (this == o)
+        {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass())
+        {
+            return false;
+        }
+        final BEArrayExpressionDataProvider<?> that = (BEArrayExpressionDataProvider<?>) o;
+        return Arrays.equals(this.expressionData, that.expressionData);
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return Arrays.hashCode(this.expressionData);
+    }
+}
@@ -0,0 +1,119 @@
+package com.amobee.freebee.evaluator.index;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Collectors;
+import javax.annotation.Nonnull;
+
+/**
+ * An array-backed implementation of {@link BEExpressionMetadataProvider} for indexes whose expression ids are
+ * assigned densely starting at 0, which is how {@link BEIndexBuilder} assigns them.
+ *
+ * Metadata is stored as a structure of arrays so that the evaluation hot path can look up the interval length and
+ * matching flags of an expression without hashing or dereferencing a metadata object.
+ */
+public class BEArrayExpressionMetadataProvider implements BEExpressionMetadataProvider, Serializable
+{
+    private static final long serialVersionUID = -6893217245061373311L;
+
+    private final int[] maxIntervalLengths;
+    private final BitSet bitSetMatching;
+    private final BitSet partial;
+    private final String[] partialExpressionNames;
+    private final BEExpressionMetadata[] expressionMetadata;
+    private transient List<BEExpressionMetadata> allExpressionMetadata;
+
+    BEArrayExpressionMetadataProvider(final int expressionCount)
+    {
+        this.maxIntervalLengths = new int[expressionCount];
+        this.bitSetMatching = new BitSet(expressionCount);
+        this.partial = new BitSet(expressionCount);
+        this.partialExpressionNames = new String[expressionCount];
+        this.expressionMetadata = new BEExpressionMetadata[expressionCount];
+    }
+
+    @Override
+    public BEExpressionMetadata get(final int expressionId)
+    {
+        return expressionId < this.expressionMetadata.length ? this.expressionMetadata[expressionId] : null;
+    }
+
+    @Override
+    public Collection<BEExpressionMetadata> getAll()
+    {
+        if (null == this.allExpressionMetadata)
+        {
+            this.allExpressionMetadata = Collections.unmodifiableList(Arrays.stream(this.expressionMetadata)
+                    .filter(Objects::nonNull)
+                    .collect(Collectors.toList()));
+        }
+        return this.allExpressionMetadata;
+    }
+
+    @Override
+    public int getMaxIntervalLength(final int expressionId)
+    {
+        return this.maxIntervalLengths[expressionId];
+    }
+
+    @Override
+    public boolean canUseBitSetMatching(final int expressionId)
+    {
+        return this.bitSetMatching.get(expressionId);
+    }
+
+    @Override
+    public boolean isPartial(final int expressionId)
+    {
+        return this.partial.get(expressionId);
+    }
+
+    @Override
+    public String getPartialExpressionName(final int expressionId)
+    {
+        return this.partialExpressionNames[expressionId];
+    }
+
+    /**
+     * Estimates the heap retained by the metadata of all expressions, partial expression names are shared with the
+     * metadata objects and are counted once.
+     *
+     * @return Estimated number of bytes.
+     */
+    long getRetainedBytes()
+    {
+        // object header and fields plus the arrays
+        long bytes = 32 + BEStatisticsCollector.getArrayBytes(this.maxIntervalLengths.length, 4)
+                + BEStatisticsCollector.getBitSetBytes(this.bitSetMatching)
+                + BEStatisticsCollector.getBitSetBytes(this.partial)
+                + BEStatisticsCollector.getArrayBytes(this.partialExpressionNames.length, 4)
+                + BEStatisticsCollector.getArrayBytes(this.expressionMetadata.length, 4);
+        for (int expressionId = 0; expressionId < this.expressionMetadata.length; expressionId++)
+        {
+            if (null != this.expressionMetadata[expressionId])
+            {
+                bytes += BEStatisticsCollector.INTERVAL_BYTES;
+            }
+            if (null != this.partialExpressionNames[expressionId])
+            {
+                bytes += BEStatisticsCollector.getStringBytes(this.partialExpressionNames[expressionId]);
+            }
+        }
+        return bytes;
+    }
+
+    void put(final int expressionId, @Nonnull final BEExpressionMetadata metadata)
+    {
+        this.maxIntervalLengths[expressionId] = metadata.getMaxIntervalLength();
+        this.bitSetMatching.set(expressionId, metadata.canUseBitSetMatching());
+        this.partial.set(expressionId, metadata.isPartial());
+        this.partialExpressionNames[expressionId] = metadata.getPartialExpressionName();
+        this.expressionMetadata[expressionId] = metadata;
+        this.allExpressionMetadata = null;
+    }
+}
@@ -0,0 +1,156 @@
+package com.amobee.freebee.evaluator.index;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Size of a single attribute category of an index, part of the {@link BEIndexStatistics} of the index.
+ */
+public class BEAttributeCategoryStatistics
+{
+    private final String attributeCategory;
+    private final String type;
+    private final int valueCount;
+    private final long postingCount;
+    private final int maxPostingsPerValue;
+    private final double meanPostingsPerValue;
+    private final int p99PostingsPerValue;
+    private final int negativeIntervalCount;
+    private final int rangeSegmentCount;
+    private final int trieNodeCount;
+    private final long estimatedBytes;
+
+    BEAttributeCategoryStatistics(
+            @Nonnull final String attributeCategory,
+            @Nonnull final String type,
+            final int valueCount,
+            final long postingCount,
+            final int maxPostingsPerValue,
+            final double meanPostingsPerValue,
+            final int p99PostingsPerValue,
+            final int negativeIntervalCount,
+            final int rangeSegmentCount,
+            final int trieNodeCount,
+            final long estimatedBytes)
+    {
+        this.attributeCategory = attributeCategory;
+        this.type = type;
+        this.valueCount = valueCount;
+        this.postingCount = postingCount;
+        this.maxPostingsPerValue = maxPostingsPerValue;
+        this.meanPostingsPerValue = meanPostingsPerValue;
+        this.p99PostingsPerValue = p99PostingsPerValue;
+        this.negativeIntervalCount = negativeIntervalCount;
+        this.rangeSegmentCount = rangeSegmentCount;
+        this.trieNodeCount = trieNodeCount;
+        this.estimatedBytes = estimatedBytes;
+    }
+
+    /**
+     * @return Name of the attribute category.
+     */
+    @Nonnull
+    public String getAttributeCategory()
+    {
+        return this.attributeCategory;
+    }
+
+    /**
+     * @return Simple class name of the index attribute category implementation.
+     */
+    @Nonnull
+    public String getType()
+    {
+        return this.type;
+    }
+
+    /**
+     * @return Number of distinct attribute values, or of distinct ranges for range categories.
+     */
+    public int getValueCount()
+    {
+        return this.valueCount;
+    }
+
+    /**
+     * @return Number of postings of all attribute values.
+     */
+    public long getPostingCount()
+    {
+        return this.postingCount;
+    }
+
+    /**
+     * @return Largest number of postings of a single attribute value.
+     */
+    public int getMaxPostingsPerValue()
+    {
+        return this.maxPostingsPerValue;
+    }
+
+    /**
+     * @return Mean number of postings per attribute value, 0 if there are no values.
+     */
+    public double getMeanPostingsPerValue()
+    {
+        return this.meanPostingsPerValue;
+    }
+
+    /**
+     * @return Number of postings that 99% of the attribute values have at most.
+     */
+    public int getP99PostingsPerValue()
+    {
+        return this.p99PostingsPerValue;
+    }
+
+    /**
+     * @return Number of negative predicate intervals of the attribute category.
+     */
+    public int getNegativeIntervalCount()
+    {
+        return this.negativeIntervalCount;
+    }
+
+    /**
+     * @return Number of disjoint ranges values are looked up in, 0 for categories that aren't range categories.
+     */
+    public int getRangeSegmentCount()
+    {
+        return this.rangeSegmentCount;
+    }
+
+    /**
+     * @return Number of nodes of the trie values are looked up in, 0 for categories that aren't partial string
+     * categories.
+     */
+    public int getTrieNodeCount()
+    {
+        return this.trieNodeCount;
+    }
+
+    /**
+     * @return Estimated heap retained by the attribute category in bytes, memory-mapped data isn't included.
+     */
+    public long getEstimatedBytes()
+    {
+        return this.estimatedBytes;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "BEAttributeCategoryStatistics{" +
+                "attributeCategory='" + this.attributeCategory + '\'' +
+                ", type='" + this.type + '\'' +
+                ", valueCount=" + this.valueCount +
+                ", postingCount=" + this.postingCount +
+                ", maxPostingsPerValue=" + this.maxPostingsPerValue +
+                ", meanPostingsPerValue=" + this.meanPostingsPerValue +
+                ", p99PostingsPerValue=" + this.p99PostingsPerValue +
+                ", negativeIntervalCount=" + this.negativeIntervalCount +
+                ", rangeSegmentCount=" + this.rangeSegmentCount +
+                ", trieNodeCount=" + this.trieNodeCount +
+                ", estimatedBytes=" + this.estimatedBytes +
+                '}';
+    }
+}
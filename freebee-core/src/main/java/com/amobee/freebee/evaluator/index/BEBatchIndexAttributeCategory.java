@@ -0,0 +1,176 @@
+package com.amobee.freebee.evaluator.index;
+
+import com.amobee.freebee.evaluator.BEInterval;
+import com.amobee.freebee.evaluator.BEPostingList;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.eclipse.collections.api.map.MutableMap;
+import org.eclipse.collections.api.map.primitive.MutableByteObjectMap;
+import org.eclipse.collections.api.map.primitive.MutableDoubleObjectMap;
+import org.eclipse.collections.api.map.primitive.MutableIntObjectMap;
+import org.eclipse.collections.api.map.primitive.MutableLongObjectMap;
+import org.eclipse.collections.impl.factory.Maps;
+import org.eclipse.collections.impl.factory.primitive.ByteObjectMaps;
+import org.eclipse.collections.impl.factory.primitive.DoubleObjectMaps;
+import org.eclipse.collections.impl.factory.primitive.IntObjectMaps;
+import org.eclipse.collections.impl.factory.primitive.LongObjectMaps;
+
+/**
+ * Attribute category used while evaluating a batch of inputs, wraps an index attribute category and resolves the
+ * postings for each distinct attribute value only once per batch. Postings resolved for a value (including the fact
+ * that a value has no postings) are remembered and replayed for every other input of the batch with the same value.
+ *
+ * Instances are created per batch and per attribute category, they are not thread safe.
+ */
+final class BEBatchIndexAttributeCategory extends BEIndexAttributeCategory
+{
+    private static final long serialVersionUID = 4412307265184226734L;
+
+    @Nonnull
+    private final BEIndexAttributeCategory indexAttributeCategory;
+
+    @Nullable
+    private MutableByteObjectMap<List<BEPostingList>> bytePostings;
+    @Nullable
+    private MutableDoubleObjectMap<List<BEPostingList>> doublePostings;
+    @Nullable
+    private MutableIntObjectMap<List<BEPostingList>> intPostings;
+    @Nullable
+    private MutableLongObjectMap<List<BEPostingList>> longPostings;
+    @Nullable
+    private MutableMap<String, List<BEPostingList>> stringPostings;
+
+    BEBatchIndexAttributeCategory(@Nonnull final BEIndexAttributeCategory indexAttributeCategory)
+    {
+        this.indexAttributeCategory = indexAttributeCategory;
+    }
+
+    @Override
+    public void addInterval(@Nonnull final Object attributeValue, @Nonnull final BEInterval interval)
+    {
+        throw new UnsupportedOperationException("Intervals can not be added while evaluating a batch");
+    }
+
+    @Override
+    public void getPostings(final byte attributeValue, @Nonnull final Consumer<BEPostingList> consumer)
+    {
+        if (null == this.bytePostings)
+        {
+            this.bytePostings = ByteObjectMaps.mutable.empty();
+        }
+        List<BEPostingList> postings = this.bytePostings.get(attributeValue);
+        if (null == postings)
+        {
+            postings = resolve(c -> this.indexAttributeCategory.getPostings(attributeValue, c));
+            this.bytePostings.put(attributeValue, postings);
+        }
+        replay(postings, consumer);
+    }
+
+    @Override
+    public void getPostings(final double attributeValue, @Nonnull final Consumer<BEPostingList> consumer)
+    {
+        if (null == this.doublePostings)
+        {
+            this.doublePostings = DoubleObjectMaps.mutable.empty();
+        }
+        List<BEPostingList> postings = this.doublePostings.get(attributeValue);
+        if (null == postings)
+        {
+            postings = resolve(c -> this.indexAttributeCategory.getPostings(attributeValue, c));
+            this.doublePostings.put(attributeValue, postings);
+        }
+        replay(postings, consumer);
+    }
+
+    @Override
+    public void getPostings(final int attributeValue, @Nonnull final Consumer<BEPostingList> consumer)
+    {
+        if (null == this.intPostings)
+        {
+            this.intPostings = IntObjectMaps.mutable.empty();
+        }
+        List<BEPostingList> postings = this.intPostings.get(attributeValue);
+        if (null == postings)
+        {
+            postings = resolve(c -> this.indexAttributeCategory.getPostings(attributeValue, c));
+            this.intPostings.put(attributeValue, postings);
+        }
+        replay(postings, consumer);
+    }
+
+    @Override
+    public void getPostings(final long attributeValue, @Nonnull final Consumer<BEPostingList> consumer)
+    {
+        if (null == this.longPostings)
+        {
+            this.longPostings = LongObjectMaps.mutable.empty();
+        }
+        List<BEPostingList> postings = this.longPostings.get(attributeValue);
+        if (null == postings)
+        {
+            postings = resolve(c -> this.indexAttributeCategory.getPostings(attributeValue, c));
+            this.longPostings.put(attributeValue, postings);
+        }
+        replay(postings, consumer);
+    }
+
+    @Override
+    public void getPostings(@Nonnull final String attributeValue, @Nonnull final Consumer<BEPostingList> consumer)
+    {
+        if (null == this.stringPostings)
+        {
+            this.stringPostings = Maps.mutable.empty();
+        }
+        List<BEPostingList> postings = this.stringPostings.get(attributeValue);
+        if (null == postings)
+        {
+            postings = resolve(c -> this.indexAttributeCategory.getPostings(attributeValue, c));
+            this.stringPostings.put(attributeValue, postings);
+        }
+        replay(postings, consumer);
+    }
+
+    @Nullable
+    @Override
+    public BEValueDictionary getValueDictionary()
+    {
+        return this.indexAttributeCategory.getValueDictionary();
+    }
+
+    @Override
+    public void getPostingsByValueId(final int valueId, @Nonnull final Consumer<BEPostingList> consumer)
+    {
+        // looking up by id is already as cheap as replaying resolved postings
+        this.indexAttributeCategory.getPostingsByValueId(valueId, consumer);
+    }
+
+    @Nonnull
+    @Override
+    public BEPostingList getNegativePostings()
+    {
+        return this.indexAttributeCategory.getNegativePostings();
+    }
+
+    private static List<BEPostingList> resolve(@Nonnull final Consumer<Consumer<BEPostingList>> lookup)
+    {
+        final List<BEPostingList> postings = new ArrayList<>(1);
+        lookup.accept(postings::add);
+        return postings.isEmpty() ? Collections.emptyList() : postings;
+    }
+
+    private static void replay(@Nonnull final List<BEPostingList> postings, @Nonnull final Consumer<BEPostingList> consumer)
+    {
+        final int size = postings.size();
+        for (int i = 0; i < size; i++)
+        {
+            consumer.accept(postings.get(i));
+        }
+    }
+}
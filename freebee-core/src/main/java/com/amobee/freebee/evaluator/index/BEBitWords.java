@@ -0,0 +1,103 @@
+package com.amobee.freebee.evaluator.index;
+
+/**
+ * Helpers for matching expressions that can use bitset matching with plain 64 bit words instead of
+ * {@link java.util.BitSet}.
+ *
+ * Each predicate of an expression is one bit, an interval sets the contiguous bits [start, end) and the expression is
+ * matched once all bits [0, length) are set. Most expressions have no more than 64 predicates, for those adding an
+ * interval is a single OR of a shifted mask and the completion check is a single compare against the full mask of the
+ * expression.
+ */
+final class BEBitWords
+{
+    private BEBitWords()
+    {
+    }
+
+    /**
+     * Gets the number of words needed to hold the bits of an expression.
+     *
+     * @param length
+     *         Interval length of the expression.
+     * @return Number of words.
+     */
+    static int wordCount(final int length)
+    {
+        return (length + 63) >>> 6;
+    }
+
+    /**
+     * Gets the mask of all bits of the last word of an expression that must be set for it to match.
+     *
+     * @param length
+     *         Interval length of the expression.
+     * @return Mask of the last word.
+     */
+    static long fullMask(final int length)
+    {
+        return -1L >>> (-length & 63);
+    }
+
+    /**
+     * Gets the mask of an interval that lies within the first word, i.e. {@code end <= 64}.
+     *
+     * @param start
+     *         Start of the interval (inclusive).
+     * @param end
+     *         End of the interval (exclusive).
+     * @return Mask of the interval.
+     */
+    static long mask(final int start, final int end)
+    {
+        return (-1L >>> (64 - (end - start))) << start;
+    }
+
+    /**
+     * Sets the bits [start, end) of the words starting at the specified offset.
+     */
+    static void set(final long[] words, final int offset, final int start, final int end)
+    {
+        if (end <= 64)
+        {
+            words[offset] |= mask(start, end);
+            return;
+        }
+
+        int from = start;
+        while (from < end)
+        {
+            final int word = from >>> 6;
+            final int to = Math.min(end, (word + 1) << 6);
+            words[offset + word] |= mask(from & 63, ((to - 1) & 63) + 1);
+            from = to;
+        }
+    }
+
+    /**
+     * Checks whether all bits of an expression are set. Bits beyond the length of the expression are never set so the
+     * last word is compared to the full mask directly.
+     *
+     * @param words
+     *         Words holding the matched bits.
+     * @param offset
+     *         Offset of the first word of the expression.
+     * @param wordCount
+     *         Number of words of the expression.
+     * @param fullMask
+     *         Full mask of the last word of the expression.
+     * @return true if all bits are set.
+     */
+    static boolean isComplete(final long[] words, final int offset, final int wordCount, final long fullMask)
+    {
+        final int last = offset + wordCount - 1;
+        for (int i = offset; i < last; i++)
+        {
+            if (words[i] != -1L)
+            {
+                return false;
+            }
+        }
+        return words[last] == fullMask;
+    }
+}
@@ -2,14 +2,14 @@ package com.amobee.freebee.evaluator.index;
 
 import com.amobee.freebee.config.BEDataTypeConfig;
 import com.amobee.freebee.evaluator.BEInterval;
-import com.amobee.freebee.evaluator.evaluator.BEInputAttributeCategory;
+import com.amobee.freebee.evaluator.BEPostingList;
 import lombok.Getter;
+import java.io.IOException;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.function.Consumer;
 import javax.annotation.Nonnull;
-import javax.annotation.Nullable;
 
 import org.eclipse.collections.api.map.primitive.MutableByteObjectMap;
 import org.eclipse.collections.impl.factory.primitive.ByteObjectMaps;
@@ -23,7 +23,7 @@ public class BEByteIndexAttributeCategory extends BEIndexAttributeCategory imple
     private static final long serialVersionUID = 8010569588337670801L;
 
     @Nonnull
-    private final MutableByteObjectMap<List<BEInterval>> values = ByteObjectMaps.mutable.empty();
+    private final MutableByteObjectMap<BEPostingList> values = ByteObjectMaps.mutable.empty();
 
     @SuppressWarnings("UnusedParameters")
     public static BEIndexAttributeCategory newInstance(@Nonnull final BEDataTypeConfig dataTypeConfig)
@@ -34,7 +34,7 @@ public class BEByteIndexAttributeCategory extends BEIndexAttributeCategory imple
     @Override
     public void addInterval(@Nonnull final Object attributeValue, @Nonnull final BEInterval interval)
     {
-        this.values.getIfAbsentPut(getKey(attributeValue), ArrayList::new).add(interval);
+        this.values.getIfAbsentPut(getKey(attributeValue), BEPostingList::new).add(interval);
 
         // if interval is negative, add a "wildcard" interval
         if (interval.isNegative())
@@ -44,38 +44,52 @@ public class BEByteIndexAttributeCategory extends BEIndexAttributeCategory imple
     }
 
     @Override
-    public void getIntervals(final byte attributeValue, @Nonnull final Consumer<List<BEInterval>> consumer)
+    public void getPostings(final byte attributeValue, @Nonnull final Consumer<BEPostingList> consumer)
     {
         callConsumer(this.values.get(attributeValue), consumer);
     }
 
     @Override
-    public void getIntervals(final byte attributeValue,
-                             @Nullable final BEInputAttributeCategory matchedInput,
-                             @Nonnull final BEAttributeCategoryMatchedIntervalConsumer consumer)
+    public void getPostings(@Nonnull final String attributeValue, @Nonnull final Consumer<BEPostingList> consumer)
     {
-        callConsumer(this.values.get(attributeValue), matchedInput, consumer);
+        callConsumer(this.values.get(Byte.parseByte(attributeValue)), consumer);
     }
 
     @Override
-    public void getIntervals(@Nonnull final String attributeValue, @Nonnull final Consumer<List<BEInterval>> consumer)
+    void collectStatistics(@Nonnull final BEStatisticsCollector collector)
     {
-        callConsumer(this.values.get(Byte.parseByte(attributeValue)), consumer);
+        this.values.forEachKeyValue((value, postings) -> collector.addValue(postings, 1 + BEStatisticsCollector.MAP_ENTRY_BYTES));
+    }
+
+    @Override
+    void writeValues(@Nonnull final BEIndexOutput out) throws IOException
+    {
+        final byte[] keys = this.values.keysView().toSortedArray();
+        final List<BEPostingList> postings = new ArrayList<>(keys.length);
+        for (final byte key : keys)
+        {
+            postings.add(this.values.get(key));
+        }
+        out.writeBytes(keys);
+        out.writePostings(postings);
     }
 
     @Override
-    public void getIntervals(
-            @Nonnull final String attributeValue,
-            @Nullable final BEInputAttributeCategory matchedInput,
-            @Nonnull final BEAttributeCategoryMatchedIntervalConsumer consumer)
+    void readValues(@Nonnull final BEIndexInput in) throws IOException
     {
-        callConsumer(this.values.get(Byte.parseByte(attributeValue)), matchedInput, consumer);
+        final byte[] keys = in.readBytes();
+        final BEPostingList[] postings = in.readPostings(keys.length);
+        for (int i = 0; i < keys.length; i++)
+        {
+            this.values.put(keys[i], postings[i]);
+        }
     }
 
     @Override
     protected void compact()
     {
-        this.values.values().forEach(value -> ((ArrayList<BEInterval>) value).trimToSize());
+        super.compact();
+        this.values.values().forEach(BEPostingList::trimToSize);
     }
 
     private byte getKey(@Nonnull final Object attributeValue)
@@ -1,5 +1,8 @@
 package com.amobee.freebee.evaluator.index;
 
+import com.amobee.freebee.evaluator.BEPostingList;
+
+import java.util.function.Consumer;
 import javax.annotation.Nonnull;
 
 /**
@@ -10,9 +13,9 @@ public class BEByteRangeIndexAttributeCategory extends BEAbstractRangeIndexAttri
     private static final long serialVersionUID = -832532207721392172L;
 
     @Override
-    protected Byte valueOf(final byte value)
+    public void getPostings(final byte attributeValue, @Nonnull final Consumer<BEPostingList> consumer)
     {
-        return Byte.valueOf(value);
+        getRangePostings(attributeValue, consumer);
     }
 
     @Override
@@ -13,7 +13,9 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
@@ -71,19 +73,18 @@ public class BEDefaultExpressionHashProvider<T> implements BEExpressionHashProvi
             final BEDataTypeConfigSupplier dataTypeConfigSupplier)
     {
 
-        final HashContext partialExpressionContext = new HashContext(dataTypeConfigSupplier);
-        final Map<String, Integer> partialExpressionHashCodes = new HashMap<>();
+        final HashContext context = new HashContext(
+                dataTypeConfigSupplier,
+                partialExpressions == null ? Collections.emptyMap() : partialExpressions);
         if (partialExpressions != null)
         {
-            partialExpressions.forEach((expressionId, expressionNode) ->
-                    partialExpressionHashCodes.put(expressionId, hashNode(expressionNode, partialExpressionContext)));
+            partialExpressions.keySet().forEach(expressionId -> hashPartialExpression(expressionId, context));
         }
 
-        final HashContext fullExpressionContext = new HashContext(dataTypeConfigSupplier, partialExpressionHashCodes);
         return expressions.stream()
                 .map(exprInfo -> {
                     final int dataHashCode = exprInfo.getData().hashCode();
-                    final int expressionHashCode = hashNode(exprInfo.getExpression(), fullExpressionContext);
+                    final int expressionHashCode = hashNode(exprInfo.getExpression(), context);
                     return Arrays.hashCode(new int[]{dataHashCode, expressionHashCode});
                 })
                 .reduce(0, Integer::sum);  // By adding the hashes of each expression, we get order independence
@@ -97,10 +98,6 @@ public class BEDefaultExpressionHashProvider<T> implements BEExpressionHashProvi
             case BEConstants.NODE_TYPE_OR:
                 return hashConjunctionNode((BEConjunctionNode) node, context);
             case BEConstants.NODE_TYPE_REFERENCE:
-                if (!context.allowReferenceNodes())
-                {
-                    throw new IllegalArgumentException("Nested partial expressions are not allowed.");
-                }
                 return hashReferenceNode((BEReferenceNode) node, context);
             default:
                 return hashPredicateNode((BEPredicateNode) node, context);
@@ -143,12 +140,38 @@ public class BEDefaultExpressionHashProvider<T> implements BEExpressionHashProvi
         final int negationHash = booleanHashCode(node.isNegative());
         final int valuesHash = node.getValues().stream()
                 .map(BEReferenceValue::getId)
-                .map(context::getPartialExpressionHashCode)
+                .map(id -> hashPartialExpression(id, context))
                 .reduce(0, Integer::sum); // By adding the hashes of each value, we get order independence
         final int[] intermediateHashes = new int[]{typeHash, negationHash, valuesHash};
         return Arrays.hashCode(intermediateHashes);
     }
 
+    /**
+     * Hashes a partial expression once, partial expressions may reference other partial expressions as long as they
+     * don't reference each other in a cycle.
+     */
+    private int hashPartialExpression(final String partialExpressionId, final HashContext context)
+    {
+        final Integer hashCode = context.partialExpressionHashCodes.get(partialExpressionId);
+        if (hashCode != null)
+        {
+            return hashCode;
+        }
+        final BENode partialExpression = context.partialExpressions.get(partialExpressionId);
+        if (partialExpression == null)
+        {
+            throw new IllegalArgumentException("Reference to undefined partial expression " + partialExpressionId);
+        }
+        if (!context.partialExpressionsInProgress.add(partialExpressionId))
+        {
+            throw new IllegalArgumentException("Partial expressions reference each other in a cycle through " + partialExpressionId);
+        }
+        final int partialExpressionHashCode = hashNode(partialExpression, context);
+        context.partialExpressionsInProgress.remove(partialExpressionId);
+        context.partialExpressionHashCodes.put(partialExpressionId, partialExpressionHashCode);
+        return partialExpressionHashCode;
+    }
+
     private String toLogicalValue(final String attributeValue, final BEDataTypeConfig config)
     {
         return config.isIgnoreCase() ? attributeValue.toUpperCase() : attributeValue;
@@ -166,52 +189,20 @@ public class BEDefaultExpressionHashProvider<T> implements BEExpressionHashProvi
 
     private static class HashContext
     {
-        private final boolean allowReferenceNodes;
         private final BEDataTypeConfigSupplier dataTypeConfigSupplier;
-        private final Map<String, Integer> partialExpressionHashCodes;
+        private final Map<String, BENode> partialExpressions;
+        private final Map<String, Integer> partialExpressionHashCodes = new HashMap<>();
+        private final Set<String> partialExpressionsInProgress = new HashSet<>();
 
-        private HashContext(final BEDataTypeConfigSupplier dataTypeConfigSupplier)
+        HashContext(final BEDataTypeConfigSupplier dataTypeConfigSupplier, final Map<String, BENode> partialExpressions)
         {
-            this(dataTypeConfigSupplier, false, null);
-        }
-
-        private HashContext(final BEDataTypeConfigSupplier dataTypeConfigSupplier, final Map<String, Integer> partialExpressionHashCodes)
-        {
-            this(dataTypeConfigSupplier, true, partialExpressionHashCodes);
-        }
-
-        HashContext(
-                final BEDataTypeConfigSupplier dataTypeConfigSupplier,
-                final boolean allowReferenceNodes,
-                final Map<String, Integer> partialExpressionHashCodes)
-        {
-            this.allowReferenceNodes = allowReferenceNodes;
-            this.partialExpressionHashCodes = partialExpressionHashCodes;
             this.dataTypeConfigSupplier = dataTypeConfigSupplier;
-        }
-
-        public boolean allowReferenceNodes()
-        {
-            return this.allowReferenceNodes;
+            this.partialExpressions = partialExpressions;
         }
 
         BEDataTypeConfig getDataTypeConfig(final String nodeCategoryType)
         {
             return this.dataTypeConfigSupplier.get(nodeCategoryType);
         }
-
-        int getPartialExpressionHashCode(final String partialExpressionRefId)
-        {
-            if (!this.allowReferenceNodes)
-            {
-                throw new IllegalArgumentException("Nested partial expressions are not allowed.");
-            }
-            final Integer partialExpressionHashCode = this.partialExpressionHashCodes.get(partialExpressionRefId);
-            if (partialExpressionHashCode == null)
-            {
-                throw new IllegalArgumentException("Reference to undefined partial expression " + partialExpressionRefId);
-            }
-            return partialExpressionHashCode;
-        }
     }
 }
@@ -1,19 +1,19 @@
 package com.amobee.freebee.evaluator.index;
 
-import com.amobee.freebee.evaluator.evaluator.BEInputAttributeCategory;
 import lombok.Getter;
+import java.io.IOException;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.function.Consumer;
 import javax.annotation.Nonnull;
-import javax.annotation.Nullable;
 
 import org.eclipse.collections.api.map.primitive.MutableDoubleObjectMap;
 import org.eclipse.collections.impl.factory.primitive.DoubleObjectMaps;
 
 import com.amobee.freebee.config.BEDataTypeConfig;
 import com.amobee.freebee.evaluator.BEInterval;
+import com.amobee.freebee.evaluator.BEPostingList;
 
 /**
  * @author Michael Bond
@@ -24,7 +24,7 @@ public class BEDoubleIndexAttributeCategory extends BEIndexAttributeCategory imp
     private static final long serialVersionUID = -6635679620120437041L;
 
     @Nonnull
-    private final MutableDoubleObjectMap<List<BEInterval>> values = DoubleObjectMaps.mutable.empty();
+    private final MutableDoubleObjectMap<BEPostingList> values = DoubleObjectMaps.mutable.empty();
 
     @SuppressWarnings("UnusedParameters")
     public static BEIndexAttributeCategory newInstance(@Nonnull final BEDataTypeConfig dataTypeConfig)
@@ -37,7 +37,7 @@ public class BEDoubleIndexAttributeCategory extends BEIndexAttributeCategory imp
     @Override
     public void addInterval(@Nonnull final Object attributeValue, @Nonnull final BEInterval interval)
     {
-        this.values.getIfAbsentPut(getKey(attributeValue), ArrayList::new).add(interval);
+        this.values.getIfAbsentPut(getKey(attributeValue), BEPostingList::new).add(interval);
 
         // if interval is negative, add a "wildcard" interval
         if (interval.isNegative())
@@ -47,72 +47,70 @@ public class BEDoubleIndexAttributeCategory extends BEIndexAttributeCategory imp
     }
 
     @Override
-    public void getIntervals(final byte attributeValue, @Nonnull final Consumer<List<BEInterval>> consumer)
+    public void getPostings(final byte attributeValue, @Nonnull final Consumer<BEPostingList> consumer)
     {
         callConsumer(this.values.get(attributeValue), consumer);
     }
 
     @Override
-    public void getIntervals(final byte attributeValue, @Nullable final BEInputAttributeCategory matchedInput, @Nonnull final BEAttributeCategoryMatchedIntervalConsumer consumer)
-    {
-        callConsumer(this.values.get(attributeValue), matchedInput, consumer);
-    }
-
-    @Override
-    public void getIntervals(final double attributeValue, @Nonnull final Consumer<List<BEInterval>> consumer)
+    public void getPostings(final double attributeValue, @Nonnull final Consumer<BEPostingList> consumer)
     {
         callConsumer(this.values.get(attributeValue), consumer);
     }
 
     @Override
-    public void getIntervals(final double attributeValue, @Nullable final BEInputAttributeCategory matchedInput, @Nonnull final BEAttributeCategoryMatchedIntervalConsumer consumer)
-    {
-        callConsumer(this.values.get(attributeValue), matchedInput, consumer);
-    }
-
-    @Override
-    public void getIntervals(final int attributeValue, @Nonnull final Consumer<List<BEInterval>> consumer)
+    public void getPostings(final int attributeValue, @Nonnull final Consumer<BEPostingList> consumer)
     {
         callConsumer(this.values.get(attributeValue), consumer);
     }
 
     @Override
-    public void getIntervals(final int attributeValue, @Nullable final BEInputAttributeCategory matchedInput, @Nonnull final BEAttributeCategoryMatchedIntervalConsumer consumer)
+    public void getPostings(final long attributeValue, @Nonnull final Consumer<BEPostingList> consumer)
     {
-        callConsumer(this.values.get(attributeValue), matchedInput, consumer);
+        callConsumer(this.values.get(attributeValue), consumer);
     }
 
     @Override
-    public void getIntervals(final long attributeValue, @Nonnull final Consumer<List<BEInterval>> consumer)
+    public void getPostings(@Nonnull final String attributeValue, @Nonnull final Consumer<BEPostingList> consumer)
     {
-        callConsumer(this.values.get(attributeValue), consumer);
+        callConsumer(this.values.get(Double.parseDouble(attributeValue)), consumer);
     }
 
     @Override
-    public void getIntervals(final long attributeValue, @Nullable final BEInputAttributeCategory matchedInput, @Nonnull final BEAttributeCategoryMatchedIntervalConsumer consumer)
+    void collectStatistics(@Nonnull final BEStatisticsCollector collector)
     {
-        callConsumer(this.values.get(attributeValue), matchedInput, consumer);
+        this.values.forEachKeyValue((value, postings) -> collector.addValue(postings, 8 + BEStatisticsCollector.MAP_ENTRY_BYTES));
     }
 
     @Override
-    public void getIntervals(@Nonnull final String attributeValue, @Nonnull final Consumer<List<BEInterval>> consumer)
+    void writeValues(@Nonnull final BEIndexOutput out) throws IOException
     {
-        callConsumer(this.values.get(Double.parseDouble(attributeValue)), consumer);
+        final double[] keys = this.values.keysView().toSortedArray();
+        final List<BEPostingList> postings = new ArrayList<>(keys.length);
+        for (final double key : keys)
+        {
+            postings.add(this.values.get(key));
+        }
+        out.writeDoubles(keys);
+        out.writePostings(postings);
     }
 
     @Override
-    public void getIntervals(
-            @Nonnull final String attributeValue,
-            @Nullable final BEInputAttributeCategory matchedInput,
-            @Nonnull final BEAttributeCategoryMatchedIntervalConsumer consumer)
+    void readValues(@Nonnull final BEIndexInput in) throws IOException
     {
-        callConsumer(this.values.get(Double.parseDouble(attributeValue)), matchedInput, consumer);
+        final double[] keys = in.readDoubles();
+        final BEPostingList[] postings = in.readPostings(keys.length);
+        for (int i = 0; i < keys.length; i++)
+        {
+            this.values.put(keys[i], postings[i]);
+        }
     }
 
     @Override
     protected void compact()
     {
-        this.values.values().forEach(value -> ((ArrayList<BEInterval>) value).trimToSize());
+        super.compact();
+        this.values.values().forEach(BEPostingList::trimToSize);
     }
 
     private double getKey(@Nonnull final Object attributeValue)
@@ -0,0 +1,217 @@
+package com.amobee.freebee.evaluator.index;
+
+import com.amobee.freebee.evaluator.BEPostingList;
+import com.google.common.collect.BoundType;
+import com.google.common.collect.Range;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * Range index of double ranges. Bounds are compared in {@link Double#compare(double, double)} order, the order of
+ * {@link Double#compareTo(Double)} that ranges of doubles use, which orders -0.0 before 0.0 and NaN after positive
+ * infinity. Open bounds are stored as the adjacent double in that order and unbounded ends as negative infinity and
+ * NaN.
+ */
+@SuppressWarnings("UnstableApiUsage")
+final class BEDoubleRangeIndex extends BERangeIndex
+{
+    private static final long NEGATIVE_ZERO_BITS = Double.doubleToRawLongBits(-0.0);
+
+    private final double[] lowers;
+    private final double[] uppers;
+    private final BEPostingList[] postings;
+
+    BEDoubleRangeIndex(@Nonnull final double[] lowers, @Nonnull final double[] uppers, @Nonnull final BEPostingList[] postings)
+    {
+        this.lowers = lowers;
+        this.uppers = uppers;
+        this.postings = postings;
+    }
+
+    /**
+     * Builds a range index from disjoint ranges.
+     *
+     * @param disjointRanges
+     *         Disjoint ranges and their postings, in ascending order.
+     * @return Range index.
+     */
+    @Nonnull
+    static BEDoubleRangeIndex build(@Nonnull final List<Map.Entry<Range<? extends Number>, BEPostingList>> disjointRanges)
+    {
+        final double[] lowers = new double[disjointRanges.size()];
+        final double[] uppers = new double[disjointRanges.size()];
+        final BEPostingList[] postings = new BEPostingList[disjointRanges.size()];
+        int size = 0;
+        for (final Map.Entry<Range<? extends Number>, BEPostingList> entry : disjointRanges)
+        {
+            final double[] bounds = toClosedBounds(entry.getKey());
+            if (null != bounds)
+            {
+                lowers[size] = bounds[0];
+                uppers[size] = bounds[1];
+                postings[size] = entry.getValue();
+                size++;
+            }
+        }
+        return new BEDoubleRangeIndex(Arrays.copyOf(lowers, size), Arrays.copyOf(uppers, size), Arrays.copyOf(postings, size));
+    }
+
+    /**
+     * Converts a range of doubles to closed bounds in {@link Double#compare(double, double)} order.
+     *
+     * @param range
+     *         Range of doubles.
+     * @return Closed lower and upper bound, or {@code null} if the range contains no double.
+     */
+    @Nullable
+    static double[] toClosedBounds(@Nonnull final Range<? extends Number> range)
+    {
+        double lower = Double.NEGATIVE_INFINITY;
+        double upper = Double.NaN;
+        if (range.hasLowerBound())
+        {
+            lower = range.lowerEndpoint().doubleValue();
+            if (range.lowerBoundType() == BoundType.OPEN)
+            {
+                if (Double.isNaN(lower))
+                {
+                    return null;
+                }
+                lower = nextUp(lower);
+            }
+        }
+        if (range.hasUpperBound())
+        {
+            upper = range.upperEndpoint().doubleValue();
+            if (range.upperBoundType() == BoundType.OPEN)
+            {
+                if (upper == Double.NEGATIVE_INFINITY)
+                {
+                    return null;
+                }
+                upper = nextDown(upper);
+            }
+        }
+        return Double.compare(lower, upper) <= 0 ? new double[]{lower, upper} : null;
+    }
+
+    @Nullable
+    @Override
+    BEPostingList get(final long value)
+    {
+        return get((double) value);
+    }
+
+    @Nullable
+    @Override
+    BEPostingList get(final double value)
+    {
+        // find the last range with a lower bound not greater than the value
+        int low = 0;
+        int high = this.lowers.length - 1;
+        while (low <= high)
+        {
+            final int mid = (low + high) >>> 1;
+            if (Double.compare(this.lowers[mid], value) <= 0)
+            {
+                low = mid + 1;
+            }
+            else
+            {
+                high = mid - 1;
+            }
+        }
+        return high >= 0 && Double.compare(value, this.uppers[high]) <= 0 ? this.postings[high] : null;
+    }
+
+    @Override
+    void forEachIntersecting(@Nonnull final Range<? extends Number> range, @Nonnull final Consumer<BEPostingList> consumer)
+    {
+        final double[] bounds = toClosedBounds(range);
+        if (null != bounds)
+        {
+            // disjoint ranges are sorted by both bounds, find the first range ending at or after the lower bound and
+            // the first range starting after the upper bound
+            int from = 0;
+            int to = this.lowers.length;
+            while (from < to)
+            {
+                final int mid = (from + to) >>> 1;
+                if (Double.compare(this.uppers[mid], bounds[0]) < 0)
+                {
+                    from = mid + 1;
+                }
+                else
+                {
+                    to = mid;
+                }
+            }
+            to = this.lowers.length;
+            int low = from;
+            while (low < to)
+            {
+                final int mid = (low + to) >>> 1;
+                if (Double.compare(this.lowers[mid], bounds[1]) <= 0)
+                {
+                    low = mid + 1;
+                }
+                else
+                {
+                    to = mid;
+                }
+            }
+            acceptDistinct(i -> this.postings[i], from, to, consumer);
+        }
+    }
+
+    @Override
+    int size()
+    {
+        return this.postings.length;
+    }
+
+    @Nonnull
+    @Override
+    BEPostingList getPostings(final int index)
+    {
+        return this.postings[index];
+    }
+
+    @Override
+    void write(@Nonnull final BEIndexOutput out) throws IOException
+    {
+        out.writeDoubles(this.lowers);
+        out.writeDoubles(this.uppers);
+        out.writePostings(Arrays.asList(this.postings));
+    }
+
+    /**
+     * @return Next double in {@link Double#compare(double, double)} order.
+     */
+    private static double nextUp(final double value)
+    {
+        if (Double.doubleToRawLongBits(value) == NEGATIVE_ZERO_BITS)
+        {
+            return 0.0;
+        }
+        return value == Double.POSITIVE_INFINITY ? Double.NaN : Math.nextUp(value);
+    }
+
+    /**
+     * @return Previous double in {@link Double#compare(double, double)} order.
+     */
+    private static double nextDown(final double value)
+    {
+        if (Double.isNaN(value))
+        {
+            return Double.POSITIVE_INFINITY;
+        }
+        return Double.doubleToRawLongBits(value) == 0L ? -0.0 : Math.nextDown(value);
+    }
+}
@@ -1,5 +1,8 @@
 package com.amobee.freebee.evaluator.index;
 
+import com.amobee.freebee.evaluator.BEPostingList;
+
+import java.util.function.Consumer;
 import javax.annotation.Nonnull;
 
 /**
@@ -10,27 +13,27 @@ public class BEDoubleRangeIndexAttributeCategory extends BEAbstractRangeIndexAtt
     private static final long serialVersionUID = 832342271243719992L;
 
     @Override
-    protected Double valueOf(final byte value)
+    public void getPostings(final byte attributeValue, @Nonnull final Consumer<BEPostingList> consumer)
     {
-        return Double.valueOf(value);
+        getRangePostings(attributeValue, consumer);
     }
 
     @Override
-    protected Double valueOf(final double value)
+    public void getPostings(final double attributeValue, @Nonnull final Consumer<BEPostingList> consumer)
     {
-        return Double.valueOf(value);
+        getRangePostings(attributeValue, consumer);
     }
 
     @Override
-    protected Double valueOf(final int value)
+    public void getPostings(final int attributeValue, @Nonnull final Consumer<BEPostingList> consumer)
     {
-        return Double.valueOf(value);
+        getRangePostings(attributeValue, consumer);
     }
 
     @Override
-    protected Double valueOf(final long value)
+    public void getPostings(final long attributeValue, @Nonnull final Consumer<BEPostingList> consumer)
     {
-        return Double.valueOf(value);
+        getRangePostings(attributeValue, consumer);
     }
 
     @Override
@@ -38,4 +41,10 @@ public class BEDoubleRangeIndexAttributeCategory extends BEAbstractRangeIndexAtt
     {
         return Double.valueOf(value);
     }
+
+    @Override
+    boolean hasDoubleValues()
+    {
+        return true;
+    }
 }
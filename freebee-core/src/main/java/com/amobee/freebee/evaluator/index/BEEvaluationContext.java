@@ -0,0 +1,370 @@
+package com.amobee.freebee.evaluator.index;
+
+import com.amobee.freebee.evaluator.BEPostingList;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+import javax.annotation.Nonnull;
+
+/**
+ * Reusable scratch state for evaluating an input against a {@link BEIndex}.
+ *
+ * A context holds pre-sized primitive arrays (matched bit words per expression, the list of expressions touched by
+ * the current input, matched interval counts for pure conjunctions, interval marks used to de-duplicate intervals
+ * and to record matched negative intervals) that are cleared incrementally at the start of each evaluation rather
+ * than reallocated. Clearing only visits the expressions and intervals touched by the previous evaluation, so
+ * steady-state evaluation does not allocate.
+ *
+ * A context may be used with any number of indexes, it is rebound (and grown if necessary) when used with a
+ * different index. Contexts are not thread safe, each thread must use its own context.
+ *
+ * @see com.amobee.freebee.evaluator.evaluator.BEEvaluator#evaluate(
+ *      com.amobee.freebee.evaluator.evaluator.BEInput, BEEvaluationContext)
+ */
+public class BEEvaluationContext
+{
+    private static final int[] EMPTY_OFFSETS = {0};
+    private static final int NONE = -1;
+
+    /** Consumer that adds matched postings to this context, created once so that evaluation doesn't allocate */
+    private final Consumer<BEPostingList> postingsCollector = this::addPostings;
+
+    /** Statistics of the current evaluation, only collected when the index has an evaluation listener */
+    private final BEEvaluationStatistics statistics = new BEEvaluationStatistics();
+
+    private BEIndex<?> index;
+    private int[] wordOffsets = EMPTY_OFFSETS;
+    private long[] fullMasks = new long[0];
+    private int[] requiredIntervalCounts = new int[0];
+
+    // expressions touched by the current input
+    private boolean[] touchedFlags = new boolean[0];
+    private int[] touched = new int[0];
+    private int touchedCount;
+
+    // expressions with negative intervals matched by the current input
+    private boolean[] negativeMatchedFlags = new boolean[0];
+
+    // number of distinct matched intervals for pure conjunctions that are matched by counting
+    private int[] intervalCounts = new int[0];
+
+    // matched bits for expressions that use bitset matching, laid out according to wordOffsets
+    private long[] words = new long[0];
+
+    // interval marks used to de-duplicate intervals and record matched negative intervals
+    private boolean[] intervalMarks = new boolean[0];
+    private int[] markedIntervals = new int[0];
+    private int markedCount;
+
+    // per expression linked lists of matched intervals for expressions that use interval matching
+    private int[] intervalHeads = new int[0];
+    private int[] entryNext = new int[0];
+    private int[] entryStartEnd = new int[0];
+    private int entryCount;
+
+    // scratch space for interval matching
+    private int[] sortScratch = new int[0];
+    private boolean[] matchedScratch = new boolean[1];
+
+    // number of postings added through the postings collector
+    private int postingCount;
+
+    public BEEvaluationContext()
+    {
+    }
+
+    /**
+     * Clears the state left by the previous evaluation and binds this context to the specified index.
+     *
+     * @param index
+     *         Index to bind to.
+     */
+    void reset(@Nonnull final BEIndex<?> index)
+    {
+        for (int i = 0; i < this.touchedCount; i++)
+        {
+            final int expressionId = this.touched[i];
+            this.touchedFlags[expressionId] = false;
+            this.negativeMatchedFlags[expressionId] = false;
+            this.intervalHeads[expressionId] = NONE;
+            this.intervalCounts[expressionId] = 0;
+            Arrays.fill(this.words, this.wordOffsets[expressionId], this.wordOffsets[expressionId + 1], 0L);
+        }
+        this.touchedCount = 0;
+
+        for (int i = 0; i < this.markedCount; i++)
+        {
+            this.intervalMarks[this.markedIntervals[i]] = false;
+        }
+        this.markedCount = 0;
+        this.entryCount = 0;
+        this.postingCount = 0;
+
+        if (this.index != index)
+        {
+            bind(index);
+        }
+    }
+
+    private void bind(@Nonnull final BEIndex<?> index)
+    {
+        final BEIndexMetrics metrics = index.getIndexMetrics();
+        final int expressionCount = metrics.getExpressionCount();
+        final int intervalCount = metrics.getIntervalCount();
+
+        if (this.touchedFlags.length < expressionCount)
+        {
+            this.touchedFlags = new boolean[expressionCount];
+            this.touched = new int[expressionCount];
+            this.negativeMatchedFlags = new boolean[expressionCount];
+            this.intervalHeads = new int[expressionCount];
+            Arrays.fill(this.intervalHeads, NONE);
+            this.intervalCounts = new int[expressionCount];
+        }
+        if (this.intervalMarks.length < intervalCount)
+        {
+            this.intervalMarks = new boolean[intervalCount];
+            this.markedIntervals = new int[intervalCount];
+            this.entryNext = new int[intervalCount];
+            this.entryStartEnd = new int[intervalCount];
+            this.sortScratch = new int[intervalCount];
+        }
+
+        this.wordOffsets = index.getWordOffsets();
+        this.fullMasks = index.getFullMasks();
+        this.requiredIntervalCounts = index.getRequiredIntervalCounts();
+        final int wordCount = this.wordOffsets[expressionCount];
+        if (this.words.length < wordCount)
+        {
+            this.words = new long[wordCount];
+        }
+
+        final int maxIntervalLength = index.getMaxIntervalLength();
+        if (this.matchedScratch.length < maxIntervalLength + 1)
+        {
+            this.matchedScratch = new boolean[maxIntervalLength + 1];
+        }
+
+        this.index = index;
+    }
+
+    @Nonnull
+    Consumer<BEPostingList> getPostingsCollector()
+    {
+        return this.postingsCollector;
+    }
+
+    @Nonnull
+    BEEvaluationStatistics getStatistics()
+    {
+        return this.statistics;
+    }
+
+    int getPostingCount()
+    {
+        return this.postingCount;
+    }
+
+    int getTouchedCount()
+    {
+        return this.touchedCount;
+    }
+
+    int getTouchedExpressionId(final int index)
+    {
+        return this.touched[index];
+    }
+
+    /**
+     * Checks whether the specified interval has been marked, either as a matched negative interval or as an interval
+     * that has already been added.
+     */
+    boolean isIntervalMarked(final int intervalId)
+    {
+        return this.intervalMarks[intervalId];
+    }
+
+    /**
+     * Checks whether any negative interval of the specified expression has been matched.
+     */
+    boolean isNegativeMatched(final int expressionId)
+    {
+        return this.negativeMatchedFlags[expressionId];
+    }
+
+    private void markInterval(final int intervalId)
+    {
+        this.intervalMarks[intervalId] = true;
+        this.markedIntervals[this.markedCount++] = intervalId;
+    }
+
+    private void addPostings(@Nonnull final BEPostingList postings)
+    {
+        final int size = postings.size();
+        this.postingCount += size;
+        for (int i = 0; i < size; i++)
+        {
+            if (postings.isNegative(i))
+            {
+                // keep track of the fact that this negative interval was matched, the expression is touched so that
+                // the matched interval is subtracted from the negative baseline
+                final int intervalId = postings.getIntervalId(i);
+                if (!this.intervalMarks[intervalId])
+                {
+                    markInterval(intervalId);
+                }
+                final int expressionId = postings.getExpressionId(i);
+                touch(expressionId);
+                this.negativeMatchedFlags[expressionId] = true;
+            }
+            else
+            {
+                addPosting(postings, i);
+            }
+        }
+    }
+
+    /**
+     * Adds a positive posting to the matched state of its expression.
+     *
+     * @param postings
+     *         Posting list containing the posting to add.
+     * @param index
+     *         Index of the posting to add.
+     */
+    void addPosting(@Nonnull final BEPostingList postings, final int index)
+    {
+        final int expressionId = postings.getExpressionId(index);
+        touch(expressionId);
+
+        final int intervalId = postings.getIntervalId(index);
+        if (this.requiredIntervalCounts[expressionId] != 0)
+        {
+            // pure conjunction, count each distinct interval once
+            if (!this.intervalMarks[intervalId])
+            {
+                markInterval(intervalId);
+                this.intervalCounts[expressionId]++;
+            }
+        }
+        else if (postings.canUseBitSetMatching(index))
+        {
+            BEBitWords.set(this.words, this.wordOffsets[expressionId], postings.getStart(index), postings.getEnd(index));
+        }
+        else if (!this.intervalMarks[intervalId])
+        {
+            markInterval(intervalId);
+            final int entry = this.entryCount++;
+            this.entryStartEnd[entry] = postings.getStart(index) << 16 | postings.getEnd(index);
+            this.entryNext[entry] = this.intervalHeads[expressionId];
+            this.intervalHeads[expressionId] = entry;
+        }
+    }
+
+    /**
+     * Merges precomputed matched bits into those of an expression that uses bitset matching.
+     *
+     * @param expressionId
+     *         Id of expression to add bits to.
+     * @param bits
+     *         Words of bits to merge, laid out like the matched bits of this context.
+     */
+    void addBits(final int expressionId, @Nonnull final long[] bits)
+    {
+        touch(expressionId);
+        final int end = this.wordOffsets[expressionId + 1];
+        for (int i = this.wordOffsets[expressionId]; i < end; i++)
+        {
+            this.words[i] |= bits[i];
+        }
+    }
+
+    /**
+     * Adds to the matched interval count of a pure conjunction, the intervals must be distinct from any that have
+     * been or will be added through {@link #addPosting(BEPostingList, int)}.
+     *
+     * @param expressionId
+     *         Id of expression to add to.
+     * @param count
+     *         Number of distinct intervals matched.
+     */
+    void addIntervalCount(final int expressionId, final int count)
+    {
+        touch(expressionId);
+        this.intervalCounts[expressionId] += count;
+    }
+
+    /**
+     * Adds an expression to the expressions touched by the current input, touched expressions are the only ones
+     * checked for a match.
+     */
+    void touch(final int expressionId)
+    {
+        if (!this.touchedFlags[expressionId])
+        {
+            this.touchedFlags[expressionId] = true;
+            this.touched[this.touchedCount++] = expressionId;
+        }
+    }
+
+    /**
+     * Checks whether the intervals added for an expression satisfy the entire expression.
+     *
+     * @param expressionId
+     *         Id of expression to check.
+     * @param useBitSetMatching
+     *         Whether the expression uses bitset matching.
+     * @param maxIntervalLength
+     *         Interval length of the expression.
+     * @return true if the expression is matched.
+     */
+    boolean match(final int expressionId, final boolean useBitSetMatching, final int maxIntervalLength)
+    {
+        final int requiredIntervalCount = this.requiredIntervalCounts[expressionId];
+        if (requiredIntervalCount != 0)
+        {
+            return this.intervalCounts[expressionId] == requiredIntervalCount;
+        }
+        return useBitSetMatching
+                ? matchUsingBitSet(expressionId)
+                : matchUsingIntervals(expressionId, maxIntervalLength);
+    }
+
+    private boolean matchUsingBitSet(final int expressionId)
+    {
+        final int offset = this.wordOffsets[expressionId];
+        return BEBitWords.isComplete(
+                this.words,
+                offset,
+                this.wordOffsets[expressionId + 1] - offset,
+                this.fullMasks[expressionId]);
+    }
+
+    private boolean matchUsingIntervals(final int expressionId, final int maxIntervalLength)
+    {
+        // collect the intervals to match, **important** they must be sorted by start index
+        int count = 0;
+        for (int entry = this.intervalHeads[expressionId]; entry != NONE; entry = this.entryNext[entry])
+        {
+            this.sortScratch[count++] = this.entryStartEnd[entry];
+        }
+        Arrays.sort(this.sortScratch, 0, count);
+
+        // initialize index zero of matched to true so that matched[start] for the first interval will pass
+        final boolean[] matched = this.matchedScratch;
+        Arrays.fill(matched, 0, maxIntervalLength + 1, false);
+        matched[0] = true;
+
+        for (int i = 0; i < count; i++)
+        {
+            final int startEnd = this.sortScratch[i];
+            if (matched[startEnd >>> 16])
+            {
+                matched[startEnd & 0xFFFF] = true;
+            }
+        }
+
+        // if the entire interval was matched for the expression, then mark the expression as matched
+        return matched[maxIntervalLength];
+    }
+}
@@ -0,0 +1,28 @@
+package com.amobee.freebee.evaluator.index;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Listener notified with the statistics of every evaluation of an index, used to instrument evaluation.
+ *
+ * Indexes have no listener by default in which case no statistics are collected and evaluation does not read the
+ * clock. Listeners are called on the evaluating thread once the evaluation of an input is complete, so they must be
+ * thread safe and should be cheap, e.g. {@link BEHistogramEvaluationListener}.
+ *
+ * Listeners are only notified by evaluations that don't track matched input values, i.e. those using a
+ * {@link BEEvaluationContext}.
+ *
+ * @see BEIndexBuilder#evaluationListener(BEEvaluationListener)
+ * @see com.amobee.freebee.evaluator.evaluator.BEEvaluatorBuilder#evaluationListener(BEEvaluationListener)
+ */
+@FunctionalInterface
+public interface BEEvaluationListener
+{
+    /**
+     * Called after an input was evaluated.
+     *
+     * @param statistics
+     *         Statistics of the evaluation, only valid for the duration of the call.
+     */
+    void onEvaluation(@Nonnull BEEvaluationStatistics statistics);
+}
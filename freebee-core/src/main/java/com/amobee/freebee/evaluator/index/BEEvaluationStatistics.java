@@ -0,0 +1,286 @@
+package com.amobee.freebee.evaluator.index;
+
+/**
+ * Work done by a single evaluation of an input against a {@link BEIndex}, reported to a {@link BEEvaluationListener}.
+ *
+ * Statistics are only collected when the index has a listener. Every {@link BEEvaluationContext} holds a single
+ * instance that is reset at the start of each evaluation, so listeners must copy any values they need to keep rather
+ * than the instance itself.
+ *
+ * Evaluation is split into four phases whose times are reported separately:
+ * <ul>
+ * <li>lookup, the postings of the input values are looked up in the index</li>
+ * <li>negative, the unmatched negative intervals of the touched expressions are added</li>
+ * <li>partial, partial expressions are matched and the references to them are added to full expressions</li>
+ * <li>match, full expressions are matched and their data is collected</li>
+ * </ul>
+ */
+public class BEEvaluationStatistics
+{
+    private int categoryCount;
+    private int valueCount;
+    private int postingCount;
+    private int touchedExpressionCount;
+    private int matchedExpressionCount;
+    private int matchedPartialExpressionCount;
+    private int bitSetMatchCount;
+    private int intervalMatchCount;
+    private int countMatchCount;
+    private long lookupNanos;
+    private long negativeNanos;
+    private long partialNanos;
+    private long matchNanos;
+
+    void reset()
+    {
+        this.categoryCount = 0;
+        this.valueCount = 0;
+        this.postingCount = 0;
+        this.touchedExpressionCount = 0;
+        this.matchedExpressionCount = 0;
+        this.matchedPartialExpressionCount = 0;
+        this.bitSetMatchCount = 0;
+        this.intervalMatchCount = 0;
+        this.countMatchCount = 0;
+        this.lookupNanos = 0L;
+        this.negativeNanos = 0L;
+        this.partialNanos = 0L;
+        this.matchNanos = 0L;
+    }
+
+    void addCategory(final int categoryValueCount)
+    {
+        this.categoryCount++;
+        this.valueCount += categoryValueCount;
+    }
+
+    void setPostingCount(final int postingCount)
+    {
+        this.postingCount = postingCount;
+    }
+
+    void setTouchedExpressionCount(final int touchedExpressionCount)
+    {
+        this.touchedExpressionCount = touchedExpressionCount;
+    }
+
+    /**
+     * Records a matched expression.
+     *
+     * @param partial
+     *         Whether the expression is a partial expression.
+     * @param countMatching
+     *         Whether the expression was matched by counting its intervals.
+     * @param bitSetMatching
+     *         Whether the expression was matched using bitset matching.
+     */
+    void addMatchedExpression(final boolean partial, final boolean countMatching, final boolean bitSetMatching)
+    {
+        if (partial)
+        {
+            this.matchedPartialExpressionCount++;
+        }
+        else
+        {
+            this.matchedExpressionCount++;
+        }
+
+        if (countMatching)
+        {
+            this.countMatchCount++;
+        }
+        else if (bitSetMatching)
+        {
+            this.bitSetMatchCount++;
+        }
+        else
+        {
+            this.intervalMatchCount++;
+        }
+    }
+
+    /**
+     * Records the end of the lookup phase.
+     *
+     * @param startNanos
+     *         {@link System#nanoTime()} at the start of the phase.
+     * @return {@link System#nanoTime()} at the end of the phase.
+     */
+    long endLookup(final long startNanos)
+    {
+        final long now = System.nanoTime();
+        this.lookupNanos = now - startNanos;
+        return now;
+    }
+
+    /**
+     * Records the end of the negative phase, which may run more than once per evaluation.
+     *
+     * @param startNanos
+     *         {@link System#nanoTime()} at the start of the phase.
+     * @return {@link System#nanoTime()} at the end of the phase.
+     */
+    long endNegative(final long startNanos)
+    {
+        final long now = System.nanoTime();
+        this.negativeNanos += now - startNanos;
+        return now;
+    }
+
+    /**
+     * Records the end of the partial phase.
+     *
+     * @param startNanos
+     *         {@link System#nanoTime()} at the start of the phase.
+     * @return {@link System#nanoTime()} at the end of the phase.
+     */
+    long endPartial(final long startNanos)
+    {
+        final long now = System.nanoTime();
+        this.partialNanos = now - startNanos;
+        return now;
+    }
+
+    /**
+     * Records the end of the match phase.
+     *
+     * @param startNanos
+     *         {@link System#nanoTime()} at the start of the phase.
+     */
+    void endMatch(final long startNanos)
+    {
+        this.matchNanos = System.nanoTime() - startNanos;
+    }
+
+    /**
+     * @return Number of input attribute categories looked up in the index.
+     */
+    public int getCategoryCount()
+    {
+        return this.categoryCount;
+    }
+
+    /**
+     * @return Number of input values looked up in the index.
+     */
+    public int getValueCount()
+    {
+        return this.valueCount;
+    }
+
+    /**
+     * @return Number of postings of matched input values and of references to matched partial expressions.
+     */
+    public int getPostingCount()
+    {
+        return this.postingCount;
+    }
+
+    /**
+     * @return Number of expressions, full and partial, that had to be checked for a match.
+     */
+    public int getTouchedExpressionCount()
+    {
+        return this.touchedExpressionCount;
+    }
+
+    /**
+     * @return Number of full expressions matched.
+     */
+    public int getMatchedExpressionCount()
+    {
+        return this.matchedExpressionCount;
+    }
+
+    /**
+     * @return Number of partial expressions matched.
+     */
+    public int getMatchedPartialExpressionCount()
+    {
+        return this.matchedPartialExpressionCount;
+    }
+
+    /**
+     * @return Number of matched expressions, full and partial, that were matched using bitset matching.
+     */
+    public int getBitSetMatchCount()
+    {
+        return this.bitSetMatchCount;
+    }
+
+    /**
+     * @return Number of matched expressions, full and partial, that were matched using interval matching.
+     */
+    public int getIntervalMatchCount()
+    {
+        return this.intervalMatchCount;
+    }
+
+    /**
+     * @return Number of matched expressions, full and partial, that were matched by counting their intervals.
+     */
+    public int getCountMatchCount()
+    {
+        return this.countMatchCount;
+    }
+
+    /**
+     * @return Nanoseconds spent looking up the postings of the input values.
+     */
+    public long getLookupNanos()
+    {
+        return this.lookupNanos;
+    }
+
+    /**
+     * @return Nanoseconds spent adding unmatched negative intervals.
+     */
+    public long getNegativeNanos()
+    {
+        return this.negativeNanos;
+    }
+
+    /**
+     * @return Nanoseconds spent matching partial expressions and adding references to them.
+     */
+    public long getPartialNanos()
+    {
+        return this.partialNanos;
+    }
+
+    /**
+     * @return Nanoseconds spent matching full expressions and collecting their data.
+     */
+    public long getMatchNanos()
+    {
+        return this.matchNanos;
+    }
+
+    /**
+     * @return Nanoseconds spent in all phases of the evaluation.
+     */
+    public long getTotalNanos()
+    {
+        return this.lookupNanos + this.negativeNanos + this.partialNanos + this.matchNanos;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "BEEvaluationStatistics{" +
+                "categoryCount=" + this.categoryCount +
+                ", valueCount=" + this.valueCount +
+                ", postingCount=" + this.postingCount +
+                ", touchedExpressionCount=" + this.touchedExpressionCount +
+                ", matchedExpressionCount=" + this.matchedExpressionCount +
+                ", matchedPartialExpressionCount=" + this.matchedPartialExpressionCount +
+                ", bitSetMatchCount=" + this.bitSetMatchCount +
+                ", intervalMatchCount=" + this.intervalMatchCount +
+                ", countMatchCount=" + this.countMatchCount +
+                ", lookupNanos=" + this.lookupNanos +
+                ", negativeNanos=" + this.negativeNanos +
+                ", partialNanos=" + this.partialNanos +
+                ", matchNanos=" + this.matchNanos +
+                '}';
+    }
+}
@@ -0,0 +1,82 @@
+package com.amobee.freebee.evaluator.index;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import javax.annotation.Nonnull;
+
+/**
+ * Writes and reads the data associated with expressions when an index is stored in the binary index format, see
+ * {@link BEIndexWriter} and {@link BEIndexReader}. Codecs for the common data types are provided, applications with
+ * other data types must provide their own.
+ */
+public interface BEExpressionDataCodec<T>
+{
+    BEExpressionDataCodec<String> STRING = new BEExpressionDataCodec<String>()
+    {
+        @Override
+        public void write(@Nonnull final String data, @Nonnull final DataOutput out) throws IOException
+        {
+            out.writeUTF(data);
+        }
+
+        @Nonnull
+        @Override
+        public String read(@Nonnull final DataInput in) throws IOException
+        {
+            return in.readUTF();
+        }
+    };
+
+    BEExpressionDataCodec<Integer> INTEGER = new BEExpressionDataCodec<Integer>()
+    {
+        @Override
+        public void write(@Nonnull final Integer data, @Nonnull final DataOutput out) throws IOException
+        {
+            out.writeInt(data);
+        }
+
+        @Nonnull
+        @Override
+        public Integer read(@Nonnull final DataInput in) throws IOException
+        {
+            return in.readInt();
+        }
+    };
+
+    BEExpressionDataCodec<Long> LONG = new BEExpressionDataCodec<Long>()
+    {
+        @Override
+        public void write(@Nonnull final Long data, @Nonnull final DataOutput out) throws IOException
+        {
+            out.writeLong(data);
+        }
+
+        @Nonnull
+        @Override
+        public Long read(@Nonnull final DataInput in) throws IOException
+        {
+            return in.readLong();
+        }
+    };
+
+    /**
+     * Writes the data of a single expression.
+     *
+     * @param data
+     *         Data to write.
+     * @param out
+     *         Output to write to.
+     */
+    void write(@Nonnull T data, @Nonnull DataOutput out) throws IOException;
+
+    /**
+     * Reads the data of a single expression as written by {@link #write(Object, DataOutput)}.
+     *
+     * @param in
+     *         Input to read from.
+     * @return Data read.
+     */
+    @Nonnull
+    T read(@Nonnull DataInput in) throws IOException;
+}
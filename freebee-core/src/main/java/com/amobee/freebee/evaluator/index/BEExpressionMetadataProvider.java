@@ -13,4 +13,24 @@ public interface BEExpressionMetadataProvider
     BEExpressionMetadata get(int expressionId);
 
     Collection<BEExpressionMetadata> getAll();
+
+    default int getMaxIntervalLength(final int expressionId)
+    {
+        return get(expressionId).getMaxIntervalLength();
+    }
+
+    default boolean canUseBitSetMatching(final int expressionId)
+    {
+        return get(expressionId).canUseBitSetMatching();
+    }
+
+    default boolean isPartial(final int expressionId)
+    {
+        return get(expressionId).isPartial();
+    }
+
+    default String getPartialExpressionName(final int expressionId)
+    {
+        return get(expressionId).getPartialExpressionName();
+    }
 }
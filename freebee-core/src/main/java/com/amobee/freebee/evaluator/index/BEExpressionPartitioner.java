@@ -0,0 +1,258 @@
+package com.amobee.freebee.evaluator.index;
+
+import com.amobee.freebee.expression.BEConjunctionNode;
+import com.amobee.freebee.expression.BENode;
+import com.amobee.freebee.expression.BEPredicateNode;
+import com.amobee.freebee.expression.BEReferenceNode;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import javax.annotation.Nonnull;
+
+/**
+ * Partitions expressions into shards according to a {@link BEShardingStrategy}.
+ */
+final class BEExpressionPartitioner
+{
+    private BEExpressionPartitioner()
+    {
+    }
+
+    /**
+     * Partitions expressions into at most the specified number of shards, shards that would be empty are omitted.
+     *
+     * @param expressions
+     *         Expressions to partition.
+     * @param partialExpressions
+     *         Partial expressions that may be referenced by the expressions.
+     * @param shardCount
+     *         Maximum number of shards.
+     * @param strategy
+     *         Strategy used to assign expressions to shards.
+     * @return Expressions of each shard.
+     */
+    @Nonnull
+    static <T> List<List<BEExpressionInfo<T>>> partition(
+            @Nonnull final List<BEExpressionInfo<T>> expressions,
+            @Nonnull final Map<String, BENode> partialExpressions,
+            final int shardCount,
+            @Nonnull final BEShardingStrategy strategy)
+    {
+        if (shardCount < 1)
+        {
+            throw new IllegalArgumentException("shardCount must be at least 1 but was " + shardCount);
+        }
+
+        final List<List<BEExpressionInfo<T>>> shards;
+        switch (strategy)
+        {
+            case HASH:
+                shards = partitionByHash(expressions, shardCount);
+                break;
+            case DOMINANT_ATTRIBUTE:
+                shards = partitionByDominantAttribute(expressions, shardCount);
+                break;
+            case SIZE_BALANCED:
+                shards = partitionBySize(expressions, partialExpressions, shardCount);
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported sharding strategy " + strategy);
+        }
+
+        return shards.stream().filter(shard -> !shard.isEmpty()).collect(Collectors.toList());
+    }
+
+    /**
+     * Finds all partial expressions referenced, directly or through other partial expressions, by the specified
+     * expressions.
+     *
+     * @param expressions
+     *         Expressions to find references for.
+     * @param partialExpressions
+     *         All partial expressions.
+     * @return Ids of referenced partial expressions.
+     */
+    @Nonnull
+    static Set<String> getReferencedPartialExpressions(
+            @Nonnull final Collection<BENode> expressions,
+            @Nonnull final Map<String, BENode> partialExpressions)
+    {
+        final Set<String> referenced = new LinkedHashSet<>();
+        final List<BENode> pending = new ArrayList<>(expressions);
+        while (!pending.isEmpty())
+        {
+            final BENode node = pending.remove(pending.size() - 1);
+            for (final String id : new ExpressionStats(node).references)
+            {
+                final BENode partialExpression = partialExpressions.get(id);
+                if (referenced.add(id) && null != partialExpression)
+                {
+                    pending.add(partialExpression);
+                }
+            }
+        }
+        return referenced;
+    }
+
+    private static <T> List<List<BEExpressionInfo<T>>> partitionByHash(
+            @Nonnull final List<BEExpressionInfo<T>> expressions,
+            final int shardCount)
+    {
+        final List<List<BEExpressionInfo<T>>> shards = newShards(shardCount);
+        expressions.forEach(info -> shards.get(Math.floorMod(info.getData().hashCode(), shardCount)).add(info));
+        return shards;
+    }
+
+    private static <T> List<List<BEExpressionInfo<T>>> partitionByDominantAttribute(
+            @Nonnull final List<BEExpressionInfo<T>> expressions,
+            final int shardCount)
+    {
+        // sort expressions so that expressions with the same dominant attribute (and value) are adjacent, then cut the
+        // sorted expressions into equally sized shards
+        final Map<BEExpressionInfo<T>, String> keys = new HashMap<>();
+        expressions.forEach(info -> keys.put(info, new ExpressionStats(info.getExpression()).getDominantAttributeKey()));
+        final List<BEExpressionInfo<T>> sorted = new ArrayList<>(expressions);
+        sorted.sort(Comparator.comparing(keys::get));
+
+        final List<List<BEExpressionInfo<T>>> shards = newShards(shardCount);
+        final int shardSize = (sorted.size() + shardCount - 1) / shardCount;
+        for (int i = 0; i < sorted.size(); i++)
+        {
+            shards.get(i / shardSize).add(sorted.get(i));
+        }
+        return shards;
+    }
+
+    private static <T> List<List<BEExpressionInfo<T>>> partitionBySize(
+            @Nonnull final List<BEExpressionInfo<T>> expressions,
+            @Nonnull final Map<String, BENode> partialExpressions,
+            final int shardCount)
+    {
+        final Map<String, Integer> partialWeights = new HashMap<>();
+        partialExpressions.forEach((id, expression) -> partialWeights.put(id, new ExpressionStats(expression).weight));
+
+        final Map<BEExpressionInfo<T>, Integer> weights = new HashMap<>();
+        final Map<BEExpressionInfo<T>, Set<String>> references = new HashMap<>();
+        expressions.forEach(info -> {
+            weights.put(info, new ExpressionStats(info.getExpression()).weight);
+            references.put(info, getReferencedPartialExpressions(
+                    Collections.singletonList(info.getExpression()),
+                    partialExpressions));
+        });
+
+        // largest expressions first so that the small ones can even out the load at the end
+        final List<BEExpressionInfo<T>> sorted = new ArrayList<>(expressions);
+        sorted.sort(Comparator.comparing(weights::get).reversed());
+
+        final List<List<BEExpressionInfo<T>>> shards = newShards(shardCount);
+        final long[] loads = new long[shardCount];
+        final List<Set<String>> shardPartials = new ArrayList<>(shardCount);
+        for (int i = 0; i < shardCount; i++)
+        {
+            shardPartials.add(new HashSet<>());
+        }
+
+        for (final BEExpressionInfo<T> info : sorted)
+        {
+            int bestShard = 0;
+            long bestLoad = Long.MAX_VALUE;
+            for (int shard = 0; shard < shardCount; shard++)
+            {
+                long load = loads[shard] + weights.get(info);
+                for (final String id : references.get(info))
+                {
+                    if (!shardPartials.get(shard).contains(id))
+                    {
+                        load += partialWeights.getOrDefault(id, 0);
+                    }
+                }
+                if (load < bestLoad)
+                {
+                    bestShard = shard;
+                    bestLoad = load;
+                }
+            }
+            shards.get(bestShard).add(info);
+            loads[bestShard] = bestLoad;
+            shardPartials.get(bestShard).addAll(references.get(info));
+        }
+        return shards;
+    }
+
+    private static <T> List<List<BEExpressionInfo<T>>> newShards(final int shardCount)
+    {
+        final List<List<BEExpressionInfo<T>>> shards = new ArrayList<>(shardCount);
+        for (int i = 0; i < shardCount; i++)
+        {
+            shards.add(new ArrayList<>());
+        }
+        return shards;
+    }
+
+    /**
+     * Statistics of a single expression used to assign it to a shard.
+     */
+    private static final class ExpressionStats
+    {
+        /** Number of predicate values and references, i.e. the number of postings the expression adds to an index */
+        private int weight;
+        private final Map<String, Integer> valueCounts = new HashMap<>();
+        private final Map<String, String> minValues = new HashMap<>();
+        private final Set<String> references = new LinkedHashSet<>();
+
+        private ExpressionStats(@Nonnull final BENode expression)
+        {
+            add(expression);
+        }
+
+        private void add(@Nonnull final BENode node)
+        {
+            if (node instanceof BEConjunctionNode)
+            {
+                ((BEConjunctionNode) node).getValues().forEach(this::add);
+            }
+            else if (node instanceof BEReferenceNode)
+            {
+                ((BEReferenceNode) node).getValues().forEach(value -> {
+                    this.weight++;
+                    this.references.add(value.getId());
+                });
+            }
+            else if (node instanceof BEPredicateNode)
+            {
+                final String type = node.getType().toLowerCase();
+                ((BEPredicateNode) node).getValues().forEach(value -> {
+                    this.weight++;
+                    this.valueCounts.merge(type, 1, Integer::sum);
+                    this.minValues.merge(type, value.getId(), (a, b) -> a.compareTo(b) <= 0 ? a : b);
+                });
+            }
+        }
+
+        @Nonnull
+        private String getDominantAttributeKey()
+        {
+            String dominant = "";
+            int dominantCount = 0;
+            for (final Map.Entry<String, Integer> entry : this.valueCounts.entrySet())
+            {
+                if (entry.getValue() > dominantCount
+                        || entry.getValue() == dominantCount && entry.getKey().compareTo(dominant) < 0)
+                {
+                    dominant = entry.getKey();
+                    dominantCount = entry.getValue();
+                }
+            }
+            return dominant + '\u0000' + this.minValues.getOrDefault(dominant, "");
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package com.amobee.freebee.evaluator.index;
+
+import com.amobee.freebee.util.Histogram;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Evaluation listener that records the statistics of every evaluation in histograms, so that percentiles of evaluation
+ * latency and work can be exported to any metrics system.
+ */
+public class BEHistogramEvaluationListener implements BEEvaluationListener
+{
+    private final Histogram totalNanos;
+    private final Histogram lookupNanos;
+    private final Histogram negativeNanos;
+    private final Histogram partialNanos;
+    private final Histogram matchNanos;
+    private final Histogram valueCounts;
+    private final Histogram postingCounts;
+    private final Histogram touchedExpressionCounts;
+    private final Histogram matchedExpressionCounts;
+
+    public BEHistogramEvaluationListener()
+    {
+        this(Histogram.DEFAULT_PRECISION_BITS);
+    }
+
+    /**
+     * @param precisionBits
+     *         Number of bits of precision of the histograms.
+     */
+    public BEHistogramEvaluationListener(final int precisionBits)
+    {
+        this.totalNanos = new Histogram(precisionBits);
+        this.lookupNanos = new Histogram(precisionBits);
+        this.negativeNanos = new Histogram(precisionBits);
+        this.partialNanos = new Histogram(precisionBits);
+        this.matchNanos = new Histogram(precisionBits);
+        this.valueCounts = new Histogram(precisionBits);
+        this.postingCounts = new Histogram(precisionBits);
+        this.touchedExpressionCounts = new Histogram(precisionBits);
+        this.matchedExpressionCounts = new Histogram(precisionBits);
+    }
+
+    @Override
+    public void onEvaluation(@Nonnull final BEEvaluationStatistics statistics)
+    {
+        this.totalNanos.record(statistics.getTotalNanos());
+        this.lookupNanos.record(statistics.getLookupNanos());
+        this.negativeNanos.record(statistics.getNegativeNanos());
+        this.partialNanos.record(statistics.getPartialNanos());
+        this.matchNanos.record(statistics.getMatchNanos());
+        this.valueCounts.record(statistics.getValueCount());
+        this.postingCounts.record(statistics.getPostingCount());
+        this.touchedExpressionCounts.record(statistics.getTouchedExpressionCount());
+        this.matchedExpressionCounts.record(statistics.getMatchedExpressionCount());
+    }
+
+    /**
+     * @return Nanoseconds spent in all phases of each evaluation.
+     */
+    @Nonnull
+    public Histogram getTotalNanos()
+    {
+        return this.totalNanos;
+    }
+
+    /**
+     * @return Nanoseconds spent looking up the postings of the input values of each evaluation.
+     */
+    @Nonnull
+    public Histogram getLookupNanos()
+    {
+        return this.lookupNanos;
+    }
+
+    /**
+     * @return Nanoseconds spent adding unmatched negative intervals in each evaluation.
+     */
+    @Nonnull
+    public Histogram getNegativeNanos()
+    {
+        return this.negativeNanos;
+    }
+
+    /**
+     * @return Nanoseconds spent matching partial expressions and adding references to them in each evaluation.
+     */
+    @Nonnull
+    public Histogram getPartialNanos()
+    {
+        return this.partialNanos;
+    }
+
+    /**
+     * @return Nanoseconds spent matching full expressions and collecting their data in each evaluation.
+     */
+    @Nonnull
+    public Histogram getMatchNanos()
+    {
+        return this.matchNanos;
+    }
+
+    /**
+     * @return Number of input values looked up in each evaluation.
+     */
+    @Nonnull
+    public Histogram getValueCounts()
+    {
+        return this.valueCounts;
+    }
+
+    /**
+     * @return Number of postings scanned in each evaluation.
+     */
+    @Nonnull
+    public Histogram getPostingCounts()
+    {
+        return this.postingCounts;
+    }
+
+    /**
+     * @return Number of expressions checked for a match in each evaluation.
+     */
+    @Nonnull
+    public Histogram getTouchedExpressionCounts()
+    {
+        return this.touchedExpressionCounts;
+    }
+
+    /**
+     * @return Number of full expressions matched in each evaluation.
+     */
+    @Nonnull
+    public Histogram getMatchedExpressionCounts()
+    {
+        return this.matchedExpressionCounts;
+    }
+
+    /**
+     * Clears all histograms.
+     */
+    public void reset()
+    {
+        this.totalNanos.reset();
+        this.lookupNanos.reset();
+        this.negativeNanos.reset();
+        this.partialNanos.reset();
+        this.matchNanos.reset();
+        this.valueCounts.reset();
+        this.postingCounts.reset();
+        this.touchedExpressionCounts.reset();
+        this.matchedExpressionCounts.reset();
+    }
+
+    @Override
+    public String toString()
+    {
+        return "BEHistogramEvaluationListener{" +
+                "totalNanos=" + this.totalNanos +
+                ", lookupNanos=" + this.lookupNanos +
+                ", negativeNanos=" + this.negativeNanos +
+                ", partialNanos=" + this.partialNanos +
+                ", matchNanos=" + this.matchNanos +
+                ", valueCounts=" + this.valueCounts +
+                ", postingCounts=" + this.postingCounts +
+                ", touchedExpressionCounts=" + this.touchedExpressionCounts +
+                ", matchedExpressionCounts=" + this.matchedExpressionCounts +
+                '}';
+    }
+}
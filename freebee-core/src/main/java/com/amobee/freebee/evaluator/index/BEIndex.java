@@ -2,26 +2,34 @@ package com.amobee.freebee.evaluator.index;
 
 import com.amobee.freebee.config.BEDataTypeConfig;
 import com.amobee.freebee.evaluator.BEInterval;
+import com.amobee.freebee.evaluator.BEPostingList;
 import com.amobee.freebee.evaluator.evaluator.BEInput;
 import com.amobee.freebee.evaluator.evaluator.BEInputAttributeCategory;
-import com.amobee.freebee.evaluator.evaluator.BEStringInputAttributeCategory;
+import com.amobee.freebee.evaluator.evaluator.BEInputSchema;
 import com.amobee.freebee.expression.BEConstants;
+import com.amobee.freebee.util.CaseInsensitiveHashingStrategy;
+import com.amobee.freebee.util.Histogram;
+import org.eclipse.collections.api.list.primitive.MutableIntList;
 import org.eclipse.collections.api.map.MutableMap;
 import org.eclipse.collections.api.map.primitive.IntObjectMap;
 import org.eclipse.collections.api.map.primitive.MutableIntObjectMap;
 import org.eclipse.collections.api.set.primitive.MutableIntSet;
-import org.eclipse.collections.impl.factory.Maps;
+import org.eclipse.collections.impl.list.mutable.primitive.IntArrayList;
 import org.eclipse.collections.impl.map.mutable.primitive.IntObjectHashMap;
+import org.eclipse.collections.impl.map.strategy.mutable.UnifiedMapWithHashingStrategy;
 import org.eclipse.collections.impl.set.mutable.primitive.IntHashSet;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.BitSet;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.function.Function;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 /**
@@ -48,9 +56,44 @@ public class BEIndex<T> implements Serializable
     private BEExpressionDataProvider<T> expressionDataProvider;
     private BEIndexMetrics indexMetrics;
     private int hashCode;
+    private int[] wordOffsets;
+    private long[] fullMasks;
+    private int[] requiredIntervalCounts;
+    private int maxIntervalLength;
+    private String[] attributeCategoryNames;
+    private BEIndexAttributeCategory[] attributeCategoryArray;
+    private BEInputSchema inputSchema;
+    /** Ordinals of the attribute categories with negative predicates */
+    private int[] negativeAttributeCategoryOrdinals;
+    /**
+     * Materialized negative intervals by attribute category ordinal, only built on first use by the evaluations that
+     * track intervals or use BitSet results, null for those without negative predicates or not used yet
+     */
+    private transient BENegativeIntervals[] negativeIntervals;
+    private BENegativeBaseline negativeBaseline;
+    /** Postings of the reference intervals depending on each partial expression by expression id, null if none */
+    private BEPostingList[] refPostings;
+    /**
+     * Evaluation level of each expression by expression id, 0 for expressions without references, otherwise one more
+     * than the highest level of the partial expressions they reference
+     */
+    private int[] expressionLevels;
+    /** Number of levels of partial expressions, partial expressions of a level are evaluated after those below it */
+    private int partialLevelCount;
+    /**
+     * Negative postings of the reference attribute category by the level of the partial expression they belong to,
+     * those of full expressions are last
+     */
+    private BEPostingList[] refNegativePostings;
+    /** Listener notified with the statistics of each evaluation, statistics are only collected when set */
+    private transient BEEvaluationListener evaluationListener;
+    /** Attribute categories that record lookups with a value profiler by ordinal, null when not profiling */
+    private transient BEIndexAttributeCategory[] profiledAttributeCategories;
 
-    private final MutableMap<String, BEIndexAttributeCategory> attributeCategories = Maps.mutable.of();
-    private final BEIndexAttributeCategory refAttributeCategory = new BEStringIndexAttributeCategory(false);
+    /** Attribute categories keyed by upper case name, looked up ignoring case */
+    private final MutableMap<String, BEIndexAttributeCategory> attributeCategories =
+            new UnifiedMapWithHashingStrategy<>(CaseInsensitiveHashingStrategy.INSTANCE);
+    private BEIndexAttributeCategory refAttributeCategory = new BEStringIndexAttributeCategory(false);
     private final BEDataTypeConfigSupplier dataTypeConfigSupplier;
 
     BEIndex(@Nonnull final BEDataTypeConfigSupplier dataTypeConfigSupplier)
@@ -88,16 +131,204 @@ public class BEIndex<T> implements Serializable
         return this.indexMetrics;
     }
 
+    /**
+     * Adds the metrics of this index to the metrics of several indexes that are evaluated together, partial
+     * expressions that were already added for another index, e.g. copies of the same partial expression in several
+     * shards, are only counted once. Their intervals are counted for every index as each index holds a copy of them.
+     *
+     * @param aggregate
+     *         Metrics to add the metrics of this index to.
+     * @param countedPartialExpressions
+     *         Names of the partial expressions counted so far, the partial expressions of this index are added.
+     */
+    public void addMetricsTo(@Nonnull final BEIndexMetrics aggregate, @Nonnull final Set<String> countedPartialExpressions)
+    {
+        aggregate.add(this.indexMetrics);
+        for (final BEExpressionMetadata metadata : this.expressionMetadataProvider.getAll())
+        {
+            if (metadata.isPartial() && !countedPartialExpressions.add(metadata.getPartialExpressionName()))
+            {
+                aggregate.removePartialExpressionCopy(
+                        metadata.canUseBitSetMatching(),
+                        this.requiredIntervalCounts[metadata.getExpressionId()] != 0);
+            }
+        }
+    }
+
     void setIndexMetrics(final BEIndexMetrics indexMetrics)
     {
         this.indexMetrics = indexMetrics;
     }
 
+    /**
+     * @return Listener notified with the statistics of each evaluation, null if none.
+     */
+    @Nullable
+    public BEEvaluationListener getEvaluationListener()
+    {
+        return this.evaluationListener;
+    }
+
+    /**
+     * Sets the listener notified with the statistics of each evaluation that uses a {@link BEEvaluationContext}, the
+     * listener isn't serialized with the index.
+     *
+     * @param evaluationListener
+     *         Listener to notify, null to stop collecting statistics.
+     */
+    public void setEvaluationListener(@Nullable final BEEvaluationListener evaluationListener)
+    {
+        this.evaluationListener = evaluationListener;
+    }
+
+    /**
+     * Attaches a profiler that records sampled lookups of the attribute values of inputs evaluated against this index,
+     * the profiler isn't serialized with the index.
+     *
+     * @param valueProfiler
+     *         Profiler to record lookups with, null to stop profiling.
+     */
+    public void setValueProfiler(@Nullable final BEValueProfiler valueProfiler)
+    {
+        if (null == valueProfiler)
+        {
+            this.profiledAttributeCategories = null;
+            return;
+        }
+
+        final BEIndexAttributeCategory[] profiled = new BEIndexAttributeCategory[this.attributeCategoryArray.length];
+        for (int i = 0; i < profiled.length; i++)
+        {
+            profiled[i] = new BEProfilingIndexAttributeCategory(this.attributeCategoryArray[i], this.attributeCategoryNames[i], valueProfiler);
+        }
+        this.profiledAttributeCategories = profiled;
+    }
+
+    /**
+     * Computes the size of this index, the statistics of each attribute category and the distribution of the width of
+     * the indexed expressions. All postings of the index are walked so this is meant for capacity planning and
+     * diagnostics rather than for frequent use.
+     *
+     * The estimated size includes the structures precomputed for evaluation and the expression metadata, materialized
+     * negative intervals are only included once an evaluation has built them.
+     *
+     * @return Statistics of the index.
+     */
+    @Nonnull
+    public BEIndexStatistics computeStatistics()
+    {
+        final BEStatisticsCollector collector = new BEStatisticsCollector();
+        final List<BEAttributeCategoryStatistics> attributeCategoryStatistics = new ArrayList<>();
+        for (int i = 0; i < this.attributeCategoryArray.length; i++)
+        {
+            this.attributeCategoryArray[i].collectStatistics(collector);
+            attributeCategoryStatistics.add(collector.complete(this.attributeCategoryNames[i], this.attributeCategoryArray[i]));
+        }
+        this.refAttributeCategory.collectStatistics(collector);
+        attributeCategoryStatistics.add(collector.complete(REF_INPUT_ATTRIBUTE_CATEGORY, this.refAttributeCategory));
+
+        final Histogram intervalsPerExpression = new Histogram();
+        final Histogram intervalLengths = new Histogram();
+        collector.getExpressionIntervalCounts().forEachKeyValue((expressionId, intervalCount) -> {
+            intervalsPerExpression.record(intervalCount);
+            intervalLengths.record(this.expressionMetadataProvider.getMaxIntervalLength(expressionId));
+        });
+
+        // the evaluation layout arrays
+        long estimatedBytes = BEStatisticsCollector.getArrayBytes(this.wordOffsets.length, 4)
+                + BEStatisticsCollector.getArrayBytes(this.fullMasks.length, 8)
+                + BEStatisticsCollector.getArrayBytes(this.requiredIntervalCounts.length, 4);
+        for (final BEAttributeCategoryStatistics statistics : attributeCategoryStatistics)
+        {
+            estimatedBytes += statistics.getEstimatedBytes();
+        }
+
+        // the structures precomputed for evaluation, the reference postings by partial expression are the postings of
+        // the reference attribute category and are already counted
+        estimatedBytes += this.negativeBaseline.getRetainedBytes()
+                + BEStatisticsCollector.getArrayBytes(this.refPostings.length, 4)
+                + BEStatisticsCollector.getArrayBytes(this.expressionLevels.length, 4)
+                + BEStatisticsCollector.getArrayBytes(this.refNegativePostings.length, 4);
+        for (final BEPostingList postings : this.refNegativePostings)
+        {
+            estimatedBytes += postings.getRetainedBytes();
+        }
+        final BENegativeIntervals[] materializedNegativeIntervals = this.negativeIntervals;
+        if (null != materializedNegativeIntervals)
+        {
+            for (final BENegativeIntervals intervals : materializedNegativeIntervals)
+            {
+                if (null != intervals)
+                {
+                    estimatedBytes += intervals.getRetainedBytes();
+                }
+            }
+        }
+        if (this.expressionMetadataProvider instanceof BEArrayExpressionMetadataProvider)
+        {
+            estimatedBytes += ((BEArrayExpressionMetadataProvider) this.expressionMetadataProvider).getRetainedBytes();
+        }
+
+        return new BEIndexStatistics(
+                collector.getExpressionIntervalCounts().size(),
+                collector.getIntervalCount(),
+                attributeCategoryStatistics,
+                intervalsPerExpression,
+                intervalLengths,
+                estimatedBytes);
+    }
+
     void setHashCode(final int hashCode)
     {
         this.hashCode = hashCode;
     }
 
+    /**
+     * Sets the layout of per expression matched bit words used by {@link BEEvaluationContext}.
+     *
+     * @param wordOffsets
+     *         Offset of the first word for each expression, with one additional trailing entry holding the total number
+     *         of words. Expressions that do not use bitset matching have no words.
+     * @param fullMasks
+     *         Mask of the bits of the last word of each expression that must be set for the expression to match.
+     * @param requiredIntervalCounts
+     *         Number of distinct intervals that must be matched for each pure conjunction expression, zero for
+     *         expressions that are not matched by counting.
+     * @param maxIntervalLength
+     *         Largest interval length of any expression in the index.
+     */
+    void setEvaluationLayout(
+            @Nonnull final int[] wordOffsets,
+            @Nonnull final long[] fullMasks,
+            @Nonnull final int[] requiredIntervalCounts,
+            final int maxIntervalLength)
+    {
+        this.wordOffsets = wordOffsets;
+        this.fullMasks = fullMasks;
+        this.requiredIntervalCounts = requiredIntervalCounts;
+        this.maxIntervalLength = maxIntervalLength;
+    }
+
+    int[] getWordOffsets()
+    {
+        return this.wordOffsets;
+    }
+
+    long[] getFullMasks()
+    {
+        return this.fullMasks;
+    }
+
+    int[] getRequiredIntervalCounts()
+    {
+        return this.requiredIntervalCounts;
+    }
+
+    int getMaxIntervalLength()
+    {
+        return this.maxIntervalLength;
+    }
+
     @Override
     public int hashCode()
     {
@@ -119,6 +350,40 @@ public class BEIndex<T> implements Serializable
         return this.hashCode == beIndex.hashCode;
     }
 
+    BEDataTypeConfigSupplier getDataTypeConfigSupplier()
+    {
+        return this.dataTypeConfigSupplier;
+    }
+
+    /**
+     * @return All attribute categories except the reference attribute category, keyed by upper case name.
+     */
+    Map<String, BEIndexAttributeCategory> getAttributeCategories()
+    {
+        return this.attributeCategories;
+    }
+
+    BEIndexAttributeCategory getRefAttributeCategory()
+    {
+        return this.refAttributeCategory;
+    }
+
+    void setRefAttributeCategory(@Nonnull final BEIndexAttributeCategory refAttributeCategory)
+    {
+        this.refAttributeCategory = refAttributeCategory;
+    }
+
+    /**
+     * Gets the schema of the attribute categories of this index, inputs created with the schema are evaluated by
+     * attribute category ordinal.
+     *
+     * @return Input schema.
+     */
+    public BEInputSchema getInputSchema()
+    {
+        return this.inputSchema;
+    }
+
     /**
      * Gets the attribute category for the specified attribute category name. If one does not already exist it is
      * created.
@@ -134,7 +399,13 @@ public class BEIndex<T> implements Serializable
         {
             return this.refAttributeCategory;
         }
-        return this.attributeCategories.getIfAbsentPut(attributeCategory.toUpperCase(), () -> newAttributeCategory(attributeCategory.toUpperCase()));
+        final BEIndexAttributeCategory indexAttributeCategory = this.attributeCategories.get(attributeCategory);
+        if (null != indexAttributeCategory)
+        {
+            return indexAttributeCategory;
+        }
+        final String name = attributeCategory.toUpperCase();
+        return this.attributeCategories.getIfAbsentPut(name, () -> newAttributeCategory(name));
     }
 
     /**
@@ -166,11 +437,25 @@ public class BEIndex<T> implements Serializable
     @Deprecated  // migrate to findMatchingExpressionIntervals
     public void getIndexResult(@Nonnull final BEInput input, @Nonnull final MutableIntObjectMap<BitSet> indexResult)
     {
-        this.attributeCategories.forEach((attributeCategory, indexAttributeCategory) -> evaluateAttributeCategory(
-                input.getCategory(attributeCategory),
-                indexAttributeCategory,
-                indexResult,
-                new IntHashSet(this.indexMetrics.getIntervalCount())));
+        final BEIndexAttributeCategory[] evaluatedAttributeCategories = getEvaluatedAttributeCategories();
+        final MutableIntSet negativeIntervalIds = new IntHashSet();
+        for (int i = 0; i < evaluatedAttributeCategories.length; i++)
+        {
+            final BEInputAttributeCategory inputAttributeCategory = input.getCategory(this.attributeCategoryNames[i]);
+            if (null != inputAttributeCategory)
+            {
+                evaluateAttributeCategory(inputAttributeCategory, evaluatedAttributeCategories[i], indexResult, negativeIntervalIds);
+            }
+            else
+            {
+                // none of the negative intervals of an absent attribute category can have been matched
+                final BENegativeIntervals absentIntervals = getNegativeIntervals(i);
+                if (null != absentIntervals)
+                {
+                    absentIntervals.addTo(indexResult);
+                }
+            }
+        }
     }
 
     /**
@@ -247,35 +532,140 @@ public class BEIndex<T> implements Serializable
     public BEIndexResults findMatchingExpressionIntervals(@Nonnull final BEInput input)
     {
         final BEIndexResults indexResults = new BEIndexResults(this.expressionMetadataProvider);
+        final BEIndexAttributeCategory[] evaluatedAttributeCategories = getEvaluatedAttributeCategories();
 
-        this.attributeCategories.forEach((attributeCategoryName, indexAttributeCategory) ->
-                evaluateAttributeCategory(
-                        input.getCategory(attributeCategoryName),
-                        indexAttributeCategory,
-                        indexResults,
-                        null));
+        if (null != input.getSchema() && input.getSchema() == this.inputSchema)
+        {
+            // only the attribute categories present in the input and those with negative predicates can add intervals
+            final int ordinalCount = input.getOrdinalCount();
+            for (int i = 0; i < ordinalCount; i++)
+            {
+                final int ordinal = input.getOrdinal(i);
+                evaluateAttributeCategory(input.getCategory(ordinal), evaluatedAttributeCategories[ordinal], indexResults);
+            }
+            for (final int ordinal : this.negativeAttributeCategoryOrdinals)
+            {
+                if (null == input.getCategory(ordinal))
+                {
+                    getNegativeIntervals(ordinal).addTo(indexResults);
+                }
+            }
+        }
+        else
+        {
+            for (int i = 0; i < evaluatedAttributeCategories.length; i++)
+            {
+                final BEInputAttributeCategory inputAttributeCategory = input.getCategory(this.attributeCategoryNames[i]);
+                if (null != inputAttributeCategory)
+                {
+                    evaluateAttributeCategory(inputAttributeCategory, evaluatedAttributeCategories[i], indexResults);
+                }
+                else
+                {
+                    // none of the negative intervals of an absent attribute category can have been matched
+                    final BENegativeIntervals absentIntervals = getNegativeIntervals(i);
+                    if (null != absentIntervals)
+                    {
+                        absentIntervals.addTo(indexResults);
+                    }
+                }
+            }
+        }
 
         return indexResults;
     }
 
+    @Deprecated  // migrate to addRefIntervalsForMatchedPartialExpressions(BEIndexResults, Predicate)
     public void addRefIntervalsForMatchedPartialExpressions(
             @Nonnull final List<BEIndexExpressionResult> matchedPartialExpressions,
             @Nonnull final BEIndexResults indexResults)
     {
+        final MutableIntSet matchedNegativeIntervalIds = new IntHashSet();
+        for (final BEIndexExpressionResult partialExpressionResult : matchedPartialExpressions)
+        {
+            addRefIntervals(partialExpressionResult, indexResults, matchedNegativeIntervalIds);
+        }
+        addUnmatchedRefNegativeIntervals(
+                this.refAttributeCategory.getNegativePostings(), indexResults, matchedNegativeIntervalIds);
+    }
 
-        final Map<String, BEIndexExpressionResult> matchedPartialExpressionResultsByName =
-                matchedPartialExpressions.stream()
-                    .collect(Collectors.toMap(BEIndexExpressionResult::getPartialExpressionName, Function.identity()));
-        final Set<String> matchedPartialExpressionNames = matchedPartialExpressionResultsByName.keySet();
+    /**
+     * Adds the reference intervals depending on each partial expression of the specified results that is matched to
+     * the results, with the result of the partial expression so that the values matching it can be tracked. Reference
+     * intervals are looked up by the id of the partial expression.
+     *
+     * Partial expressions are matched level by level so that a partial expression is only tested once the reference
+     * intervals of all the partial expressions it references have been added.
+     *
+     * @param indexResults
+     *         Index results of an input, reference intervals are added to them.
+     * @param matcher
+     *         Tests whether the intervals of a partial expression match it.
+     */
+    public void addRefIntervalsForMatchedPartialExpressions(
+            @Nonnull final BEIndexResults indexResults,
+            @Nonnull final Predicate<BEIndexExpressionResult> matcher)
+    {
+        final MutableIntSet matchedNegativeIntervalIds = new IntHashSet();
+        final List<BEIndexExpressionResult> partialExpressionResults = indexResults.getPartialExpressionResults();
+        for (int level = 0; level < this.partialLevelCount; level++)
+        {
+            if (level > 0)
+            {
+                addUnmatchedRefNegativeIntervals(this.refNegativePostings[level], indexResults, matchedNegativeIntervalIds);
+            }
+            // reference intervals added by a level can only touch partial expressions of higher levels
+            for (int i = 0; i < partialExpressionResults.size(); i++)
+            {
+                final BEIndexExpressionResult partialExpressionResult = partialExpressionResults.get(i);
+                if (this.expressionLevels[partialExpressionResult.getExpressionId()] == level
+                        && matcher.test(partialExpressionResult))
+                {
+                    addRefIntervals(partialExpressionResult, indexResults, matchedNegativeIntervalIds);
+                }
+            }
+        }
+        addUnmatchedRefNegativeIntervals(
+                this.refNegativePostings[this.partialLevelCount], indexResults, matchedNegativeIntervalIds);
+    }
 
-        final BEStringInputAttributeCategory refInputAttributeCategory = new BEStringInputAttributeCategory(REF_INPUT_ATTRIBUTE_CATEGORY);
-        refInputAttributeCategory.setTrackingEnabled(true);
-        matchedPartialExpressionNames.forEach(refInputAttributeCategory::add);
-        evaluateAttributeCategory(
-                refInputAttributeCategory,
-                this.refAttributeCategory,
-                indexResults,
-                matchedPartialExpressionResultsByName);
+    private void addRefIntervals(
+            @Nonnull final BEIndexExpressionResult partialExpressionResult,
+            @Nonnull final BEIndexResults indexResults,
+            @Nonnull final MutableIntSet matchedNegativeIntervalIds)
+    {
+        final BEPostingList postings = this.refPostings[partialExpressionResult.getExpressionId()];
+        if (null != postings)
+        {
+            final int size = postings.size();
+            for (int i = 0; i < size; i++)
+            {
+                if (postings.isNegative(i))
+                {
+                    // keep track of the fact that this negative interval was matched
+                    matchedNegativeIntervalIds.add(postings.getIntervalId(i));
+                }
+                else
+                {
+                    indexResults.addInterval(postings.toInterval(i), null, partialExpressionResult);
+                }
+            }
+        }
+    }
+
+    private static void addUnmatchedRefNegativeIntervals(
+            @Nonnull final BEPostingList negativePostings,
+            @Nonnull final BEIndexResults indexResults,
+            @Nonnull final MutableIntSet matchedNegativeIntervalIds)
+    {
+        final int size = negativePostings.size();
+        for (int i = 0; i < size; i++)
+        {
+            if (!matchedNegativeIntervalIds.contains(negativePostings.getIntervalId(i)))
+            {
+                indexResults.addInterval(negativePostings.toInterval(i));
+            }
+        }
     }
 
     /**
@@ -288,8 +678,7 @@ public class BEIndex<T> implements Serializable
     private void evaluateAttributeCategory(
             @Nullable final BEInputAttributeCategory inputAttributeCategory,
             @Nonnull final BEIndexAttributeCategory indexAttributeCategory,
-            @Nonnull final BEIndexResults indexResults,
-            @Nullable final Map<String, BEIndexExpressionResult> indexPartialExpressionResults)
+            @Nonnull final BEIndexResults indexResults)
     {
         final MutableIntSet matchedNegativeIntervalIds = new IntHashSet();
 
@@ -307,16 +696,7 @@ public class BEIndex<T> implements Serializable
                     }
                     else
                     {
-                        BEIndexExpressionResult partialExpressionResult = null;
-                        if (indexPartialExpressionResults != null && matchedInputValue instanceof BEStringInputAttributeCategory)
-                        {
-                            partialExpressionResult = ((BEStringInputAttributeCategory) matchedInputValue).getValues()
-                                    .stream()
-                                    .findFirst()
-                                    .map(indexPartialExpressionResults::get)
-                                    .orElse(null);
-                        }
-                        indexResults.addInterval(interval, matchedInputValue, partialExpressionResult);
+                        indexResults.addInterval(interval, matchedInputValue, null);
                     }
                 }
             });
@@ -329,6 +709,269 @@ public class BEIndex<T> implements Serializable
                 .forEach(indexResults::addInterval);
     }
 
+    /**
+     * Finds all full expressions matched by the specified input and adds their data to the specified results.
+     *
+     * Unlike {@link #findMatchingExpressionIntervals(BEInput)} this does not track which input values matched each
+     * expression, all intermediate state is kept in the specified context which is reused between evaluations so that
+     * nothing is allocated other than what the results collection allocates.
+     *
+     * @param input
+     *         Input attribute/value assignments to evaluate.
+     * @param context
+     *         Evaluation context to hold intermediate state, must not be used concurrently by multiple threads.
+     * @param results
+     *         Collection to add data of matched expressions to.
+     */
+    public void findMatchingExpressions(
+            @Nonnull final BEInput input,
+            @Nonnull final BEEvaluationContext context,
+            @Nonnull final Collection<? super T> results)
+    {
+        findMatchingExpressions(input, getEvaluatedAttributeCategories(), context, results);
+    }
+
+    /**
+     * Finds all full expressions matched by each of the specified inputs and adds their data to the results for that
+     * input.
+     *
+     * Attribute values shared by several inputs of the batch are only looked up in the index once, the postings found
+     * for each distinct value are reused for every input with that value.
+     *
+     * @param inputs
+     *         Inputs to evaluate.
+     * @param context
+     *         Evaluation context to hold intermediate state, must not be used concurrently by multiple threads.
+     * @param results
+     *         Collections to add data of matched expressions to, one per input in the same order as the inputs.
+     */
+    public void findMatchingExpressions(
+            @Nonnull final List<BEInput> inputs,
+            @Nonnull final BEEvaluationContext context,
+            @Nonnull final List<? extends Collection<? super T>> results)
+    {
+        if (inputs.size() != results.size())
+        {
+            throw new IllegalArgumentException("Expected " + inputs.size() + " results but was passed " + results.size());
+        }
+
+        final BEIndexAttributeCategory[] evaluatedAttributeCategories = getEvaluatedAttributeCategories();
+        final BEIndexAttributeCategory[] batchAttributeCategories = new BEIndexAttributeCategory[evaluatedAttributeCategories.length];
+        for (int i = 0; i < batchAttributeCategories.length; i++)
+        {
+            batchAttributeCategories[i] = new BEBatchIndexAttributeCategory(evaluatedAttributeCategories[i]);
+        }
+
+        for (int i = 0; i < inputs.size(); i++)
+        {
+            findMatchingExpressions(inputs.get(i), batchAttributeCategories, context, results.get(i));
+        }
+    }
+
+    private void findMatchingExpressions(
+            @Nonnull final BEInput input,
+            @Nonnull final BEIndexAttributeCategory[] attributeCategories,
+            @Nonnull final BEEvaluationContext context,
+            @Nonnull final Collection<? super T> results)
+    {
+        context.reset(this);
+
+        // statistics are only collected when there is a listener, the clock isn't read otherwise
+        final BEEvaluationListener listener = this.evaluationListener;
+        final BEEvaluationStatistics statistics = null == listener ? null : context.getStatistics();
+        long phaseStart = 0L;
+        if (null != statistics)
+        {
+            statistics.reset();
+            phaseStart = System.nanoTime();
+        }
+
+        // add intervals that match the attribute categories present in the input
+        if (null != input.getSchema() && input.getSchema() == this.inputSchema)
+        {
+            final int ordinalCount = input.getOrdinalCount();
+            for (int i = 0; i < ordinalCount; i++)
+            {
+                final int ordinal = input.getOrdinal(i);
+                final BEInputAttributeCategory inputAttributeCategory = input.getCategory(ordinal);
+                inputAttributeCategory.forEachMatchedPostings(attributeCategories[ordinal], context.getPostingsCollector());
+                if (null != statistics)
+                {
+                    statistics.addCategory(inputAttributeCategory.getValueCount());
+                }
+            }
+        }
+        else
+        {
+            for (int i = 0; i < attributeCategories.length; i++)
+            {
+                final BEInputAttributeCategory inputAttributeCategory = input.getCategory(this.attributeCategoryNames[i]);
+                if (null != inputAttributeCategory)
+                {
+                    inputAttributeCategory.forEachMatchedPostings(attributeCategories[i], context.getPostingsCollector());
+                    if (null != statistics)
+                    {
+                        statistics.addCategory(inputAttributeCategory.getValueCount());
+                    }
+                }
+            }
+        }
+        if (null != statistics)
+        {
+            phaseStart = statistics.endLookup(phaseStart);
+        }
+
+        // add the unmatched negative intervals of the expressions touched so far and those matched by their negative
+        // intervals alone
+        int baselineCount = this.negativeBaseline.addTo(context, 0);
+        if (null != statistics)
+        {
+            phaseStart = statistics.endNegative(phaseStart);
+        }
+
+        // add reference intervals for partial expressions that were fully matched by the input level by level, the
+        // reference intervals of a level can only touch expressions of higher levels so each level is complete once
+        // its unmatched negative reference intervals and the baseline of newly touched expressions have been added
+        for (int level = 0; level < this.partialLevelCount; level++)
+        {
+            if (level > 0)
+            {
+                addUnmatchedNegativeIntervals(this.refNegativePostings[level], context);
+                baselineCount = this.negativeBaseline.addTo(context, baselineCount);
+            }
+            final int touchedCount = context.getTouchedCount();
+            for (int i = 0; i < touchedCount; i++)
+            {
+                final int expressionId = context.getTouchedExpressionId(i);
+                if (this.expressionMetadataProvider.isPartial(expressionId)
+                        && this.expressionLevels[expressionId] == level
+                        && matches(context, expressionId))
+                {
+                    final BEPostingList postings = this.refPostings[expressionId];
+                    if (null != postings)
+                    {
+                        context.getPostingsCollector().accept(postings);
+                    }
+                    if (null != statistics)
+                    {
+                        addMatchedExpression(statistics, expressionId);
+                    }
+                }
+            }
+        }
+        addUnmatchedNegativeIntervals(this.refNegativePostings[this.partialLevelCount], context);
+        if (null != statistics)
+        {
+            phaseStart = statistics.endPartial(phaseStart);
+        }
+
+        // expressions only touched by reference intervals still need their unmatched negative intervals
+        this.negativeBaseline.addTo(context, baselineCount);
+        if (null != statistics)
+        {
+            phaseStart = statistics.endNegative(phaseStart);
+        }
+
+        // collect the data of all matched full expressions
+        final int allTouchedCount = context.getTouchedCount();
+        for (int i = 0; i < allTouchedCount; i++)
+        {
+            final int expressionId = context.getTouchedExpressionId(i);
+            if (!this.expressionMetadataProvider.isPartial(expressionId) && matches(context, expressionId))
+            {
+                final T data = this.expressionDataProvider.get(expressionId);
+                if (null != data)
+                {
+                    results.add(data);
+                }
+                if (null != statistics)
+                {
+                    addMatchedExpression(statistics, expressionId);
+                }
+            }
+        }
+
+        if (null != statistics)
+        {
+            statistics.endMatch(phaseStart);
+            statistics.setPostingCount(context.getPostingCount());
+            statistics.setTouchedExpressionCount(allTouchedCount);
+            listener.onEvaluation(statistics);
+        }
+    }
+
+    private void addMatchedExpression(@Nonnull final BEEvaluationStatistics statistics, final int expressionId)
+    {
+        statistics.addMatchedExpression(
+                this.expressionMetadataProvider.isPartial(expressionId),
+                this.requiredIntervalCounts[expressionId] != 0,
+                this.expressionMetadataProvider.canUseBitSetMatching(expressionId));
+    }
+
+    /**
+     * @return Attribute categories to look input values up in by ordinal, those recording lookups when profiling.
+     */
+    @Nonnull
+    private BEIndexAttributeCategory[] getEvaluatedAttributeCategories()
+    {
+        final BEIndexAttributeCategory[] profiled = this.profiledAttributeCategories;
+        return null == profiled ? this.attributeCategoryArray : profiled;
+    }
+
+    /**
+     * Adds intervals for all of the specified negative postings that were not matched.
+     */
+    private static void addUnmatchedNegativeIntervals(
+            @Nonnull final BEPostingList negativePostings,
+            @Nonnull final BEEvaluationContext context)
+    {
+        final int negativePostingCount = negativePostings.size();
+        for (int i = 0; i < negativePostingCount; i++)
+        {
+            if (!context.isIntervalMarked(negativePostings.getIntervalId(i)))
+            {
+                context.addPosting(negativePostings, i);
+            }
+        }
+    }
+
+    boolean matches(@Nonnull final BEEvaluationContext context, final int expressionId)
+    {
+        return context.match(
+                expressionId,
+                this.expressionMetadataProvider.canUseBitSetMatching(expressionId),
+                this.expressionMetadataProvider.getMaxIntervalLength(expressionId));
+    }
+
+    /**
+     * Gets the materialized negative intervals of an attribute category, building them from its negative postings on
+     * first use. Concurrent first uses may each build them, any of the equal copies may be kept.
+     *
+     * @return Negative intervals of the attribute category, null if it has no negative predicates.
+     */
+    @Nullable
+    private BENegativeIntervals getNegativeIntervals(final int ordinal)
+    {
+        BENegativeIntervals[] cache = this.negativeIntervals;
+        if (null == cache)
+        {
+            cache = new BENegativeIntervals[this.attributeCategoryArray.length];
+            this.negativeIntervals = cache;
+        }
+        BENegativeIntervals intervals = cache[ordinal];
+        if (null == intervals)
+        {
+            final BEPostingList negativePostings = this.attributeCategoryArray[ordinal].getNegativePostings();
+            if (negativePostings.isEmpty())
+            {
+                return null;
+            }
+            intervals = new BENegativeIntervals(negativePostings);
+            cache[ordinal] = intervals;
+        }
+        return intervals;
+    }
+
     private BEIndexAttributeCategory newAttributeCategory(@Nonnull final String attributeCategory)
     {
         if (BEConstants.RESERVED_TYPES.contains(attributeCategory))
@@ -344,5 +987,81 @@ public class BEIndex<T> implements Serializable
     {
         this.attributeCategories.forEach(BEIndexAttributeCategory::compact);
         this.refAttributeCategory.compact();
+
+        // flatten attribute categories into arrays so that evaluation can iterate them without allocating
+        this.attributeCategoryNames = this.attributeCategories.keysView().toArray(new String[0]);
+        this.attributeCategoryArray = new BEIndexAttributeCategory[this.attributeCategoryNames.length];
+        this.negativeIntervals = null;
+        final MutableIntList negativeOrdinals = new IntArrayList();
+        for (int i = 0; i < this.attributeCategoryNames.length; i++)
+        {
+            this.attributeCategoryArray[i] = this.attributeCategories.get(this.attributeCategoryNames[i]);
+            if (!this.attributeCategoryArray[i].getNegativePostings().isEmpty())
+            {
+                negativeOrdinals.add(i);
+            }
+        }
+        this.negativeAttributeCategoryOrdinals = negativeOrdinals.toArray();
+        this.negativeBaseline = new BENegativeBaseline(this, Arrays.stream(this.attributeCategoryArray)
+                .map(BEIndexAttributeCategory::getNegativePostings)
+                .collect(Collectors.toList()));
+
+        // the ordinals of the input schema are the indexes into the flattened attribute categories
+        this.inputSchema = new BEInputSchema(this.attributeCategoryNames);
+
+        // resolve the reference intervals depending on each partial expression by id so that they aren't looked up by
+        // name when the partial expression is matched
+        this.refPostings = new BEPostingList[this.requiredIntervalCounts.length];
+        for (int expressionId = 0; expressionId < this.refPostings.length; expressionId++)
+        {
+            final BEExpressionMetadata metadata = this.expressionMetadataProvider.get(expressionId);
+            if (null != metadata && metadata.isPartial())
+            {
+                // a string attribute category passes the postings of a value to the consumer at most once
+                final int partialExpressionId = expressionId;
+                this.refAttributeCategory.getPostings(
+                        metadata.getPartialExpressionName(),
+                        postings -> this.refPostings[partialExpressionId] = postings);
+            }
+        }
+
+        // the builder assigns partial expressions ids after those of the partial expressions they reference, so the
+        // level of every expression is known by the time the reference intervals depending on it are visited
+        this.expressionLevels = new int[this.refPostings.length];
+        this.partialLevelCount = 0;
+        for (int expressionId = 0; expressionId < this.refPostings.length; expressionId++)
+        {
+            if (this.expressionMetadataProvider.isPartial(expressionId))
+            {
+                this.partialLevelCount = Math.max(this.partialLevelCount, this.expressionLevels[expressionId] + 1);
+            }
+            final BEPostingList postings = this.refPostings[expressionId];
+            if (null != postings)
+            {
+                final int size = postings.size();
+                for (int i = 0; i < size; i++)
+                {
+                    final int referencingExpressionId = postings.getExpressionId(i);
+                    this.expressionLevels[referencingExpressionId] = Math.max(
+                            this.expressionLevels[referencingExpressionId],
+                            this.expressionLevels[expressionId] + 1);
+                }
+            }
+        }
+
+        // group the negative reference intervals by the level they are evaluated at
+        this.refNegativePostings = new BEPostingList[this.partialLevelCount + 1];
+        Arrays.setAll(this.refNegativePostings, level -> new BEPostingList());
+        final BEPostingList negativePostings = this.refAttributeCategory.getNegativePostings();
+        final int negativePostingCount = negativePostings.size();
+        for (int i = 0; i < negativePostingCount; i++)
+        {
+            final int expressionId = negativePostings.getExpressionId(i);
+            final int level = this.expressionMetadataProvider.isPartial(expressionId)
+                    ? this.expressionLevels[expressionId]
+                    : this.partialLevelCount;
+            this.refNegativePostings[level].add(negativePostings, i);
+        }
+        Arrays.stream(this.refNegativePostings).forEach(BEPostingList::trimToSize);
     }
 }
@@ -1,11 +1,12 @@
 package com.amobee.freebee.evaluator.index;
 
 import com.amobee.freebee.evaluator.BEInterval;
+import com.amobee.freebee.evaluator.BEPostingList;
 import com.amobee.freebee.evaluator.evaluator.BEInputAttributeCategory;
-import lombok.Getter;
 
+import java.io.IOException;
 import java.io.Serializable;
-import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.function.Consumer;
 import javax.annotation.Nonnull;
@@ -16,20 +17,22 @@ import javax.annotation.Nullable;
  * indexed attribute values for the attribute category and intervals for any expressions that referenced that attribute
  * category in a predicate node.
  *
- * NOTE: There is only one method for adding intervals but one method per type for getting intervals. It was implemented
+ * Intervals are stored as packed {@link BEPostingList}s, the {@code getPostings} methods are used on the evaluation hot
+ * path while the {@code getIntervals} methods materialize {@link BEInterval} objects from the postings and should only
+ * be used when the interval objects are needed, e.g. when tracking matched input values.
+ *
+ * NOTE: There is only one method for adding intervals but one method per type for getting postings. It was implemented
  * this way because boxing and parsing is not so important when building the index but is highly important during
  * runtime.
  *
  * @author Michael Bond
  */
-@Getter
 public abstract class BEIndexAttributeCategory implements Serializable
 {
     private static final long serialVersionUID = -2797903862045133742L;
 
-    @SuppressWarnings("MismatchedQueryAndUpdateOfCollection")
     @Nonnull
-    private final List<BEInterval> negativeIntervals = new ArrayList<>();
+    private final BEPostingList negativePostings = new BEPostingList();
 
     /* package */ BEIndexAttributeCategory()
     {
@@ -37,6 +40,94 @@ public abstract class BEIndexAttributeCategory implements Serializable
 
     public abstract void addInterval(@Nonnull Object attributeValue, @Nonnull BEInterval interval);
 
+    /**
+     * Get postings matching the specified attribute value.
+     *
+     * @param attributeValue
+     *         Attribute value to get postings for.
+     * @param consumer
+     *         Consumer to call with matched postings.
+     */
+    public void getPostings(final byte attributeValue, @Nonnull final Consumer<BEPostingList> consumer)
+    {
+        throw new UnsupportedOperationException("Cowardly refusal to risk loosing precision");
+    }
+
+    /**
+     * Get postings matching the specified attribute value.
+     *
+     * @param attributeValue
+     *         Attribute value to get postings for.
+     * @param consumer
+     *         Consumer to call with matched postings.
+     */
+    public void getPostings(final double attributeValue, @Nonnull final Consumer<BEPostingList> consumer)
+    {
+        throw new UnsupportedOperationException("Cowardly refusal to risk loosing precision");
+    }
+
+    /**
+     * Get postings matching the specified attribute value.
+     *
+     * @param attributeValue
+     *         Attribute value to get postings for.
+     * @param consumer
+     *         Consumer to call with matched postings.
+     */
+    public void getPostings(final int attributeValue, @Nonnull final Consumer<BEPostingList> consumer)
+    {
+        throw new UnsupportedOperationException("Cowardly refusal to risk loosing precision");
+    }
+
+    /**
+     * Get postings matching the specified attribute value.
+     *
+     * @param attributeValue
+     *         Attribute value to get postings for.
+     * @param consumer
+     *         Consumer to call with matched postings.
+     */
+    public void getPostings(final long attributeValue, @Nonnull final Consumer<BEPostingList> consumer)
+    {
+        throw new UnsupportedOperationException("Cowardly refusal to risk loosing precision");
+    }
+
+    /**
+     * Get postings matching the specified attribute value.
+     *
+     * @param attributeValue
+     *         Attribute value to get postings for.
+     * @param consumer
+     *         Consumer to call with matched postings.
+     */
+    public abstract void getPostings(@Nonnull String attributeValue, @Nonnull Consumer<BEPostingList> consumer);
+
+    /**
+     * Get the dictionary of the attribute values of this category, if the category has one. Exact match string
+     * categories have a value dictionary, other categories look up their values by value only.
+     *
+     * @return Value dictionary or null if values can't be looked up by id.
+     */
+    @Nullable
+    public BEValueDictionary getValueDictionary()
+    {
+        return null;
+    }
+
+    /**
+     * Get postings matching the attribute value with the specified id in the {@link #getValueDictionary() value
+     * dictionary} of this category.
+     *
+     * @param valueId
+     *         Id of the attribute value to get postings for.
+     * @param consumer
+     *         Consumer to call with matched postings.
+     */
+    public void getPostingsByValueId(final int valueId, @Nonnull final Consumer<BEPostingList> consumer)
+    {
+        throw new UnsupportedOperationException("Attribute category has no value dictionary");
+    }
+
     /**
      * Get intervals matching the specified attribute value.
      *
@@ -47,7 +138,7 @@ public abstract class BEIndexAttributeCategory implements Serializable
      */
     public void getIntervals(final byte attributeValue, @Nonnull final Consumer<List<BEInterval>> consumer)
     {
-        throw new UnsupportedOperationException("Cowardly refusal to risk loosing precision");
+        getPostings(attributeValue, postings -> consumer.accept(postings.toIntervals()));
     }
 
     /**
@@ -62,7 +153,7 @@ public abstract class BEIndexAttributeCategory implements Serializable
      */
     public void getIntervals(final byte attributeValue, @Nullable final BEInputAttributeCategory matchedInput, @Nonnull final BEAttributeCategoryMatchedIntervalConsumer consumer)
     {
-        throw new UnsupportedOperationException("Cowardly refusal to risk loosing precision");
+        getPostings(attributeValue, postings -> consumer.accept(matchedInput, postings.toIntervals()));
     }
 
     /**
@@ -75,7 +166,7 @@ public abstract class BEIndexAttributeCategory implements Serializable
      */
     public void getIntervals(final double attributeValue, @Nonnull final Consumer<List<BEInterval>> consumer)
     {
-        throw new UnsupportedOperationException("Cowardly refusal to risk loosing precision");
+        getPostings(attributeValue, postings -> consumer.accept(postings.toIntervals()));
     }
 
     /**
@@ -90,7 +181,7 @@ public abstract class BEIndexAttributeCategory implements Serializable
      */
     public void getIntervals(final double attributeValue, @Nullable final BEInputAttributeCategory matchedInput, @Nonnull final BEAttributeCategoryMatchedIntervalConsumer consumer)
     {
-        throw new UnsupportedOperationException("Cowardly refusal to risk loosing precision");
+        getPostings(attributeValue, postings -> consumer.accept(matchedInput, postings.toIntervals()));
     }
 
     /**
@@ -103,7 +194,7 @@ public abstract class BEIndexAttributeCategory implements Serializable
      */
     public void getIntervals(final int attributeValue, @Nonnull final Consumer<List<BEInterval>> consumer)
     {
-        throw new UnsupportedOperationException("Cowardly refusal to risk loosing precision");
+        getPostings(attributeValue, postings -> consumer.accept(postings.toIntervals()));
     }
 
     /**
@@ -118,7 +209,7 @@ public abstract class BEIndexAttributeCategory implements Serializable
      */
     public void getIntervals(final int attributeValue, @Nullable final BEInputAttributeCategory matchedInput, @Nonnull final BEAttributeCategoryMatchedIntervalConsumer consumer)
     {
-        throw new UnsupportedOperationException("Cowardly refusal to risk loosing precision");
+        getPostings(attributeValue, postings -> consumer.accept(matchedInput, postings.toIntervals()));
     }
 
     /**
@@ -131,7 +222,7 @@ public abstract class BEIndexAttributeCategory implements Serializable
      */
     public void getIntervals(final long attributeValue, @Nonnull final Consumer<List<BEInterval>> consumer)
     {
-        throw new UnsupportedOperationException("Cowardly refusal to risk loosing precision");
+        getPostings(attributeValue, postings -> consumer.accept(postings.toIntervals()));
     }
 
     /**
@@ -146,7 +237,7 @@ public abstract class BEIndexAttributeCategory implements Serializable
      */
     public void getIntervals(final long attributeValue, @Nullable final BEInputAttributeCategory matchedInput, @Nonnull final BEAttributeCategoryMatchedIntervalConsumer consumer)
     {
-        throw new UnsupportedOperationException("Cowardly refusal to risk loosing precision");
+        getPostings(attributeValue, postings -> consumer.accept(matchedInput, postings.toIntervals()));
     }
 
     /**
@@ -157,7 +248,10 @@ public abstract class BEIndexAttributeCategory implements Serializable
      * @param consumer
      *         Consumer to call with matching intervals.
      */
-    public abstract void getIntervals(@Nonnull String attributeValue, @Nonnull Consumer<List<BEInterval>> consumer);
+    public void getIntervals(@Nonnull final String attributeValue, @Nonnull final Consumer<List<BEInterval>> consumer)
+    {
+        getPostings(attributeValue, postings -> consumer.accept(postings.toIntervals()));
+    }
 
     /**
      * Get intervals matching the specified attribute value.
@@ -169,39 +263,115 @@ public abstract class BEIndexAttributeCategory implements Serializable
      * @param consumer
      *         Consumer to call with matching intervals.
      */
-    public abstract void getIntervals(
-            @Nonnull String attributeValue,
-            @Nullable BEInputAttributeCategory matchedInput,
-            @Nonnull BEAttributeCategoryMatchedIntervalConsumer consumer);
+    public void getIntervals(
+            @Nonnull final String attributeValue,
+            @Nullable final BEInputAttributeCategory matchedInput,
+            @Nonnull final BEAttributeCategoryMatchedIntervalConsumer consumer)
+    {
+        getPostings(attributeValue, postings -> consumer.accept(matchedInput, postings.toIntervals()));
+    }
+
+    /**
+     * Gets the "wildcard" postings of all negative predicates in this attribute category. These postings are not
+     * flagged negative, they are added for an expression when the negative predicate was not matched by the input.
+     *
+     * @return Postings of all negative predicates.
+     */
+    @Nonnull
+    public BEPostingList getNegativePostings()
+    {
+        return this.negativePostings;
+    }
+
+    /**
+     * Materializes the "wildcard" intervals of all negative predicates in this attribute category.
+     *
+     * @return Intervals of all negative predicates.
+     * @see #getNegativePostings()
+     */
+    @Nonnull
+    public List<BEInterval> getNegativeIntervals()
+    {
+        return getNegativePostings().toIntervals();
+    }
 
     /**
      * Minimize the amount of memory used by the index
      */
-    protected abstract void compact();
+    protected void compact()
+    {
+        this.negativePostings.trimToSize();
+    }
 
-    protected void addNegativeInterval(@Nonnull final BEInterval interval)
+    /**
+     * Adds the postings of each attribute value of this category and the size of its lookup structures to the
+     * statistics of the index. Negative postings are added by the collector.
+     *
+     * @param collector
+     *         Collector of the statistics of the index.
+     * @see BEIndex#computeStatistics()
+     */
+    void collectStatistics(@Nonnull final BEStatisticsCollector collector)
     {
-        this.negativeIntervals.add(new BEInterval(interval, false));
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " does not support statistics");
     }
 
-    protected void callConsumer(
-            @Nullable final List<BEInterval> intervals,
-            @Nonnull final Consumer<List<BEInterval>> consumer)
+    /**
+     * Writes the negative postings, attribute values and postings of this category in the binary index format.
+     *
+     * @param out
+     *         Output to write to.
+     * @see BEIndexWriter
+     */
+    void write(@Nonnull final BEIndexOutput out) throws IOException
     {
-        if (null != intervals)
-        {
-            consumer.accept(intervals);
-        }
+        out.writePostings(Collections.singletonList(this.negativePostings));
+        writeValues(out);
+    }
+
+    /**
+     * Reads the negative postings, attribute values and postings of this category written by
+     * {@link #write(BEIndexOutput)}.
+     *
+     * @param in
+     *         Input to read from.
+     * @see BEIndexReader
+     */
+    void read(@Nonnull final BEIndexInput in) throws IOException
+    {
+        this.negativePostings.addAll(in.readPostings(1)[0]);
+        readValues(in);
+    }
+
+    /**
+     * Writes the attribute values and postings of this category. Values are written in sorted order so that they can
+     * be binary searched in place when the index is memory-mapped.
+     *
+     * @param out
+     *         Output to write to.
+     */
+    void writeValues(@Nonnull final BEIndexOutput out) throws IOException
+    {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " does not support the binary index format");
+    }
+
+    void readValues(@Nonnull final BEIndexInput in) throws IOException
+    {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " does not support the binary index format");
+    }
+
+    protected void addNegativeInterval(@Nonnull final BEInterval interval)
+    {
+        this.negativePostings.add(interval, false);
     }
 
     protected void callConsumer(
-            @Nullable final List<BEInterval> intervals,
-            @Nullable final BEInputAttributeCategory matchedInput,
-            @Nonnull final BEAttributeCategoryMatchedIntervalConsumer consumer)
+            @Nullable final BEPostingList postings,
+            @Nonnull final Consumer<BEPostingList> consumer)
     {
-        if (null != intervals)
+        if (null != postings)
         {
-            consumer.accept(matchedInput, intervals);
+            consumer.accept(postings);
         }
     }
 }
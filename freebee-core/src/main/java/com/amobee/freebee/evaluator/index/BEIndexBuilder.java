@@ -7,6 +7,7 @@ import com.amobee.freebee.evaluator.interval.BEDefaultIntervalOptimizer;
 import com.amobee.freebee.evaluator.interval.BEIntervalLabeler;
 import com.amobee.freebee.evaluator.interval.BEIntervalOptimizer;
 import com.amobee.freebee.evaluator.interval.BENodeInterval;
+import com.amobee.freebee.expression.BEConjunctionNode;
 import com.amobee.freebee.expression.BEConstants;
 import com.amobee.freebee.expression.BEFormNormalizer;
 import com.amobee.freebee.expression.BENode;
@@ -15,13 +16,20 @@ import com.amobee.freebee.expression.BEReferenceNode;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.stream.Collectors;
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -61,6 +69,9 @@ public class BEIndexBuilder<T>
     private final Map<String, BENode> partialExpressions = new HashMap<>();
 
     private boolean defaultToCaseInsensitiveDataTypeConfig;
+    private int parallelism = 1;
+    private BEEvaluationListener evaluationListener;
+    private BEValueProfiler valueProfiler;
 
     public BEIndexBuilder()
     {
@@ -270,13 +281,166 @@ public class BEIndexBuilder<T>
         return this;
     }
 
+    /**
+     * Number of threads used to build the index, defaults to 1 which builds the index on the calling thread. With more
+     * threads expressions are normalized and labeled in parallel and attribute categories are populated in parallel.
+     * Expression and interval ids are assigned in the same order either way so the resulting index is identical to one
+     * built on a single thread.
+     *
+     * @param parallelism
+     *         Number of threads to build the index with.
+     * @return the Builder
+     */
+    @Nonnull
+    public BEIndexBuilder<T> parallelism(final int parallelism)
+    {
+        if (parallelism < 1)
+        {
+            throw new IllegalArgumentException("parallelism must be at least 1 but was " + parallelism);
+        }
+        this.parallelism = parallelism;
+        return this;
+    }
+
+    /**
+     * Listener notified with the statistics of each evaluation of the built index, by default there is no listener and
+     * no statistics are collected.
+     *
+     * @param evaluationListener
+     *         Listener to notify, null for none.
+     * @return the Builder
+     */
+    @Nonnull
+    public BEIndexBuilder<T> evaluationListener(@Nullable final BEEvaluationListener evaluationListener)
+    {
+        this.evaluationListener = evaluationListener;
+        return this;
+    }
+
+    /**
+     * Profiler that records sampled lookups of input values in the built index, by default lookups are not profiled.
+     *
+     * @param valueProfiler
+     *         Profiler to record lookups with, null for none.
+     * @return the Builder
+     */
+    @Nonnull
+    public BEIndexBuilder<T> valueProfiler(@Nullable final BEValueProfiler valueProfiler)
+    {
+        this.valueProfiler = valueProfiler;
+        return this;
+    }
+
+    /**
+     * @return Expressions added to this builder.
+     */
+    @Nonnull
+    public List<BEExpressionInfo<T>> getExpressions()
+    {
+        return Collections.unmodifiableList(this.expressions);
+    }
+
+    /**
+     * @return Partial expressions added to this builder by id.
+     */
+    @Nonnull
+    public Map<String, BENode> getPartialExpressions()
+    {
+        return Collections.unmodifiableMap(this.partialExpressions);
+    }
+
+    /**
+     * Creates a new builder with the same configuration as this builder, i.e. data type configurations, case
+     * sensitivity, interval labeling, evaluation listener and value profiler, but without any expressions or partial
+     * expressions.
+     *
+     * @return New builder.
+     */
+    @Nonnull
+    public BEIndexBuilder<T> copyConfiguration()
+    {
+        final BEIndexBuilder<T> builder = new BEIndexBuilder<>(
+                this.intervalLabeler,
+                this.intervalOptimizer,
+                this.hashProvider,
+                this.expressionFormNormalizers);
+        builder.addDataTypeConfigs(this.dataTypeConfigs);
+        builder.caseInsensitive(this.defaultToCaseInsensitiveDataTypeConfig);
+        builder.parallelism(this.parallelism);
+        builder.evaluationListener(this.evaluationListener);
+        builder.valueProfiler(this.valueProfiler);
+        return builder;
+    }
+
+    /**
+     * Partitions the expressions added to this builder into separate builders, one per shard, that each build an index
+     * for their share of the expressions. Every shard builder gets the data type configurations of this builder and a
+     * copy of the partial expressions referenced by its expressions.
+     *
+     * @param shardCount
+     *         Maximum number of shards, fewer builders are returned if there are not enough expressions.
+     * @param strategy
+     *         Strategy used to assign expressions to shards.
+     * @return Builders for each shard.
+     */
+    @Nonnull
+    public List<BEIndexBuilder<T>> partition(final int shardCount, @Nonnull final BEShardingStrategy strategy)
+    {
+        final List<BEIndexBuilder<T>> builders = new ArrayList<>(shardCount);
+        for (final List<BEExpressionInfo<T>> shardExpressions
+                : BEExpressionPartitioner.partition(this.expressions, this.partialExpressions, shardCount, strategy))
+        {
+            final BEIndexBuilder<T> builder = copyConfiguration();
+            shardExpressions.forEach(info -> builder.addExpression(info.getData(), info.getExpression()));
+
+            final List<BENode> nodes = shardExpressions.stream().map(BEExpressionInfo::getExpression).collect(Collectors.toList());
+            BEExpressionPartitioner.getReferencedPartialExpressions(nodes, this.partialExpressions).forEach(id -> {
+                final BENode partialExpression = this.partialExpressions.get(id);
+                if (null != partialExpression)
+                {
+                    builder.addPartialExpression(id, partialExpression);
+                }
+            });
+            builders.add(builder);
+        }
+        return builders;
+    }
+
     @Nonnull
     public BEIndex<T> build()
     {
+        if (this.parallelism <= 1)
+        {
+            return build(null);
+        }
 
+        final ForkJoinPool pool = new ForkJoinPool(this.parallelism);
+        try
+        {
+            return build(pool);
+        }
+        finally
+        {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Builds the index in three steps, expressions are normalized and labeled, then expression and interval ids are
+     * assigned in a single sequential pass and finally the intervals are added to the attribute categories. With a
+     * pool the first and last steps run in parallel, the last step one attribute category per task, and the hash is
+     * computed while the index is being built.
+     */
+    @Nonnull
+    private BEIndex<T> build(@Nullable final ForkJoinPool pool)
+    {
         final BEIndexIntervalMaker indexIntervalMaker = new BEIndexIntervalMaker();
-        final BEExpressionMetadataProviderImpl expressionMetadataProvider = new BEExpressionMetadataProviderImpl();
-        final BEExpressionDataProviderImpl<T> expressionDataProvider = new BEExpressionDataProviderImpl<>();
+        // expression ids are assigned densely starting at 0 so array-backed providers can be used
+        final int totalExpressionCount = this.partialExpressions.size() + this.expressions.size();
+        final BEArrayExpressionMetadataProvider expressionMetadataProvider = new BEArrayExpressionMetadataProvider(totalExpressionCount);
+        final BEArrayExpressionDataProvider<T> expressionDataProvider = new BEArrayExpressionDataProvider<>(totalExpressionCount);
+        // number of intervals that must be matched for pure conjunctions, zero for all other expressions
+        final int[] requiredIntervalCounts = new int[totalExpressionCount];
 
         final BEDataTypeConfigSupplier dataTypeConfigSupplier = BEDataTypeConfigLookupSupplier.builder()
                 .addAllDataTypeConfigs(this.dataTypeConfigs)
@@ -289,89 +453,101 @@ public class BEIndexBuilder<T>
 
         final BEIndex<T> index = new BEIndex<>(dataTypeConfigSupplier);
 
-        final AtomicInteger nextExpressionId = new AtomicInteger(0);
-        final AtomicInteger nextIntervalId = new AtomicInteger(0);
-
-        // The following two foreach blocks are very similar.
-        // The first processes partial expressions that are referenced from the full expressions
-        // The second processes full (non partial) expression
-        // TODO, investigate extracting the common logic from partial/full expression indexing into shared code
-
-        // add partial expression intervals to index
-        this.partialExpressions.forEach((partialExpressionName, partialExpression) -> {
-            final int expressionId = nextExpressionId.getAndIncrement();
-            final BENode normalizedPartialExpression = normalize(partialExpression);
-            final short intervalLength = normalizedPartialExpression.getNumPredicates();
-            final Collection<BENodeInterval> intervals = this.intervalLabeler.labelExpression(normalizedPartialExpression);
+        final ForkJoinTask<Integer> hashTask = null == pool
+                ? null
+                : pool.submit(() -> this.hashProvider.computeHash(this.expressions, this.partialExpressions, dataTypeConfigSupplier));
+
+        // partial expressions are labeled first so they get the lowest expression ids, each after the partial
+        // expressions it references
+        final List<LabeledExpression<T>> labeledExpressions = new ArrayList<>(totalExpressionCount);
+        orderPartialExpressions().forEach(partialExpressionName -> labeledExpressions.add(
+                new LabeledExpression<>(partialExpressionName, null, this.partialExpressions.get(partialExpressionName))));
+        this.expressions.forEach(expressionInfo ->
+                labeledExpressions.add(new LabeledExpression<>(null, expressionInfo.getData(), expressionInfo.getExpression())));
+        if (null == pool)
+        {
+            labeledExpressions.forEach(this::label);
+        }
+        else
+        {
+            pool.invoke(ForkJoinTask.adapt(() -> labeledExpressions.parallelStream().forEach(this::label)));
+        }
 
-            final boolean useBitSetMatchingAlgorithm =
-                    this.intervalOptimizer.canUseBitSetMatching(intervalLength, intervals);
+        // intervals of each attribute category in id order, only used when attribute categories are populated in
+        // parallel
+        final Map<BEIndexAttributeCategory, List<PendingInterval>> pendingIntervals = new LinkedHashMap<>();
 
-            intervals.forEach(interval -> {
-                final int intervalId = nextIntervalId.getAndIncrement();
-                final BEExpressionMetadata expressionMetadata =
-                        new BEExpressionMetadataImpl(expressionId, intervalLength, useBitSetMatchingAlgorithm, true, partialExpressionName);
+        int nextIntervalId = 0;
+        for (int expressionId = 0; expressionId < labeledExpressions.size(); expressionId++)
+        {
+            final LabeledExpression<T> labeledExpression = labeledExpressions.get(expressionId);
+            final boolean partial = null != labeledExpression.partialExpressionName;
+            final BEExpressionMetadata expressionMetadata = partial
+                    ? new BEExpressionMetadataImpl(
+                            expressionId,
+                            labeledExpression.intervalLength,
+                            labeledExpression.useBitSetMatching,
+                            true,
+                            labeledExpression.partialExpressionName)
+                    : new BEExpressionMetadataImpl(
+                            expressionId,
+                            labeledExpression.intervalLength,
+                            labeledExpression.useBitSetMatching);
+            if (labeledExpression.useCountMatching)
+            {
+                requiredIntervalCounts[expressionId] = labeledExpression.intervals.size();
+            }
 
+            for (final BENodeInterval interval : labeledExpression.intervals)
+            {
                 final BENode leafNode = interval.getNode();
-                final BEInterval indexInterval = indexIntervalMaker.make(expressionId, intervalId, useBitSetMatchingAlgorithm, interval);
+                final BEInterval indexInterval = indexIntervalMaker.make(
+                        expressionId,
+                        nextIntervalId++,
+                        labeledExpression.useBitSetMatching,
+                        interval);
+                final BEIndexAttributeCategory indexAttributeCategory;
                 switch (leafNode.getType().toUpperCase())
                 {
                     case BEConstants.NODE_TYPE_AND:
                     case BEConstants.NODE_TYPE_OR:
                         throw new IllegalStateException("Unexpected conjunction node for interval (only leaf nodes expected here)");
                     case BEConstants.NODE_TYPE_REFERENCE:
-                            throw new IllegalArgumentException(
-                                    "Reference to partial expression found in partial expression '" + expressionId +
-                                            "'. Partial expressions may not contain references.");
+                        indexAttributeCategory = getReferenceAttributeCategory(index, (BEReferenceNode) leafNode);
+                        break;
                     default:
-                        addPredicate(index, (BEPredicateNode) leafNode, indexInterval);
-                        expressionMetadataProvider.put(expressionId, expressionMetadata);
+                        indexAttributeCategory = getPredicateAttributeCategory(index, (BEPredicateNode) leafNode);
                         break;
                 }
-            });
-        });
-
-        // add expression intervals to index
-        this.expressions.forEach(expressionInfo -> {
-            final int expressionId = nextExpressionId.getAndIncrement();
-            final BENode normalizedExpression = normalize(expressionInfo.getExpression());
-            final short intervalLength = normalizedExpression.getNumPredicates();
-            final Collection<BENodeInterval> intervals = this.intervalLabeler.labelExpression(normalizedExpression);
-
-            final boolean useBitSetMatchingAlgorithm =
-                    this.intervalOptimizer.canUseBitSetMatching(intervalLength, intervals);
-
-            intervals.forEach(interval -> {
-                final int intervalId = nextIntervalId.getAndIncrement();
-                final BEExpressionMetadata expressionMetadata =
-                        new BEExpressionMetadataImpl(expressionId, intervalLength, useBitSetMatchingAlgorithm);
 
-                final BENode leafNode = interval.getNode();
-                final BEInterval indexInterval = indexIntervalMaker.make(expressionId, intervalId, useBitSetMatchingAlgorithm, interval);
-                switch (leafNode.getType().toUpperCase())
+                if (null == pool)
                 {
-                    case BEConstants.NODE_TYPE_AND:
-                    case BEConstants.NODE_TYPE_OR:
-                        throw new IllegalStateException("Unexpected conjunction node for interval (only leaf nodes expected here)");
-                    case BEConstants.NODE_TYPE_REFERENCE:
-                        addReference(index, (BEReferenceNode) leafNode, indexInterval);
-                        expressionDataProvider.put(expressionId, expressionInfo.getData());
-                        expressionMetadataProvider.put(expressionId, expressionMetadata);
-                        break;
-                    default:
-                        addPredicate(index, (BEPredicateNode) leafNode, indexInterval);
-                        expressionDataProvider.put(expressionId, expressionInfo.getData());
-                        expressionMetadataProvider.put(expressionId, expressionMetadata);
-                        break;
+                    addIntervals(indexAttributeCategory, leafNode, indexInterval);
                 }
-            });
+                else
+                {
+                    pendingIntervals.computeIfAbsent(indexAttributeCategory, category -> new ArrayList<>())
+                            .add(new PendingInterval(leafNode, indexInterval));
+                }
+                if (!partial)
+                {
+                    expressionDataProvider.put(expressionId, labeledExpression.data);
+                }
+                expressionMetadataProvider.put(expressionId, expressionMetadata);
+            }
+        }
 
-        });
+        if (null != pool)
+        {
+            pool.invoke(ForkJoinTask.adapt(() -> pendingIntervals.entrySet().parallelStream().forEach(entry ->
+                    entry.getValue().forEach(pending -> addIntervals(entry.getKey(), pending.node, pending.interval)))));
+        }
 
-        final int expressionCount = nextExpressionId.get();
-        final int intervalCount = nextIntervalId.get();
+        final int expressionCount = labeledExpressions.size();
+        final int intervalCount = nextIntervalId;
         final int bitSetExpressions = (int) expressionMetadataProvider.getAll().stream().filter(BEExpressionMetadata::canUseBitSetMatching).count();
         final int intervalExpressions = expressionCount - bitSetExpressions;
+        final int countExpressions = (int) Arrays.stream(requiredIntervalCounts).filter(count -> count > 0).count();
 
         final BEIndexMetrics metrics = new BEIndexMetrics();
         metrics.setExpressionCount(expressionCount);
@@ -380,20 +556,131 @@ public class BEIndexBuilder<T>
         metrics.setIntervalCount(intervalCount);
         metrics.setExpressionCountWithBitSetEvaluation(bitSetExpressions);
         metrics.setExpressionCountWithIntervalEvaluation(intervalExpressions);
+        metrics.setExpressionCountWithCountEvaluation(countExpressions);
 
-        final int hashCode = this.hashProvider.computeHash(this.expressions, this.partialExpressions, dataTypeConfigSupplier);
+        final int hashCode = null == hashTask
+                ? this.hashProvider.computeHash(this.expressions, this.partialExpressions, dataTypeConfigSupplier)
+                : hashTask.join();
 
         index.setHashCode(hashCode);
         index.setIndexMetrics(metrics);
         index.setExpressionMetadataProvider(expressionMetadataProvider);
         index.setExpressionDataProvider(expressionDataProvider);
+        setEvaluationLayout(index, expressionMetadataProvider, requiredIntervalCounts, expressionCount);
         index.compact();
+        index.setEvaluationListener(this.evaluationListener);
+        index.setValueProfiler(this.valueProfiler);
 
         logger.debug("Finished building index: {}", metrics);
 
         return index;
     }
 
+    /**
+     * Orders the partial expressions so that every partial expression comes after the partial expressions it
+     * references, partial expressions may reference other partial expressions as long as they don't reference each
+     * other in a cycle.
+     *
+     * @return Ids of all partial expressions in dependency order.
+     * @throws IllegalArgumentException
+     *         if partial expressions reference each other in a cycle.
+     */
+    @Nonnull
+    private Collection<String> orderPartialExpressions()
+    {
+        final Set<String> ordered = new LinkedHashSet<>();
+        final List<String> path = new ArrayList<>();
+        this.partialExpressions.keySet().forEach(id -> orderPartialExpression(id, ordered, path));
+        return ordered;
+    }
+
+    private void orderPartialExpression(
+            @Nonnull final String id,
+            @Nonnull final Set<String> ordered,
+            @Nonnull final List<String> path)
+    {
+        final BENode partialExpression = this.partialExpressions.get(id);
+        if (ordered.contains(id) || null == partialExpression)
+        {
+            // references to undefined partial expressions are reported when their intervals are added
+            return;
+        }
+        final int cycleStart = path.indexOf(id);
+        if (cycleStart >= 0)
+        {
+            throw new IllegalArgumentException("Partial expressions reference each other in a cycle: "
+                    + String.join(" -> ", path.subList(cycleStart, path.size())) + " -> " + id);
+        }
+
+        path.add(id);
+        final Set<String> references = new LinkedHashSet<>();
+        collectReferences(partialExpression, references);
+        references.forEach(reference -> orderPartialExpression(reference, ordered, path));
+        path.remove(path.size() - 1);
+        ordered.add(id);
+    }
+
+    private static void collectReferences(@Nonnull final BENode node, @Nonnull final Set<String> references)
+    {
+        if (node instanceof BEConjunctionNode)
+        {
+            ((BEConjunctionNode) node).getValues().forEach(child -> collectReferences(child, references));
+        }
+        else if (node instanceof BEReferenceNode)
+        {
+            ((BEReferenceNode) node).getValues().forEach(value -> references.add(value.getId()));
+        }
+    }
+
+    /**
+     * Normalizes and labels an expression and decides how it is matched, this doesn't modify the builder so it can be
+     * called for multiple expressions in parallel.
+     */
+    private void label(@Nonnull final LabeledExpression<T> labeledExpression)
+    {
+        final BENode normalizedExpression = normalize(labeledExpression.expression);
+        final short intervalLength = normalizedExpression.getNumPredicates();
+        final Collection<BENodeInterval> intervals = this.intervalLabeler.labelExpression(normalizedExpression);
+
+        labeledExpression.intervalLength = intervalLength;
+        labeledExpression.intervals = intervals;
+        labeledExpression.useBitSetMatching = this.intervalOptimizer.canUseBitSetMatching(intervalLength, intervals);
+        labeledExpression.useCountMatching = this.intervalOptimizer.canUseCountMatching(intervalLength, intervals);
+    }
+
+    /**
+     * Lays out the matched bit words used by {@link BEEvaluationContext}, expressions that use bitset matching get
+     * enough 64 bit words to hold their entire interval, other expressions get none. The full mask of the last word
+     * of each expression is precomputed so that completion is checked with a single compare per word. Pure
+     * conjunctions are matched by counting their intervals so they don't need any words either.
+     */
+    private void setEvaluationLayout(
+            @Nonnull final BEIndex<T> index,
+            @Nonnull final BEExpressionMetadataProvider expressionMetadataProvider,
+            @Nonnull final int[] requiredIntervalCounts,
+            final int expressionCount)
+    {
+        final int[] wordOffsets = new int[expressionCount + 1];
+        final long[] fullMasks = new long[expressionCount];
+        int maxIntervalLength = 0;
+        for (int expressionId = 0; expressionId < expressionCount; expressionId++)
+        {
+            final BEExpressionMetadata metadata = expressionMetadataProvider.get(expressionId);
+            int words = 0;
+            if (null != metadata)
+            {
+                maxIntervalLength = Math.max(maxIntervalLength, metadata.getMaxIntervalLength());
+                if (metadata.canUseBitSetMatching() && requiredIntervalCounts[expressionId] == 0)
+                {
+                    words = BEBitWords.wordCount(metadata.getMaxIntervalLength());
+                    fullMasks[expressionId] = BEBitWords.fullMask(metadata.getMaxIntervalLength());
+                }
+            }
+            wordOffsets[expressionId + 1] = wordOffsets[expressionId] + words;
+        }
+        index.setEvaluationLayout(wordOffsets, fullMasks, requiredIntervalCounts, maxIntervalLength);
+    }
+
     private BENode normalize(final BENode node)
     {
         BENode normalizedExpresion = node;
@@ -407,26 +694,23 @@ public class BEIndexBuilder<T>
         return normalizedExpresion;
     }
 
-    private void addPredicate(
+    @Nonnull
+    private BEIndexAttributeCategory getPredicateAttributeCategory(
             @Nonnull final BEIndex<T> index,
-            @Nonnull final BEPredicateNode node,
-            @Nonnull final BEInterval interval)
+            @Nonnull final BEPredicateNode node)
     {
         final String nodeType = node.getType();
         if (nodeTypeIsReservedType(nodeType))
         {
             throw new IllegalArgumentException(nodeType + " cannot be used as an attribute category because it is reserved");
         }
-        final BEIndexAttributeCategory indexAttributeCategory = index.getOrAddAttributeCategory(nodeType);
-
-        // add values for this attribute category to the index
-        node.getValues().forEach(v -> indexAttributeCategory.addInterval(v.getId(), interval));
+        return index.getOrAddAttributeCategory(nodeType);
     }
 
-    private void addReference(
+    @Nonnull
+    private BEIndexAttributeCategory getReferenceAttributeCategory(
             @Nonnull final BEIndex<T> index,
-            @Nonnull final BEReferenceNode node,
-            @Nonnull final BEInterval interval)
+            @Nonnull final BEReferenceNode node)
     {
         final String nodeType = node.getType();
         if (!nodeType.equalsIgnoreCase(BEConstants.NODE_TYPE_REFERENCE))
@@ -435,7 +719,6 @@ public class BEIndexBuilder<T>
                     + BEConstants.NODE_TYPE_REFERENCE + "'");
         }
 
-        final BEIndexAttributeCategory indexAttributeCategory = index.getOrAddAttributeCategory(nodeType.toUpperCase());
         node.getValues().forEach(value ->
         {
             final String id = value.getId();
@@ -443,12 +726,27 @@ public class BEIndexBuilder<T>
             {
                 throw new IllegalArgumentException("Reference to undefined partial expression " + id);
             }
-            else
-            {
-                // add the reference id to the index
-                indexAttributeCategory.addInterval(id, interval);
-            }
         });
+        return index.getOrAddAttributeCategory(nodeType.toUpperCase());
+    }
+
+    /**
+     * Adds an interval for every value of a predicate or reference node, values of reference nodes are the ids of
+     * the referenced partial expressions.
+     */
+    private static void addIntervals(
+            @Nonnull final BEIndexAttributeCategory indexAttributeCategory,
+            @Nonnull final BENode node,
+            @Nonnull final BEInterval interval)
+    {
+        if (node instanceof BEReferenceNode)
+        {
+            ((BEReferenceNode) node).getValues().forEach(value -> indexAttributeCategory.addInterval(value.getId(), interval));
+        }
+        else
+        {
+            ((BEPredicateNode) node).getValues().forEach(value -> indexAttributeCategory.addInterval(value.getId(), interval));
+        }
     }
 
     private boolean nodeTypeIsReservedType(final String nodeType)
@@ -456,4 +754,42 @@ public class BEIndexBuilder<T>
         return BEConstants.RESERVED_TYPES.contains(nodeType.toUpperCase());
     }
 
+    /**
+     * Expression with the results of normalizing and labeling it.
+     */
+    private static final class LabeledExpression<T>
+    {
+        private final String partialExpressionName;
+        private final T data;
+        private final BENode expression;
+        private short intervalLength;
+        private Collection<BENodeInterval> intervals;
+        private boolean useBitSetMatching;
+        private boolean useCountMatching;
+
+        private LabeledExpression(
+                @Nullable final String partialExpressionName,
+                @Nullable final T data,
+                @Nonnull final BENode expression)
+        {
+            this.partialExpressionName = partialExpressionName;
+            this.data = data;
+            this.expression = expression;
+        }
+    }
+
+    /**
+     * Interval waiting to be added to an attribute category.
+     */
+    private static final class PendingInterval
+    {
+        private final BENode node;
+        private final BEInterval interval;
+
+        private PendingInterval(@Nonnull final BENode node, @Nonnull final BEInterval interval)
+        {
+            this.node = node;
+            this.interval = interval;
+        }
+    }
 }
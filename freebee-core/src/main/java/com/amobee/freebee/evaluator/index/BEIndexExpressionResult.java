@@ -24,14 +24,21 @@ public class BEIndexExpressionResult implements BEExpressionMetadata, Serializab
     private final BEExpressionMetadata expressionMetadata;
     private final boolean useBitSetMatching;
     private final MutableIntObjectMap<BEMatchedInterval> matchedIntervals;
-    private final BitSet matchedBits;
+
+    // matched bits of expressions that use bitset matching, a single word for expressions with up to 64 predicates
+    private final long fullMask;
+    private long matchedWord;
+    private final long[] matchedWords;
 
     BEIndexExpressionResult(final BEExpressionMetadata metadata)
     {
         this.expressionMetadata = metadata;
         this.useBitSetMatching = metadata.canUseBitSetMatching();
         this.matchedIntervals = IntObjectMaps.mutable.empty();
-        this.matchedBits = this.useBitSetMatching ? new BitSet() : null;
+
+        final int wordCount = this.useBitSetMatching ? BEBitWords.wordCount(metadata.getMaxIntervalLength()) : 0;
+        this.fullMask = this.useBitSetMatching ? BEBitWords.fullMask(metadata.getMaxIntervalLength()) : 0L;
+        this.matchedWords = wordCount > 1 ? new long[wordCount] : null;
     }
 
     @Override
@@ -69,9 +76,31 @@ public class BEIndexExpressionResult implements BEExpressionMetadata, Serializab
         return new ArrayList<>(this.matchedIntervals.values());
     }
 
+    /**
+     * Materializes the matched bits of an expression that uses bitset matching.
+     *
+     * @return Matched bits, or null if the expression does not use bitset matching.
+     * @see #isBitSetMatched()
+     */
     public BitSet getMatchedBits()
     {
-        return this.matchedBits;
+        if (!this.useBitSetMatching)
+        {
+            return null;
+        }
+        return null == this.matchedWords ? BitSet.valueOf(new long[] {this.matchedWord}) : BitSet.valueOf(this.matchedWords);
+    }
+
+    /**
+     * Checks whether all bits of an expression that uses bitset matching have been matched.
+     *
+     * @return true if all bits have been matched.
+     */
+    public boolean isBitSetMatched()
+    {
+        return null == this.matchedWords
+                ? this.matchedWord == this.fullMask
+                : BEBitWords.isComplete(this.matchedWords, 0, this.matchedWords.length, this.fullMask);
     }
 
     void addInterval(
@@ -88,7 +117,14 @@ public class BEIndexExpressionResult implements BEExpressionMetadata, Serializab
             this.matchedIntervals.put(intervalId, newMatchedInterval);
             if (this.useBitSetMatching)
             {
-                this.matchedBits.or(interval.getBits());
+                if (null == this.matchedWords)
+                {
+                    this.matchedWord |= BEBitWords.mask(interval.getStart(), interval.getEnd());
+                }
+                else
+                {
+                    BEBitWords.set(this.matchedWords, 0, interval.getStart(), interval.getEnd());
+                }
             }
             matchedInterval = newMatchedInterval;
         }
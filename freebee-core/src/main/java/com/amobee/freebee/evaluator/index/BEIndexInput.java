@@ -0,0 +1,328 @@
+package com.amobee.freebee.evaluator.index;
+
+import com.amobee.freebee.evaluator.BEPostingList;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.charset.StandardCharsets;
+import javax.annotation.Nonnull;
+
+/**
+ * Input of the binary index format read by {@link BEIndexReader}, the counterpart of {@link BEIndexOutput}. Blocks of
+ * primitives are either loaded with bulk reads from the underlying buffer or, when an index is memory-mapped, mapped as
+ * buffer views that are accessed in place.
+ */
+final class BEIndexInput
+{
+    private final ByteBuffer buffer;
+    private final DataInputStream dataInput;
+
+    BEIndexInput(@Nonnull final ByteBuffer buffer)
+    {
+        this.buffer = buffer;
+        this.dataInput = new DataInputStream(new BufferInputStream(buffer));
+    }
+
+    /**
+     * @return Data input reading from the current position, for reading expression data.
+     */
+    @Nonnull
+    DataInputStream getDataInput()
+    {
+        return this.dataInput;
+    }
+
+    boolean readBoolean() throws IOException
+    {
+        return require(1).get() != 0;
+    }
+
+    int readShort() throws IOException
+    {
+        return require(Short.BYTES).getShort();
+    }
+
+    int readInt() throws IOException
+    {
+        return require(Integer.BYTES).getInt();
+    }
+
+    @Nonnull
+    String readString() throws IOException
+    {
+        final int length = readCount();
+        final byte[] bytes = new byte[length];
+        require(length).get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Reads a block of strings written by {@link BEIndexOutput#writeStrings(java.util.List)}.
+     */
+    @Nonnull
+    String[] readStrings(final int count) throws IOException
+    {
+        final int[] offsets = readInts(count + 1);
+        checkOffsets(offsets);
+        final byte[] bytes = new byte[offsets[count]];
+        require(bytes.length).get(bytes);
+        final String[] values = new String[count];
+        for (int i = 0; i < count; i++)
+        {
+            values[i] = new String(bytes, offsets[i], offsets[i + 1] - offsets[i], StandardCharsets.UTF_8);
+        }
+        return values;
+    }
+
+    /**
+     * Maps a block of strings written by {@link BEIndexOutput#writeStrings(java.util.List)} without copying it.
+     */
+    @Nonnull
+    BEMappedStrings mapStrings(final int count) throws IOException
+    {
+        final IntBuffer offsets = mapInts(count + 1);
+        final int length = offsets.get(count);
+        if (offsets.get(0) != 0 || length < 0)
+        {
+            throw new IOException("Corrupt string block");
+        }
+        return new BEMappedStrings(offsets, map(length));
+    }
+
+    @Nonnull
+    byte[] readBytes() throws IOException
+    {
+        final byte[] values = new byte[readCount()];
+        require(values.length).get(values);
+        return values;
+    }
+
+    /**
+     * Reads an array of ints preceded by its length.
+     */
+    @Nonnull
+    int[] readInts() throws IOException
+    {
+        return readInts(readCount());
+    }
+
+    /**
+     * Reads the specified number of ints.
+     */
+    @Nonnull
+    int[] readInts(final int count) throws IOException
+    {
+        skipPadding(Integer.BYTES);
+        final int[] values = new int[count];
+        final ByteBuffer bytes = require((long) count * Integer.BYTES);
+        bytes.asIntBuffer().get(values);
+        bytes.position(bytes.position() + count * Integer.BYTES);
+        return values;
+    }
+
+    /**
+     * Reads an array of longs preceded by its length.
+     */
+    @Nonnull
+    long[] readLongs() throws IOException
+    {
+        final long[] values = new long[readCount()];
+        skipPadding(Long.BYTES);
+        final ByteBuffer bytes = require((long) values.length * Long.BYTES);
+        bytes.asLongBuffer().get(values);
+        bytes.position(bytes.position() + values.length * Long.BYTES);
+        return values;
+    }
+
+    /**
+     * Reads an array of doubles preceded by its length.
+     */
+    @Nonnull
+    double[] readDoubles() throws IOException
+    {
+        final double[] values = new double[readCount()];
+        skipPadding(Double.BYTES);
+        final ByteBuffer bytes = require((long) values.length * Double.BYTES);
+        bytes.asDoubleBuffer().get(values);
+        bytes.position(bytes.position() + values.length * Double.BYTES);
+        return values;
+    }
+
+    /**
+     * Reads a block of posting lists written by {@link BEIndexOutput#writePostings(java.util.List)}.
+     */
+    @Nonnull
+    BEPostingList[] readPostings(final int count) throws IOException
+    {
+        final int[] offsets = readInts(count + 1);
+        final int[] packed = readInts();
+        checkOffsets(offsets);
+        if ((long) offsets[count] * BEPostingList.STRIDE != packed.length)
+        {
+            throw new IOException("Corrupt postings block");
+        }
+        final BEPostingList[] postingLists = new BEPostingList[count];
+        for (int i = 0; i < count; i++)
+        {
+            postingLists[i] = BEPostingList.fromPacked(packed, offsets[i] * BEPostingList.STRIDE, offsets[i + 1] - offsets[i]);
+        }
+        return postingLists;
+    }
+
+    /**
+     * Maps a block of posting lists written by {@link BEIndexOutput#writePostings(java.util.List)} without copying it.
+     */
+    @Nonnull
+    BEMappedPostingLists mapPostings(final int count) throws IOException
+    {
+        final IntBuffer offsets = mapInts(count + 1);
+        final IntBuffer packed = mapInts(readCount());
+        if (offsets.get(0) != 0 || (long) offsets.get(count) * BEPostingList.STRIDE != packed.limit())
+        {
+            throw new IOException("Corrupt postings block");
+        }
+        return new BEMappedPostingLists(offsets, packed);
+    }
+
+    /**
+     * Maps the specified number of ints without copying them.
+     */
+    @Nonnull
+    IntBuffer mapInts(final int count) throws IOException
+    {
+        skipPadding(Integer.BYTES);
+        return map((long) count * Integer.BYTES).asIntBuffer();
+    }
+
+    /**
+     * Maps an array of longs preceded by its length without copying it.
+     */
+    @Nonnull
+    LongBuffer mapLongs() throws IOException
+    {
+        final int count = readCount();
+        skipPadding(Long.BYTES);
+        return map((long) count * Long.BYTES).asLongBuffer();
+    }
+
+    /**
+     * Maps an array of doubles preceded by its length without copying it.
+     */
+    @Nonnull
+    DoubleBuffer mapDoubles() throws IOException
+    {
+        final int count = readCount();
+        skipPadding(Double.BYTES);
+        return map((long) count * Double.BYTES).asDoubleBuffer();
+    }
+
+    /**
+     * Maps an array of bytes preceded by its length without copying it.
+     */
+    @Nonnull
+    ByteBuffer mapBytes() throws IOException
+    {
+        return map(readCount());
+    }
+
+    /**
+     * Reads a non-negative count or length that must fit in the remaining input.
+     */
+    int readCount() throws IOException
+    {
+        final int count = readInt();
+        if (count < 0 || count > this.buffer.remaining())
+        {
+            throw new IOException("Corrupt index, invalid length " + count);
+        }
+        return count;
+    }
+
+    /**
+     * Maps the specified number of bytes starting at the current position and skips them.
+     */
+    @Nonnull
+    private ByteBuffer map(final long length) throws IOException
+    {
+        require(length);
+        final ByteBuffer mapped = this.buffer.slice().order(this.buffer.order());
+        mapped.limit((int) length);
+        this.buffer.position(this.buffer.position() + (int) length);
+        return mapped;
+    }
+
+    /**
+     * Skips the padding written before a block of primitives with the specified alignment.
+     */
+    private void skipPadding(final int alignment) throws IOException
+    {
+        final int padding = (alignment - this.buffer.position() % alignment) % alignment;
+        require(padding).position(this.buffer.position() + padding);
+    }
+
+    private static void checkOffsets(@Nonnull final int[] offsets) throws IOException
+    {
+        if (offsets[0] != 0)
+        {
+            throw new IOException("Corrupt offsets block");
+        }
+        for (int i = 1; i < offsets.length; i++)
+        {
+            if (offsets[i] < offsets[i - 1])
+            {
+                throw new IOException("Corrupt offsets block");
+            }
+        }
+    }
+
+    @Nonnull
+    private ByteBuffer require(final long length) throws IOException
+    {
+        if (length > this.buffer.remaining())
+        {
+            throw new IOException("Unexpected end of index, " + length + " bytes required but only "
+                    + this.buffer.remaining() + " remaining");
+        }
+        return this.buffer;
+    }
+
+    /**
+     * Input stream view of the buffer so expression data can be read with a {@link java.io.DataInput}.
+     */
+    private static final class BufferInputStream extends InputStream
+    {
+        private final ByteBuffer buffer;
+
+        private BufferInputStream(@Nonnull final ByteBuffer buffer)
+        {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read()
+        {
+            return this.buffer.hasRemaining() ? this.buffer.get() & 0xff : -1;
+        }
+
+        @Override
+        public int read(@Nonnull final byte[] bytes, final int offset, final int length)
+        {
+            if (length == 0)
+            {
+                return 0;
+            }
+            if (!this.buffer.hasRemaining())
+            {
+                return -1;
+            }
+            final int count = Math.min(length, this.buffer.remaining());
+            this.buffer.get(bytes, offset, count);
+            return count;
+        }
+    }
+}
@@ -15,6 +15,7 @@ public class BEIndexMetrics implements Serializable
     private int partialExpressionCount;
     private int expressionCountWithBitSetEvaluation;
     private int expressionCountWithIntervalEvaluation;
+    private int expressionCountWithCountEvaluation;
 
     public BEIndexMetrics() {}
 
@@ -78,6 +79,60 @@ public class BEIndexMetrics implements Serializable
         this.expressionCountWithIntervalEvaluation = expressionCountWithIntervalEvaluation;
     }
 
+    /**
+     * @return Number of pure conjunction expressions that are matched by counting, these are also included in
+     *         {@link #getExpressionCountWithBitSetEvaluation()}.
+     */
+    public int getExpressionCountWithCountEvaluation()
+    {
+        return this.expressionCountWithCountEvaluation;
+    }
+
+    public void setExpressionCountWithCountEvaluation(final int expressionCountWithCountEvaluation)
+    {
+        this.expressionCountWithCountEvaluation = expressionCountWithCountEvaluation;
+    }
+
+    /**
+     * Adds the metrics of another index to these metrics, e.g. to aggregate the metrics of several indexes that are
+     * evaluated together.
+     *
+     * @param other
+     *         Metrics to add.
+     */
+    public void add(final BEIndexMetrics other)
+    {
+        this.intervalCount += other.intervalCount;
+        this.expressionCount += other.expressionCount;
+        this.fullExpressionCount += other.fullExpressionCount;
+        this.partialExpressionCount += other.partialExpressionCount;
+        this.expressionCountWithBitSetEvaluation += other.expressionCountWithBitSetEvaluation;
+        this.expressionCountWithIntervalEvaluation += other.expressionCountWithIntervalEvaluation;
+        this.expressionCountWithCountEvaluation += other.expressionCountWithCountEvaluation;
+    }
+
+    /**
+     * Removes a partial expression that was added more than once, e.g. a partial expression copied to several shards.
+     * Its intervals are still counted for every copy as every copy is indexed.
+     */
+    void removePartialExpressionCopy(final boolean bitSetEvaluation, final boolean countEvaluation)
+    {
+        this.expressionCount--;
+        this.partialExpressionCount--;
+        if (bitSetEvaluation)
+        {
+            this.expressionCountWithBitSetEvaluation--;
+        }
+        else
+        {
+            this.expressionCountWithIntervalEvaluation--;
+        }
+        if (countEvaluation)
+        {
+            this.expressionCountWithCountEvaluation--;
+        }
+    }
+
     @Override
     public String toString()
     {
@@ -88,6 +143,7 @@ public class BEIndexMetrics implements Serializable
                 ", partialExpressionCount=" + this.partialExpressionCount +
                 ", expressionCountWithBitSetEvaluation=" + this.expressionCountWithBitSetEvaluation +
                 ", expressionCountWithIntervalEvaluation=" + this.expressionCountWithIntervalEvaluation +
+                ", expressionCountWithCountEvaluation=" + this.expressionCountWithCountEvaluation +
                 '}';
     }
 }
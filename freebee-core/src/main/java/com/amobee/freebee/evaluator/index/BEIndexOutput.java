@@ -0,0 +1,241 @@
+package com.amobee.freebee.evaluator.index;
+
+import com.amobee.freebee.evaluator.BEPostingList;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+import javax.annotation.Nonnull;
+
+/**
+ * Output of the binary index format written by {@link BEIndexWriter}, writes primitive arrays as contiguous blocks so
+ * that {@link BEIndexInput} can load them with bulk buffer reads. All values are written little endian, the native
+ * byte order of the platforms indexes are deployed to, so that bulk reads are plain memory copies, and every block of
+ * primitives is padded to be aligned to its element size so that it can also be accessed in place when the index is
+ * memory-mapped. Everything written is included in a CRC32 checksum.
+ */
+final class BEIndexOutput
+{
+    static final ByteOrder BYTE_ORDER = ByteOrder.LITTLE_ENDIAN;
+
+    /** Number of primitives converted per bulk write, bounds the size of the conversion buffer */
+    private static final int BLOCK_SIZE = 8192;
+
+    private final CRC32 checksum = new CRC32();
+    private final DataOutputStream out;
+    private final ByteBuffer block = ByteBuffer.allocate(BLOCK_SIZE * Long.BYTES).order(BYTE_ORDER);
+
+    BEIndexOutput(@Nonnull final OutputStream out)
+    {
+        this.out = new DataOutputStream(new CheckedOutputStream(out, this.checksum));
+    }
+
+    /**
+     * @return Underlying data output, for writing expression data.
+     */
+    @Nonnull
+    DataOutputStream getDataOutput()
+    {
+        return this.out;
+    }
+
+    /**
+     * @return Checksum of everything written so far.
+     */
+    int getChecksum() throws IOException
+    {
+        this.out.flush();
+        return (int) this.checksum.getValue();
+    }
+
+    /**
+     * Sorts strings by their UTF-8 bytes, the order dictionaries are binary searched in when an index is
+     * memory-mapped.
+     *
+     * @param values
+     *         Strings to sort.
+     * @param reverse
+     *         Whether to compare the bytes from last to first, for dictionaries that are searched by suffix.
+     * @return Sorted strings.
+     */
+    @Nonnull
+    static List<String> sortUtf8(@Nonnull final Collection<String> values, final boolean reverse)
+    {
+        final List<byte[]> bytes = new ArrayList<>(values.size());
+        values.forEach(value -> bytes.add(value.getBytes(StandardCharsets.UTF_8)));
+        bytes.sort((a, b) -> {
+            final int length = Math.min(a.length, b.length);
+            for (int i = 0; i < length; i++)
+            {
+                final int result = Integer.compare(
+                        a[reverse ? a.length - i - 1 : i] & 0xff,
+                        b[reverse ? b.length - i - 1 : i] & 0xff);
+                if (result != 0)
+                {
+                    return result;
+                }
+            }
+            return Integer.compare(a.length, b.length);
+        });
+
+        final List<String> sorted = new ArrayList<>(bytes.size());
+        bytes.forEach(value -> sorted.add(new String(value, StandardCharsets.UTF_8)));
+        return sorted;
+    }
+
+    void writeBoolean(final boolean value) throws IOException
+    {
+        this.out.writeBoolean(value);
+    }
+
+    void writeShort(final int value) throws IOException
+    {
+        this.block.clear();
+        this.block.putShort((short) value);
+        this.out.write(this.block.array(), 0, Short.BYTES);
+    }
+
+    void writeInt(final int value) throws IOException
+    {
+        this.block.clear();
+        this.block.putInt(value);
+        this.out.write(this.block.array(), 0, Integer.BYTES);
+    }
+
+    void writeString(@Nonnull final String value) throws IOException
+    {
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeInt(bytes.length);
+        this.out.write(bytes);
+    }
+
+    /**
+     * Writes a block of strings, the offsets of all strings (with one additional trailing entry holding the total
+     * length) followed by their UTF-8 bytes.
+     */
+    void writeStrings(@Nonnull final List<String> values) throws IOException
+    {
+        final byte[][] bytes = new byte[values.size()][];
+        final int[] offsets = new int[values.size() + 1];
+        for (int i = 0; i < bytes.length; i++)
+        {
+            bytes[i] = values.get(i).getBytes(StandardCharsets.UTF_8);
+            offsets[i + 1] = offsets[i] + bytes[i].length;
+        }
+        writeInts(offsets, offsets.length);
+        for (final byte[] value : bytes)
+        {
+            this.out.write(value);
+        }
+    }
+
+    void writeBytes(@Nonnull final byte[] values) throws IOException
+    {
+        writeInt(values.length);
+        this.out.write(values);
+    }
+
+    /**
+     * Writes an array of ints preceded by its length.
+     */
+    void writeInts(@Nonnull final int[] values) throws IOException
+    {
+        writeInt(values.length);
+        writeInts(values, values.length);
+    }
+
+    /**
+     * Writes the first {@code length} ints of an array without a length.
+     */
+    void writeInts(@Nonnull final int[] values, final int length) throws IOException
+    {
+        align(Integer.BYTES);
+        for (int offset = 0; offset < length; offset += BLOCK_SIZE)
+        {
+            final int count = Math.min(BLOCK_SIZE, length - offset);
+            this.block.clear();
+            this.block.asIntBuffer().put(values, offset, count);
+            this.out.write(this.block.array(), 0, count * Integer.BYTES);
+        }
+    }
+
+    /**
+     * Writes an array of longs preceded by its length.
+     */
+    void writeLongs(@Nonnull final long[] values) throws IOException
+    {
+        writeInt(values.length);
+        align(Long.BYTES);
+        for (int offset = 0; offset < values.length; offset += BLOCK_SIZE)
+        {
+            final int count = Math.min(BLOCK_SIZE, values.length - offset);
+            this.block.clear();
+            this.block.asLongBuffer().put(values, offset, count);
+            this.out.write(this.block.array(), 0, count * Long.BYTES);
+        }
+    }
+
+    /**
+     * Writes an array of doubles preceded by its length.
+     */
+    void writeDoubles(@Nonnull final double[] values) throws IOException
+    {
+        writeInt(values.length);
+        align(Double.BYTES);
+        for (int offset = 0; offset < values.length; offset += BLOCK_SIZE)
+        {
+            final int count = Math.min(BLOCK_SIZE, values.length - offset);
+            this.block.clear();
+            this.block.asDoubleBuffer().put(values, offset, count);
+            this.out.write(this.block.array(), 0, count * Double.BYTES);
+        }
+    }
+
+    /**
+     * Writes a block of posting lists, the offsets of all posting lists in postings (with one additional trailing entry
+     * holding the total number of postings) followed by all packed postings.
+     */
+    void writePostings(@Nonnull final List<BEPostingList> postingLists) throws IOException
+    {
+        final int[] offsets = new int[postingLists.size() + 1];
+        for (int i = 0; i < postingLists.size(); i++)
+        {
+            offsets[i + 1] = offsets[i] + postingLists.get(i).size();
+        }
+
+        final int[] packed = new int[offsets[postingLists.size()] * BEPostingList.STRIDE];
+        int offset = 0;
+        for (final BEPostingList postingList : postingLists)
+        {
+            postingList.copyPacked(packed, offset);
+            offset += postingList.size() * BEPostingList.STRIDE;
+        }
+
+        writeInts(offsets, offsets.length);
+        writeInts(packed);
+    }
+
+    void flush() throws IOException
+    {
+        this.out.flush();
+    }
+
+    /**
+     * Pads with zero bytes up to the next multiple of the specified alignment.
+     */
+    private void align(final int alignment) throws IOException
+    {
+        while (this.out.size() % alignment != 0)
+        {
+            this.out.write(0);
+        }
+    }
+}
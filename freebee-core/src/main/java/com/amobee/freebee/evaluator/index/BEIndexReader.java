@@ -0,0 +1,353 @@
+package com.amobee.freebee.evaluator.index;
+
+import com.amobee.freebee.config.BEDataTypeConfig;
+import com.amobee.freebee.expression.BEConstants;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+import javax.annotation.Nonnull;
+
+/**
+ * Reads an index written by {@link BEIndexWriter}.
+ *
+ * The checksum of the whole index is verified before anything is loaded, blocks of primitives are then loaded with bulk
+ * buffer reads and the derived lookup structures are rebuilt. Callers that know which index they expect can also
+ * verify the index hash, which is the hash of the expressions the index was built from.
+ *
+ * An index file can also be memory-mapped with {@link #map(Path)}, in which case the attribute values and postings
+ * are not loaded at all but read in place from the mapped file.
+ *
+ * @see BEIndexWriter
+ */
+public class BEIndexReader<T>
+{
+    private static final int HEADER_BYTES = Integer.BYTES + Short.BYTES + Integer.BYTES;
+    private static final int CHECKSUM_BYTES = Integer.BYTES;
+    private static final int READ_BUFFER_SIZE = 65536;
+
+    private final BEExpressionDataCodec<T> dataCodec;
+
+    /**
+     * @param dataCodec
+     *         Codec used to read the data of each expression, must match the codec the index was written with.
+     */
+    public BEIndexReader(@Nonnull final BEExpressionDataCodec<T> dataCodec)
+    {
+        this.dataCodec = dataCodec;
+    }
+
+    /**
+     * Reads the hash of an index without loading it, e.g. to skip loading an index that has not changed.
+     *
+     * @param buffer
+     *         Buffer holding the index, starting at the current position. The position is not changed.
+     * @return Index hash.
+     */
+    public static int readHash(@Nonnull final ByteBuffer buffer) throws IOException
+    {
+        final ByteBuffer header = buffer.slice().order(BEIndexOutput.BYTE_ORDER);
+        if (header.remaining() < HEADER_BYTES)
+        {
+            throw new IOException("Not a freebee index, too short");
+        }
+        readHeader(header);
+        return header.getInt();
+    }
+
+    /**
+     * Reads an index from a stream.
+     *
+     * @param in
+     *         Stream to read the index from, it is read to the end but not closed.
+     * @return Index read.
+     */
+    @Nonnull
+    public BEIndex<T> read(@Nonnull final InputStream in) throws IOException
+    {
+        final ReadableByteChannel channel = Channels.newChannel(in);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
+        while (channel.read(buffer) >= 0)
+        {
+            if (!buffer.hasRemaining())
+            {
+                final ByteBuffer grown = ByteBuffer.allocateDirect(buffer.capacity() * 2);
+                buffer.flip();
+                grown.put(buffer);
+                buffer = grown;
+            }
+        }
+        buffer.flip();
+        return read(buffer);
+    }
+
+    /**
+     * Reads an index from a buffer. Blocks of primitives are only loaded with memory copies from direct buffers, the
+     * contents of heap buffers are copied to a direct buffer first.
+     *
+     * @param buffer
+     *         Buffer holding the index between the current position and the limit. The position is not changed.
+     * @return Index read.
+     */
+    @Nonnull
+    public BEIndex<T> read(@Nonnull final ByteBuffer buffer) throws IOException
+    {
+        return read(toDirect(buffer), false);
+    }
+
+    /**
+     * Memory-maps an index file. Only the expression metadata, expression data and evaluation layout are loaded on the
+     * heap, the attribute values, postings and range bounds of all attribute categories are searched and read in place
+     * from the mapped file during evaluation. The pages of the file live in the page cache rather than on the heap, so
+     * they are shared by all processes mapping the same file, and swapping an index only requires mapping the new index
+     * file.
+     *
+     * The checksum of the whole file is verified when it is mapped. The attribute categories of a memory-mapped index
+     * are read-only and the index can not be serialized.
+     *
+     * @param path
+     *         Index file, at most 2 GB.
+     * @return Memory-mapped index, the file remains mapped until the index is garbage collected.
+     */
+    @Nonnull
+    public BEIndex<T> map(@Nonnull final Path path) throws IOException
+    {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ))
+        {
+            if (channel.size() > Integer.MAX_VALUE)
+            {
+                throw new IOException("Index " + path + " is too large to be memory-mapped");
+            }
+            return read(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()), true);
+        }
+    }
+
+    /**
+     * Reads an index from a buffer, verifying that it is the expected index.
+     *
+     * @param buffer
+     *         Buffer holding the index between the current position and the limit. The position is not changed.
+     * @param expectedHash
+     *         Expected index hash, i.e. {@link BEIndex#hashCode()} of the index that was written.
+     * @return Index read.
+     */
+    @Nonnull
+    public BEIndex<T> read(@Nonnull final ByteBuffer buffer, final int expectedHash) throws IOException
+    {
+        final int hash = readHash(buffer);
+        if (hash != expectedHash)
+        {
+            throw new IOException("Index hash " + hash + " does not match expected hash " + expectedHash);
+        }
+        return read(buffer);
+    }
+
+    @Nonnull
+    private BEIndex<T> read(@Nonnull final ByteBuffer buffer, final boolean mapped) throws IOException
+    {
+        final ByteBuffer data = buffer.order(BEIndexOutput.BYTE_ORDER);
+        if (data.remaining() < HEADER_BYTES + CHECKSUM_BYTES)
+        {
+            throw new IOException("Not a freebee index, too short");
+        }
+        readHeader(data.duplicate().order(BEIndexOutput.BYTE_ORDER));
+        verifyChecksum(data);
+
+        data.limit(data.limit() - CHECKSUM_BYTES);
+        data.position(HEADER_BYTES - Integer.BYTES);
+        final BEIndexInput input = new BEIndexInput(data);
+        final int hashCode = input.readInt();
+        final BEIndexMetrics metrics = readMetrics(input);
+
+        final int expressionCount = input.readCount();
+        if (expressionCount != metrics.getExpressionCount())
+        {
+            throw new IOException("Corrupt index, expected " + metrics.getExpressionCount() + " expressions but found " + expressionCount);
+        }
+        final BEArrayExpressionMetadataProvider metadataProvider = readExpressionMetadata(input, expressionCount);
+        final BEArrayExpressionDataProvider<T> dataProvider = readExpressionData(input, expressionCount);
+        final int[] wordOffsets = input.readInts();
+        final long[] fullMasks = input.readLongs();
+        final int[] requiredIntervalCounts = input.readInts();
+        final int maxIntervalLength = input.readInt();
+
+        final BEIndex<T> index = readAttributeCategories(input, mapped);
+        if (data.hasRemaining())
+        {
+            throw new IOException("Corrupt index, " + data.remaining() + " unexpected trailing bytes");
+        }
+
+        index.setHashCode(hashCode);
+        index.setIndexMetrics(metrics);
+        index.setExpressionMetadataProvider(metadataProvider);
+        index.setExpressionDataProvider(dataProvider);
+        index.setEvaluationLayout(wordOffsets, fullMasks, requiredIntervalCounts, maxIntervalLength);
+        index.compact();
+        return index;
+    }
+
+    @Nonnull
+    private static ByteBuffer toDirect(@Nonnull final ByteBuffer buffer)
+    {
+        if (buffer.isDirect())
+        {
+            return buffer.slice();
+        }
+        final ByteBuffer direct = ByteBuffer.allocateDirect(buffer.remaining());
+        direct.put(buffer.duplicate());
+        direct.flip();
+        return direct;
+    }
+
+    private static void readHeader(@Nonnull final ByteBuffer header) throws IOException
+    {
+        if (header.getInt() != BEIndexWriter.MAGIC)
+        {
+            throw new IOException("Not a freebee index, invalid magic number");
+        }
+        final int version = header.getShort();
+        if (version != BEIndexWriter.VERSION)
+        {
+            throw new IOException("Unsupported index format version " + version + ", expected " + BEIndexWriter.VERSION);
+        }
+    }
+
+    private static void verifyChecksum(@Nonnull final ByteBuffer data) throws IOException
+    {
+        final ByteBuffer content = data.duplicate();
+        content.limit(data.limit() - CHECKSUM_BYTES);
+        final CRC32 crc = new CRC32();
+        crc.update(content);
+        final int checksum = data.getInt(data.limit() - CHECKSUM_BYTES);
+        if ((int) crc.getValue() != checksum)
+        {
+            throw new IOException("Corrupt index, checksum mismatch");
+        }
+    }
+
+    @Nonnull
+    private static BEIndexMetrics readMetrics(@Nonnull final BEIndexInput input) throws IOException
+    {
+        final BEIndexMetrics metrics = new BEIndexMetrics();
+        metrics.setIntervalCount(input.readInt());
+        metrics.setExpressionCount(input.readInt());
+        metrics.setFullExpressionCount(input.readInt());
+        metrics.setPartialExpressionCount(input.readInt());
+        metrics.setExpressionCountWithBitSetEvaluation(input.readInt());
+        metrics.setExpressionCountWithIntervalEvaluation(input.readInt());
+        metrics.setExpressionCountWithCountEvaluation(input.readInt());
+        return metrics;
+    }
+
+    @Nonnull
+    private static BEArrayExpressionMetadataProvider readExpressionMetadata(
+            @Nonnull final BEIndexInput input,
+            final int expressionCount) throws IOException
+    {
+        final BitSet hasMetadata = BitSet.valueOf(input.readLongs());
+        final BitSet bitSetMatching = BitSet.valueOf(input.readLongs());
+        final BitSet partial = BitSet.valueOf(input.readLongs());
+        final int[] maxIntervalLengths = input.readInts();
+        final String[] partialExpressionNames = input.readStrings(input.readCount());
+        if (maxIntervalLengths.length != expressionCount || partialExpressionNames.length != partial.cardinality())
+        {
+            throw new IOException("Corrupt index, inconsistent expression metadata");
+        }
+
+        final BEArrayExpressionMetadataProvider metadataProvider = new BEArrayExpressionMetadataProvider(expressionCount);
+        int partialIndex = 0;
+        for (int expressionId = hasMetadata.nextSetBit(0); expressionId >= 0; expressionId = hasMetadata.nextSetBit(expressionId + 1))
+        {
+            metadataProvider.put(expressionId, partial.get(expressionId)
+                    ? new BEExpressionMetadataImpl(
+                            expressionId,
+                            maxIntervalLengths[expressionId],
+                            bitSetMatching.get(expressionId),
+                            true,
+                            partialExpressionNames[partialIndex++])
+                    : new BEExpressionMetadataImpl(
+                            expressionId,
+                            maxIntervalLengths[expressionId],
+                            bitSetMatching.get(expressionId)));
+        }
+        return metadataProvider;
+    }
+
+    @Nonnull
+    private BEArrayExpressionDataProvider<T> readExpressionData(
+            @Nonnull final BEIndexInput input,
+            final int expressionCount) throws IOException
+    {
+        final BitSet hasData = BitSet.valueOf(input.readLongs());
+        if (hasData.length() > expressionCount)
+        {
+            throw new IOException("Corrupt index, inconsistent expression data");
+        }
+
+        final BEArrayExpressionDataProvider<T> dataProvider = new BEArrayExpressionDataProvider<>(expressionCount);
+        final DataInputStream dataInput = input.getDataInput();
+        for (int expressionId = hasData.nextSetBit(0); expressionId >= 0; expressionId = hasData.nextSetBit(expressionId + 1))
+        {
+            dataProvider.put(expressionId, this.dataCodec.read(dataInput));
+        }
+        return dataProvider;
+    }
+
+    @Nonnull
+    private BEIndex<T> readAttributeCategories(@Nonnull final BEIndexInput input, final boolean mapped)
+            throws IOException
+    {
+        final int attributeCategoryCount = input.readCount();
+        final String[] names = new String[attributeCategoryCount];
+        final BEDataTypeConfig[] configs = new BEDataTypeConfig[attributeCategoryCount];
+        final Map<String, BEDataTypeConfig> dataTypeConfigs = new LinkedHashMap<>();
+        final BEDataTypeConfigLookupSupplier.Builder dataTypeConfigSupplier = BEDataTypeConfigLookupSupplier.builder()
+                .caseSensitive(false)
+                .defaultDataTypeConfig(BEDataTypeConfigSupplier.CASE_SENSITIVE_STRING_SUPPLIER);
+
+        for (int i = 0; i < attributeCategoryCount; i++)
+        {
+            names[i] = input.readString();
+            final BEDataTypeConfig dataTypeConfig = new BEDataTypeConfig(
+                    input.readString(),
+                    input.readString(),
+                    input.readBoolean(),
+                    input.readBoolean(),
+                    input.readBoolean(),
+                    input.readBoolean());
+            dataTypeConfigs.putIfAbsent(dataTypeConfig.getType().toUpperCase(), dataTypeConfig);
+            configs[i] = dataTypeConfig;
+        }
+
+        final BEIndex<T> index = new BEIndex<>(dataTypeConfigSupplier.addAllDataTypeConfigs(dataTypeConfigs.values()).build());
+        if (mapped)
+        {
+            for (int i = 0; i < attributeCategoryCount; i++)
+            {
+                index.getAttributeCategories().put(names[i], BEMappedIndexAttributeCategory.map(configs[i], input));
+            }
+            index.setRefAttributeCategory(BEMappedIndexAttributeCategory.map(
+                    BEDataTypeConfigSupplier.CASE_SENSITIVE_STRING_SUPPLIER.get(BEConstants.NODE_TYPE_REFERENCE),
+                    input));
+        }
+        else
+        {
+            for (final String name : names)
+            {
+                index.getOrAddAttributeCategory(name).read(input);
+            }
+            index.getRefAttributeCategory().read(input);
+        }
+        return index;
+    }
+}
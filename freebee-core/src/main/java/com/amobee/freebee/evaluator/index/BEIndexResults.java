@@ -2,7 +2,9 @@ package com.amobee.freebee.evaluator.index;
 
 import com.amobee.freebee.evaluator.BEInterval;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 
@@ -22,12 +24,14 @@ import org.eclipse.collections.impl.factory.primitive.IntObjectMaps;
 public class BEIndexResults
 {
     private final MutableIntObjectMap<BEIndexExpressionResult> indexExpressionResults;
+    /** Results of partial expressions in the order they were first matched */
+    private final List<BEIndexExpressionResult> partialExpressionResults = new ArrayList<>();
     private final BEExpressionMetadataProvider expressionMetadataProvider;
 
     BEIndexResults(@Nonnull final BEExpressionMetadataProvider expressionMetadataProvider)
     {
         this.expressionMetadataProvider = expressionMetadataProvider;
-        this.indexExpressionResults = IntObjectMaps.mutable.withInitialCapacity(expressionMetadataProvider.getAll().size());
+        this.indexExpressionResults = IntObjectMaps.mutable.empty();
     }
 
     public Collection<BEIndexExpressionResult> getExpressionResults()
@@ -35,6 +39,14 @@ public class BEIndexResults
         return this.indexExpressionResults.values();
     }
 
+    /**
+     * @return Results of the partial expressions with matched intervals, in the order they were first matched.
+     */
+    public List<BEIndexExpressionResult> getPartialExpressionResults()
+    {
+        return this.partialExpressionResults;
+    }
+
     public void addInterval(@Nonnull final BEInterval interval)
     {
         addInterval(interval, null, null);
@@ -46,9 +58,17 @@ public class BEIndexResults
             @Nullable final BEIndexExpressionResult partialExpressionResult)
     {
         final int exprId = interval.getExpressionId();
-        this.indexExpressionResults
-                .getIfAbsentPut(exprId, createExpressionIndexResultBuilder(exprId))
-                .addInterval(interval, matchedInputValue, partialExpressionResult);
+        BEIndexExpressionResult expressionResult = this.indexExpressionResults.get(exprId);
+        if (null == expressionResult)
+        {
+            expressionResult = createExpressionIndexResultBuilder(exprId);
+            this.indexExpressionResults.put(exprId, expressionResult);
+            if (expressionResult.isPartial())
+            {
+                this.partialExpressionResults.add(expressionResult);
+            }
+        }
+        expressionResult.addInterval(interval, matchedInputValue, partialExpressionResult);
     }
 
     private BEIndexExpressionResult createExpressionIndexResultBuilder(final int expressionId)
@@ -0,0 +1,106 @@
+package com.amobee.freebee.evaluator.index;
+
+import com.amobee.freebee.util.Histogram;
+
+import java.util.Collections;
+import java.util.List;
+import javax.annotation.Nonnull;
+
+/**
+ * Size of an index, the statistics of each of its attribute categories and the distribution of the width of its
+ * expressions, computed by {@link BEIndex#computeStatistics()}.
+ *
+ * Unlike {@link BEIndexMetrics}, which are counted while the index is built, statistics are computed on request by
+ * walking the postings of all attribute categories and should not be computed on a hot path.
+ */
+public class BEIndexStatistics
+{
+    private final int expressionCount;
+    private final int intervalCount;
+    private final List<BEAttributeCategoryStatistics> attributeCategories;
+    private final Histogram intervalsPerExpression;
+    private final Histogram intervalLengths;
+    private final long estimatedBytes;
+
+    BEIndexStatistics(
+            final int expressionCount,
+            final int intervalCount,
+            @Nonnull final List<BEAttributeCategoryStatistics> attributeCategories,
+            @Nonnull final Histogram intervalsPerExpression,
+            @Nonnull final Histogram intervalLengths,
+            final long estimatedBytes)
+    {
+        this.expressionCount = expressionCount;
+        this.intervalCount = intervalCount;
+        this.attributeCategories = Collections.unmodifiableList(attributeCategories);
+        this.intervalsPerExpression = intervalsPerExpression;
+        this.intervalLengths = intervalLengths;
+        this.estimatedBytes = estimatedBytes;
+    }
+
+    /**
+     * @return Number of expressions with postings in the index, including partial expressions.
+     */
+    public int getExpressionCount()
+    {
+        return this.expressionCount;
+    }
+
+    /**
+     * @return Number of distinct intervals of all expressions.
+     */
+    public int getIntervalCount()
+    {
+        return this.intervalCount;
+    }
+
+    /**
+     * @return Statistics of each attribute category, including the category of references to partial expressions.
+     */
+    @Nonnull
+    public List<BEAttributeCategoryStatistics> getAttributeCategories()
+    {
+        return this.attributeCategories;
+    }
+
+    /**
+     * @return Histogram of the number of distinct intervals of each expression.
+     */
+    @Nonnull
+    public Histogram getIntervalsPerExpression()
+    {
+        return this.intervalsPerExpression;
+    }
+
+    /**
+     * @return Histogram of the largest interval length of each expression, the number of bits its intervals span.
+     */
+    @Nonnull
+    public Histogram getIntervalLengths()
+    {
+        return this.intervalLengths;
+    }
+
+    /**
+     * @return Estimated heap retained by the attribute categories, the evaluation layout, the structures precomputed
+     * for evaluation and the expression metadata of the index in bytes, expression data and memory-mapped data aren't
+     * included.
+     */
+    public long getEstimatedBytes()
+    {
+        return this.estimatedBytes;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "BEIndexStatistics{" +
+                "expressionCount=" + this.expressionCount +
+                ", intervalCount=" + this.intervalCount +
+                ", attributeCategories=" + this.attributeCategories +
+                ", intervalsPerExpression=" + this.intervalsPerExpression +
+                ", intervalLengths=" + this.intervalLengths +
+                ", estimatedBytes=" + this.estimatedBytes +
+                '}';
+    }
+}
@@ -0,0 +1,169 @@
+package com.amobee.freebee.evaluator.index;
+
+import com.amobee.freebee.config.BEDataTypeConfig;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.Nonnull;
+
+/**
+ * Writes an index in the binary index format, which can be loaded with {@link BEIndexReader} much faster than a Java
+ * serialized index and is considerably smaller.
+ *
+ * The format is columnar, expression metadata, attribute values and postings are written as contiguous, aligned blocks
+ * of primitives rather than as object graphs, so that an index file can either be loaded or memory-mapped and
+ * accessed in place:
+ * <ol>
+ * <li>Header: magic number, format version and the index hash</li>
+ * <li>Index metrics</li>
+ * <li>Expression metadata: a block per metadata field, partial expression names as a string block</li>
+ * <li>Expression data written with a {@link BEExpressionDataCodec}</li>
+ * <li>Evaluation layout: word offsets, full masks and required interval counts</li>
+ * <li>Data type configs of all attribute categories</li>
+ * <li>Attribute categories: negative postings, a sorted value dictionary and the postings of every value, range
+ * attribute categories also write their disjoint ranges</li>
+ * <li>Reference attribute category</li>
+ * <li>CRC32 checksum of everything written before it</li>
+ * </ol>
+ *
+ * Lookup structures that are derived from the attribute values, e.g. tries of partial attribute categories, are not
+ * written, they are rebuilt when the index is loaded.
+ *
+ * @see BEIndexReader
+ */
+public class BEIndexWriter<T>
+{
+    /** "FBIX" */
+    static final int MAGIC = 0x46424958;
+    static final int VERSION = 2;
+
+    private final BEExpressionDataCodec<T> dataCodec;
+
+    /**
+     * @param dataCodec
+     *         Codec used to write the data of each expression.
+     */
+    public BEIndexWriter(@Nonnull final BEExpressionDataCodec<T> dataCodec)
+    {
+        this.dataCodec = dataCodec;
+    }
+
+    /**
+     * Writes an index.
+     *
+     * @param index
+     *         Index to write.
+     * @param out
+     *         Stream to write to, it is flushed but not closed.
+     */
+    public void write(@Nonnull final BEIndex<T> index, @Nonnull final OutputStream out) throws IOException
+    {
+        final BEIndexOutput output = new BEIndexOutput(out);
+        output.writeInt(MAGIC);
+        output.writeShort(VERSION);
+        output.writeInt(index.hashCode());
+
+        writeMetrics(output, index.getIndexMetrics());
+        writeExpressions(output, index);
+        output.writeInts(index.getWordOffsets());
+        output.writeLongs(index.getFullMasks());
+        output.writeInts(index.getRequiredIntervalCounts());
+        output.writeInt(index.getMaxIntervalLength());
+        writeAttributeCategories(output, index);
+
+        output.writeInt(output.getChecksum());
+        output.flush();
+    }
+
+    private static void writeMetrics(@Nonnull final BEIndexOutput output, @Nonnull final BEIndexMetrics metrics)
+            throws IOException
+    {
+        output.writeInt(metrics.getIntervalCount());
+        output.writeInt(metrics.getExpressionCount());
+        output.writeInt(metrics.getFullExpressionCount());
+        output.writeInt(metrics.getPartialExpressionCount());
+        output.writeInt(metrics.getExpressionCountWithBitSetEvaluation());
+        output.writeInt(metrics.getExpressionCountWithIntervalEvaluation());
+        output.writeInt(metrics.getExpressionCountWithCountEvaluation());
+    }
+
+    private void writeExpressions(@Nonnull final BEIndexOutput output, @Nonnull final BEIndex<T> index)
+            throws IOException
+    {
+        final BEExpressionMetadataProvider metadataProvider = index.getExpressionMetadataProvider();
+        final BEExpressionDataProvider<T> dataProvider = index.getExpressionDataProvider();
+        final int expressionCount = index.getIndexMetrics().getExpressionCount();
+
+        final BitSet hasMetadata = new BitSet(expressionCount);
+        final BitSet bitSetMatching = new BitSet(expressionCount);
+        final BitSet partial = new BitSet(expressionCount);
+        final BitSet hasData = new BitSet(expressionCount);
+        final int[] maxIntervalLengths = new int[expressionCount];
+        final List<String> partialExpressionNames = new ArrayList<>();
+        for (int expressionId = 0; expressionId < expressionCount; expressionId++)
+        {
+            final BEExpressionMetadata metadata = metadataProvider.get(expressionId);
+            if (null != metadata)
+            {
+                hasMetadata.set(expressionId);
+                bitSetMatching.set(expressionId, metadata.canUseBitSetMatching());
+                partial.set(expressionId, metadata.isPartial());
+                maxIntervalLengths[expressionId] = metadata.getMaxIntervalLength();
+                if (metadata.isPartial())
+                {
+                    partialExpressionNames.add(metadata.getPartialExpressionName());
+                }
+            }
+            hasData.set(expressionId, null != dataProvider.get(expressionId));
+        }
+
+        output.writeInt(expressionCount);
+        output.writeLongs(hasMetadata.toLongArray());
+        output.writeLongs(bitSetMatching.toLongArray());
+        output.writeLongs(partial.toLongArray());
+        output.writeInts(maxIntervalLengths);
+        output.writeInt(partialExpressionNames.size());
+        output.writeStrings(partialExpressionNames);
+
+        output.writeLongs(hasData.toLongArray());
+        final DataOutputStream dataOutput = output.getDataOutput();
+        for (int expressionId = hasData.nextSetBit(0); expressionId >= 0; expressionId = hasData.nextSetBit(expressionId + 1))
+        {
+            this.dataCodec.write(dataProvider.get(expressionId), dataOutput);
+        }
+    }
+
+    private static void writeAttributeCategories(@Nonnull final BEIndexOutput output, @Nonnull final BEIndex<?> index)
+            throws IOException
+    {
+        final BEDataTypeConfigSupplier dataTypeConfigSupplier = index.getDataTypeConfigSupplier();
+        final Map<String, BEIndexAttributeCategory> attributeCategories = index.getAttributeCategories();
+
+        // data type configs of all attribute categories come first so the reader can create the index and the same kind
+        // of attribute categories before reading them
+        final List<String> names = new ArrayList<>(attributeCategories.keySet());
+        output.writeInt(names.size());
+        for (final String name : names)
+        {
+            final BEDataTypeConfig dataTypeConfig = dataTypeConfigSupplier.get(name);
+            output.writeString(name);
+            output.writeString(dataTypeConfig.getType());
+            output.writeString(dataTypeConfig.getDataType().name());
+            output.writeBoolean(dataTypeConfig.isIgnoreCase());
+            output.writeBoolean(dataTypeConfig.isPartial());
+            output.writeBoolean(dataTypeConfig.isRange());
+            output.writeBoolean(dataTypeConfig.isReverse());
+        }
+        for (final String name : names)
+        {
+            attributeCategories.get(name).write(output);
+        }
+
+        index.getRefAttributeCategory().write(output);
+    }
+}
@@ -1,5 +1,8 @@
 package com.amobee.freebee.evaluator.index;
 
+import com.amobee.freebee.evaluator.BEPostingList;
+
+import java.util.function.Consumer;
 import javax.annotation.Nonnull;
 
 /**
@@ -10,15 +13,15 @@ public class BEIntRangeIndexAttributeCategory extends BEAbstractRangeIndexAttrib
     private static final long serialVersionUID = -322799933882277442L;
 
     @Override
-    protected Integer valueOf(final byte value)
+    public void getPostings(final byte attributeValue, @Nonnull final Consumer<BEPostingList> consumer)
     {
-        return Integer.valueOf(value);
+        getRangePostings(attributeValue, consumer);
     }
 
     @Override
-    protected Integer valueOf(final int value)
+    public void getPostings(final int attributeValue, @Nonnull final Consumer<BEPostingList> consumer)
     {
-        return Integer.valueOf(value);
+        getRangePostings(attributeValue, consumer);
     }
 
     @Override
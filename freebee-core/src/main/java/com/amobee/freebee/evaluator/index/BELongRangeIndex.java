@@ -0,0 +1,189 @@
+package com.amobee.freebee.evaluator.index;
+
+import com.amobee.freebee.evaluator.BEPostingList;
+import com.google.common.collect.BoundType;
+import com.google.common.collect.Range;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * Range index of byte, int and long ranges. Open bounds are stored as the adjacent closed bound, so a disjoint range
+ * that contains no integral value is dropped.
+ */
+@SuppressWarnings("UnstableApiUsage")
+final class BELongRangeIndex extends BERangeIndex
+{
+    private final long[] lowers;
+    private final long[] uppers;
+    private final BEPostingList[] postings;
+
+    BELongRangeIndex(@Nonnull final long[] lowers, @Nonnull final long[] uppers, @Nonnull final BEPostingList[] postings)
+    {
+        this.lowers = lowers;
+        this.uppers = uppers;
+        this.postings = postings;
+    }
+
+    /**
+     * Builds a range index from disjoint ranges.
+     *
+     * @param disjointRanges
+     *         Disjoint ranges and their postings, in ascending order.
+     * @return Range index.
+     */
+    @Nonnull
+    static BELongRangeIndex build(@Nonnull final List<Map.Entry<Range<? extends Number>, BEPostingList>> disjointRanges)
+    {
+        final long[] lowers = new long[disjointRanges.size()];
+        final long[] uppers = new long[disjointRanges.size()];
+        final BEPostingList[] postings = new BEPostingList[disjointRanges.size()];
+        int size = 0;
+        for (final Map.Entry<Range<? extends Number>, BEPostingList> entry : disjointRanges)
+        {
+            final long[] bounds = toClosedBounds(entry.getKey());
+            if (null != bounds)
+            {
+                lowers[size] = bounds[0];
+                uppers[size] = bounds[1];
+                postings[size] = entry.getValue();
+                size++;
+            }
+        }
+        return new BELongRangeIndex(Arrays.copyOf(lowers, size), Arrays.copyOf(uppers, size), Arrays.copyOf(postings, size));
+    }
+
+    /**
+     * Converts a range of integral values to closed bounds.
+     *
+     * @param range
+     *         Range of bytes, ints or longs.
+     * @return Closed lower and upper bound, or {@code null} if the range contains no integral value.
+     */
+    @Nullable
+    static long[] toClosedBounds(@Nonnull final Range<? extends Number> range)
+    {
+        long lower = Long.MIN_VALUE;
+        long upper = Long.MAX_VALUE;
+        if (range.hasLowerBound())
+        {
+            lower = range.lowerEndpoint().longValue();
+            if (range.lowerBoundType() == BoundType.OPEN)
+            {
+                if (lower == Long.MAX_VALUE)
+                {
+                    return null;
+                }
+                lower++;
+            }
+        }
+        if (range.hasUpperBound())
+        {
+            upper = range.upperEndpoint().longValue();
+            if (range.upperBoundType() == BoundType.OPEN)
+            {
+                if (upper == Long.MIN_VALUE)
+                {
+                    return null;
+                }
+                upper--;
+            }
+        }
+        return lower <= upper ? new long[]{lower, upper} : null;
+    }
+
+    @Nullable
+    @Override
+    BEPostingList get(final long value)
+    {
+        // find the last range with a lower bound not greater than the value
+        int low = 0;
+        int high = this.lowers.length - 1;
+        while (low <= high)
+        {
+            final int mid = (low + high) >>> 1;
+            if (this.lowers[mid] <= value)
+            {
+                low = mid + 1;
+            }
+            else
+            {
+                high = mid - 1;
+            }
+        }
+        return high >= 0 && value <= this.uppers[high] ? this.postings[high] : null;
+    }
+
+    @Nullable
+    @Override
+    BEPostingList get(final double value)
+    {
+        throw new UnsupportedOperationException("Cowardly refusal to risk loosing precision");
+    }
+
+    @Override
+    void forEachIntersecting(@Nonnull final Range<? extends Number> range, @Nonnull final Consumer<BEPostingList> consumer)
+    {
+        final long[] bounds = toClosedBounds(range);
+        if (null != bounds)
+        {
+            // disjoint ranges are sorted by both bounds, find the first range ending at or after the lower bound and
+            // the first range starting after the upper bound
+            int from = 0;
+            int to = this.lowers.length;
+            while (from < to)
+            {
+                final int mid = (from + to) >>> 1;
+                if (this.uppers[mid] < bounds[0])
+                {
+                    from = mid + 1;
+                }
+                else
+                {
+                    to = mid;
+                }
+            }
+            to = this.lowers.length;
+            int low = from;
+            while (low < to)
+            {
+                final int mid = (low + to) >>> 1;
+                if (this.lowers[mid] <= bounds[1])
+                {
+                    low = mid + 1;
+                }
+                else
+                {
+                    to = mid;
+                }
+            }
+            acceptDistinct(i -> this.postings[i], from, to, consumer);
+        }
+    }
+
+    @Override
+    int size()
+    {
+        return this.postings.length;
+    }
+
+    @Nonnull
+    @Override
+    BEPostingList getPostings(final int index)
+    {
+        return this.postings[index];
+    }
+
+    @Override
+    void write(@Nonnull final BEIndexOutput out) throws IOException
+    {
+        out.writeLongs(this.lowers);
+        out.writeLongs(this.uppers);
+        out.writePostings(Arrays.asList(this.postings));
+    }
+}
@@ -1,5 +1,8 @@
 package com.amobee.freebee.evaluator.index;
 
+import com.amobee.freebee.evaluator.BEPostingList;
+
+import java.util.function.Consumer;
 import javax.annotation.Nonnull;
 
 /**
@@ -10,21 +13,21 @@ public class BELongRangeIndexAttributeCategory extends BEAbstractRangeIndexAttri
     private static final long serialVersionUID = 935839294882742L;
 
     @Override
-    protected Long valueOf(final byte value)
+    public void getPostings(final byte attributeValue, @Nonnull final Consumer<BEPostingList> consumer)
     {
-        return Long.valueOf(value);
+        getRangePostings(attributeValue, consumer);
     }
 
     @Override
-    protected Long valueOf(final int value)
+    public void getPostings(final int attributeValue, @Nonnull final Consumer<BEPostingList> consumer)
     {
-        return Long.valueOf(value);
+        getRangePostings(attributeValue, consumer);
     }
 
     @Override
-    protected Long valueOf(final long value)
+    public void getPostings(final long attributeValue, @Nonnull final Consumer<BEPostingList> consumer)
     {
-        return Long.valueOf(value);
+        getRangePostings(attributeValue, consumer);
     }
 
     @Override
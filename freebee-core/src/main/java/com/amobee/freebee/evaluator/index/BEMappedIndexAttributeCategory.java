@@ -0,0 +1,133 @@
+package com.amobee.freebee.evaluator.index;
+
+import com.amobee.freebee.config.BEDataType;
+import com.amobee.freebee.config.BEDataTypeConfig;
+import com.amobee.freebee.evaluator.BEInterval;
+import com.amobee.freebee.evaluator.BEPostingList;
+
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.io.ObjectOutputStream;
+import javax.annotation.Nonnull;
+
+/**
+ * Read-only attribute category of a memory-mapped index. Attribute values and postings are not loaded, they are
+ * searched and read in place in the mapped index file and postings are returned as read-only views, so the heap only
+ * holds the buffer views of a category.
+ *
+ * Memory-mapped attribute categories can not be serialized, the index file itself is their serialized form.
+ *
+ * @see BEIndexReader#map(java.nio.file.Path)
+ */
+abstract class BEMappedIndexAttributeCategory extends BEIndexAttributeCategory
+{
+    private static final long serialVersionUID = 2316140794216392510L;
+
+    @Nonnull
+    private final BEPostingList negativePostings;
+
+    BEMappedIndexAttributeCategory(@Nonnull final BEPostingList negativePostings)
+    {
+        this.negativePostings = negativePostings;
+    }
+
+    /**
+     * Maps an attribute category written by {@link BEIndexAttributeCategory#write(BEIndexOutput)}.
+     *
+     * @param dataTypeConfig
+     *         Data type config of the attribute category.
+     * @param in
+     *         Input of the mapped index file, positioned at the attribute category.
+     * @return Memory-mapped attribute category.
+     */
+    @Nonnull
+    static BEIndexAttributeCategory map(@Nonnull final BEDataTypeConfig dataTypeConfig, @Nonnull final BEIndexInput in)
+            throws IOException
+    {
+        final BEPostingList negativePostings = in.mapPostings(1).get(0);
+        final BEDataType dataType = dataTypeConfig.getDataType();
+        if (dataType == BEDataType.STRING)
+        {
+            return BEMappedStringIndexAttributeCategory.map(in, negativePostings, dataTypeConfig);
+        }
+        return dataTypeConfig.isRange()
+                ? BEMappedRangeIndexAttributeCategory.map(in, negativePostings, dataType)
+                : BEMappedNumberIndexAttributeCategory.map(in, negativePostings, dataType);
+    }
+
+    @Override
+    public void addInterval(@Nonnull final Object attributeValue, @Nonnull final BEInterval interval)
+    {
+        throw new UnsupportedOperationException("Memory-mapped attribute categories are read-only");
+    }
+
+    @Nonnull
+    @Override
+    public BEPostingList getNegativePostings()
+    {
+        return this.negativePostings;
+    }
+
+    @Override
+    protected void compact()
+    {
+        // nothing to compact, all postings are views of the mapped index
+    }
+
+    /**
+     * Adds the postings of all values of a memory-mapped attribute category to the statistics of the index.
+     *
+     * @param collector
+     *         Collector of the statistics of the index.
+     * @param postings
+     *         Mapped postings of the values.
+     */
+    static void collectMappedStatistics(
+            @Nonnull final BEStatisticsCollector collector,
+            @Nonnull final BEMappedPostingLists postings)
+    {
+        final int size = postings.size();
+        for (int i = 0; i < size; i++)
+        {
+            collector.addMappedValue(postings.get(i));
+        }
+    }
+
+    /**
+     * Checks that a value of one numeric data type can be looked up in an attribute category of another without losing
+     * precision, the same conversions the heap attribute categories support.
+     *
+     * @param valueType
+     *         Data type of the value.
+     * @param dataType
+     *         Data type of the attribute category.
+     */
+    static void checkWidening(@Nonnull final BEDataType valueType, @Nonnull final BEDataType dataType)
+    {
+        final boolean widening;
+        switch (valueType)
+        {
+            case BYTE:
+                widening = true;
+                break;
+            case INT:
+                widening = dataType == BEDataType.INT || dataType == BEDataType.LONG || dataType == BEDataType.DOUBLE;
+                break;
+            case LONG:
+                widening = dataType == BEDataType.LONG || dataType == BEDataType.DOUBLE;
+                break;
+            default:
+                widening = dataType == valueType;
+                break;
+        }
+        if (!widening)
+        {
+            throw new UnsupportedOperationException("Cowardly refusal to risk loosing precision");
+        }
+    }
+
+    private void writeObject(@Nonnull final ObjectOutputStream out) throws IOException
+    {
+        throw new NotSerializableException("Memory-mapped attribute categories can not be serialized");
+    }
+}
@@ -0,0 +1,220 @@
+package com.amobee.freebee.evaluator.index;
+
+import com.amobee.freebee.config.BEDataType;
+import com.amobee.freebee.evaluator.BEPostingList;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.util.function.Consumer;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * Memory-mapped byte, int, long or double attribute category, values are searched by binary search over the sorted
+ * mapped values.
+ */
+final class BEMappedNumberIndexAttributeCategory extends BEMappedIndexAttributeCategory
+{
+    private static final long serialVersionUID = 6026212733470384617L;
+
+    private final BEDataType dataType;
+    private final int size;
+    @Nullable
+    private final ByteBuffer byteValues;
+    @Nullable
+    private final IntBuffer intValues;
+    @Nullable
+    private final LongBuffer longValues;
+    @Nullable
+    private final DoubleBuffer doubleValues;
+    private final BEMappedPostingLists postings;
+
+    @SuppressWarnings("ParameterNumber")
+    private BEMappedNumberIndexAttributeCategory(
+            @Nonnull final BEPostingList negativePostings,
+            @Nonnull final BEDataType dataType,
+            @Nullable final ByteBuffer byteValues,
+            @Nullable final IntBuffer intValues,
+            @Nullable final LongBuffer longValues,
+            @Nullable final DoubleBuffer doubleValues,
+            @Nonnull final BEMappedPostingLists postings)
+    {
+        super(negativePostings);
+        this.dataType = dataType;
+        this.size = postings.size();
+        this.byteValues = byteValues;
+        this.intValues = intValues;
+        this.longValues = longValues;
+        this.doubleValues = doubleValues;
+        this.postings = postings;
+    }
+
+    @Nonnull
+    static BEMappedNumberIndexAttributeCategory map(
+            @Nonnull final BEIndexInput in,
+            @Nonnull final BEPostingList negativePostings,
+            @Nonnull final BEDataType dataType) throws IOException
+    {
+        ByteBuffer byteValues = null;
+        IntBuffer intValues = null;
+        LongBuffer longValues = null;
+        DoubleBuffer doubleValues = null;
+        final int count;
+        switch (dataType)
+        {
+            case BYTE:
+                byteValues = in.mapBytes();
+                count = byteValues.limit();
+                break;
+            case INT:
+                count = in.readCount();
+                intValues = in.mapInts(count);
+                break;
+            case LONG:
+                longValues = in.mapLongs();
+                count = longValues.limit();
+                break;
+            case DOUBLE:
+                doubleValues = in.mapDoubles();
+                count = doubleValues.limit();
+                break;
+            default:
+                throw new IOException("Unsupported data type " + dataType);
+        }
+        final BEMappedPostingLists postings = in.mapPostings(count);
+        return new BEMappedNumberIndexAttributeCategory(negativePostings, dataType, byteValues, intValues, longValues, doubleValues, postings);
+    }
+
+    @Override
+    void collectStatistics(@Nonnull final BEStatisticsCollector collector)
+    {
+        collectMappedStatistics(collector, this.postings);
+    }
+
+    @Override
+    public void getPostings(final byte attributeValue, @Nonnull final Consumer<BEPostingList> consumer)
+    {
+        checkWidening(BEDataType.BYTE, this.dataType);
+        getPostingsAt(this.dataType == BEDataType.DOUBLE ? indexOf((double) attributeValue) : indexOf((long) attributeValue), consumer);
+    }
+
+    @Override
+    public void getPostings(final double attributeValue, @Nonnull final Consumer<BEPostingList> consumer)
+    {
+        checkWidening(BEDataType.DOUBLE, this.dataType);
+        getPostingsAt(indexOf(attributeValue), consumer);
+    }
+
+    @Override
+    public void getPostings(final int attributeValue, @Nonnull final Consumer<BEPostingList> consumer)
+    {
+        checkWidening(BEDataType.INT, this.dataType);
+        getPostingsAt(this.dataType == BEDataType.DOUBLE ? indexOf((double) attributeValue) : indexOf((long) attributeValue), consumer);
+    }
+
+    @Override
+    public void getPostings(final long attributeValue, @Nonnull final Consumer<BEPostingList> consumer)
+    {
+        checkWidening(BEDataType.LONG, this.dataType);
+        getPostingsAt(this.dataType == BEDataType.DOUBLE ? indexOf((double) attributeValue) : indexOf(attributeValue), consumer);
+    }
+
+    @Override
+    public void getPostings(@Nonnull final String attributeValue, @Nonnull final Consumer<BEPostingList> consumer)
+    {
+        switch (this.dataType)
+        {
+            case BYTE:
+                getPostingsAt(indexOf(Byte.parseByte(attributeValue)), consumer);
+                break;
+            case INT:
+                getPostingsAt(indexOf(Integer.parseInt(attributeValue)), consumer);
+                break;
+            case LONG:
+                getPostingsAt(indexOf(Long.parseLong(attributeValue)), consumer);
+                break;
+            default:
+                getPostingsAt(indexOf(Double.parseDouble(attributeValue)), consumer);
+                break;
+        }
+    }
+
+    private void getPostingsAt(final int index, @Nonnull final Consumer<BEPostingList> consumer)
+    {
+        if (index >= 0)
+        {
+            consumer.accept(this.postings.get(index));
+        }
+    }
+
+    /**
+     * @return Index of the specified integral value, or -1 if the category does not contain it.
+     */
+    private int indexOf(final long value)
+    {
+        int low = 0;
+        int high = this.size - 1;
+        while (low <= high)
+        {
+            final int mid = (low + high) >>> 1;
+            final long midValue = valueAt(mid);
+            if (midValue < value)
+            {
+                low = mid + 1;
+            }
+            else if (midValue > value)
+            {
+                high = mid - 1;
+            }
+            else
+            {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return Index of the specified double value, or -1 if the category does not contain it.
+     */
+    private int indexOf(final double value)
+    {
+        int low = 0;
+        int high = this.size - 1;
+        while (low <= high)
+        {
+            final int mid = (low + high) >>> 1;
+            final int result = Double.compare(this.doubleValues.get(mid), value);
+            if (result < 0)
+            {
+                low = mid + 1;
+            }
+            else if (result > 0)
+            {
+                high = mid - 1;
+            }
+            else
+            {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    @SuppressWarnings("ConstantConditions")
+    private long valueAt(final int index)
+    {
+        switch (this.dataType)
+        {
+            case BYTE:
+                return this.byteValues.get(index);
+            case INT:
+                return this.intValues.get(index);
+            default:
+                return this.longValues.get(index);
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.amobee.freebee.evaluator.index;
+
+import com.amobee.freebee.evaluator.BEPostingList;
+
+import java.nio.IntBuffer;
+import javax.annotation.Nonnull;
+
+/**
+ * Block of posting lists of a memory-mapped index, accessed in place. Posting lists are returned as read-only views
+ * of the mapped packed postings.
+ *
+ * @see BEIndexInput#mapPostings(int)
+ */
+final class BEMappedPostingLists
+{
+    private final IntBuffer offsets;
+    private final IntBuffer packed;
+
+    BEMappedPostingLists(@Nonnull final IntBuffer offsets, @Nonnull final IntBuffer packed)
+    {
+        this.offsets = offsets;
+        this.packed = packed;
+    }
+
+    int size()
+    {
+        return this.offsets.limit() - 1;
+    }
+
+    /**
+     * @param index
+     *         Index of posting list.
+     * @return Read-only view of the posting list.
+     */
+    @Nonnull
+    BEPostingList get(final int index)
+    {
+        final int offset = this.offsets.get(index);
+        return BEPostingList.view(this.packed, offset * BEPostingList.STRIDE, this.offsets.get(index + 1) - offset);
+    }
+}
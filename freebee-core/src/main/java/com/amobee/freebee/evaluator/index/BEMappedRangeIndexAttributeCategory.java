@@ -0,0 +1,270 @@
+package com.amobee.freebee.evaluator.index;
+
+import com.amobee.freebee.config.BEDataType;
+import com.amobee.freebee.evaluator.BEPostingList;
+import com.amobee.freebee.util.RangeUtils;
+import com.google.common.collect.Range;
+
+import java.io.IOException;
+import java.nio.DoubleBuffer;
+import java.nio.LongBuffer;
+import java.util.function.Consumer;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * Memory-mapped range attribute category. The bounds of the disjoint ranges written by {@link BELongRangeIndex} or
+ * {@link BEDoubleRangeIndex} are mapped and values are searched the same way, by binary search over the lower bounds.
+ */
+@SuppressWarnings("UnstableApiUsage")
+final class BEMappedRangeIndexAttributeCategory extends BEMappedIndexAttributeCategory
+{
+    private static final long serialVersionUID = -1400290386186001347L;
+
+    private final BEDataType dataType;
+    private final int size;
+    @Nullable
+    private final LongBuffer longLowers;
+    @Nullable
+    private final LongBuffer longUppers;
+    @Nullable
+    private final DoubleBuffer doubleLowers;
+    @Nullable
+    private final DoubleBuffer doubleUppers;
+    private final BEMappedPostingLists postings;
+
+    @SuppressWarnings("ParameterNumber")
+    private BEMappedRangeIndexAttributeCategory(
+            @Nonnull final BEPostingList negativePostings,
+            @Nonnull final BEDataType dataType,
+            @Nullable final LongBuffer longLowers,
+            @Nullable final LongBuffer longUppers,
+            @Nullable final DoubleBuffer doubleLowers,
+            @Nullable final DoubleBuffer doubleUppers,
+            @Nonnull final BEMappedPostingLists postings)
+    {
+        super(negativePostings);
+        this.dataType = dataType;
+        this.size = postings.size();
+        this.longLowers = longLowers;
+        this.longUppers = longUppers;
+        this.doubleLowers = doubleLowers;
+        this.doubleUppers = doubleUppers;
+        this.postings = postings;
+    }
+
+    @Nonnull
+    static BEMappedRangeIndexAttributeCategory map(
+            @Nonnull final BEIndexInput in,
+            @Nonnull final BEPostingList negativePostings,
+            @Nonnull final BEDataType dataType) throws IOException
+    {
+        // the unique ranges are only needed to load the category on the heap
+        final int rangeCount = in.mapBytes().limit();
+        in.mapStrings(in.readCount());
+        in.mapPostings(rangeCount);
+
+        LongBuffer longLowers = null;
+        LongBuffer longUppers = null;
+        DoubleBuffer doubleLowers = null;
+        DoubleBuffer doubleUppers = null;
+        final int count;
+        if (dataType == BEDataType.DOUBLE)
+        {
+            doubleLowers = in.mapDoubles();
+            doubleUppers = in.mapDoubles();
+            count = doubleLowers.limit();
+        }
+        else
+        {
+            longLowers = in.mapLongs();
+            longUppers = in.mapLongs();
+            count = longLowers.limit();
+        }
+        final BEMappedPostingLists postings = in.mapPostings(count);
+        return new BEMappedRangeIndexAttributeCategory(negativePostings, dataType, longLowers, longUppers, doubleLowers, doubleUppers, postings);
+    }
+
+    @Override
+    void collectStatistics(@Nonnull final BEStatisticsCollector collector)
+    {
+        collectMappedStatistics(collector, this.postings);
+        collector.setRangeSegmentCount(this.size);
+    }
+
+    @Override
+    public void getPostings(final byte attributeValue, @Nonnull final Consumer<BEPostingList> consumer)
+    {
+        checkWidening(BEDataType.BYTE, this.dataType);
+        getPostingsAt(this.dataType == BEDataType.DOUBLE ? indexOf((double) attributeValue) : indexOf((long) attributeValue), consumer);
+    }
+
+    @Override
+    public void getPostings(final double attributeValue, @Nonnull final Consumer<BEPostingList> consumer)
+    {
+        checkWidening(BEDataType.DOUBLE, this.dataType);
+        getPostingsAt(indexOf(attributeValue), consumer);
+    }
+
+    @Override
+    public void getPostings(final int attributeValue, @Nonnull final Consumer<BEPostingList> consumer)
+    {
+        checkWidening(BEDataType.INT, this.dataType);
+        getPostingsAt(this.dataType == BEDataType.DOUBLE ? indexOf((double) attributeValue) : indexOf((long) attributeValue), consumer);
+    }
+
+    @Override
+    public void getPostings(final long attributeValue, @Nonnull final Consumer<BEPostingList> consumer)
+    {
+        checkWidening(BEDataType.LONG, this.dataType);
+        getPostingsAt(this.dataType == BEDataType.DOUBLE ? indexOf((double) attributeValue) : indexOf(attributeValue), consumer);
+    }
+
+    @SuppressWarnings("ConstantConditions")
+    @Override
+    public void getPostings(@Nonnull final String attributeValue, @Nonnull final Consumer<BEPostingList> consumer)
+    {
+        // disjoint ranges are sorted by both bounds, find the first range ending at or after the lower bound and the
+        // first range starting after the upper bound
+        int from = 0;
+        int to = this.size;
+        if (this.dataType == BEDataType.DOUBLE)
+        {
+            final double[] bounds = BEDoubleRangeIndex.toClosedBounds(RangeUtils.createRange(attributeValue, Double::valueOf));
+            if (null == bounds)
+            {
+                return;
+            }
+            while (from < to)
+            {
+                final int mid = (from + to) >>> 1;
+                if (Double.compare(this.doubleUppers.get(mid), bounds[0]) < 0)
+                {
+                    from = mid + 1;
+                }
+                else
+                {
+                    to = mid;
+                }
+            }
+            to = this.size;
+            int low = from;
+            while (low < to)
+            {
+                final int mid = (low + to) >>> 1;
+                if (Double.compare(this.doubleLowers.get(mid), bounds[1]) <= 0)
+                {
+                    low = mid + 1;
+                }
+                else
+                {
+                    to = mid;
+                }
+            }
+        }
+        else
+        {
+            final long[] bounds = BELongRangeIndex.toClosedBounds(parseRange(attributeValue));
+            if (null == bounds)
+            {
+                return;
+            }
+            while (from < to)
+            {
+                final int mid = (from + to) >>> 1;
+                if (this.longUppers.get(mid) < bounds[0])
+                {
+                    from = mid + 1;
+                }
+                else
+                {
+                    to = mid;
+                }
+            }
+            to = this.size;
+            int low = from;
+            while (low < to)
+            {
+                final int mid = (low + to) >>> 1;
+                if (this.longLowers.get(mid) <= bounds[1])
+                {
+                    low = mid + 1;
+                }
+                else
+                {
+                    to = mid;
+                }
+            }
+        }
+        BERangeIndex.acceptDistinct(this.postings::get, from, to, consumer);
+    }
+
+    @Nonnull
+    private Range<? extends Number> parseRange(@Nonnull final String attributeValue)
+    {
+        switch (this.dataType)
+        {
+            case BYTE:
+                return RangeUtils.createRange(attributeValue, Byte::valueOf);
+            case INT:
+                return RangeUtils.createRange(attributeValue, Integer::valueOf);
+            default:
+                return RangeUtils.createRange(attributeValue, Long::valueOf);
+        }
+    }
+
+    private void getPostingsAt(final int index, @Nonnull final Consumer<BEPostingList> consumer)
+    {
+        if (index >= 0)
+        {
+            consumer.accept(this.postings.get(index));
+        }
+    }
+
+    /**
+     * @return Index of the disjoint range containing the specified integral value, or -1 if there is none.
+     */
+    @SuppressWarnings("ConstantConditions")
+    private int indexOf(final long value)
+    {
+        // find the last range with a lower bound not greater than the value
+        int low = 0;
+        int high = this.size - 1;
+        while (low <= high)
+        {
+            final int mid = (low + high) >>> 1;
+            if (this.longLowers.get(mid) <= value)
+            {
+                low = mid + 1;
+            }
+            else
+            {
+                high = mid - 1;
+            }
+        }
+        return high >= 0 && value <= this.longUppers.get(high) ? high : -1;
+    }
+
+    /**
+     * @return Index of the disjoint range containing the specified double value, or -1 if there is none.
+     */
+    @SuppressWarnings("ConstantConditions")
+    private int indexOf(final double value)
+    {
+        int low = 0;
+        int high = this.size - 1;
+        while (low <= high)
+        {
+            final int mid = (low + high) >>> 1;
+            if (Double.compare(this.doubleLowers.get(mid), value) <= 0)
+            {
+                low = mid + 1;
+            }
+            else
+            {
+                high = mid - 1;
+            }
+        }
+        return high >= 0 && Double.compare(value, this.doubleUppers.get(high)) <= 0 ? high : -1;
+    }
+}
@@ -0,0 +1,175 @@
+package com.amobee.freebee.evaluator.index;
+
+import com.amobee.freebee.config.BEDataTypeConfig;
+import com.amobee.freebee.evaluator.BEPostingList;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Consumer;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * Memory-mapped string attribute category, exact and partial. Values are searched by binary search over the sorted
+ * UTF-8 value dictionary, narrowing the range of candidate values one byte of the searched value at a time.
+ *
+ * Partial categories match every value that is a prefix of the searched value, or a suffix if the category is reversed,
+ * the same values {@link BEPartialStringIndexAttributeCategory} matches. As all values sharing a prefix are adjacent in
+ * the dictionary and the shortest of them sorts first, each matching value is found at the start of the narrowed
+ * range.
+ *
+ * Exact match categories are their own {@link BEValueDictionary}, the id of a value is its position in the sorted
+ * dictionary.
+ */
+final class BEMappedStringIndexAttributeCategory extends BEMappedIndexAttributeCategory implements BEValueDictionary
+{
+    private static final long serialVersionUID = -3962541838826531954L;
+
+    private final boolean ignoreCase;
+    private final boolean partial;
+    private final boolean reverse;
+    private final BEMappedStrings values;
+    private final BEMappedPostingLists postings;
+
+    private BEMappedStringIndexAttributeCategory(
+            @Nonnull final BEPostingList negativePostings,
+            @Nonnull final BEDataTypeConfig dataTypeConfig,
+            @Nonnull final BEMappedStrings values,
+            @Nonnull final BEMappedPostingLists postings)
+    {
+        super(negativePostings);
+        this.ignoreCase = dataTypeConfig.isIgnoreCase();
+        this.partial = dataTypeConfig.isPartial();
+        this.reverse = dataTypeConfig.isPartial() && dataTypeConfig.isReverse();
+        this.values = values;
+        this.postings = postings;
+    }
+
+    @Nonnull
+    static BEMappedStringIndexAttributeCategory map(
+            @Nonnull final BEIndexInput in,
+            @Nonnull final BEPostingList negativePostings,
+            @Nonnull final BEDataTypeConfig dataTypeConfig) throws IOException
+    {
+        final int count = in.readCount();
+        final BEMappedStrings values = in.mapStrings(count);
+        final BEMappedPostingLists postings = in.mapPostings(count);
+        return new BEMappedStringIndexAttributeCategory(negativePostings, dataTypeConfig, values, postings);
+    }
+
+    @Override
+    void collectStatistics(@Nonnull final BEStatisticsCollector collector)
+    {
+        collectMappedStatistics(collector, this.postings);
+    }
+
+    @Override
+    public void getPostings(final byte attributeValue, @Nonnull final Consumer<BEPostingList> consumer)
+    {
+        getPostings(String.valueOf(attributeValue), consumer);
+    }
+
+    @Override
+    public void getPostings(final double attributeValue, @Nonnull final Consumer<BEPostingList> consumer)
+    {
+        getPostings(String.valueOf(attributeValue), consumer);
+    }
+
+    @Override
+    public void getPostings(final int attributeValue, @Nonnull final Consumer<BEPostingList> consumer)
+    {
+        getPostings(String.valueOf(attributeValue), consumer);
+    }
+
+    @Override
+    public void getPostings(final long attributeValue, @Nonnull final Consumer<BEPostingList> consumer)
+    {
+        getPostings(String.valueOf(attributeValue), consumer);
+    }
+
+    @Override
+    public void getPostings(@Nonnull final String attributeValue, @Nonnull final Consumer<BEPostingList> consumer)
+    {
+        final byte[] value = (this.ignoreCase ? attributeValue.toLowerCase() : attributeValue).getBytes(StandardCharsets.UTF_8);
+
+        // all values in [low, high) start with the first position bytes of the searched value
+        int low = 0;
+        int high = this.values.size();
+        for (int position = 0; low < high; position++)
+        {
+            if (this.values.length(low) == position)
+            {
+                if (this.partial || position == value.length)
+                {
+                    consumer.accept(this.postings.get(low));
+                }
+                low++;
+            }
+            if (position == value.length)
+            {
+                break;
+            }
+
+            final int b = value[this.reverse ? value.length - position - 1 : position] & 0xff;
+            low = search(low, high, position, b);
+            high = search(low, high, position, b + 1);
+        }
+    }
+
+    @Nullable
+    @Override
+    public BEValueDictionary getValueDictionary()
+    {
+        return this.partial ? null : this;
+    }
+
+    @Override
+    public int getValueId(@Nonnull final String attributeValue)
+    {
+        final byte[] value = (this.ignoreCase ? attributeValue.toLowerCase() : attributeValue).getBytes(StandardCharsets.UTF_8);
+
+        // same narrowing as exact match lookups, skipping values shorter than the searched value
+        int low = 0;
+        int high = this.values.size();
+        for (int position = 0; position < value.length && low < high; position++)
+        {
+            if (this.values.length(low) == position)
+            {
+                low++;
+            }
+            final int b = value[position] & 0xff;
+            low = search(low, high, position, b);
+            high = search(low, high, position, b + 1);
+        }
+        return low < high && this.values.length(low) == value.length ? low : NO_VALUE_ID;
+    }
+
+    @Override
+    public void getPostingsByValueId(final int valueId, @Nonnull final Consumer<BEPostingList> consumer)
+    {
+        consumer.accept(this.postings.get(valueId));
+    }
+
+    /**
+     * @return Index of the first value in [low, high) whose byte at the specified position is not less than the
+     * specified byte, all values in the range must be longer than the position.
+     */
+    private int search(final int low, final int high, final int position, final int b)
+    {
+        int from = low;
+        int to = high;
+        while (from < to)
+        {
+            final int mid = (from + to) >>> 1;
+            if (this.values.byteAt(mid, position, this.reverse) < b)
+            {
+                from = mid + 1;
+            }
+            else
+            {
+                to = mid;
+            }
+        }
+        return from;
+    }
+}
@@ -0,0 +1,54 @@
+package com.amobee.freebee.evaluator.index;
+
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import javax.annotation.Nonnull;
+
+/**
+ * Block of UTF-8 strings of a memory-mapped index, accessed in place. Strings are never decoded, dictionaries are
+ * searched by comparing bytes.
+ *
+ * @see BEIndexInput#mapStrings(int)
+ */
+final class BEMappedStrings
+{
+    private final IntBuffer offsets;
+    private final ByteBuffer bytes;
+
+    BEMappedStrings(@Nonnull final IntBuffer offsets, @Nonnull final ByteBuffer bytes)
+    {
+        this.offsets = offsets;
+        this.bytes = bytes;
+    }
+
+    int size()
+    {
+        return this.offsets.limit() - 1;
+    }
+
+    /**
+     * @return Length of the string at the specified index in bytes.
+     */
+    int length(final int index)
+    {
+        return this.offsets.get(index + 1) - this.offsets.get(index);
+    }
+
+    /**
+     * Gets a byte of a string.
+     *
+     * @param index
+     *         Index of string.
+     * @param position
+     *         Position of the byte in the string, counted from the end of the string if {@code reverse} is set.
+     * @param reverse
+     *         Whether to count the position from the end of the string.
+     * @return Unsigned byte.
+     */
+    int byteAt(final int index, final int position, final boolean reverse)
+    {
+        return (reverse
+                ? this.bytes.get(this.offsets.get(index + 1) - position - 1)
+                : this.bytes.get(this.offsets.get(index) + position)) & 0xff;
+    }
+}
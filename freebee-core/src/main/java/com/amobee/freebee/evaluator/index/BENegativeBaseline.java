@@ -0,0 +1,209 @@
+package com.amobee.freebee.evaluator.index;
+
+import com.amobee.freebee.evaluator.BEPostingList;
+
+import java.io.Serializable;
+import javax.annotation.Nonnull;
+
+import org.eclipse.collections.api.list.primitive.MutableIntList;
+import org.eclipse.collections.api.map.primitive.MutableIntObjectMap;
+import org.eclipse.collections.api.set.primitive.MutableIntSet;
+import org.eclipse.collections.impl.list.mutable.primitive.IntArrayList;
+import org.eclipse.collections.impl.map.mutable.primitive.IntObjectHashMap;
+import org.eclipse.collections.impl.set.mutable.primitive.IntHashSet;
+
+/**
+ * The state of an index when no input values are present, i.e. the negative intervals of all attribute categories
+ * are unmatched, precomputed when the index is built.
+ *
+ * Evaluation starts from the baseline rather than re-adding every unmatched negative interval of every attribute
+ * category. Only the expressions touched by the input and those matched by their negative intervals alone can match,
+ * so the baseline is applied to just those expressions, in bulk unless one of their negative intervals was matched by
+ * the input in which case their remaining negative intervals are added individually. The cost of negative predicates
+ * for each evaluation is then proportional to the expressions the input touches rather than to the total number of
+ * negative predicates in the index.
+ *
+ * Negative intervals of the reference attribute category are not part of the baseline as they depend on which partial
+ * expressions are matched.
+ */
+final class BENegativeBaseline implements Serializable
+{
+    private static final long serialVersionUID = -6271480591935287453L;
+
+    /**
+     * Distinct negative postings grouped by expression, the postings of expression i are [offsets[i], offsets[i + 1])
+     */
+    private final BEPostingList postings = new BEPostingList();
+    private final int[] offsets;
+
+    /** OR of the negative interval words of expressions that use bitset matching, laid out like the context words */
+    private final long[] words;
+
+    /** Whether all negative postings of an expression use bitset matching */
+    private final boolean[] bitSetMatched;
+
+    private final int[] requiredIntervalCounts;
+
+    /** Expressions that are matched by their negative intervals alone */
+    private final int[] matchedExpressionIds;
+
+    /**
+     * @param index
+     *         Index to compute the baseline of, its evaluation layout must have been set.
+     * @param negativePostings
+     *         Negative postings of each attribute category of the index.
+     */
+    BENegativeBaseline(@Nonnull final BEIndex<?> index, @Nonnull final Iterable<BEPostingList> negativePostings)
+    {
+        final int expressionCount = index.getIndexMetrics().getExpressionCount();
+        final int[] wordOffsets = index.getWordOffsets();
+        this.requiredIntervalCounts = index.getRequiredIntervalCounts();
+        this.offsets = new int[expressionCount + 1];
+        this.words = new long[wordOffsets[expressionCount]];
+        this.bitSetMatched = new boolean[expressionCount];
+
+        // group negative postings by expression, an interval has a posting for each value of its predicate but only
+        // one of them is kept
+        final MutableIntObjectMap<BEPostingList> postingsByExpression = new IntObjectHashMap<>();
+        final MutableIntSet intervalIds = new IntHashSet();
+        for (final BEPostingList categoryPostings : negativePostings)
+        {
+            final int size = categoryPostings.size();
+            for (int i = 0; i < size; i++)
+            {
+                if (intervalIds.add(categoryPostings.getIntervalId(i)))
+                {
+                    postingsByExpression.getIfAbsentPut(categoryPostings.getExpressionId(i), BEPostingList::new).add(categoryPostings, i);
+                }
+            }
+        }
+
+        for (int expressionId = 0; expressionId < expressionCount; expressionId++)
+        {
+            final BEPostingList expressionPostings = postingsByExpression.get(expressionId);
+            if (null != expressionPostings)
+            {
+                // pure conjunctions are matched by counting and have no words
+                boolean bitSet = this.requiredIntervalCounts[expressionId] == 0;
+                for (int i = 0; bitSet && i < expressionPostings.size(); i++)
+                {
+                    bitSet = expressionPostings.canUseBitSetMatching(i);
+                }
+                if (bitSet)
+                {
+                    for (int i = 0; i < expressionPostings.size(); i++)
+                    {
+                        BEBitWords.set(this.words, wordOffsets[expressionId], expressionPostings.getStart(i), expressionPostings.getEnd(i));
+                    }
+                }
+                this.bitSetMatched[expressionId] = bitSet;
+                this.postings.addAll(expressionPostings);
+            }
+            this.offsets[expressionId + 1] = this.postings.size();
+        }
+        this.postings.trimToSize();
+
+        // evaluate the baseline on its own to find the expressions it matches
+        final BEEvaluationContext context = new BEEvaluationContext();
+        context.reset(index);
+        final MutableIntList matched = new IntArrayList();
+        for (int expressionId = 0; expressionId < expressionCount; expressionId++)
+        {
+            if (hasNegativeIntervals(expressionId))
+            {
+                addExpressionTo(context, expressionId);
+                if (index.matches(context, expressionId))
+                {
+                    matched.add(expressionId);
+                }
+            }
+        }
+        this.matchedExpressionIds = matched.toArray();
+    }
+
+    /**
+     * Applies the baseline to the expressions touched by the context since the specified position, first touching the
+     * expressions matched by the baseline alone when starting from the first touched expression.
+     *
+     * @param context
+     *         Context holding the intervals matched by the input.
+     * @param from
+     *         Position of the first touched expression the baseline has not been applied to.
+     * @return Position of the first touched expression the baseline has not been applied to afterwards.
+     */
+    int addTo(@Nonnull final BEEvaluationContext context, final int from)
+    {
+        if (0 == from)
+        {
+            for (final int expressionId : this.matchedExpressionIds)
+            {
+                context.touch(expressionId);
+            }
+        }
+
+        final int touchedCount = context.getTouchedCount();
+        for (int i = from; i < touchedCount; i++)
+        {
+            addExpressionTo(context, context.getTouchedExpressionId(i));
+        }
+        return touchedCount;
+    }
+
+    private void addExpressionTo(@Nonnull final BEEvaluationContext context, final int expressionId)
+    {
+        final int start = this.offsets[expressionId];
+        final int end = this.offsets[expressionId + 1];
+        if (start == end)
+        {
+            return;
+        }
+
+        if (context.isNegativeMatched(expressionId))
+        {
+            // subtract the negative intervals matched by the input from the baseline
+            for (int i = start; i < end; i++)
+            {
+                if (!context.isIntervalMarked(this.postings.getIntervalId(i)))
+                {
+                    context.addPosting(this.postings, i);
+                }
+            }
+        }
+        else if (this.requiredIntervalCounts[expressionId] != 0)
+        {
+            context.addIntervalCount(expressionId, end - start);
+        }
+        else if (this.bitSetMatched[expressionId])
+        {
+            context.addBits(expressionId, this.words);
+        }
+        else
+        {
+            for (int i = start; i < end; i++)
+            {
+                context.addPosting(this.postings, i);
+            }
+        }
+    }
+
+    /**
+     * Estimates the heap retained by the baseline, the required interval counts are shared with the index and are not
+     * included.
+     *
+     * @return Estimated number of bytes.
+     */
+    long getRetainedBytes()
+    {
+        // object header and fields
+        return 32 + this.postings.getRetainedBytes()
+                + BEStatisticsCollector.getArrayBytes(this.offsets.length, 4)
+                + BEStatisticsCollector.getArrayBytes(this.words.length, 8)
+                + BEStatisticsCollector.getArrayBytes(this.bitSetMatched.length, 1)
+                + BEStatisticsCollector.getArrayBytes(this.matchedExpressionIds.length, 4);
+    }
+
+    private boolean hasNegativeIntervals(final int expressionId)
+    {
+        return this.offsets[expressionId] != this.offsets[expressionId + 1];
+    }
+}
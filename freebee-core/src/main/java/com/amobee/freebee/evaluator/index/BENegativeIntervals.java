@@ -0,0 +1,81 @@
+package com.amobee.freebee.evaluator.index;
+
+import com.amobee.freebee.evaluator.BEInterval;
+import com.amobee.freebee.evaluator.BEPostingList;
+
+import java.util.BitSet;
+import java.util.List;
+import javax.annotation.Nonnull;
+
+import org.eclipse.collections.api.map.primitive.MutableIntObjectMap;
+import org.eclipse.collections.impl.map.mutable.primitive.IntObjectHashMap;
+
+/**
+ * Materialized contribution of all negative intervals of an attribute category. When an attribute category is absent
+ * from the input none of its negative intervals can have been matched, so every one of them is added to the result.
+ * Rather than filtering the negative intervals one at a time this adds the materialized intervals, or the merged bits
+ * of each expression, at once.
+ *
+ * Only the evaluations that track intervals or use BitSet results need these objects, the index builds them from the
+ * negative postings on first use and doesn't serialize them.
+ *
+ * @see BENegativeBaseline
+ */
+final class BENegativeIntervals
+{
+    // materialized intervals and bits per expression for evaluation that tracks intervals or uses BitSet results
+    private final List<BEInterval> intervals;
+    private final MutableIntObjectMap<BitSet> expressionBits = new IntObjectHashMap<>();
+
+    /**
+     * @param negativePostings
+     *         Postings of all negative predicates of the attribute category.
+     */
+    BENegativeIntervals(@Nonnull final BEPostingList negativePostings)
+    {
+        this.intervals = negativePostings.toIntervals();
+        for (final BEInterval interval : this.intervals)
+        {
+            this.expressionBits.getIfAbsentPut(interval.getExpressionId(), BitSet::new).or(interval.getBits());
+        }
+    }
+
+    /**
+     * Estimates the heap retained by the materialized intervals and the merged bits of each expression.
+     *
+     * @return Estimated number of bytes.
+     */
+    long getRetainedBytes()
+    {
+        // object header and fields, the interval list and the map
+        long bytes = 16 + BEStatisticsCollector.getArrayBytes(this.intervals.size(), 4) + 48;
+        for (final BEInterval interval : this.intervals)
+        {
+            bytes += BEStatisticsCollector.INTERVAL_BYTES + BEStatisticsCollector.getBitSetBytes(interval.getBits());
+        }
+        for (final BitSet bits : this.expressionBits.values())
+        {
+            bytes += BEStatisticsCollector.MAP_ENTRY_BYTES + BEStatisticsCollector.getBitSetBytes(bits);
+        }
+        return bytes;
+    }
+
+    /**
+     * Adds all negative intervals to the specified results.
+     */
+    void addTo(@Nonnull final BEIndexResults indexResults)
+    {
+        for (final BEInterval interval : this.intervals)
+        {
+            indexResults.addInterval(interval);
+        }
+    }
+
+    /**
+     * Merges the bits of all negative intervals into the specified result.
+     */
+    void addTo(@Nonnull final MutableIntObjectMap<BitSet> indexResult)
+    {
+        this.expressionBits.forEachKeyValue((expressionId, bits) -> indexResult.getIfAbsentPut(expressionId, BitSet::new).or(bits));
+    }
+}
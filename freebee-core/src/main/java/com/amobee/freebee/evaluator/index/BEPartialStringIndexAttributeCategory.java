@@ -1,14 +1,14 @@
 package com.amobee.freebee.evaluator.index;
 
+import java.io.IOException;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.function.Consumer;
 import javax.annotation.Nonnull;
-import javax.annotation.Nullable;
 
 import com.amobee.freebee.evaluator.BEInterval;
-import com.amobee.freebee.evaluator.evaluator.BEInputAttributeCategory;
+import com.amobee.freebee.evaluator.BEPostingList;
 import com.amobee.freebee.util.trie.BitTrie;
 import com.amobee.freebee.util.trie.ReverseStringBitKeyAnalyzer;
 import com.amobee.freebee.util.trie.StringBitKeyAnalyzer;
@@ -23,18 +23,24 @@ public class BEPartialStringIndexAttributeCategory extends BEAbstractStringIndex
 {
     private static final long serialVersionUID = -6902572907432442226L;
 
-    private final Trie<String, List<BEInterval>> values;
+    /** Estimated bytes of a trie node, object header and fields */
+    private static final int TRIE_NODE_BYTES = 48;
+
+    private final Trie<String, BEPostingList> values;
+    private final boolean reverse;
 
     public BEPartialStringIndexAttributeCategory(final boolean ignoreCase, final boolean reverse)
     {
         super(ignoreCase);
-        this.values = new BitTrie<>(reverse ? new ReverseStringBitKeyAnalyzer() : new StringBitKeyAnalyzer());
+        this.reverse = reverse;
+        // the key analyzers fold case so that lookups don't have to lower case the looked up value
+        this.values = new BitTrie<>(reverse ? new ReverseStringBitKeyAnalyzer(ignoreCase) : new StringBitKeyAnalyzer(ignoreCase));
     }
 
     @Override
     public void addInterval(@Nonnull final Object attributeValue, @Nonnull final BEInterval interval)
     {
-        this.values.computeIfAbsent(getValue(attributeValue.toString()), key -> new ArrayList()).add(interval);
+        this.values.computeIfAbsent(getValue(attributeValue.toString()), key -> new BEPostingList()).add(interval);
 
         // if interval is negative, add a "wildcard" interval
         if (interval.isNegative())
@@ -44,29 +50,53 @@ public class BEPartialStringIndexAttributeCategory extends BEAbstractStringIndex
     }
 
     @Override
-    public void getIntervals(@Nonnull final String attributeValue, @Nonnull final Consumer<List<BEInterval>> consumer)
+    public void getPostings(@Nonnull final String attributeValue, @Nonnull final Consumer<BEPostingList> consumer)
+    {
+        this.values.getAll(attributeValue, entry -> consumer.accept(entry.getValue()));
+    }
+
+    public Trie<String, BEPostingList> getValues()
     {
-        this.values.getAll(getValue(attributeValue), entry -> consumer.accept(entry.getValue()));
+        return this.values;
     }
 
     @Override
-    public void getIntervals(
-            @Nonnull final String attributeValue,
-            @Nullable final BEInputAttributeCategory matchedInput,
-            @Nonnull final BEAttributeCategoryMatchedIntervalConsumer consumer)
+    void collectStatistics(@Nonnull final BEStatisticsCollector collector)
     {
+        this.values.forEach((value, postings) -> collector.addValue(
+                postings,
+                BEStatisticsCollector.getStringBytes(value) + TRIE_NODE_BYTES));
+        collector.setTrieNodeCount(((BitTrie<?, ?>) this.values).getTotalNodes());
+    }
 
-        this.values.getAll(getValue(attributeValue), entry -> consumer.accept(matchedInput, entry.getValue()));
+    @Override
+    void writeValues(@Nonnull final BEIndexOutput out) throws IOException
+    {
+        final List<String> keys = BEIndexOutput.sortUtf8(this.values.keySet(), this.reverse);
+        final List<BEPostingList> postings = new ArrayList<>(keys.size());
+        keys.forEach(key -> postings.add(this.values.get(key)));
+        out.writeInt(keys.size());
+        out.writeStrings(keys);
+        out.writePostings(postings);
     }
 
-    public Trie<String, List<BEInterval>> getValues()
+    @Override
+    void readValues(@Nonnull final BEIndexInput in) throws IOException
     {
-        return this.values;
+        // values were normalized when they were added so they are stored as is
+        final int count = in.readCount();
+        final String[] keys = in.readStrings(count);
+        final BEPostingList[] postings = in.readPostings(count);
+        for (int i = 0; i < count; i++)
+        {
+            this.values.put(keys[i], postings[i]);
+        }
     }
 
     @Override
     protected void compact()
     {
-        this.values.values().forEach(value -> ((ArrayList<BEInterval>) value).trimToSize());
+        super.compact();
+        this.values.values().forEach(BEPostingList::trimToSize);
     }
 }
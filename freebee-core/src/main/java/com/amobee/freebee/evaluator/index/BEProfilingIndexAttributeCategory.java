@@ -0,0 +1,153 @@
+package com.amobee.freebee.evaluator.index;
+
+import com.amobee.freebee.evaluator.BEInterval;
+import com.amobee.freebee.evaluator.BEPostingList;
+
+import java.util.function.Consumer;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * Attribute category used while a {@link BEValueProfiler} is attached to an index, wraps an index attribute category
+ * and records sampled lookups of its values with the profiler.
+ *
+ * The wrapped value dictionary is hidden so that encoded input values are looked up by value and recorded by value
+ * rather than by id.
+ */
+final class BEProfilingIndexAttributeCategory extends BEIndexAttributeCategory
+{
+    private static final long serialVersionUID = 7723958613486046154L;
+
+    @Nonnull
+    private final BEIndexAttributeCategory indexAttributeCategory;
+    @Nonnull
+    private final String attributeCategory;
+    @Nonnull
+    private final transient BEValueProfiler profiler;
+
+    BEProfilingIndexAttributeCategory(
+            @Nonnull final BEIndexAttributeCategory indexAttributeCategory,
+            @Nonnull final String attributeCategory,
+            @Nonnull final BEValueProfiler profiler)
+    {
+        this.indexAttributeCategory = indexAttributeCategory;
+        this.attributeCategory = attributeCategory;
+        this.profiler = profiler;
+    }
+
+    @Override
+    public void addInterval(@Nonnull final Object attributeValue, @Nonnull final BEInterval interval)
+    {
+        throw new UnsupportedOperationException("Intervals can not be added while profiling");
+    }
+
+    @Override
+    public void getPostings(final byte attributeValue, @Nonnull final Consumer<BEPostingList> consumer)
+    {
+        if (this.profiler.sample())
+        {
+            final PostingCounter counter = new PostingCounter(consumer);
+            this.indexAttributeCategory.getPostings(attributeValue, counter);
+            this.profiler.record(this.attributeCategory, String.valueOf(attributeValue), counter.count);
+        }
+        else
+        {
+            this.indexAttributeCategory.getPostings(attributeValue, consumer);
+        }
+    }
+
+    @Override
+    public void getPostings(final double attributeValue, @Nonnull final Consumer<BEPostingList> consumer)
+    {
+        if (this.profiler.sample())
+        {
+            final PostingCounter counter = new PostingCounter(consumer);
+            this.indexAttributeCategory.getPostings(attributeValue, counter);
+            this.profiler.record(this.attributeCategory, String.valueOf(attributeValue), counter.count);
+        }
+        else
+        {
+            this.indexAttributeCategory.getPostings(attributeValue, consumer);
+        }
+    }
+
+    @Override
+    public void getPostings(final int attributeValue, @Nonnull final Consumer<BEPostingList> consumer)
+    {
+        if (this.profiler.sample())
+        {
+            final PostingCounter counter = new PostingCounter(consumer);
+            this.indexAttributeCategory.getPostings(attributeValue, counter);
+            this.profiler.record(this.attributeCategory, String.valueOf(attributeValue), counter.count);
+        }
+        else
+        {
+            this.indexAttributeCategory.getPostings(attributeValue, consumer);
+        }
+    }
+
+    @Override
+    public void getPostings(final long attributeValue, @Nonnull final Consumer<BEPostingList> consumer)
+    {
+        if (this.profiler.sample())
+        {
+            final PostingCounter counter = new PostingCounter(consumer);
+            this.indexAttributeCategory.getPostings(attributeValue, counter);
+            this.profiler.record(this.attributeCategory, String.valueOf(attributeValue), counter.count);
+        }
+        else
+        {
+            this.indexAttributeCategory.getPostings(attributeValue, consumer);
+        }
+    }
+
+    @Override
+    public void getPostings(@Nonnull final String attributeValue, @Nonnull final Consumer<BEPostingList> consumer)
+    {
+        if (this.profiler.sample())
+        {
+            final PostingCounter counter = new PostingCounter(consumer);
+            this.indexAttributeCategory.getPostings(attributeValue, counter);
+            this.profiler.record(this.attributeCategory, attributeValue, counter.count);
+        }
+        else
+        {
+            this.indexAttributeCategory.getPostings(attributeValue, consumer);
+        }
+    }
+
+    @Nullable
+    @Override
+    public BEValueDictionary getValueDictionary()
+    {
+        return null;
+    }
+
+    @Nonnull
+    @Override
+    public BEPostingList getNegativePostings()
+    {
+        return this.indexAttributeCategory.getNegativePostings();
+    }
+
+    /**
+     * Counts the postings passed on to another consumer.
+     */
+    private static final class PostingCounter implements Consumer<BEPostingList>
+    {
+        private final Consumer<BEPostingList> consumer;
+        private int count;
+
+        private PostingCounter(@Nonnull final Consumer<BEPostingList> consumer)
+        {
+            this.consumer = consumer;
+        }
+
+        @Override
+        public void accept(final BEPostingList postings)
+        {
+            this.count += postings.size();
+            this.consumer.accept(postings);
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.amobee.freebee.evaluator.index;
+
+import com.amobee.freebee.evaluator.BEPostingList;
+import com.google.common.collect.Range;
+import org.eclipse.collections.api.set.primitive.MutableIntSet;
+import org.eclipse.collections.impl.factory.primitive.IntSets;
+
+import java.io.IOException;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * Lookup structure of a range attribute category, the disjoint ranges of all indexed ranges as sorted arrays of closed
+ * primitive lower and upper bounds, each with the merged postings of all indexed ranges covering it. Values are looked
+ * up by binary search over the lower bounds without boxing.
+ *
+ * @see BEAbstractRangeIndexAttributeCategory
+ */
+@SuppressWarnings("UnstableApiUsage")
+abstract class BERangeIndex
+{
+    /**
+     * @param value
+     *         Value to look up.
+     * @return Postings of the disjoint range containing the value, or {@code null} if there is none.
+     */
+    @Nullable
+    abstract BEPostingList get(long value);
+
+    /**
+     * @param value
+     *         Value to look up.
+     * @return Postings of the disjoint range containing the value, or {@code null} if there is none.
+     */
+    @Nullable
+    abstract BEPostingList get(double value);
+
+    /**
+     * Calls the consumer with the postings of all disjoint ranges intersecting a range. The intersecting disjoint
+     * ranges are found by binary search, if there is more than one their postings are merged into a single posting
+     * list without duplicate intervals, as an interval covering several disjoint ranges has postings in each of them.
+     *
+     * @param range
+     *         Range to intersect.
+     * @param consumer
+     *         Consumer to call with matched postings.
+     */
+    abstract void forEachIntersecting(@Nonnull Range<? extends Number> range, @Nonnull Consumer<BEPostingList> consumer);
+
+    /**
+     * Calls the consumer with the postings of a run of disjoint ranges, merged without duplicate intervals if there is
+     * more than one.
+     *
+     * @param postings
+     *         Postings of disjoint ranges by index.
+     * @param from
+     *         Index of the first disjoint range, inclusive.
+     * @param to
+     *         Index of the last disjoint range, exclusive.
+     * @param consumer
+     *         Consumer to call with the postings.
+     */
+    static void acceptDistinct(
+            @Nonnull final IntFunction<BEPostingList> postings,
+            final int from,
+            final int to,
+            @Nonnull final Consumer<BEPostingList> consumer)
+    {
+        if (to - from == 1)
+        {
+            consumer.accept(postings.apply(from));
+        }
+        else if (to - from > 1)
+        {
+            final MutableIntSet intervalIds = IntSets.mutable.empty();
+            final BEPostingList merged = new BEPostingList();
+            for (int i = from; i < to; i++)
+            {
+                final BEPostingList rangePostings = postings.apply(i);
+                for (int j = 0; j < rangePostings.size(); j++)
+                {
+                    if (intervalIds.add(rangePostings.getIntervalId(j)))
+                    {
+                        merged.add(rangePostings, j);
+                    }
+                }
+            }
+            consumer.accept(merged);
+        }
+    }
+
+    /**
+     * @return Number of disjoint ranges.
+     */
+    abstract int size();
+
+    /**
+     * @param index
+     *         Index of the disjoint range.
+     * @return Postings of the disjoint range.
+     */
+    @Nonnull
+    abstract BEPostingList getPostings(int index);
+
+    /**
+     * Writes the bounds and postings of the disjoint ranges in the binary index format.
+     *
+     * @param out
+     *         Output to write to.
+     */
+    abstract void write(@Nonnull BEIndexOutput out) throws IOException;
+}
@@ -0,0 +1,30 @@
+package com.amobee.freebee.evaluator.index;
+
+/**
+ * Strategy for partitioning expressions into shards that are indexed and evaluated independently.
+ *
+ * @see com.amobee.freebee.evaluator.evaluator.BEEvaluatorBuilder#shards(int, BEShardingStrategy)
+ */
+public enum BEShardingStrategy
+{
+    /**
+     * Assigns expressions to shards by the hash code of their data. Cheap and stable, expressions with the same data
+     * always end up in the same shard.
+     */
+    HASH,
+
+    /**
+     * Groups expressions by their dominant attribute category (the category with the most predicate values) and then
+     * splits the groups into equally sized shards, so that expressions sharing attribute values tend to share a shard
+     * and their values are only indexed once.
+     */
+    DOMINANT_ATTRIBUTE,
+
+    /**
+     * Packs expressions onto the least loaded shard, largest expressions first, where the load of a shard is the number
+     * of predicate values indexed by it. Partial expressions are copied into every shard that references them so the
+     * cost of placing an expression includes any partial expressions that shard does not already contain, which keeps
+     * duplicated partial expression intervals to a minimum.
+     */
+    SIZE_BALANCED
+}
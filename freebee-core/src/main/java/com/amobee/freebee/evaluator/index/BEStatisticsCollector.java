@@ -0,0 +1,209 @@
+package com.amobee.freebee.evaluator.index;
+
+import com.amobee.freebee.evaluator.BEPostingList;
+
+import java.util.BitSet;
+import javax.annotation.Nonnull;
+
+import org.eclipse.collections.api.list.primitive.MutableIntList;
+import org.eclipse.collections.api.map.primitive.IntIntMap;
+import org.eclipse.collections.api.map.primitive.MutableIntIntMap;
+import org.eclipse.collections.api.set.primitive.MutableIntSet;
+import org.eclipse.collections.impl.list.mutable.primitive.IntArrayList;
+import org.eclipse.collections.impl.map.mutable.primitive.IntIntHashMap;
+import org.eclipse.collections.impl.set.mutable.primitive.IntHashSet;
+
+/**
+ * Collects the statistics of the attribute categories of an index, attribute categories add the postings of each of
+ * their values and the size of their lookup structures with
+ * {@link BEIndexAttributeCategory#collectStatistics(BEStatisticsCollector)}.
+ *
+ * Besides the statistics of each attribute category the number of distinct intervals of each expression are counted
+ * across all attribute categories.
+ *
+ * Byte estimates assume compressed references and are meant for capacity planning and for comparing index layouts,
+ * not as exact measurements.
+ */
+final class BEStatisticsCollector
+{
+    /** Estimated bytes of an empty string, object header and fields plus the header of its char array */
+    static final int STRING_BYTES = 40;
+
+    /** Estimated bytes of a hash map entry referencing a key and a posting list, including spare capacity */
+    static final int MAP_ENTRY_BYTES = 16;
+
+    /** Estimated bytes of a materialized interval or expression metadata object, object header and fields */
+    static final int INTERVAL_BYTES = 32;
+
+    // index wide state, distinct intervals of each expression
+    private final MutableIntSet seenIntervals = new IntHashSet();
+    private final MutableIntIntMap expressionIntervalCounts = new IntIntHashMap();
+
+    // state of the current attribute category
+    private final MutableIntList valuePostingCounts = new IntArrayList();
+    private long postingCount;
+    private long bytes;
+    private int rangeSegmentCount;
+    private int trieNodeCount;
+
+    /**
+     * Estimates the heap retained by a string.
+     *
+     * @param value
+     *         String to estimate the size of.
+     * @return Estimated number of bytes.
+     */
+    static long getStringBytes(@Nonnull final String value)
+    {
+        return STRING_BYTES + 2L * value.length();
+    }
+
+    /**
+     * Estimates the heap retained by an array.
+     *
+     * @param length
+     *         Number of elements of the array.
+     * @param elementBytes
+     *         Bytes of each element, 4 for references.
+     * @return Estimated number of bytes.
+     */
+    static long getArrayBytes(final int length, final int elementBytes)
+    {
+        return 16 + (long) elementBytes * length;
+    }
+
+    /**
+     * Estimates the heap retained by a BitSet.
+     *
+     * @param bits
+     *         BitSet to estimate the size of.
+     * @return Estimated number of bytes.
+     */
+    static long getBitSetBytes(@Nonnull final BitSet bits)
+    {
+        // object header and fields plus the words array
+        return 24 + getArrayBytes(bits.size() / Long.SIZE, 8);
+    }
+
+    /**
+     * Adds an attribute value of the current attribute category.
+     *
+     * @param postings
+     *         Postings of the value.
+     * @param keyBytes
+     *         Estimated bytes retained by the value and its entry in the lookup structure.
+     */
+    void addValue(@Nonnull final BEPostingList postings, final long keyBytes)
+    {
+        addMappedValue(postings);
+        this.bytes += keyBytes + postings.getRetainedBytes();
+    }
+
+    /**
+     * Adds an attribute value of the current attribute category that is held in a memory-mapped index rather than on
+     * the heap, its postings are counted but don't add to the estimated bytes.
+     *
+     * @param postings
+     *         Postings of the value.
+     */
+    void addMappedValue(@Nonnull final BEPostingList postings)
+    {
+        this.valuePostingCounts.add(postings.size());
+        this.postingCount += postings.size();
+        addIntervals(postings);
+    }
+
+    /**
+     * Adds postings of the current attribute category that aren't the postings of a single value, e.g. the postings
+     * of the disjoint ranges of a range category.
+     *
+     * @param postings
+     *         Postings to add.
+     * @param keyBytes
+     *         Estimated bytes retained by the lookup structure for the postings.
+     */
+    void addLookupPostings(@Nonnull final BEPostingList postings, final long keyBytes)
+    {
+        this.bytes += keyBytes + postings.getRetainedBytes();
+        addIntervals(postings);
+    }
+
+    void setRangeSegmentCount(final int rangeSegmentCount)
+    {
+        this.rangeSegmentCount = rangeSegmentCount;
+    }
+
+    void setTrieNodeCount(final int trieNodeCount)
+    {
+        this.trieNodeCount = trieNodeCount;
+    }
+
+    /**
+     * Completes the statistics of the current attribute category and starts a new one.
+     *
+     * @param attributeCategory
+     *         Name of the attribute category.
+     * @param indexAttributeCategory
+     *         The attribute category.
+     * @return Statistics of the attribute category.
+     */
+    @Nonnull
+    BEAttributeCategoryStatistics complete(
+            @Nonnull final String attributeCategory,
+            @Nonnull final BEIndexAttributeCategory indexAttributeCategory)
+    {
+        final BEPostingList negativePostings = indexAttributeCategory.getNegativePostings();
+        addIntervals(negativePostings);
+
+        final int[] counts = this.valuePostingCounts.toSortedArray();
+        final int valueCount = counts.length;
+        final BEAttributeCategoryStatistics statistics = new BEAttributeCategoryStatistics(
+                attributeCategory,
+                indexAttributeCategory.getClass().getSimpleName(),
+                valueCount,
+                this.postingCount,
+                valueCount == 0 ? 0 : counts[valueCount - 1],
+                valueCount == 0 ? 0.0 : (double) this.postingCount / valueCount,
+                valueCount == 0 ? 0 : counts[Math.max(0, (int) Math.ceil(valueCount * 0.99) - 1)],
+                negativePostings.size(),
+                this.rangeSegmentCount,
+                this.trieNodeCount,
+                this.bytes + negativePostings.getRetainedBytes());
+
+        this.valuePostingCounts.clear();
+        this.postingCount = 0;
+        this.bytes = 0;
+        this.rangeSegmentCount = 0;
+        this.trieNodeCount = 0;
+        return statistics;
+    }
+
+    /**
+     * @return Number of distinct intervals of all attribute categories collected so far.
+     */
+    int getIntervalCount()
+    {
+        return this.seenIntervals.size();
+    }
+
+    /**
+     * @return Number of distinct intervals of each expression by expression id.
+     */
+    @Nonnull
+    IntIntMap getExpressionIntervalCounts()
+    {
+        return this.expressionIntervalCounts;
+    }
+
+    private void addIntervals(@Nonnull final BEPostingList postings)
+    {
+        final int size = postings.size();
+        for (int i = 0; i < size; i++)
+        {
+            if (this.seenIntervals.add(postings.getIntervalId(i)))
+            {
+                this.expressionIntervalCounts.addToValue(postings.getExpressionId(i), 1);
+            }
+        }
+    }
+}
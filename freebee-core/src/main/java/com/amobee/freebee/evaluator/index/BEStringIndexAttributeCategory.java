@@ -2,28 +2,40 @@ package com.amobee.freebee.evaluator.index;
 
 import com.amobee.freebee.config.BEDataTypeConfig;
 import com.amobee.freebee.evaluator.BEInterval;
-import com.amobee.freebee.evaluator.evaluator.BEInputAttributeCategory;
-import lombok.Getter;
+import com.amobee.freebee.evaluator.BEPostingList;
+import com.amobee.freebee.util.CaseInsensitiveHashingStrategy;
+import java.io.IOException;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.function.Consumer;
 import javax.annotation.Nonnull;
-import javax.annotation.Nullable;
 
-import org.eclipse.collections.api.map.MutableMap;
-import org.eclipse.collections.impl.factory.Maps;
+import org.eclipse.collections.api.list.MutableList;
+import org.eclipse.collections.api.map.primitive.MutableObjectIntMap;
+import org.eclipse.collections.impl.factory.Lists;
+import org.eclipse.collections.impl.factory.primitive.ObjectIntMaps;
+import org.eclipse.collections.impl.map.mutable.primitive.ObjectIntHashMapWithHashingStrategy;
 
 /**
+ * Attribute category for exact match string values.
+ *
+ * Values are kept in a {@link BEValueDictionary}, every distinct value is assigned the next id when it is first added
+ * and its postings are stored at that id, so values encoded to ids can be looked up without hashing the value.
+ *
  * @author Michael Bond
  */
-@Getter
-public class BEStringIndexAttributeCategory extends BEAbstractStringIndexAttributeCategory implements Serializable
+public class BEStringIndexAttributeCategory extends BEAbstractStringIndexAttributeCategory implements BEValueDictionary, Serializable
 {
-    private static final long serialVersionUID = 4185476996223857599L;
+    private static final long serialVersionUID = -1404946563327853744L;
 
+    /** Value -> value id, case insensitive if case is ignored so that lookups don't have to lower case the value */
     @Nonnull
-    private final MutableMap<String, List<BEInterval>> values = Maps.mutable.of();
+    private final MutableObjectIntMap<String> valueIds;
+
+    /** Value id -> postings */
+    @Nonnull
+    private final MutableList<BEPostingList> postings = Lists.mutable.empty();
 
     public static BEIndexAttributeCategory newInstance(@Nonnull final BEDataTypeConfig dataTypeConfig)
     {
@@ -39,12 +51,20 @@ public class BEStringIndexAttributeCategory extends BEAbstractStringIndexAttribu
     public BEStringIndexAttributeCategory(final boolean ignoreCase)
     {
         super(ignoreCase);
+        this.valueIds = ignoreCase ?
+                new ObjectIntHashMapWithHashingStrategy<>(CaseInsensitiveHashingStrategy.INSTANCE) :
+                ObjectIntMaps.mutable.empty();
     }
 
     @Override
     public void addInterval(@Nonnull final Object attributeValue, @Nonnull final BEInterval interval)
     {
-        this.values.getIfAbsentPut(getValue(attributeValue.toString()), ArrayList::new).add(interval);
+        final int valueId = this.valueIds.getIfAbsentPut(getValue(attributeValue.toString()), this.postings.size());
+        if (valueId == this.postings.size())
+        {
+            this.postings.add(new BEPostingList());
+        }
+        this.postings.get(valueId).add(interval);
 
         // if interval is negative, add a "wildcard" interval
         if (interval.isNegative())
@@ -54,23 +74,72 @@ public class BEStringIndexAttributeCategory extends BEAbstractStringIndexAttribu
     }
 
     @Override
-    public void getIntervals(@Nonnull final String attributeValue, @Nonnull final Consumer<List<BEInterval>> consumer)
+    public void getPostings(@Nonnull final String attributeValue, @Nonnull final Consumer<BEPostingList> consumer)
+    {
+        final int valueId = getValueId(attributeValue);
+        if (valueId != NO_VALUE_ID)
+        {
+            consumer.accept(this.postings.get(valueId));
+        }
+    }
+
+    @Nonnull
+    @Override
+    public BEValueDictionary getValueDictionary()
+    {
+        return this;
+    }
+
+    @Override
+    public int getValueId(@Nonnull final String attributeValue)
     {
-        callConsumer(this.values.get(getValue(attributeValue)), consumer);
+        return this.valueIds.getIfAbsent(attributeValue, NO_VALUE_ID);
     }
 
     @Override
-    public void getIntervals(
-            @Nonnull final String attributeValue,
-            @Nullable final BEInputAttributeCategory matchedInput,
-            @Nonnull final BEAttributeCategoryMatchedIntervalConsumer consumer)
+    public void getPostingsByValueId(final int valueId, @Nonnull final Consumer<BEPostingList> consumer)
     {
-        callConsumer(this.values.get(getValue(attributeValue)), matchedInput, consumer);
+        consumer.accept(this.postings.get(valueId));
+    }
+
+    @Override
+    void collectStatistics(@Nonnull final BEStatisticsCollector collector)
+    {
+        this.valueIds.forEachKeyValue((value, valueId) -> collector.addValue(
+                this.postings.get(valueId),
+                BEStatisticsCollector.getStringBytes(value) + BEStatisticsCollector.MAP_ENTRY_BYTES));
+    }
+
+    @Override
+    void writeValues(@Nonnull final BEIndexOutput out) throws IOException
+    {
+        final List<String> keys = BEIndexOutput.sortUtf8(this.valueIds.keySet(), false);
+        final List<BEPostingList> sortedPostings = new ArrayList<>(keys.size());
+        keys.forEach(key -> sortedPostings.add(this.postings.get(this.valueIds.get(key))));
+        out.writeInt(keys.size());
+        out.writeStrings(keys);
+        out.writePostings(sortedPostings);
+    }
+
+    @Override
+    void readValues(@Nonnull final BEIndexInput in) throws IOException
+    {
+        // values were normalized when they were added so they are stored as is, value ids are assigned in dictionary
+        // order
+        final int count = in.readCount();
+        final String[] keys = in.readStrings(count);
+        final BEPostingList[] sortedPostings = in.readPostings(count);
+        for (int i = 0; i < count; i++)
+        {
+            this.valueIds.put(keys[i], i);
+            this.postings.add(sortedPostings[i]);
+        }
     }
 
     @Override
     protected void compact()
     {
-        this.values.values().forEach(value -> ((ArrayList<BEInterval>) value).trimToSize());
+        super.compact();
+        this.postings.forEach(BEPostingList::trimToSize);
     }
 }
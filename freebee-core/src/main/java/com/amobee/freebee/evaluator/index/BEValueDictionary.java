@@ -0,0 +1,27 @@
+package com.amobee.freebee.evaluator.index;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Dictionary of the attribute values of an index attribute category. Each distinct value is assigned a dense int id
+ * that stays the same for the lifetime of the attribute category, input values can be encoded to ids once and their
+ * postings looked up by id with {@link BEIndexAttributeCategory#getPostingsByValueId(int, java.util.function.Consumer)}
+ * rather than by value.
+ *
+ * @see BEIndexAttributeCategory#getValueDictionary()
+ */
+public interface BEValueDictionary
+{
+    /** Id of values that are not in the dictionary */
+    int NO_VALUE_ID = -1;
+
+    /**
+     * Get the id of an attribute value, the value is normalized the same way values are normalized when they are
+     * looked up, e.g. it is lower cased if the attribute category ignores case.
+     *
+     * @param attributeValue
+     *         Attribute value to get the id of.
+     * @return Id of the value or {@link #NO_VALUE_ID} if the value is not in the dictionary.
+     */
+    int getValueId(@Nonnull String attributeValue);
+}
@@ -0,0 +1,143 @@
+package com.amobee.freebee.evaluator.index;
+
+import java.util.List;
+import javax.annotation.Nonnull;
+
+/**
+ * Snapshot of the sampled lookups of an attribute category recorded by a {@link BEValueProfiler}, with the most
+ * frequently looked up values of the category.
+ *
+ * All counts are of sampled lookups, multiply them by the {@link BEValueProfiler#getSampleRate() sample rate} to
+ * estimate the total number of lookups.
+ */
+public class BEValueProfile
+{
+    private final String attributeCategory;
+    private final long probeCount;
+    private final long postingCount;
+    private final List<Value> topValues;
+
+    BEValueProfile(
+            @Nonnull final String attributeCategory,
+            final long probeCount,
+            final long postingCount,
+            @Nonnull final List<Value> topValues)
+    {
+        this.attributeCategory = attributeCategory;
+        this.probeCount = probeCount;
+        this.postingCount = postingCount;
+        this.topValues = topValues;
+    }
+
+    /**
+     * @return Name of the attribute category.
+     */
+    @Nonnull
+    public String getAttributeCategory()
+    {
+        return this.attributeCategory;
+    }
+
+    /**
+     * @return Number of sampled lookups of values of the attribute category.
+     */
+    public long getProbeCount()
+    {
+        return this.probeCount;
+    }
+
+    /**
+     * @return Number of postings returned by the sampled lookups.
+     */
+    public long getPostingCount()
+    {
+        return this.postingCount;
+    }
+
+    /**
+     * @return Most frequently looked up values, most frequent first.
+     */
+    @Nonnull
+    public List<Value> getTopValues()
+    {
+        return this.topValues;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "BEValueProfile{" +
+                "attributeCategory='" + this.attributeCategory + '\'' +
+                ", probeCount=" + this.probeCount +
+                ", postingCount=" + this.postingCount +
+                ", topValues=" + this.topValues +
+                '}';
+    }
+
+    /**
+     * Sampled lookups of a single attribute value.
+     *
+     * Values are tracked with the space-saving algorithm, the probe count of a value may be overestimated by up to its
+     * error but values whose probe count exceeds the total probe count of the attribute category divided by the number
+     * of tracked values are never missed.
+     */
+    public static class Value
+    {
+        private final String value;
+        private final long probeCount;
+        private final long error;
+        private final int postingCount;
+
+        Value(@Nonnull final String value, final long probeCount, final long error, final int postingCount)
+        {
+            this.value = value;
+            this.probeCount = probeCount;
+            this.error = error;
+            this.postingCount = postingCount;
+        }
+
+        /**
+         * @return Attribute value.
+         */
+        @Nonnull
+        public String getValue()
+        {
+            return this.value;
+        }
+
+        /**
+         * @return Estimated number of sampled lookups of the value.
+         */
+        public long getProbeCount()
+        {
+            return this.probeCount;
+        }
+
+        /**
+         * @return Maximum amount the probe count is overestimated by.
+         */
+        public long getError()
+        {
+            return this.error;
+        }
+
+        /**
+         * @return Number of postings returned by the last lookup of the value.
+         */
+        public int getPostingCount()
+        {
+            return this.postingCount;
+        }
+
+        @Override
+        public String toString()
+        {
+            return "Value{" +
+                    "value='" + this.value + '\'' +
+                    ", probeCount=" + this.probeCount +
+                    ", error=" + this.error +
+                    ", postingCount=" + this.postingCount +
+                    '}';
+        }
+    }
+}
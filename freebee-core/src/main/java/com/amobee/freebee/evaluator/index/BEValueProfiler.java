@@ -0,0 +1,212 @@
+package com.amobee.freebee.evaluator.index;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import javax.annotation.Nonnull;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+/**
+ * Sampling profiler of the attribute value lookups of evaluations, used to find the attribute categories and values
+ * that evaluation cost is spent on, e.g. a single value that returns the postings of tens of thousands of expressions.
+ *
+ * One in every {@link #getSampleRate() sample rate} lookups is recorded. For each attribute category the number of
+ * sampled lookups and the postings they returned are counted, and the most frequently looked up values are tracked
+ * with the space-saving algorithm in a fixed amount of memory regardless of the number of distinct values.
+ *
+ * A profiler may be shared by any number of indexes, lookups of attribute categories with the same name are recorded
+ * together. Lookups of a batch of inputs are only recorded once per distinct value of the batch. Recording is thread
+ * safe, lookups that are not sampled only cost a random number.
+ *
+ * @see BEIndexBuilder#valueProfiler(BEValueProfiler)
+ * @see com.amobee.freebee.evaluator.evaluator.BEEvaluatorBuilder#valueProfiler(BEValueProfiler)
+ */
+public class BEValueProfiler
+{
+    private static final ObjectMapper MAPPER = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+
+    private final int sampleRate;
+    private final int topValueCount;
+    private final ConcurrentMap<String, CategoryProfile> categoryProfiles = new ConcurrentHashMap<>();
+
+    /**
+     * @param sampleRate
+     *         Record one in every sampleRate lookups, 1 records every lookup.
+     * @param topValueCount
+     *         Number of values tracked for each attribute category.
+     */
+    public BEValueProfiler(final int sampleRate, final int topValueCount)
+    {
+        if (sampleRate < 1)
+        {
+            throw new IllegalArgumentException("sampleRate must be at least 1 but was " + sampleRate);
+        }
+        if (topValueCount < 1)
+        {
+            throw new IllegalArgumentException("topValueCount must be at least 1 but was " + topValueCount);
+        }
+        this.sampleRate = sampleRate;
+        this.topValueCount = topValueCount;
+    }
+
+    /**
+     * @return Number of lookups for every lookup recorded.
+     */
+    public int getSampleRate()
+    {
+        return this.sampleRate;
+    }
+
+    /**
+     * @return Number of values tracked for each attribute category.
+     */
+    public int getTopValueCount()
+    {
+        return this.topValueCount;
+    }
+
+    /**
+     * Gets a snapshot of the lookups recorded so far.
+     *
+     * @return Profiles of all attribute categories with recorded lookups, those whose lookups returned the most
+     * postings first.
+     */
+    @Nonnull
+    public List<BEValueProfile> getProfiles()
+    {
+        final List<BEValueProfile> profiles = new ArrayList<>(this.categoryProfiles.size());
+        this.categoryProfiles.forEach((attributeCategory, profile) -> profiles.add(profile.snapshot(attributeCategory)));
+        profiles.sort(Comparator.comparingLong(BEValueProfile::getPostingCount).reversed());
+        return profiles;
+    }
+
+    /**
+     * Dumps a snapshot of the lookups recorded so far as JSON, including the sample rate.
+     *
+     * @return JSON report.
+     */
+    @Nonnull
+    public String toJson() throws IOException
+    {
+        final Map<String, Object> report = new HashMap<>();
+        report.put("sampleRate", this.sampleRate);
+        report.put("profiles", getProfiles());
+        return MAPPER.writeValueAsString(report);
+    }
+
+    /**
+     * Clears all recorded lookups.
+     */
+    public void reset()
+    {
+        this.categoryProfiles.clear();
+    }
+
+    /**
+     * @return true if the current lookup should be recorded.
+     */
+    boolean sample()
+    {
+        return this.sampleRate == 1 || ThreadLocalRandom.current().nextInt(this.sampleRate) == 0;
+    }
+
+    /**
+     * Records a sampled lookup.
+     *
+     * @param attributeCategory
+     *         Name of the attribute category the value was looked up in.
+     * @param value
+     *         Attribute value looked up.
+     * @param postingCount
+     *         Number of postings returned by the lookup.
+     */
+    void record(@Nonnull final String attributeCategory, @Nonnull final String value, final int postingCount)
+    {
+        this.categoryProfiles
+                .computeIfAbsent(attributeCategory, name -> new CategoryProfile(this.topValueCount))
+                .record(value, postingCount);
+    }
+
+    /**
+     * Lookups of a single attribute category.
+     */
+    private static final class CategoryProfile
+    {
+        private final LongAdder probeCount = new LongAdder();
+        private final LongAdder postingCount = new LongAdder();
+        private final int capacity;
+        /** Tracked values, guarded by this */
+        private final Map<String, ValueCounter> counters = new HashMap<>();
+
+        private CategoryProfile(final int capacity)
+        {
+            this.capacity = capacity;
+        }
+
+        private void record(@Nonnull final String value, final int postings)
+        {
+            this.probeCount.increment();
+            this.postingCount.add(postings);
+
+            synchronized (this)
+            {
+                ValueCounter counter = this.counters.get(value);
+                if (null == counter)
+                {
+                    if (this.counters.size() < this.capacity)
+                    {
+                        counter = new ValueCounter(0L);
+                    }
+                    else
+                    {
+                        // replace the least frequent value, the new value may have been looked up as often as it was
+                        final Map.Entry<String, ValueCounter> min = this.counters.entrySet()
+                                .stream()
+                                .min(Comparator.comparingLong(entry -> entry.getValue().count))
+                                .orElseThrow(IllegalStateException::new);
+                        this.counters.remove(min.getKey());
+                        counter = new ValueCounter(min.getValue().count);
+                    }
+                    this.counters.put(value, counter);
+                }
+                counter.count++;
+                counter.postingCount = postings;
+            }
+        }
+
+        @Nonnull
+        private BEValueProfile snapshot(@Nonnull final String attributeCategory)
+        {
+            final List<BEValueProfile.Value> values = new ArrayList<>();
+            synchronized (this)
+            {
+                this.counters.forEach((value, counter) ->
+                        values.add(new BEValueProfile.Value(value, counter.count, counter.error, counter.postingCount)));
+            }
+            values.sort(Comparator.comparingLong(BEValueProfile.Value::getProbeCount).reversed());
+            return new BEValueProfile(attributeCategory, this.probeCount.sum(), this.postingCount.sum(), values);
+        }
+    }
+
+    private static final class ValueCounter
+    {
+        private final long error;
+        private long count;
+        private int postingCount;
+
+        private ValueCounter(final long error)
+        {
+            this.error = error;
+            this.count = error;
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package com.amobee.freebee.evaluator.index;
 
 import java.util.Collection;
+import java.util.function.BiConsumer;
 
 import com.google.common.collect.Range;
 
@@ -104,6 +105,13 @@ interface RangeCollectionMap<K extends Comparable<K>, V>
      */
     void putAdd(Range<K> key, V valueToAdd);
 
+    /**
+     * Calls the consumer for each of the disjoint ranges and the collection of values mapped to it.
+     *
+     * @param consumer the consumer to call for each disjoint range
+     */
+    void forEach(BiConsumer<Range<K>, Collection<V>> consumer);
+
     /**
      * Clears all entries from the map
      */
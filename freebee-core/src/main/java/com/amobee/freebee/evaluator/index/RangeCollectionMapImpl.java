@@ -9,6 +9,7 @@ import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
+import java.util.function.BiConsumer;
 import java.util.function.Supplier;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
@@ -82,6 +83,12 @@ class RangeCollectionMapImpl<K extends Comparable<K>, V> implements RangeCollect
         });
     }
 
+    @Override
+    public void forEach(@Nonnull final BiConsumer<Range<K>, Collection<V>> consumer)
+    {
+        this.rangeMap.asMapOfRanges().forEach(consumer);
+    }
+
     @Nullable
     @Override
     public Collection<V> get(final K key)
@@ -102,6 +109,8 @@ class RangeCollectionMapImpl<K extends Comparable<K>, V> implements RangeCollect
      * Essentially: disjoint, non-overlapping ranges that are mapped to a collection of values.
      *
      * Using the above example, get([1..7]) should result in: ["C", "D", "E", "F"]
+     *
+     * Lookups take O(log n + k) for k overlapping ranges.
      */
     @Nullable
     @Override
@@ -109,12 +118,8 @@ class RangeCollectionMapImpl<K extends Comparable<K>, V> implements RangeCollect
     {
         final Collection<V> result = this.collectionSupplier.get();
 
-        this.rangeMap.asMapOfRanges().forEach((range, values) -> {
-            if (range.isConnected(keyRange) && !range.intersection(keyRange).isEmpty())
-            {
-                result.addAll(values);
-            }
-        });
+        // the sub range map seeks to the first range overlapping the key range and only visits overlapping ranges
+        this.rangeMap.subRangeMap(keyRange).asMapOfRanges().values().forEach(result::addAll);
 
         return result.isEmpty() ? null : result;
     }
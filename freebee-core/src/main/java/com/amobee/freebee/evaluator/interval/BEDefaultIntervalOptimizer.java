@@ -31,6 +31,38 @@ public class BEDefaultIntervalOptimizer implements BEIntervalOptimizer
         return distinctIntervalsDoNoOverlap(intervalLength, intervals);
     }
 
+    @Override
+    public boolean canUseCountMatching(final int intervalLength, @Nonnull final Collection<? extends Interval> intervals)
+    {
+        if (intervals == null || intervals.isEmpty())
+        {
+            throw new IllegalArgumentException("intervals cannot be empty");
+        }
+
+        // Counting is only safe for pure conjunctions, i.e. every interval covers its own distinct span and the spans
+        // together cover the entire expression without overlapping. In that case the expression is matched exactly
+        // when every one of its intervals is matched. Intervals sharing a span (disjunctions) would be over counted.
+
+        final BitSet aggregator = new BitSet(intervalLength);
+        for (final Interval interval : intervals)
+        {
+            final int start = interval.getStart();
+            final int end = interval.getEnd();
+            if (start < 0 || end <= start || end > intervalLength)
+            {
+                return false;
+            }
+            final int nextCovered = aggregator.nextSetBit(start);
+            if (nextCovered != -1 && nextCovered < end)
+            {
+                // overlap detected, stop looking
+                return false;
+            }
+            aggregator.set(start, end);
+        }
+        return aggregator.cardinality() == intervalLength;
+    }
+
     private boolean distinctIntervalsDoNoOverlap(final int intervalLength, @Nonnull final Collection<? extends Interval> intervals)
     {
 
@@ -12,4 +12,19 @@ import java.util.Collection;
 public interface BEIntervalOptimizer
 {
     boolean canUseBitSetMatching(int intervalLength, Collection<? extends Interval> intervals);
+
+    /**
+     * Determines if an expression is a pure conjunction that can be matched by counting the distinct intervals
+     * matched for the expression and comparing the count with the number of intervals of the expression.
+     *
+     * @param intervalLength
+     *         Interval length of the expression.
+     * @param intervals
+     *         All intervals of the expression.
+     * @return true if the expression can be matched by counting intervals.
+     */
+    default boolean canUseCountMatching(final int intervalLength, final Collection<? extends Interval> intervals)
+    {
+        return false;
+    }
 }
@@ -96,8 +96,13 @@ public class BEConjunctionNode extends BENode
     {
         if (this.numNodes == UNSET)
         {
-            this.numNodes = 1;
-            this.values.forEach(v -> this.numNodes += v.getNumNodes());
+            // count into a local so that concurrent callers (e.g. a parallel index build) never see a partial count
+            short count = 1;
+            for (final BENode value : this.values)
+            {
+                count += value.getNumNodes();
+            }
+            this.numNodes = count;
         }
         return this.numNodes;
     }
@@ -107,8 +112,12 @@ public class BEConjunctionNode extends BENode
     {
         if (this.numPredicates == UNSET)
         {
-            this.numPredicates = 0;
-            this.values.forEach(v -> this.numPredicates += v.getNumPredicates());
+            short count = 0;
+            for (final BENode value : this.values)
+            {
+                count += value.getNumPredicates();
+            }
+            this.numPredicates = count;
         }
         return this.numPredicates;
     }
@@ -0,0 +1,68 @@
+package com.amobee.freebee.util;
+
+import javax.annotation.Nonnull;
+
+import org.eclipse.collections.api.block.HashingStrategy;
+
+/**
+ * Hashing strategy for case insensitive string keys. Strings are hashed and compared one folded character at a time,
+ * using the same folding as {@link String#equalsIgnoreCase(String)}, so looking up a key doesn't allocate a lower or
+ * upper cased copy of it.
+ */
+public final class CaseInsensitiveHashingStrategy implements HashingStrategy<String>
+{
+    public static final CaseInsensitiveHashingStrategy INSTANCE = new CaseInsensitiveHashingStrategy();
+
+    private static final long serialVersionUID = 6245117954563271018L;
+
+    private CaseInsensitiveHashingStrategy()
+    {
+    }
+
+    /**
+     * Folds the case of a character, characters that are equal ignoring case fold to the same character.
+     *
+     * @param c
+     *         Character to fold.
+     * @return Folded character.
+     */
+    public static char foldCase(final char c)
+    {
+        // ASCII is folded inline, keeping this small enough to be inlined into lookup loops without pushing the code
+        // around them over the inlining limits
+        if (c < 0x80)
+        {
+            return c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+        }
+        return foldNonAsciiCase(c);
+    }
+
+    private static char foldNonAsciiCase(final char c)
+    {
+        // upper then lower casing, as equalsIgnoreCase does, also folds characters without a one to one case mapping
+        return Character.toLowerCase(Character.toUpperCase(c));
+    }
+
+    @Override
+    public int computeHashCode(@Nonnull final String object)
+    {
+        int hashCode = 0;
+        final int length = object.length();
+        for (int i = 0; i < length; i++)
+        {
+            hashCode = 31 * hashCode + foldCase(object.charAt(i));
+        }
+        return hashCode;
+    }
+
+    @Override
+    public boolean equals(@Nonnull final String object1, @Nonnull final String object2)
+    {
+        return object1.equalsIgnoreCase(object2);
+    }
+
+    private Object readResolve()
+    {
+        return INSTANCE;
+    }
+}
@@ -0,0 +1,179 @@
+package com.amobee.freebee.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Thread safe histogram of non-negative long values with a fixed relative precision, used to record latencies and
+ * counts so that percentiles can be exported without depending on a metrics framework.
+ *
+ * Values are counted in log-linear buckets, every power of two range is split into the same number of linear
+ * sub-buckets, so memory use is fixed regardless of the range of recorded values and the reported percentiles are
+ * within a relative error of 2^-(precisionBits - 1) of the recorded values. Values below 2^precisionBits are recorded
+ * exactly.
+ *
+ * Recording never allocates or locks. Reading while values are being recorded returns an approximate snapshot.
+ */
+public class Histogram
+{
+    public static final int DEFAULT_PRECISION_BITS = 7;
+
+    private final int precisionBits;
+    private final int subBucketCount;
+    private final int subBucketHalfCount;
+    private final AtomicLongArray counts;
+    private final LongAdder totalCount = new LongAdder();
+    private final LongAdder totalValue = new LongAdder();
+    private final AtomicLong maxValue = new AtomicLong();
+
+    public Histogram()
+    {
+        this(DEFAULT_PRECISION_BITS);
+    }
+
+    /**
+     * @param precisionBits
+     *         Number of bits of precision of recorded values, from 1 to 16, the default of 7 keeps reported values
+     *         within 1/64 (about 1.6%), 8 within 1/128 (about 0.8%).
+     */
+    public Histogram(final int precisionBits)
+    {
+        if (precisionBits < 1 || precisionBits > 16)
+        {
+            throw new IllegalArgumentException("precisionBits must be between 1 and 16 but was " + precisionBits);
+        }
+        this.precisionBits = precisionBits;
+        this.subBucketCount = 1 << precisionBits;
+        this.subBucketHalfCount = this.subBucketCount >> 1;
+        this.counts = new AtomicLongArray(this.subBucketCount + (Long.SIZE - 1 - precisionBits) * this.subBucketHalfCount);
+    }
+
+    /**
+     * Records a value.
+     *
+     * @param value
+     *         Value to record, must not be negative.
+     */
+    public void record(final long value)
+    {
+        if (value < 0)
+        {
+            throw new IllegalArgumentException("Negative values can't be recorded: " + value);
+        }
+        this.counts.incrementAndGet(getBucket(value));
+        this.totalCount.increment();
+        this.totalValue.add(value);
+        this.maxValue.accumulateAndGet(value, Math::max);
+    }
+
+    /**
+     * @return Number of values recorded.
+     */
+    public long getCount()
+    {
+        return this.totalCount.sum();
+    }
+
+    /**
+     * @return Largest value recorded, 0 if no values were recorded.
+     */
+    public long getMax()
+    {
+        return this.maxValue.get();
+    }
+
+    /**
+     * @return Mean of the values recorded, 0 if no values were recorded.
+     */
+    public double getMean()
+    {
+        final long count = this.totalCount.sum();
+        return count == 0 ? 0.0 : (double) this.totalValue.sum() / (double) count;
+    }
+
+    /**
+     * Gets the value that the specified percentage of recorded values are less than or equal to, within the precision
+     * of this histogram.
+     *
+     * @param percentile
+     *         Percentile to get, from 0 to 100.
+     * @return Highest value equivalent to the value at the percentile, 0 if no values were recorded.
+     */
+    public long getValueAtPercentile(final double percentile)
+    {
+        if (percentile < 0.0 || percentile > 100.0)
+        {
+            throw new IllegalArgumentException("percentile must be between 0 and 100 but was " + percentile);
+        }
+
+        long total = 0;
+        for (int i = 0; i < this.counts.length(); i++)
+        {
+            total += this.counts.get(i);
+        }
+        final long target = Math.max(1L, (long) Math.ceil(percentile / 100.0 * total));
+
+        long count = 0;
+        for (int i = 0; i < this.counts.length(); i++)
+        {
+            count += this.counts.get(i);
+            if (count >= target)
+            {
+                return Math.min(getHighestValue(i), getMax());
+            }
+        }
+        return 0L;
+    }
+
+    /**
+     * Clears all recorded values, values recorded concurrently may be partially cleared.
+     */
+    public void reset()
+    {
+        for (int i = 0; i < this.counts.length(); i++)
+        {
+            this.counts.set(i, 0L);
+        }
+        this.totalCount.reset();
+        this.totalValue.reset();
+        this.maxValue.set(0L);
+    }
+
+    private int getBucket(final long value)
+    {
+        if (value < this.subBucketCount)
+        {
+            return (int) value;
+        }
+        // shift the value so that it falls in the upper half of the sub-buckets
+        final int shift = Long.SIZE - Long.numberOfLeadingZeros(value) - this.precisionBits;
+        return this.subBucketCount + (shift - 1) * this.subBucketHalfCount + (int) (value >>> shift) - this.subBucketHalfCount;
+    }
+
+    private long getHighestValue(final int bucket)
+    {
+        if (bucket < this.subBucketCount)
+        {
+            return bucket;
+        }
+        final int offset = bucket - this.subBucketCount;
+        final int shift = offset / this.subBucketHalfCount + 1;
+        final long subBucket = offset % this.subBucketHalfCount + this.subBucketHalfCount;
+        return ((subBucket + 1) << shift) - 1;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "Histogram{" +
+                "count=" + getCount() +
+                ", mean=" + getMean() +
+                ", p50=" + getValueAtPercentile(50.0) +
+                ", p90=" + getValueAtPercentile(90.0) +
+                ", p99=" + getValueAtPercentile(99.0) +
+                ", p999=" + getValueAtPercentile(99.9) +
+                ", max=" + getMax() +
+                '}';
+    }
+}
@@ -9,16 +9,26 @@ public class ReverseStringBitKeyAnalyzer extends StringBitKeyAnalyzer
 {
     private static final long serialVersionUID = 1433219037051740805L;
 
+    public ReverseStringBitKeyAnalyzer()
+    {
+        this(false);
+    }
+
+    public ReverseStringBitKeyAnalyzer(final boolean ignoreCase)
+    {
+        super(ignoreCase);
+    }
+
     @Override
     public boolean isBitSet(@Nonnull final String key, final int indexInBits)
     {
-        return (key.charAt(key.length() - indexInBits / Character.SIZE - 1) & 1L << indexInBits % Character.SIZE) != 0;
+        return (charAt(key, key.length() - indexInBits / Character.SIZE - 1) & 1L << indexInBits % Character.SIZE) != 0;
     }
 
     @Override
     public long getElement(@Nonnull final String key, final int index)
     {
-        return key.charAt(key.length() - index - 1);
+        return charAt(key, key.length() - index - 1);
     }
 
     @Nonnull
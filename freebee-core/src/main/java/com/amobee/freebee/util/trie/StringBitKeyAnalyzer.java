@@ -1,20 +1,38 @@
 package com.amobee.freebee.util.trie;
 
+import com.amobee.freebee.util.CaseInsensitiveHashingStrategy;
+
 import javax.annotation.Nonnull;
 
 /**
  * Implementation of {@link BitKeyAnalyzer} for strings.
  *
+ * If case is ignored the characters of keys are analyzed with their case folded by
+ * {@link CaseInsensitiveHashingStrategy#foldCase(char)}, so keys that only differ in case are the same key without
+ * the keys having to be lower or upper cased.
+ *
  * @author Michael Bond
  */
 public class StringBitKeyAnalyzer implements BitKeyAnalyzer<String>
 {
     private static final long serialVersionUID = -4039946442026365947L;
 
+    private final boolean ignoreCase;
+
+    public StringBitKeyAnalyzer()
+    {
+        this(false);
+    }
+
+    public StringBitKeyAnalyzer(final boolean ignoreCase)
+    {
+        this.ignoreCase = ignoreCase;
+    }
+
     @Override
     public boolean isBitSet(@Nonnull final String key, final int indexInBits)
     {
-        return (key.charAt(indexInBits / Character.SIZE) & 1L << indexInBits % Character.SIZE) != 0;
+        return (charAt(key, indexInBits / Character.SIZE) & 1L << indexInBits % Character.SIZE) != 0;
     }
 
     @Override
@@ -26,7 +44,7 @@ public class StringBitKeyAnalyzer implements BitKeyAnalyzer<String>
     @Override
     public long getElement(@Nonnull final String key, final int index)
     {
-        return key.charAt(index);
+        return charAt(key, index);
     }
 
     @Override
@@ -35,6 +53,15 @@ public class StringBitKeyAnalyzer implements BitKeyAnalyzer<String>
         return Character.SIZE;
     }
 
+    /**
+     * @return Character at the specified index of the key, case folded if case is ignored.
+     */
+    protected char charAt(@Nonnull final String key, final int index)
+    {
+        final char c = key.charAt(index);
+        return this.ignoreCase ? CaseInsensitiveHashingStrategy.foldCase(c) : c;
+    }
+
     @Nonnull
     @Override
     public String trimToSize(@Nonnull final String key, final int lengthInBits)
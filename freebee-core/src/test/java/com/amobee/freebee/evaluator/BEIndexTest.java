@@ -5,6 +5,7 @@ import java.util.BitSet;
 import com.amobee.freebee.evaluator.evaluator.BEInput;
 import com.amobee.freebee.evaluator.index.BEIndex;
 import com.amobee.freebee.evaluator.index.BEIndexBuilder;
+import com.amobee.freebee.evaluator.index.BEIndexMetrics;
 import org.eclipse.collections.api.map.primitive.IntObjectMap;
 import org.junit.Test;
 
@@ -456,11 +457,21 @@ public class BEIndexTest
         assertEquals(bitSet, result.get(3));
     }
 
-    @Test(expected = IllegalArgumentException.class)
-    public void invalidReferenceWithinPartial() throws Exception
+    @Test
+    public void referenceWithinPartial() throws Exception
     {
         final BEIndexBuilder<String> builder = new BEIndexBuilder<>();
+        builder.addPartialExpression("{\"id\":\"test2\",\"type\":\"ref\",\"values\":[\"test1\"]}");
         builder.addPartialExpression("{\"id\":\"test1\",\"type\":\"test\",\"values\":[\"value1\", \"value2\"]}");
+        final BEIndexMetrics metrics = builder.build().getIndexMetrics();
+        assertEquals(2, metrics.getPartialExpressionCount());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void cyclicReferenceWithinPartial() throws Exception
+    {
+        final BEIndexBuilder<String> builder = new BEIndexBuilder<>();
+        builder.addPartialExpression("{\"id\":\"test1\",\"type\":\"ref\",\"values\":[\"test2\"]}");
         builder.addPartialExpression("{\"id\":\"test2\",\"type\":\"ref\",\"values\":[\"test1\"]}");
         builder.build();
     }
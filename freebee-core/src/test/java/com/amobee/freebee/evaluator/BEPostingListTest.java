@@ -0,0 +1,67 @@
+package com.amobee.freebee.evaluator;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class BEPostingListTest
+{
+    @Test
+    public void testAddAndMaterialize()
+    {
+        final BEInterval interval1 = interval(1, 10, true, false, 0, 3);
+        final BEInterval interval2 = interval(2, 11, false, true, 5, 32767);
+        final BEInterval interval3 = interval(3, 12, true, true, 32766, 32767);
+
+        final BEPostingList postings = new BEPostingList(Arrays.asList(interval1, interval2));
+        postings.add(interval3, false);
+
+        assertEquals(3, postings.size());
+        assertEquals(2, postings.getExpressionId(1));
+        assertEquals(11, postings.getIntervalId(1));
+        assertEquals(5, postings.getStart(1));
+        assertEquals(32767, postings.getEnd(1));
+        assertTrue(postings.isNegative(1));
+        assertFalse(postings.canUseBitSetMatching(1));
+        assertTrue(postings.canUseBitSetMatching(2));
+        assertFalse(postings.isNegative(2));
+
+        assertThat(postings.toIntervals()).containsExactly(interval1, interval2, new BEInterval(interval3, false));
+    }
+
+    @Test
+    public void testAddAllAndTrim()
+    {
+        final BEPostingList postings1 = new BEPostingList();
+        postings1.add(interval(1, 1, true, false, 0, 1));
+        final BEPostingList postings2 = new BEPostingList();
+        postings2.add(interval(2, 2, false, false, 1, 2));
+        postings2.add(interval(3, 3, false, true, 2, 4));
+
+        postings1.addAll(postings2);
+        postings1.trimToSize();
+
+        assertEquals(3, postings1.size());
+        assertEquals(3, postings1.getExpressionId(2));
+        assertEquals(postings2.toIntervals(), postings1.toIntervals().subList(1, 3));
+    }
+
+    private BEInterval interval(
+            final int expressionId,
+            final int intervalId,
+            final boolean canUseBitSetMatching,
+            final boolean negative,
+            final int start,
+            final int end)
+    {
+        final BitSet bits = new BitSet();
+        bits.set(start, end);
+        return new BEInterval(expressionId, intervalId, canUseBitSetMatching, negative, bits);
+    }
+}
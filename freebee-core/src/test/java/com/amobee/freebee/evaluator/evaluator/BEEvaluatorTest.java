@@ -2,8 +2,15 @@ package com.amobee.freebee.evaluator.evaluator;
 
 import com.amobee.freebee.ExpressionUtil;
 import com.amobee.freebee.config.BEDataTypeConfig;
+import com.amobee.freebee.evaluator.index.BEEvaluationContext;
+import com.amobee.freebee.evaluator.index.BEHistogramEvaluationListener;
+import com.amobee.freebee.evaluator.index.BEIndexMetrics;
+import com.amobee.freebee.evaluator.index.BEShardingStrategy;
+import com.amobee.freebee.evaluator.index.BEValueProfile;
+import com.amobee.freebee.evaluator.index.BEValueProfiler;
 import com.amobee.freebee.expression.BENode;
 import com.amobee.freebee.expression.BEPredicateNode;
+import com.google.common.util.concurrent.Uninterruptibles;
 import org.apache.commons.lang3.StringUtils;
 import org.junit.Ignore;
 import org.junit.Test;
@@ -13,10 +20,14 @@ import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
 import java.util.List;
+import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.stream.Collectors;
 
 import static java.util.Arrays.asList;
@@ -2158,6 +2169,681 @@ public class BEEvaluatorTest
                 asList(input.getCategory("domain"), input.getCategory("gender")));
     }
 
+    @Test
+    public void testEvaluateWithSharedContext() throws Exception
+    {
+        final BEEvaluatorBuilder<String> builder1 = partialExpressionBuilder();
+        builder1.addExpression("C and not D", exprConj("and", CY1, D1N));
+        builder1.addExpression("(G or A) and C", exprConj("and", exprConj("or", G2, AR1), CY2));
+        final BEEvaluator<String> evaluator1 = builder1.build();
+
+        // a conjunction wider than a single 64 bit word
+        final String[] countries = new String[70];
+        for (int i = 0; i < countries.length; i++)
+        {
+            countries[i] = "{\"type\":\"country\",\"negative\":true,\"values\":[{\"id\":\"C" + i + "\"}]}";
+        }
+        final BEEvaluatorBuilder<String> builder2 = new BEEvaluatorBuilder<>();
+        builder2.addDataTypeConfig(DATA_TYPE_CONFIG);
+        builder2.addExpression("wide", exprConj("and", exprConj("and", countries), G1));
+        final BEEvaluator<String> evaluator2 = builder2.build();
+
+        final BEInput input1 = new BEInput();
+        input1.getOrCreateStringCategory("domain").add("www.videologygroup.com");
+        input1.getOrCreateStringCategory("gender").add("M");
+        input1.getOrCreateStringCategory("country").add("US");
+
+        final BEInput input2 = new BEInput();
+        input2.getOrCreateStringCategory("gender").add("M");
+        input2.getOrCreateStringCategory("country").add("C69");
+
+        final BEEvaluationContext context = new BEEvaluationContext();
+        for (int i = 0; i < 3; i++)
+        {
+            assertThat(evaluator1.evaluate(input1, context)).containsExactlyInAnyOrder("D and G", "C and not D", "(G or A) and C");
+            assertThat(evaluator1.evaluate(input2, context)).isEmpty();
+            assertThat(evaluator2.evaluate(input1, context)).containsExactly("wide");
+            assertThat(evaluator2.evaluate(input2, context)).isEmpty();
+        }
+
+        assertEquals(evaluator1.evaluateAndTrack(input1).getMatchedExpressions(), evaluator1.evaluate(input1, context));
+        assertEquals(evaluator1.evaluate(input1), evaluator1.evaluate(input1, context));
+    }
+
+    @Test
+    public void testEvaluateBatch() throws Exception
+    {
+        final BEEvaluatorBuilder<String> builder = partialExpressionBuilder();
+        builder.addExpression("C and not D", exprConj("and", CY1, D1N));
+        builder.addExpression("(G or A) and C", exprConj("and", exprConj("or", G2, AR1), CY2));
+        final BEEvaluator<String> evaluator = builder.build();
+
+        final BEInput input1 = new BEInput();
+        input1.getOrCreateStringCategory("domain").add("www.videologygroup.com");
+        input1.getOrCreateStringCategory("gender").add("M");
+        input1.getOrCreateStringCategory("country").add("US");
+
+        final BEInput input2 = new BEInput();
+        input2.getOrCreateStringCategory("domain").add("baddomain.com");
+        input2.getOrCreateStringCategory("gender").add("M");
+        input2.getOrCreateStringCategory("country").add("US");
+
+        final BEInput input3 = new BEInput();
+        input3.getOrCreateStringCategory("age").add("20");
+        input3.getOrCreateStringCategory("country").add("CA");
+
+        final List<BEInput> inputs = Arrays.asList(input1, input2, new BEInput(), input3, input1);
+        final List<Set<String>> results = evaluator.evaluateBatch(inputs);
+
+        assertEquals(inputs.size(), results.size());
+        for (int i = 0; i < inputs.size(); i++)
+        {
+            assertEquals(evaluator.evaluate(inputs.get(i)), results.get(i));
+        }
+        assertThat(results.get(0)).containsExactlyInAnyOrder("D and G", "C and not D", "(G or A) and C");
+        assertThat(results.get(1)).containsExactly("(G or A) and C");
+        assertThat(results.get(2)).isEmpty();
+        assertThat(results.get(3)).containsExactly("(G or A) and C");
+    }
+
+    @Test
+    public void testInputSchema() throws Exception
+    {
+        final BEEvaluatorBuilder<String> builder = partialExpressionBuilder();
+        builder.addExpression("C and not D", exprConj("and", CY1, D1N));
+        builder.addExpression("(G or A) and C", exprConj("and", exprConj("or", G2, AR1), CY2));
+        final BEEvaluator<String> evaluator = builder.build();
+        final BEInputSchema schema = evaluator.getInputSchema();
+        assertEquals(BEInputSchema.NO_ORDINAL, schema.getOrdinal("color"));
+        assertEquals("GENDER", schema.getName(schema.getOrdinal("gender")));
+
+        final BEInput input1 = new BEInput(schema);
+        input1.getOrCreateStringCategory("Domain").add("www.videologygroup.com");
+        input1.getOrCreateStringCategory("gender").add("M");
+        input1.getOrCreateStringCategory("country").add("US");
+        input1.getOrCreateStringCategory("color").add("blue");
+        assertEquals(3, input1.getOrdinalCount());
+        assertThat(evaluator.evaluate(input1)).containsExactlyInAnyOrder("D and G", "C and not D", "(G or A) and C");
+        assertThat(evaluator.evaluateAndTrack(input1).getMatchedExpressions()).containsExactlyInAnyOrder("D and G", "C and not D", "(G or A) and C");
+
+        // negative predicates of attribute categories missing from the input are still evaluated
+        input1.removeCategory("DOMAIN");
+        assertEquals(2, input1.getOrdinalCount());
+        assertThat(evaluator.evaluate(input1)).containsExactlyInAnyOrder("C and not D", "(G or A) and C");
+        assertThat(evaluator.evaluateAndTrack(input1).getMatchedExpressions()).containsExactlyInAnyOrder("C and not D", "(G or A) and C");
+
+        final BEInput input2 = input1.clone();
+        input2.getOrCreateStringCategory("domain").add("baddomain.com");
+        assertEquals(3, input2.getOrdinalCount());
+        assertThat(evaluator.evaluate(input2)).containsExactly("(G or A) and C");
+        assertThat(evaluator.evaluate(input1)).containsExactlyInAnyOrder("C and not D", "(G or A) and C");
+        assertThat(evaluator.evaluateBatch(Arrays.asList(input1, input2))).containsExactly(evaluator.evaluate(input1), evaluator.evaluate(input2));
+    }
+
+    @Test
+    public void testAbsentNegativeCategories() throws Exception
+    {
+        final BEEvaluatorBuilder<String> builder = new BEEvaluatorBuilder<>();
+        final BENode A = new BEPredicateNode("A", "a");
+        final BENode B = new BEPredicateNode("B", "b");
+        final BENode C = new BEPredicateNode("C", "c");
+        final BENode D = new BEPredicateNode("D", "d");
+        builder.addDataTypeConfig(DATA_TYPE_CONFIG);
+        builder.addExpression("G and C and not D", exprConj("and", G1, CY1, D2N));
+        builder.addExpression("(G or A) and not D", exprConj("and", exprConj("or", G2, AR1), D1N));
+        builder.addExpression("negative conjunction", ExpressionUtil.nand(ExpressionUtil.nor(A, B), ExpressionUtil.or(C, D)));
+        final BEEvaluator<String> evaluator = builder.build();
+
+        // an absent attribute category must evaluate the same as one whose values match nothing
+        final String[] categories = {"gender", "country", "domain", "A", "B", "C", "D"};
+        final String[] values = {"M", "US", "baddomain.com", "a", "b", "c", "d"};
+        final BEEvaluationContext context = new BEEvaluationContext();
+        for (int mask = 0; mask < 1 << categories.length; mask++)
+        {
+            final BEInput absent = new BEInput();
+            final BEInput unmatched = new BEInput();
+            final BEInput absentWithSchema = new BEInput(evaluator.getInputSchema());
+            for (int i = 0; i < categories.length; i++)
+            {
+                if ((mask & 1 << i) != 0)
+                {
+                    absent.getOrCreateStringCategory(categories[i]).add(values[i]);
+                    absentWithSchema.getOrCreateStringCategory(categories[i]).add(values[i]);
+                    unmatched.getOrCreateStringCategory(categories[i]).add(values[i]);
+                }
+                else
+                {
+                    unmatched.getOrCreateStringCategory(categories[i]).add("-");
+                }
+            }
+
+            final Set<String> expected = evaluator.evaluate(unmatched, context);
+            assertEquals(expected, evaluator.evaluate(absent, context));
+            assertEquals(expected, evaluator.evaluate(absentWithSchema, context));
+            assertEquals(expected, evaluator.evaluateAndTrack(absent).getMatchedExpressions());
+            assertEquals(expected, evaluator.evaluateAndTrack(absentWithSchema).getMatchedExpressions());
+        }
+        assertThat(evaluator.evaluate(new BEInput())).containsExactlyInAnyOrder("negative conjunction");
+    }
+
+    @Test
+    public void testNegativeBaseline() throws Exception
+    {
+        final String[] values = {"a", "b", "c", "d"};
+        final BEEvaluatorBuilder<String> builder = new BEEvaluatorBuilder<>();
+        builder.addDataTypeConfig(DATA_TYPE_CONFIG);
+        builder.addPartialExpression("p0", ExpressionUtil.expr("country", true, "A"));
+        builder.addPartialExpression("p1", exprConj("and", ExpressionUtil.expr("gender", "A"), ExpressionUtil.expr("country", true, "B")));
+        final Random random = new Random(3);
+        for (int i = 0; i < 200; i++)
+        {
+            final String[] predicates = new String[1 + random.nextInt(4)];
+            for (int j = 0; j < predicates.length; j++)
+            {
+                final String category = random.nextInt(5) == 0 ? "ref" : random.nextBoolean() ? "gender" : "country";
+                predicates[j] = "ref".equals(category)
+                        ? "{\"type\":\"ref\",\"negative\":" + random.nextBoolean() + ",\"values\":[{\"id\":\"p" + random.nextInt(2) + "\"}]}"
+                        : ExpressionUtil.expr(category, random.nextBoolean(), values[random.nextInt(values.length)], values[random.nextInt(values.length)]);
+            }
+            builder.addExpression("e" + i, predicates.length == 1 ? predicates[0] : exprConj(random.nextBoolean() ? "and" : "or", predicates));
+        }
+        final BEEvaluator<String> evaluator = builder.build();
+
+        // evaluation starting from the negative baseline matches the same expressions as adding every unmatched
+        // negative interval
+        final BEEvaluationContext context = new BEEvaluationContext();
+        for (int i = 0; i < 500; i++)
+        {
+            final BEInput input = new BEInput();
+            for (final String category : new String[]{"gender", "country"})
+            {
+                for (int j = random.nextInt(3); j > 0; j--)
+                {
+                    input.getOrCreateStringCategory(category).add(values[random.nextInt(values.length)]);
+                }
+            }
+            assertEquals(evaluator.evaluateAndTrack(input).getMatchedExpressions(), evaluator.evaluate(input, context));
+        }
+    }
+
+    @Test
+    public void testShardedEvaluator() throws Exception
+    {
+        final BEInput input1 = new BEInput();
+        input1.getOrCreateStringCategory("gender").setTrackingEnabled(true);
+        input1.getOrCreateStringCategory("domain").add("www.videologygroup.com");
+        input1.getOrCreateStringCategory("gender").add("M");
+        input1.getOrCreateStringCategory("country").add("US");
+
+        final BEInput input2 = new BEInput();
+        input2.getOrCreateStringCategory("domain").add("baddomain.com");
+        input2.getOrCreateStringCategory("gender").add("F");
+        input2.getOrCreateStringCategory("country").add("CA");
+
+        final BEEvaluatorBuilder<String> builder = partialExpressionBuilder();
+        builder.addExpression("C and not D", exprConj("and", CY1, D1N));
+        builder.addExpression("(G or A) and C", exprConj("and", exprConj("or", G2, AR1), CY2));
+        builder.addExpression("G and C", exprConj("and", G2, CY2));
+        builder.addExpression("not D", D2N);
+        // more expressions referencing the partial expression so that it is copied to several shards
+        builder.addExpression("D or C", exprConj("or", ExpressionUtil.expr("ref", "dg:1"), CY2));
+        builder.addExpression("D or A", exprConj("or", ExpressionUtil.expr("ref", "dg:1"), AR1));
+        final BEEvaluator<String> unsharded = builder.build();
+        final BEIndexMetrics unshardedMetrics = unsharded.getMetrics();
+
+        boolean copiedPartialExpression = false;
+        final ExecutorService executor = Executors.newFixedThreadPool(2);
+        try
+        {
+            for (final BEShardingStrategy strategy : BEShardingStrategy.values())
+            {
+                final BEEvaluator<String> evaluator = builder
+                        .shards(3, strategy)
+                        .shardExecutor(executor)
+                        .build();
+                assertThat(evaluator).isInstanceOf(BEShardedEvaluator.class);
+
+                // the partial expression is copied to every shard referencing it but only counted once
+                final BEIndexMetrics metrics = evaluator.getMetrics();
+                copiedPartialExpression |= ((BEShardedEvaluator<String>) evaluator).getShards().stream()
+                        .mapToInt(shard -> shard.getMetrics().getPartialExpressionCount())
+                        .sum() > 1;
+                assertEquals(7, metrics.getFullExpressionCount());
+                assertEquals(1, metrics.getPartialExpressionCount());
+                assertEquals(unshardedMetrics.getExpressionCount(), metrics.getExpressionCount());
+                assertEquals(
+                        unshardedMetrics.getExpressionCountWithBitSetEvaluation(),
+                        metrics.getExpressionCountWithBitSetEvaluation());
+                assertEquals(
+                        unshardedMetrics.getExpressionCountWithIntervalEvaluation(),
+                        metrics.getExpressionCountWithIntervalEvaluation());
+                assertEquals(
+                        unshardedMetrics.getExpressionCountWithCountEvaluation(),
+                        metrics.getExpressionCountWithCountEvaluation());
+
+                for (final BEInput input : asList(input1, input2))
+                {
+                    assertEquals(unsharded.evaluate(input), evaluator.evaluate(input));
+                    final BEEvaluatorResult<String> result = evaluator.evaluateAndTrack(input);
+                    assertEquals(unsharded.evaluate(input), result.getMatchedExpressions());
+                }
+                assertEquals(unsharded.evaluateBatch(asList(input1, input2)), evaluator.evaluateBatch(asList(input1, input2)));
+
+                assertEquals(
+                        unsharded.evaluateAndTrack(input1).getPossibleInputValuesThatSatisfy("D and G"),
+                        evaluator.evaluateAndTrack(input1).getPossibleInputValuesThatSatisfy("D and G"));
+
+                final List<BEShardStatistics> statistics = ((BEShardedEvaluator<String>) evaluator).getShardStatistics();
+                assertThat(statistics).isNotEmpty();
+                assertEquals(7, statistics.stream().mapToInt(BEShardStatistics::getExpressionCount).sum());
+                statistics.forEach(shard -> assertEquals(6, shard.getEvaluationCount()));
+            }
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+        assertTrue("Expected a strategy to copy the partial expression", copiedPartialExpression);
+    }
+
+    /**
+     * Creates a builder with the partial expression dg:1 and the expression "D and G" referencing it, tests add the
+     * other expressions they need.
+     */
+    private BEEvaluatorBuilder<String> partialExpressionBuilder() throws Exception
+    {
+        final BEEvaluatorBuilder<String> builder = new BEEvaluatorBuilder<>();
+        builder.addDataTypeConfig(DATA_TYPE_CONFIG);
+        builder.addPartialExpression("dg:1", ExpressionUtil.expr("domain", ".videologygroup.com"));
+        builder.addExpression("D and G", exprConj("and", ExpressionUtil.expr("ref", "dg:1"), G1));
+        return builder;
+    }
+
+    @Test
+    public void testCachingEvaluator() throws Exception
+    {
+        final BEInput input1 = new BEInput();
+        input1.getOrCreateStringCategory("domain").add("www.videologygroup.com");
+        input1.getOrCreateStringCategory("gender").add("M");
+        input1.getOrCreateStringCategory("gender").add("F");
+        input1.getOrCreateStringCategory("country").add("US");
+
+        // same values in a different order
+        final BEInput input2 = new BEInput();
+        input2.getOrCreateStringCategory("country").add("US");
+        input2.getOrCreateStringCategory("gender").add("F");
+        input2.getOrCreateStringCategory("gender").add("M");
+        input2.getOrCreateStringCategory("domain").add("www.videologygroup.com");
+
+        final BEInput input3 = new BEInput();
+        input3.getOrCreateStringCategory("domain").add("baddomain.com");
+        input3.getOrCreateStringCategory("country").add("CA");
+
+        final BEEvaluatorBuilder<String> builder = partialExpressionBuilder();
+        builder.addExpression("G and C", exprConj("and", G2, CY2));
+        builder.addExpression("not D", D2N);
+        final BEEvaluator<String> evaluator = builder.cache(2).build();
+        assertThat(evaluator).isInstanceOf(BECachingEvaluator.class);
+        final BECachingEvaluator<String> cachingEvaluator = (BECachingEvaluator<String>) evaluator;
+
+        final Set<String> matches = evaluator.evaluate(input1);
+        assertThat(matches).containsExactlyInAnyOrder("D and G", "G and C", "not D");
+        matches.clear();
+        assertThat(evaluator.evaluate(input2)).containsExactlyInAnyOrder("D and G", "G and C", "not D");
+        assertThat(evaluator.evaluate(input1, new BEEvaluationContext()))
+                .containsExactlyInAnyOrder("D and G", "G and C", "not D");
+        final List<Set<String>> batch = evaluator.evaluateBatch(asList(input3, input1));
+        assertThat(batch.get(0)).isEmpty();
+        assertThat(batch.get(1)).containsExactlyInAnyOrder("D and G", "G and C", "not D");
+        assertThat(evaluator.evaluateAndTrack(input1).getMatchedExpressions())
+                .containsExactlyInAnyOrder("D and G", "G and C", "not D");
+
+        // input1 and input2 share an entry, only the first lookups of input1 and input3 miss
+        BECacheStatistics statistics = cachingEvaluator.getCacheStatistics();
+        assertEquals(3, statistics.getHitCount());
+        assertEquals(2, statistics.getMissCount());
+        assertEquals(0, statistics.getInvalidationCount());
+        assertThat(statistics.getSize()).isLessThanOrEqualTo(2);
+
+        // results of the previous expressions are never returned once an incremental evaluator is updated
+        final BEIncrementalEvaluator<String> incremental = builder.buildIncremental();
+        final BECachingEvaluator<String> cachedIncremental = BEEvaluatorBuilder.cached(incremental, 10);
+        assertThat(cachedIncremental.evaluate(input3)).isEmpty();
+        incremental.addExpression("C", ExpressionUtil.createExpression(CY2));
+        assertThat(cachedIncremental.evaluate(input3)).containsExactly("C");
+        assertThat(cachedIncremental.evaluate(input3)).containsExactly("C");
+
+        statistics = cachedIncremental.getCacheStatistics();
+        assertEquals(1, statistics.getHitCount());
+        assertEquals(2, statistics.getMissCount());
+        assertEquals(1, statistics.getInvalidationCount());
+    }
+
+    @Test
+    public void testEvaluationListener() throws Exception
+    {
+        final List<String> evaluations = new ArrayList<>();
+        final BEEvaluatorBuilder<String> builder = partialExpressionBuilder();
+        builder.addExpression("G and C", exprConj("and", G2, CY2));
+        builder.evaluationListener(statistics ->
+        {
+            assertEquals(
+                    statistics.getMatchedExpressionCount() + statistics.getMatchedPartialExpressionCount(),
+                    statistics.getBitSetMatchCount() + statistics.getIntervalMatchCount() + statistics.getCountMatchCount());
+            assertThat(statistics.getTotalNanos()).isGreaterThanOrEqualTo(statistics.getMatchNanos());
+            evaluations.add(statistics.getCategoryCount() + " " + statistics.getValueCount() + " "
+                    + statistics.getTouchedExpressionCount() + " " + statistics.getMatchedExpressionCount() + " "
+                    + statistics.getMatchedPartialExpressionCount());
+        });
+        final BEEvaluator<String> evaluator = builder.build();
+
+        final BEInput input = new BEInput();
+        input.getOrCreateStringCategory("domain").add("www.videologygroup.com");
+        input.getOrCreateStringCategory("gender").add("M");
+        input.getOrCreateStringCategory("gender").add("F");
+        input.getOrCreateStringCategory("country").add("US");
+        input.getOrCreateStringCategory("age").add("[18,24)");
+
+        assertThat(evaluator.evaluate(input)).containsExactlyInAnyOrder("D and G", "G and C");
+        assertThat(evaluator.evaluate(new BEInput(), new BEEvaluationContext())).isEmpty();
+        assertEquals(asList("3 4 3 2 1", "0 0 0 0 0"), evaluations);
+
+        // tracking evaluations are not instrumented
+        evaluator.evaluateAndTrack(input);
+        assertEquals(2, evaluations.size());
+
+        // the histogram listener records every evaluation
+        final BEHistogramEvaluationListener listener = new BEHistogramEvaluationListener();
+        final BEEvaluator<String> recorded = builder.evaluationListener(listener).build();
+        for (int i = 0; i < 10; i++)
+        {
+            recorded.evaluate(input);
+        }
+        assertEquals(10, listener.getTotalNanos().getCount());
+        // no expression uses age so only the domain, gender and country values of the input are counted
+        assertEquals(4, listener.getValueCounts().getValueAtPercentile(50.0));
+        assertThat(listener.getPostingCounts().getMax()).isGreaterThan(0);
+        assertThat(listener.getMatchedExpressionCounts().getMax()).isGreaterThan(0);
+
+        listener.reset();
+        assertEquals(0, listener.getTotalNanos().getCount());
+    }
+
+    @Test
+    public void testValueProfiler() throws Exception
+    {
+        final BEValueProfiler profiler = new BEValueProfiler(1, 2);
+        final BEEvaluatorBuilder<String> builder = new BEEvaluatorBuilder<>();
+        builder.addDataTypeConfig(DATA_TYPE_CONFIG);
+        builder.addExpression("US", CY1);
+        builder.addExpression("US or CA", CY2);
+        builder.addExpression("M", G1);
+        final BEEvaluator<String> evaluator = builder.valueProfiler(profiler).build();
+
+        final List<BEInput> inputs = new ArrayList<>();
+        for (final String country : asList("US", "US", "US", "US", "CA", "CA", "MX"))
+        {
+            final BEInput input = new BEInput();
+            input.getOrCreateStringCategory("country").add(country);
+            input.getOrCreateStringCategory("gender").add("M");
+            inputs.add(input);
+        }
+        for (final BEInput input : inputs)
+        {
+            evaluator.evaluate(input);
+        }
+
+        final List<BEValueProfile> profiles = profiler.getProfiles();
+        assertThat(profiles).extracting(BEValueProfile::getAttributeCategory).containsExactly("COUNTRY", "GENDER");
+
+        // US is looked up 4 times and returns both country expressions, CA is tracked after 2 lookups and is then
+        // replaced by MX, which inherits its count as error
+        final BEValueProfile country = profiles.get(0);
+        assertEquals(7, country.getProbeCount());
+        assertEquals(4 * 2 + 2, country.getPostingCount());
+        assertThat(country.getTopValues()).extracting(BEValueProfile.Value::getValue).containsExactly("US", "MX");
+        assertEquals(4, country.getTopValues().get(0).getProbeCount());
+        assertEquals(0, country.getTopValues().get(0).getError());
+        assertEquals(2, country.getTopValues().get(0).getPostingCount());
+        assertEquals(3, country.getTopValues().get(1).getProbeCount());
+        assertEquals(2, country.getTopValues().get(1).getError());
+        assertEquals(0, country.getTopValues().get(1).getPostingCount());
+
+        final BEValueProfile gender = profiles.get(1);
+        assertEquals(7, gender.getProbeCount());
+        assertThat(gender.getTopValues()).extracting(BEValueProfile.Value::getValue).containsExactly("M");
+        assertEquals(7, gender.getTopValues().get(0).getProbeCount());
+        assertThat(profiler.toJson()).contains("\"sampleRate\"", "\"COUNTRY\"", "\"US\"");
+
+        // a batch looks each distinct value up once
+        profiler.reset();
+        assertThat(profiler.getProfiles()).isEmpty();
+        evaluator.evaluateBatch(inputs);
+        assertEquals(3, profiler.getProfiles().get(0).getProbeCount());
+        assertEquals(1, profiler.getProfiles().get(1).getProbeCount());
+    }
+
+    @Test
+    public void testIncrementalEvaluator() throws Exception
+    {
+        final BEInput input1 = new BEInput();
+        input1.getOrCreateStringCategory("gender").setTrackingEnabled(true);
+        input1.getOrCreateStringCategory("domain").add("www.videologygroup.com");
+        input1.getOrCreateStringCategory("gender").add("M");
+        input1.getOrCreateStringCategory("country").add("US");
+
+        final BEInput input2 = new BEInput();
+        input2.getOrCreateStringCategory("domain").add("baddomain.com");
+        input2.getOrCreateStringCategory("gender").add("F");
+        input2.getOrCreateStringCategory("country").add("CA");
+
+        final List<BEInput> inputs = asList(input1, input2, new BEInput());
+        final BEEvaluatorBuilder<String> expected = partialExpressionBuilder();
+        expected.addExpression("C and not D", exprConj("and", CY1, D1N));
+        expected.addExpression("G and C", exprConj("and", G2, CY2));
+        expected.addExpression("not D", D2N);
+        final BEIncrementalEvaluator<String> evaluator = expected.buildIncremental();
+        assertSameMatches(expected.build(), evaluator, inputs);
+
+        evaluator.removeExpressions("G and C");
+        evaluator.replaceExpressions("C and not D", ExpressionUtil.createExpression(CY2));
+        evaluator.addExpression("C", ExpressionUtil.createExpression(CY1));
+        assertEquals(2, evaluator.getDeltaExpressionCount());
+        assertEquals(2, evaluator.getTombstoneCount());
+
+        expected.removeExpressions("G and C");
+        expected.removeExpressions("C and not D");
+        expected.addExpression("C and not D", CY2);
+        expected.addExpression("C", CY1);
+        assertSameMatches(expected.build(), evaluator, inputs);
+
+        // changing a partial expression re-indexes the expressions that reference it
+        evaluator.addPartialExpression("dg:1", ExpressionUtil.createExpression(ExpressionUtil.expr("domain", ".baddomain.com")));
+        expected.addPartialExpression("dg:1", ExpressionUtil.expr("domain", ".baddomain.com"));
+        assertEquals(3, evaluator.getDeltaExpressionCount());
+        assertSameMatches(expected.build(), evaluator, inputs);
+
+        // failed updates leave the evaluator unchanged
+        try
+        {
+            evaluator.removePartialExpression("dg:1");
+            throw new AssertionError("Expected removing a referenced partial expression to fail");
+        }
+        catch (final IllegalArgumentException e)
+        {
+            assertThat(e.getMessage()).contains("dg:1");
+        }
+        assertSameMatches(expected.build(), evaluator, inputs);
+
+        evaluator.compact();
+        assertEquals(0, evaluator.getDeltaExpressionCount());
+        assertEquals(0, evaluator.getTombstoneCount());
+        assertEquals(4, evaluator.getMetrics().getFullExpressionCount());
+        assertSameMatches(expected.build(), evaluator, inputs);
+    }
+
+    @Test
+    public void testIncrementalEvaluatorCompaction() throws Exception
+    {
+        final BEEvaluatorBuilder<String> builder = partialExpressionBuilder();
+        builder.addExpression("C and not D", exprConj("and", CY1, D1N));
+        builder.addExpression("G and C", exprConj("and", G2, CY2));
+        builder.addExpression("not D", D2N);
+        final BEIncrementalEvaluator<String> evaluator = builder
+                .shards(2, BEShardingStrategy.HASH)
+                .compactionThreshold(2)
+                .compactionExecutor(Runnable::run)
+                .buildIncremental();
+
+        final BEInput input = new BEInput();
+        input.getOrCreateStringCategory("gender").add("M");
+        input.getOrCreateStringCategory("country").add("US");
+
+        evaluator.removeExpressions("G and C");
+        assertEquals(1, evaluator.getTombstoneCount());
+        assertThat(evaluator.evaluate(input)).containsExactlyInAnyOrder("C and not D", "not D");
+
+        evaluator.addExpression("G", ExpressionUtil.createExpression(G1));
+        assertEquals(0, evaluator.getDeltaExpressionCount());
+        assertEquals(0, evaluator.getTombstoneCount());
+        assertEquals(4, evaluator.getMetrics().getFullExpressionCount());
+        assertThat(evaluator.evaluate(input)).containsExactlyInAnyOrder("C and not D", "not D", "G");
+    }
+
+    @Test(timeout = 10000)
+    public void testIncrementalEvaluatorCompactionWaitedFor() throws Exception
+    {
+        // the executor waits for a compaction on another thread, which only completes if no lock is held while
+        // compaction is submitted
+        final BEEvaluatorBuilder<String> builder = partialExpressionBuilder();
+        builder.addExpression("G and C", exprConj("and", G2, CY2));
+        final BEIncrementalEvaluator<String> evaluator = builder
+                .compactionThreshold(1)
+                .compactionExecutor(runnable ->
+                {
+                    final Thread thread = new Thread(runnable);
+                    thread.start();
+                    Uninterruptibles.joinUninterruptibly(thread);
+                })
+                .buildIncremental();
+
+        evaluator.removeExpressions("G and C");
+        assertEquals(0, evaluator.getTombstoneCount());
+        evaluator.compact();
+        assertEquals(1, evaluator.getMetrics().getFullExpressionCount());
+    }
+
+    @Test
+    public void testIncrementalEvaluatorNestedPartialExpressions() throws Exception
+    {
+        final BEEvaluatorBuilder<String> builder = new BEEvaluatorBuilder<>();
+        builder.addDataTypeConfig(DATA_TYPE_CONFIG);
+        builder.addPartialExpression("ag:1", ExpressionUtil.expr("age", "[18,24)"));
+        builder.addPartialExpression("aud:1",
+                exprConj("and",
+                        ExpressionUtil.expr("ref", "ag:1"),
+                        ExpressionUtil.expr("gender", "M")));
+        builder.addExpression("test1", ExpressionUtil.expr("ref", "aud:1"));
+        builder.addExpression("test2", ExpressionUtil.expr("country", "US"));
+        final BEIncrementalEvaluator<String> evaluator = builder.buildIncremental();
+
+        final BEInput input = new BEInput();
+        input.getOrCreateStringCategory("age").add("[25,34)");
+        input.getOrCreateStringCategory("gender").add("M");
+        assertThat(evaluator.evaluate(input)).isEmpty();
+
+        // changing a partial expression re-indexes the expressions that reference it through other partial expressions
+        evaluator.addPartialExpression("ag:1", ExpressionUtil.createExpression(ExpressionUtil.expr("age", "[25,34)")));
+        assertEquals(1, evaluator.getDeltaExpressionCount());
+        assertThat(evaluator.evaluate(input)).containsExactly("test1");
+
+        try
+        {
+            evaluator.removePartialExpression("ag:1");
+            throw new AssertionError("Expected removing a referenced partial expression to fail");
+        }
+        catch (final IllegalArgumentException e)
+        {
+            assertThat(e.getMessage()).contains("ag:1");
+        }
+
+        // cycles are rejected even when no expression references the changed partial expressions
+        evaluator.addPartialExpression("aud:3", ExpressionUtil.createExpression(ExpressionUtil.expr("gender", "F")));
+        evaluator.addPartialExpression("aud:2", ExpressionUtil.createExpression(ExpressionUtil.expr("ref", "aud:3")));
+        for (final String cyclicExpression : asList(
+                ExpressionUtil.expr("ref", "aud:2"),
+                exprConj("or", ExpressionUtil.expr("ref", "aud:3"), ExpressionUtil.expr("gender", "F"))))
+        {
+            try
+            {
+                evaluator.addPartialExpression("aud:3", ExpressionUtil.createExpression(cyclicExpression));
+                throw new AssertionError("Expected a cyclic partial expression to fail");
+            }
+            catch (final IllegalArgumentException e)
+            {
+                assertThat(e.getMessage()).contains("aud:3");
+            }
+        }
+
+        evaluator.compact();
+        assertEquals(0, evaluator.getDeltaExpressionCount());
+        assertThat(evaluator.evaluate(input)).containsExactly("test1");
+    }
+
+    private static void assertSameMatches(
+            final BEEvaluator<String> expected,
+            final BEEvaluator<String> actual,
+            final List<BEInput> inputs)
+    {
+        final BEEvaluationContext context = new BEEvaluationContext();
+        for (final BEInput input : inputs)
+        {
+            assertEquals(expected.evaluate(input), actual.evaluate(input));
+            assertEquals(expected.evaluate(input), actual.evaluate(input, context));
+            assertEquals(expected.evaluate(input), actual.evaluateAndTrack(input).getMatchedExpressions());
+        }
+        assertEquals(expected.evaluateBatch(inputs), actual.evaluateBatch(inputs));
+    }
+
+    @Test
+    public void testEvaluatePureConjunctions() throws Exception
+    {
+        final BEEvaluatorBuilder<String> builder = new BEEvaluatorBuilder<>();
+        builder.addDataTypeConfig(DATA_TYPE_CONFIG);
+        builder.addExpression("G and C", exprConj("and", G2, CY2));
+        builder.addExpression("G and C and not D", exprConj("and", G1, CY1, D2N));
+        builder.addExpression("G and C and D", exprConj("and", G1, CY1, D1));
+        final BEEvaluator<String> evaluator = builder.build();
+
+        // multiple values of the same predicate must only be counted once
+        final BEInput input1 = new BEInput();
+        input1.getOrCreateStringCategory("gender").add("M");
+        input1.getOrCreateStringCategory("gender").add("F");
+        input1.getOrCreateStringCategory("country").add("US");
+
+        final BEInput input2 = new BEInput();
+        input2.getOrCreateStringCategory("gender").add("M");
+        input2.getOrCreateStringCategory("gender").add("F");
+        input2.getOrCreateStringCategory("domain").add("baddomain2.com");
+
+        final BEInput input3 = new BEInput();
+        input3.getOrCreateStringCategory("gender").add("M");
+        input3.getOrCreateStringCategory("country").add("US");
+        input3.getOrCreateStringCategory("domain").add("gooddomain.com");
+        input3.getOrCreateStringCategory("domain").add("baddomain.com");
+
+        final BEEvaluationContext context = new BEEvaluationContext();
+        for (int i = 0; i < 2; i++)
+        {
+            assertThat(evaluator.evaluate(input1, context)).containsExactlyInAnyOrder("G and C", "G and C and not D");
+            assertThat(evaluator.evaluate(input2, context)).isEmpty();
+            assertThat(evaluator.evaluate(input3, context)).containsExactlyInAnyOrder("G and C", "G and C and D");
+        }
+
+        assertEquals(evaluator.evaluateAndTrack(input1).getMatchedExpressions(), evaluator.evaluate(input1, context));
+        assertEquals(evaluator.evaluateAndTrack(input3).getMatchedExpressions(), evaluator.evaluate(input3, context));
+    }
+
     @Test
     public void testMultiplePartialExpressionsWithNegative() throws Exception
     {
@@ -2182,6 +2868,7 @@ public class BEEvaluatorTest
         input.getOrCreateStringCategory("gender").add("M");
 
         Set<String> result = evaluator.evaluate(input);
+        assertEquals(result, evaluator.evaluateAndTrack(input).getMatchedExpressions());
         assertEquals(1, result.size());
         assertTrue("test1", result.contains("test1"));
 
@@ -2191,6 +2878,7 @@ public class BEEvaluatorTest
         input.getOrCreateStringCategory("gender").add("F");
 
         result = evaluator.evaluate(input);
+        assertEquals(result, evaluator.evaluateAndTrack(input).getMatchedExpressions());
         assertEquals(0, result.size());
 
         input = new BEInput();
@@ -2199,10 +2887,100 @@ public class BEEvaluatorTest
         input.getOrCreateStringCategory("gender").add("F");
 
         result = evaluator.evaluate(input);
+        assertEquals(result, evaluator.evaluateAndTrack(input).getMatchedExpressions());
         assertEquals(1, result.size());
         assertTrue("test2", result.contains("test2"));
     }
 
+    @Test
+    public void testNestedPartialExpressions() throws Exception
+    {
+        final BEEvaluatorBuilder<String> builder = new BEEvaluatorBuilder<>();
+        builder.addDataTypeConfig(DATA_TYPE_CONFIG);
+        builder.addPartialExpression("aud:2",
+                exprConj("or",
+                        ExpressionUtil.expr("ref", "aud:1"),
+                        ExpressionUtil.expr("gender", "F")));
+        builder.addPartialExpression("aud:1",
+                exprConj("and",
+                        ExpressionUtil.expr("ref", "dg:1"),
+                        ExpressionUtil.expr("ref", "ag:1")));
+        builder.addPartialExpression("aud:3",
+                exprConj("and",
+                        ExpressionUtil.expr("ref", true, "ag:1"),
+                        ExpressionUtil.expr("country", "CA")));
+        builder.addPartialExpression("dg:1", ExpressionUtil.expr("domain", ".videologygroup.com"));
+        builder.addPartialExpression("ag:1", ExpressionUtil.expr("age", "[18,24)"));
+        builder.addExpression("test1",
+                exprConj("and",
+                        ExpressionUtil.expr("ref", "aud:2"),
+                        ExpressionUtil.expr("country", "US")));
+        builder.addExpression("test2",
+                exprConj("and",
+                        ExpressionUtil.expr("ref", true, "aud:1"),
+                        ExpressionUtil.expr("gender", "M")));
+        builder.addExpression("test3", ExpressionUtil.expr("ref", "aud:3"));
+
+        final BEEvaluator<String> evaluator = builder.build();
+
+        final BEInput input1 = new BEInput();
+        input1.getOrCreateStringCategory("domain").setTrackingEnabled(true);
+        input1.getOrCreateStringCategory("age").setTrackingEnabled(true);
+        input1.getOrCreateStringCategory("country").setTrackingEnabled(true);
+        input1.getOrCreateStringCategory("domain").add("www.videologygroup.com");
+        input1.getOrCreateStringCategory("age").add("[18,24)");
+        input1.getOrCreateStringCategory("gender").add("M");
+        input1.getOrCreateStringCategory("country").add("US");
+
+        final BEInput input2 = new BEInput();
+        input2.getOrCreateStringCategory("domain").add("www.videologygroup.com");
+        input2.getOrCreateStringCategory("age").add("[25,34)");
+        input2.getOrCreateStringCategory("gender").add("M");
+        input2.getOrCreateStringCategory("country").add("CA");
+
+        final BEInput input3 = new BEInput();
+        input3.getOrCreateStringCategory("gender").add("F");
+        input3.getOrCreateStringCategory("country").add("US");
+
+        final List<BEInput> inputs = asList(input1, input2, input3, new BEInput());
+        final List<Set<String>> results = evaluator.evaluateBatch(inputs);
+        for (int i = 0; i < inputs.size(); i++)
+        {
+            assertEquals(evaluator.evaluate(inputs.get(i)), results.get(i));
+            assertEquals(results.get(i), evaluator.evaluateAndTrack(inputs.get(i)).getMatchedExpressions());
+        }
+        assertThat(results.get(0)).containsExactly("test1");
+        assertThat(results.get(1)).containsExactlyInAnyOrder("test2", "test3");
+        assertThat(results.get(2)).containsExactly("test1");
+        assertThat(results.get(3)).isEmpty();
+
+        // values matching a partial expression through other partial expressions are tracked
+        final Set<List<BEInputAttributeCategory>> paths =
+                evaluator.evaluateAndTrack(input1).getPossibleInputValuesThatSatisfy("test1");
+        assertEquals(1, paths.size());
+        assertThat(paths.iterator().next()).containsExactlyInAnyOrder(
+                input1.getCategory("domain"),
+                input1.getCategory("age"),
+                input1.getCategory("country"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testCyclicPartialExpressions() throws Exception
+    {
+        final BEEvaluatorBuilder<String> builder = new BEEvaluatorBuilder<>();
+        builder.addDataTypeConfig(DATA_TYPE_CONFIG);
+        builder.addPartialExpression("aud:1",
+                exprConj("or",
+                        ExpressionUtil.expr("ref", "aud:2"),
+                        ExpressionUtil.expr("gender", "F")));
+        builder.addPartialExpression("aud:2",
+                exprConj("and",
+                        ExpressionUtil.expr("ref", "aud:1"),
+                        ExpressionUtil.expr("country", "US")));
+        builder.addExpression("test1", ExpressionUtil.expr("ref", "aud:1"));
+        builder.build();
+    }
+
     @Test
     public void testSimpleNegativePartialExpression() throws Exception
     {
@@ -2220,22 +2998,26 @@ public class BEEvaluatorTest
         input.getOrCreateStringCategory("domain").add(".abc.com");
 
         Set<String> result = evaluator.evaluate(input);
+        assertEquals(result, evaluator.evaluateAndTrack(input).getMatchedExpressions());
         assertEquals(1, result.size());
         assertTrue("test1", result.contains("test1"));
 
         input = new BEInput();
         input.getOrCreateStringCategory("domain").add("www.cnn.com");
         result = evaluator.evaluate(input);
+        assertEquals(result, evaluator.evaluateAndTrack(input).getMatchedExpressions());
         assertEquals(0, result.size());
 
         input = new BEInput();
         input.getOrCreateStringCategory("domain").add("WWW.CNN.COM");
         result = evaluator.evaluate(input);
+        assertEquals(result, evaluator.evaluateAndTrack(input).getMatchedExpressions());
         assertEquals(0, result.size());
 
         input = new BEInput();
         input.getOrCreateStringCategory("domain").add("www.go.com");
         result = evaluator.evaluate(input);
+        assertEquals(result, evaluator.evaluateAndTrack(input).getMatchedExpressions());
         assertEquals(0, result.size());
     }
 
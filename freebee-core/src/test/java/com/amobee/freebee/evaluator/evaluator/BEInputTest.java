@@ -1,5 +1,15 @@
 package com.amobee.freebee.evaluator.evaluator;
 
+import com.amobee.freebee.evaluator.BEInterval;
+import com.amobee.freebee.evaluator.BEPostingList;
+import com.amobee.freebee.evaluator.index.BEIndexAttributeCategory;
+import com.amobee.freebee.evaluator.index.BEStringIndexAttributeCategory;
+import com.amobee.freebee.evaluator.index.BEValueDictionary;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
 import org.eclipse.collections.api.factory.Lists;
 import org.eclipse.collections.impl.factory.primitive.ByteLists;
 import org.eclipse.collections.impl.factory.primitive.DoubleLists;
@@ -52,9 +62,64 @@ public class BEInputTest
         final BEInput input = new BEInput();
         input.getOrCreateStringCategory("s1").add("s");
 
+        assertSame(input.getCategory("s1"), input.getCategory("S1"));
+
         input.removeCategory("s1");
 
         assertNull(input.getCategory("s1"));
     }
 
-}
\ No newline at end of file
+    @Test
+    public void testEncodedStringCategory()
+    {
+        final BEStringIndexAttributeCategory indexAttributeCategory = new BEStringIndexAttributeCategory(true);
+        indexAttributeCategory.addInterval("A", interval(1));
+        indexAttributeCategory.addInterval("b", interval(2));
+        indexAttributeCategory.addInterval("a", interval(3));
+
+        final BEValueDictionary dictionary = indexAttributeCategory.getValueDictionary();
+        assertNotNull(dictionary);
+        assertEquals(0, dictionary.getValueId("a"));
+        assertEquals(1, dictionary.getValueId("B"));
+        assertEquals(BEValueDictionary.NO_VALUE_ID, dictionary.getValueId("c"));
+
+        final BEInput input = new BEInput();
+        final BEEncodedStringInputAttributeCategory category = input.getOrCreateEncodedStringCategory("s1");
+        category.add("a");
+        category.add("c");
+        category.encode(dictionary).add("B");
+        assertSame(category, input.getOrCreateStringCategory("s1"));
+        assertEquals(Lists.immutable.of("a", "c", "B"), category.getValues());
+        assertEquals(Lists.mutable.of(1, 3, 2), intervalIds(category, indexAttributeCategory));
+
+        // values unknown when encoding fall back to looking up the value
+        indexAttributeCategory.addInterval("c", interval(4));
+        assertEquals(Lists.mutable.of(1, 3, 4, 2), intervalIds(category, indexAttributeCategory));
+
+        // as do all values when evaluated against a category with a different dictionary
+        final BEStringIndexAttributeCategory otherIndexAttributeCategory = new BEStringIndexAttributeCategory(true);
+        otherIndexAttributeCategory.addInterval("b", interval(5));
+        otherIndexAttributeCategory.addInterval("a", interval(6));
+        assertEquals(Lists.mutable.of(6, 5), intervalIds(category, otherIndexAttributeCategory));
+        assertEquals(Lists.mutable.of(6, 5), intervalIds(category.clone(), otherIndexAttributeCategory));
+    }
+
+    private static List<Integer> intervalIds(
+            final BEInputAttributeCategory inputAttributeCategory,
+            final BEIndexAttributeCategory indexAttributeCategory)
+    {
+        final List<BEPostingList> postings = new ArrayList<>();
+        inputAttributeCategory.forEachMatchedPostings(indexAttributeCategory, postings::add);
+        final List<Integer> intervalIds = new ArrayList<>();
+        postings.forEach(postingList -> postingList.toIntervals().forEach(interval -> intervalIds.add(interval.getIntervalId())));
+        return intervalIds;
+    }
+
+    private static BEInterval interval(final int id)
+    {
+        final BitSet bits = new BitSet();
+        bits.set(id);
+        return new BEInterval(id, id, false, false, bits);
+    }
+
+}
@@ -2,8 +2,11 @@ package com.amobee.freebee.evaluator.index;
 
 import com.amobee.freebee.evaluator.BEInterval;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.BitSet;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 import org.junit.Test;
@@ -46,6 +49,98 @@ public class BEAbstractRangeIndexAttributeCategoryTest
 
     }
 
+    @Test
+    public void testIntRangeIndexOpenBounds()
+    {
+        final BEIntRangeIndexAttributeCategory indexAttributeCategory = new BEIntRangeIndexAttributeCategory();
+        indexAttributeCategory.addInterval("(10,20)", interval(1));
+        indexAttributeCategory.addInterval("[20,30]", interval(2));
+        indexAttributeCategory.addInterval("(,5]", interval(3));
+        indexAttributeCategory.compact();
+
+        assertEquals(new HashSet<>(), matchedIntervals(indexAttributeCategory, 10));
+        assertEquals(setOf(1), matchedIntervals(indexAttributeCategory, 11));
+        assertEquals(setOf(1), matchedIntervals(indexAttributeCategory, 19));
+        assertEquals(setOf(2), matchedIntervals(indexAttributeCategory, 20));
+        assertEquals(setOf(3), matchedIntervals(indexAttributeCategory, Integer.MIN_VALUE));
+        assertEquals(new HashSet<>(), matchedIntervals(indexAttributeCategory, 6));
+
+        final Set<Integer> matchedIntervals = new HashSet<>();
+        indexAttributeCategory.getIntervals("[15,25]", intervals -> intervals.forEach(i -> matchedIntervals.add(i.getIntervalId())));
+        assertEquals(setOf(1, 2), matchedIntervals);
+
+        try
+        {
+            indexAttributeCategory.getPostings(15L, postings -> { });
+            fail("Expected lookup of long value to fail");
+        }
+        catch (final UnsupportedOperationException e)
+        {
+            // expected
+        }
+
+    }
+
+    @Test
+    public void testDoubleRangeIndex()
+    {
+        final BEDoubleRangeIndexAttributeCategory indexAttributeCategory = new BEDoubleRangeIndexAttributeCategory();
+        indexAttributeCategory.addInterval("[0.5,1.5)", interval(1));
+        indexAttributeCategory.addInterval("(1.5,]", interval(2));
+        indexAttributeCategory.addInterval("[1,2]", interval(3));
+
+        final Set<Integer> matchedIntervals = new HashSet<>();
+        indexAttributeCategory.getIntervals(1.5, intervals -> intervals.forEach(i -> matchedIntervals.add(i.getIntervalId())));
+        assertEquals(setOf(3), matchedIntervals);
+
+        matchedIntervals.clear();
+        indexAttributeCategory.getIntervals(Math.nextUp(1.5), intervals -> intervals.forEach(i -> matchedIntervals.add(i.getIntervalId())));
+        assertEquals(setOf(2, 3), matchedIntervals);
+
+        matchedIntervals.clear();
+        indexAttributeCategory.getIntervals(1, intervals -> intervals.forEach(i -> matchedIntervals.add(i.getIntervalId())));
+        assertEquals(setOf(1, 3), matchedIntervals);
+
+    }
+
+    @Test
+    public void testRangeIndexRangeLookupDistinct()
+    {
+        final BEIntRangeIndexAttributeCategory indexAttributeCategory = new BEIntRangeIndexAttributeCategory();
+        indexAttributeCategory.addInterval("[0,100]", interval(1));
+        indexAttributeCategory.addInterval("[10,20]", interval(2));
+        indexAttributeCategory.addInterval("[30,40]", interval(3));
+        indexAttributeCategory.addInterval("[50,60]", interval(4));
+        indexAttributeCategory.compact();
+
+        // [15,35] spans several disjoint ranges covered by interval 1, which must only be matched once
+        final List<Integer> matchedIntervals = new ArrayList<>();
+        indexAttributeCategory.getIntervals("[15,35]", intervals -> intervals.forEach(i -> matchedIntervals.add(i.getIntervalId())));
+        matchedIntervals.sort(Integer::compare);
+        assertEquals(Arrays.asList(1, 2, 3), matchedIntervals);
+
+        matchedIntervals.clear();
+        indexAttributeCategory.getIntervals("(40,50)", intervals -> intervals.forEach(i -> matchedIntervals.add(i.getIntervalId())));
+        assertEquals(Arrays.asList(1), matchedIntervals);
+
+        matchedIntervals.clear();
+        indexAttributeCategory.getIntervals("(100,)", intervals -> intervals.forEach(i -> matchedIntervals.add(i.getIntervalId())));
+        assertEquals(new ArrayList<>(), matchedIntervals);
+
+    }
+
+    private static Set<Integer> matchedIntervals(final BEIntRangeIndexAttributeCategory indexAttributeCategory, final int value)
+    {
+        final Set<Integer> matchedIntervals = new HashSet<>();
+        indexAttributeCategory.getIntervals(value, intervals -> intervals.forEach(i -> matchedIntervals.add(i.getIntervalId())));
+        return matchedIntervals;
+    }
+
+    private static Set<Integer> setOf(final Integer... values)
+    {
+        return new HashSet<>(Arrays.asList(values));
+    }
+
     private BEInterval interval(final int id)
     {
         return new BEInterval(id, id, false, false, bitSet(id));
@@ -0,0 +1,53 @@
+package com.amobee.freebee.evaluator.index;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class BEBitWordsTest
+{
+    @Test
+    public void testSingleWord()
+    {
+        assertEquals(1, BEBitWords.wordCount(1));
+        assertEquals(1, BEBitWords.wordCount(64));
+        assertEquals(0x1L, BEBitWords.fullMask(1));
+        assertEquals(0x7L, BEBitWords.fullMask(3));
+        assertEquals(-1L, BEBitWords.fullMask(64));
+        assertEquals(0x6L, BEBitWords.mask(1, 3));
+        assertEquals(-1L, BEBitWords.mask(0, 64));
+
+        final long[] words = new long[1];
+        final long fullMask = BEBitWords.fullMask(5);
+        BEBitWords.set(words, 0, 0, 2);
+        BEBitWords.set(words, 0, 3, 5);
+        assertFalse(BEBitWords.isComplete(words, 0, 1, fullMask));
+        BEBitWords.set(words, 0, 2, 3);
+        assertTrue(BEBitWords.isComplete(words, 0, 1, fullMask));
+    }
+
+    @Test
+    public void testMultipleWords()
+    {
+        final int length = 130;
+        final int wordCount = BEBitWords.wordCount(length);
+        assertEquals(3, wordCount);
+
+        // offset the expression words to make sure neighbouring words are not touched
+        final long[] words = new long[wordCount + 2];
+        final long fullMask = BEBitWords.fullMask(length);
+        BEBitWords.set(words, 1, 0, 60);
+        BEBitWords.set(words, 1, 60, 129);
+        assertEquals(0L, words[0]);
+        assertEquals(-1L, words[1]);
+        assertEquals(-1L, words[2]);
+        assertEquals(0x1L, words[3]);
+        assertFalse(BEBitWords.isComplete(words, 1, wordCount, fullMask));
+
+        BEBitWords.set(words, 1, 129, 130);
+        assertTrue(BEBitWords.isComplete(words, 1, wordCount, fullMask));
+        assertEquals(0L, words[4]);
+    }
+}
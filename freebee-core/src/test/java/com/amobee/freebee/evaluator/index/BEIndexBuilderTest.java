@@ -1,15 +1,26 @@
 package com.amobee.freebee.evaluator.index;
 
+import com.amobee.freebee.config.BEDataTypeConfig;
+import com.amobee.freebee.evaluator.BEInterval;
+import com.amobee.freebee.evaluator.evaluator.BEInput;
 import com.amobee.freebee.evaluator.interval.BEDefaultIntervalLabeler;
 import com.amobee.freebee.evaluator.interval.BEIntervalOptimizer;
 
 import org.junit.Test;
 
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 import static com.amobee.freebee.ExpressionUtil.*;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 
 public class BEIndexBuilderTest
 {
@@ -48,9 +59,182 @@ public class BEIndexBuilderTest
         assertEquals(2, metrics.getPartialExpressionCount());
         assertEquals(3, metrics.getExpressionCountWithBitSetEvaluation());
         assertEquals(1, metrics.getExpressionCountWithIntervalEvaluation());
+        assertEquals(0, metrics.getExpressionCountWithCountEvaluation());
 
     }
 
+    @Test
+    public void testIndexMetricsWithCountEvaluation() throws Exception
+    {
 
+        // Arrange
+        final String expr1 = exprConj("AND",
+                expr("age", "[18,24]"),
+                expr("gender", true, "M"),
+                expr("domain", "foo.com", "bar.com"));
+        final String expr2 = exprConj("OR",
+                expr("age", "[18,24]"),
+                expr("gender", "M"));
+
+        // Act
+        final BEIndexBuilder<String> indexBuilder = new BEIndexBuilder<>();
+        indexBuilder.addExpression("e1", expr1);
+        indexBuilder.addExpression("e2", expr2);
+        final BEIndex<String> index = indexBuilder.build();
+
+        // Assert
+        final BEIndexMetrics metrics = index.getIndexMetrics();
+        assertEquals(2, metrics.getExpressionCountWithBitSetEvaluation());
+        assertEquals(1, metrics.getExpressionCountWithCountEvaluation());
+
+    }
+
+    @Test
+    public void testIndexStatistics() throws Exception
+    {
+
+        // Arrange
+        final String exprPart1 = idExpr("ep1", "domain", "foo.com", "bar.com");
+        final String expr1 = exprConj("AND",
+                expr("age", "[18,24]"),
+                expr("gender", true, "M"),
+                expr("domain", "foo.com", "bar.com"));
+        final String expr2 = exprConj("OR",
+                expr("domain", "foo.com"),
+                expr("ref", "ep1"));
+
+        // Act
+        final BEIndexBuilder<String> indexBuilder = new BEIndexBuilder<String>()
+                .addDataTypeConfig(new BEDataTypeConfig("age", "byte", false, false, true, false))
+                .addDataTypeConfig(new BEDataTypeConfig("domain", "string", true, true, false, true));
+        indexBuilder.addPartialExpression(exprPart1);
+        indexBuilder.addExpression("e1", expr1);
+        indexBuilder.addExpression("e2", expr2);
+        final BEIndex<String> index = indexBuilder.build();
+        final BEIndexStatistics statistics = index.computeStatistics();
 
-}
\ No newline at end of file
+        // Assert
+        assertEquals(3, statistics.getExpressionCount());
+        assertEquals(6, statistics.getIntervalCount());
+        assertEquals(3, statistics.getIntervalsPerExpression().getMax());
+        assertEquals(3, statistics.getIntervalsPerExpression().getCount());
+
+        final Map<String, BEAttributeCategoryStatistics> categories = statistics.getAttributeCategories().stream()
+                .collect(Collectors.toMap(BEAttributeCategoryStatistics::getAttributeCategory, Function.identity()));
+        assertEquals(4, categories.size());
+
+        final BEAttributeCategoryStatistics domain = categories.get("DOMAIN");
+        assertEquals(2, domain.getValueCount());
+        assertEquals(5, domain.getPostingCount());
+        assertEquals(3, domain.getMaxPostingsPerValue());
+        assertEquals(2.5, domain.getMeanPostingsPerValue(), 0.0);
+        assertTrue(domain.getTrieNodeCount() > 0);
+
+        final BEAttributeCategoryStatistics age = categories.get("AGE");
+        assertEquals(1, age.getValueCount());
+        assertEquals(1, age.getRangeSegmentCount());
+
+        assertEquals(1, categories.get("GENDER").getNegativeIntervalCount());
+        assertEquals(1, categories.get("REFERENCE_EXPRESSIONS").getPostingCount());
+
+        // the index also retains its evaluation layout
+        assertTrue(statistics.getEstimatedBytes()
+                > categories.values().stream().mapToLong(BEAttributeCategoryStatistics::getEstimatedBytes).sum());
+
+        // the negative intervals of absent attribute categories are counted once evaluation materializes them
+        index.findMatchingExpressionIntervals(new BEInput());
+        assertTrue(index.computeStatistics().getEstimatedBytes() > statistics.getEstimatedBytes());
+    }
+
+    @Test
+    public void testPartition() throws Exception
+    {
+
+        // Arrange
+        final BEIndexBuilder<String> indexBuilder = new BEIndexBuilder<>();
+        indexBuilder.addPartialExpression(idExpr("ep1", "domain", "foo.com", "bar.com"));
+        indexBuilder.addPartialExpression(idExpr("ep2", "gender", "M"));
+        indexBuilder.addExpression("e1", exprConj("AND", expr("age", "[18,24]"), expr("ref", "ep1")));
+        indexBuilder.addExpression("e2", exprConj("AND", expr("age", "[25,34]"), expr("ref", "ep1")));
+        indexBuilder.addExpression("e3", expr("gender", "F"));
+        indexBuilder.addExpression("e4", expr("country", "US", "CA"));
+
+        for (final BEShardingStrategy strategy : BEShardingStrategy.values())
+        {
+            // Act
+            final List<BEIndexBuilder<String>> shards = indexBuilder.partition(2, strategy);
+
+            // Assert
+            assertEquals(2, shards.size());
+            assertEquals(4, shards.stream().mapToInt(shard -> shard.build().getIndexMetrics().getFullExpressionCount()).sum());
+            shards.forEach(shard -> assertTrue(shard.build().getIndexMetrics().getPartialExpressionCount() <= 1));
+        }
+
+        // only shards with expressions referencing a partial expression get a copy of it
+        final int partialCount = indexBuilder.partition(4, BEShardingStrategy.SIZE_BALANCED).stream()
+                .mapToInt(shard -> shard.build().getIndexMetrics().getPartialExpressionCount())
+                .sum();
+        assertEquals(2, partialCount);
+        // empty shards are omitted
+        assertTrue(indexBuilder.partition(10, BEShardingStrategy.HASH).size() <= 4);
+        assertEquals(4, indexBuilder.partition(10, BEShardingStrategy.SIZE_BALANCED).size());
+
+    }
+
+    @Test
+    public void testParallelBuild() throws Exception
+    {
+
+        // Arrange
+        final String[] categories = {"gender", "country", "domain"};
+        final String[] values = {"a", "b", "c", "d", "e", "f", "g", "h"};
+        final Random random = new Random(42);
+        final BEIndexBuilder<String> serialBuilder = new BEIndexBuilder<>();
+        final BEIndexBuilder<String> parallelBuilder = new BEIndexBuilder<String>().parallelism(4);
+        for (int i = 0; i < 5; i++)
+        {
+            final String partialExpression = idExpr("ep" + i, categories[i % categories.length], values[i], values[i + 1]);
+            serialBuilder.addPartialExpression(partialExpression);
+            parallelBuilder.addPartialExpression(partialExpression);
+        }
+        for (int i = 0; i < 500; i++)
+        {
+            final String expression = exprConj(i % 2 == 0 ? "AND" : "OR",
+                    expr(categories[random.nextInt(categories.length)], random.nextBoolean(), values[random.nextInt(values.length)]),
+                    expr(categories[random.nextInt(categories.length)], values[random.nextInt(values.length)], values[random.nextInt(values.length)]),
+                    i % 3 == 0 ? expr("ref", "ep" + random.nextInt(5)) : expr("country", values[random.nextInt(values.length)]));
+            serialBuilder.addExpression("e" + i, expression);
+            parallelBuilder.addExpression("e" + i, expression);
+        }
+
+        // Act
+        final BEIndex<String> serialIndex = serialBuilder.build();
+        final BEIndex<String> parallelIndex = parallelBuilder.build();
+
+        // Assert
+        assertEquals(serialIndex.hashCode(), parallelIndex.hashCode());
+        assertEquals(serialIndex.getIndexMetrics().toString(), parallelIndex.getIndexMetrics().toString());
+        assertArrayEquals(serialIndex.getWordOffsets(), parallelIndex.getWordOffsets());
+        assertArrayEquals(serialIndex.getFullMasks(), parallelIndex.getFullMasks());
+        assertArrayEquals(serialIndex.getRequiredIntervalCounts(), parallelIndex.getRequiredIntervalCounts());
+        for (final String category : categories)
+        {
+            for (final String value : values)
+            {
+                assertEquals(intervals(serialIndex, category, value), intervals(parallelIndex, category, value));
+            }
+        }
+        for (int i = 0; i < 5; i++)
+        {
+            assertEquals(intervals(serialIndex, "ref", "ep" + i), intervals(parallelIndex, "ref", "ep" + i));
+        }
+
+    }
+
+    private static List<BEInterval> intervals(final BEIndex<String> index, final String category, final String value)
+    {
+        final List<BEInterval> intervals = new ArrayList<>();
+        index.getOrAddAttributeCategory(category).getIntervals(value, intervals::addAll);
+        return intervals;
+    }
+}
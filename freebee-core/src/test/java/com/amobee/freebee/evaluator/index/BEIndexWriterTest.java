@@ -0,0 +1,254 @@
+package com.amobee.freebee.evaluator.index;
+
+import com.amobee.freebee.config.BEDataTypeConfig;
+import com.amobee.freebee.evaluator.BEInterval;
+import com.amobee.freebee.evaluator.evaluator.BEEvaluator;
+import com.amobee.freebee.evaluator.evaluator.BEEvaluatorBuilder;
+import com.amobee.freebee.evaluator.evaluator.BEInput;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static com.amobee.freebee.ExpressionUtil.*;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class BEIndexWriterTest
+{
+    private static final String[] VALUES = {"a", "b", "c", "d", "e"};
+    private static final String[] DOMAINS = {"foo.com", "www.foo.com", "bar.com", "baz.org"};
+    private static final String[] INPUT_DOMAINS = {"foo.com", "www.foo.com", "a.www.foo.com", "bar.com", "xbar.com", "baz.org", "oo.com", "org"};
+
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testRoundTrip() throws Exception
+    {
+
+        // Arrange
+        final BEIndex<String> index = newIndex();
+
+        // Act
+        final BEIndex<String> loaded = new BEIndexReader<>(BEExpressionDataCodec.STRING).read(new ByteArrayInputStream(write(index)));
+
+        // Assert
+        assertEquals(index.hashCode(), loaded.hashCode());
+        assertEquals(index.getIndexMetrics().toString(), loaded.getIndexMetrics().toString());
+        assertArrayEquals(index.getWordOffsets(), loaded.getWordOffsets());
+        assertArrayEquals(index.getFullMasks(), loaded.getFullMasks());
+        assertArrayEquals(index.getRequiredIntervalCounts(), loaded.getRequiredIntervalCounts());
+        assertEquals(index.getMaxIntervalLength(), loaded.getMaxIntervalLength());
+        for (int expressionId = 0; expressionId < index.getIndexMetrics().getExpressionCount(); expressionId++)
+        {
+            final BEExpressionMetadataProvider expected = index.getExpressionMetadataProvider();
+            final BEExpressionMetadataProvider actual = loaded.getExpressionMetadataProvider();
+            assertEquals(expected.getMaxIntervalLength(expressionId), actual.getMaxIntervalLength(expressionId));
+            assertEquals(expected.canUseBitSetMatching(expressionId), actual.canUseBitSetMatching(expressionId));
+            assertEquals(expected.isPartial(expressionId), actual.isPartial(expressionId));
+            assertEquals(expected.getPartialExpressionName(expressionId), actual.getPartialExpressionName(expressionId));
+        }
+        assertEquals(index.getExpressionDataProvider(), loaded.getExpressionDataProvider());
+        for (final String value : VALUES)
+        {
+            assertEquals(intervals(index, "gender", value.toUpperCase()), intervals(loaded, "gender", value.toUpperCase()));
+        }
+        for (int i = 0; i < 3; i++)
+        {
+            assertEquals(intervals(index, "ref", "ep" + i), intervals(loaded, "ref", "ep" + i));
+        }
+        assertEquals(index.getOrAddAttributeCategory("gender").getNegativePostings(), loaded.getOrAddAttributeCategory("gender").getNegativePostings());
+
+        final BEEvaluator<String> evaluator = BEEvaluatorBuilder.fromIndex(index);
+        final BEEvaluator<String> loadedEvaluator = BEEvaluatorBuilder.fromIndex(loaded);
+        final Random random = new Random(7);
+        for (int i = 0; i < 200; i++)
+        {
+            final BEInput input = new BEInput();
+            input.getOrCreateStringCategory("gender").add(VALUES[random.nextInt(VALUES.length)]);
+            input.getOrCreateStringCategory("domain").add(DOMAINS[random.nextInt(DOMAINS.length)]);
+            input.getOrCreateIntCategory("age").add(random.nextInt(60));
+            input.getOrCreateLongCategory("segment").add(random.nextInt(10));
+            input.getOrCreateDoubleCategory("score").add(random.nextDouble() * 3);
+            input.getOrCreateByteCategory("hour").add((byte) random.nextInt(24));
+            assertEquals(evaluator.evaluate(input), loadedEvaluator.evaluate(input));
+        }
+
+    }
+
+    @Test
+    public void testReadHash() throws Exception
+    {
+
+        // Arrange
+        final BEIndex<String> index = newIndex();
+        final ByteBuffer buffer = ByteBuffer.wrap(write(index));
+        final BEIndexReader<String> reader = new BEIndexReader<>(BEExpressionDataCodec.STRING);
+
+        // Act
+        final int hash = BEIndexReader.readHash(buffer);
+
+        // Assert
+        assertEquals(index.hashCode(), hash);
+        assertEquals(0, buffer.position());
+        assertEquals(index.hashCode(), reader.read(buffer, hash).hashCode());
+        assertThatThrownBy(() -> reader.read(buffer, hash + 1))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("does not match expected hash");
+
+    }
+
+    @Test
+    public void testCorruptIndex() throws Exception
+    {
+
+        // Arrange
+        final byte[] bytes = write(newIndex());
+        final BEIndexReader<String> reader = new BEIndexReader<>(BEExpressionDataCodec.STRING);
+        final byte[] corrupt = bytes.clone();
+        corrupt[corrupt.length / 2] ^= 1;
+        final byte[] badMagic = bytes.clone();
+        badMagic[0] = 0;
+
+        // Act / Assert
+        assertThatThrownBy(() -> reader.read(ByteBuffer.wrap(corrupt)))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("checksum mismatch");
+        assertThatThrownBy(() -> reader.read(ByteBuffer.wrap(badMagic)))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("invalid magic number");
+        assertThatThrownBy(() -> reader.read(ByteBuffer.wrap(Arrays.copyOf(bytes, bytes.length - 8))))
+                .isInstanceOf(IOException.class);
+
+    }
+
+    @Test
+    public void testMap() throws Exception
+    {
+
+        // Arrange
+        final BEIndex<String> index = newIndex();
+        final Path path = this.temporaryFolder.newFile().toPath();
+        Files.write(path, write(index));
+
+        // Act
+        final BEIndex<String> mapped = new BEIndexReader<>(BEExpressionDataCodec.STRING).map(path);
+
+        // Assert
+        assertEquals(index.hashCode(), mapped.hashCode());
+        assertEquals(index.getExpressionDataProvider(), mapped.getExpressionDataProvider());
+        for (final String value : VALUES)
+        {
+            assertEquals(intervals(index, "gender", value), intervals(mapped, "gender", value));
+        }
+        for (final String domain : INPUT_DOMAINS)
+        {
+            assertEquals(intervals(index, "domain", domain.toUpperCase()), intervals(mapped, "domain", domain.toUpperCase()));
+        }
+        for (int i = 0; i < 3; i++)
+        {
+            assertEquals(intervals(index, "ref", "ep" + i), intervals(mapped, "ref", "ep" + i));
+        }
+        for (final String range : new String[]{"[10,20]", "(5,6)", "[,3)", "(60,]", "25"})
+        {
+            assertEquals(intervals(index, "age", range), intervals(mapped, "age", range));
+        }
+        for (final String range : new String[]{"[0.5,0.5]", "(1.5,2)", "[,]"})
+        {
+            assertEquals(intervals(index, "score", range), intervals(mapped, "score", range));
+        }
+        for (final String category : new String[]{"gender", "domain", "age", "segment", "score", "hour"})
+        {
+            assertEquals(index.getOrAddAttributeCategory(category).getNegativePostings(), mapped.getOrAddAttributeCategory(category).getNegativePostings());
+        }
+        final BEIndexStatistics statistics = index.computeStatistics();
+        final BEIndexStatistics mappedStatistics = mapped.computeStatistics();
+        assertEquals(statistics.getExpressionCount(), mappedStatistics.getExpressionCount());
+        assertEquals(statistics.getIntervalCount(), mappedStatistics.getIntervalCount());
+        assertTrue(mappedStatistics.getEstimatedBytes() < statistics.getEstimatedBytes());
+        final BEValueDictionary dictionary = mapped.getOrAddAttributeCategory("gender").getValueDictionary();
+        for (final String value : VALUES)
+        {
+            final List<BEInterval> intervals = new ArrayList<>();
+            mapped.getOrAddAttributeCategory("gender").getPostingsByValueId(dictionary.getValueId(value.toUpperCase()), postings -> intervals.addAll(postings.toIntervals()));
+            assertEquals(intervals(index, "gender", value), intervals);
+        }
+        assertEquals(BEValueDictionary.NO_VALUE_ID, dictionary.getValueId("x"));
+        assertEquals(null, mapped.getOrAddAttributeCategory("domain").getValueDictionary());
+        assertThatThrownBy(() -> mapped.getOrAddAttributeCategory("age").getPostings(7L, postings -> { }))
+                .isInstanceOf(UnsupportedOperationException.class);
+        assertThatThrownBy(() -> mapped.getOrAddAttributeCategory("gender").addInterval("A", mapped.getOrAddAttributeCategory("gender").getNegativeIntervals().get(0)))
+                .isInstanceOf(UnsupportedOperationException.class);
+
+        final BEEvaluator<String> evaluator = BEEvaluatorBuilder.fromIndex(index);
+        final BEEvaluator<String> mappedEvaluator = BEEvaluatorBuilder.fromIndex(mapped);
+        final Random random = new Random(11);
+        for (int i = 0; i < 500; i++)
+        {
+            final BEInput input = new BEInput();
+            input.getOrCreateStringCategory("gender").add(VALUES[random.nextInt(VALUES.length)]);
+            input.getOrCreateStringCategory("domain").add(INPUT_DOMAINS[random.nextInt(INPUT_DOMAINS.length)]);
+            input.getOrCreateIntCategory("age").add(random.nextInt(80) - 10);
+            input.getOrCreateLongCategory("segment").add(random.nextInt(12));
+            input.getOrCreateDoubleCategory("score").add(random.nextDouble() * 3);
+            input.getOrCreateByteCategory("hour").add((byte) random.nextInt(26));
+            assertEquals(evaluator.evaluate(input), mappedEvaluator.evaluate(input));
+        }
+
+    }
+
+    private static BEIndex<String> newIndex() throws IOException
+    {
+        final BEIndexBuilder<String> indexBuilder = new BEIndexBuilder<String>()
+                .addDataTypeConfig(new BEDataTypeConfig("gender", "string", true, false, false, false))
+                .addDataTypeConfig(new BEDataTypeConfig("domain", "string", true, true, false, true))
+                .addDataTypeConfig(new BEDataTypeConfig("age", "int", false, false, true, false))
+                .addDataTypeConfig(new BEDataTypeConfig("segment", "long", false, false, false, false))
+                .addDataTypeConfig(new BEDataTypeConfig("score", "double", false, false, true, false))
+                .addDataTypeConfig(new BEDataTypeConfig("hour", "byte", false, false, false, false));
+        for (int i = 0; i < 3; i++)
+        {
+            indexBuilder.addPartialExpression(idExpr("ep" + i, "domain", DOMAINS[i], DOMAINS[i + 1]));
+        }
+
+        final Random random = new Random(42);
+        for (int i = 0; i < 100; i++)
+        {
+            final int age = random.nextInt(50);
+            indexBuilder.addExpression("e" + i, exprConj(i % 2 == 0 ? "AND" : "OR",
+                    expr("gender", random.nextBoolean(), VALUES[random.nextInt(VALUES.length)].toUpperCase()),
+                    expr("age", "[" + age + "," + (age + random.nextInt(20)) + "]"),
+                    i % 3 == 0 ? expr("ref", "ep" + random.nextInt(3)) : expr("segment", String.valueOf(random.nextInt(10))),
+                    i % 4 == 0 ? expr("score", "[0.5,1.5)") : expr("hour", random.nextBoolean(), String.valueOf(random.nextInt(24)))));
+        }
+        return indexBuilder.build();
+    }
+
+    private static byte[] write(final BEIndex<String> index) throws IOException
+    {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new BEIndexWriter<>(BEExpressionDataCodec.STRING).write(index, out);
+        return out.toByteArray();
+    }
+
+    private static List<BEInterval> intervals(final BEIndex<String> index, final String category, final String value)
+    {
+        final List<BEInterval> intervals = new ArrayList<>();
+        index.getOrAddAttributeCategory(category).getIntervals(value, intervals::addAll);
+        return intervals;
+    }
+}
@@ -62,6 +62,7 @@ public class RangeCollectionMapTest
 
     }
 
+    @Test
     public void testGetRange()
     {
         // Given these preconditions
@@ -78,6 +79,23 @@ public class RangeCollectionMapTest
 
     }
 
+    @Test
+    public void testGetRangeOverlapping()
+    {
+        // Given these preconditions
+        final RangeCollectionMap<Integer, String> rangeCollectionMap =
+                new RangeCollectionMapImpl<>(
+                        ArrayList::new,
+                        () -> PREPOPULATED_RANGE_MAP);
+
+        // Expect these results
+        assertEquals(Arrays.asList("A", "B", "C", "C", "D"), rangeCollectionMap.get(range(0, CLOSED, 1, CLOSED)));
+        assertEquals(Arrays.asList("E"), rangeCollectionMap.get(range(2, OPEN, 7, OPEN)));
+        assertNull(rangeCollectionMap.get(range(5, OPEN, 7, OPEN)));
+        assertNull(rangeCollectionMap.get(range(9, OPEN, 12, CLOSED)));
+
+    }
+
     @Test
     public void testPutAdd()
     {
@@ -60,6 +60,26 @@ public class BEDefaultIntervalOptimizerTest
         assertFalse(intervalOptimizer.canUseBitSetMatching(WIDTH, intervals(0,3,  3,4,  1,3)));
     }
 
+    @Test
+    public void canUseCountMatchingTest()
+    {
+        // Arrange
+        final BEIntervalOptimizer intervalOptimizer = new BEDefaultIntervalOptimizer();
+
+        // Act & Assert
+        assertTrue(intervalOptimizer.canUseCountMatching(WIDTH, intervals(0,4)));
+        assertTrue(intervalOptimizer.canUseCountMatching(WIDTH, intervals(0,1,  1,2,  2,3,  3,4)));
+        assertTrue(intervalOptimizer.canUseCountMatching(WIDTH, intervals(2,4,  0,1,  1,2)));
+
+        // disjunctions share a span
+        assertFalse(intervalOptimizer.canUseCountMatching(WIDTH, intervals(0,4,  0,4)));
+        assertFalse(intervalOptimizer.canUseCountMatching(WIDTH, intervals(0,2,  0,2,  2,4)));
+        // overlapping
+        assertFalse(intervalOptimizer.canUseCountMatching(WIDTH, intervals(0,4,  0,1,  1,4)));
+        // incomplete
+        assertFalse(intervalOptimizer.canUseCountMatching(WIDTH, intervals(0,1,  1,2,  2,3)));
+    }
+
 
     // --- Helper methods ---
 
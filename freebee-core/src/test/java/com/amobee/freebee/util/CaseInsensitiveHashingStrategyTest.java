@@ -0,0 +1,26 @@
+package com.amobee.freebee.util;
+
+import org.eclipse.collections.api.map.MutableMap;
+import org.eclipse.collections.impl.map.strategy.mutable.UnifiedMapWithHashingStrategy;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class CaseInsensitiveHashingStrategyTest
+{
+    @Test
+    public void testHashingStrategy() throws Exception
+    {
+        final CaseInsensitiveHashingStrategy strategy = CaseInsensitiveHashingStrategy.INSTANCE;
+        assertTrue(strategy.equals("Foo.COM", "foo.com"));
+        assertFalse(strategy.equals("foo.com", "foo.co"));
+        assertEquals(strategy.computeHashCode("foo.com"), strategy.computeHashCode("FOO.com"));
+        assertEquals(strategy.computeHashCode("ß"), strategy.computeHashCode("ẞ"));
+
+        final MutableMap<String, Integer> map = new UnifiedMapWithHashingStrategy<>(strategy);
+        map.put("AGE", 1);
+        assertEquals(Integer.valueOf(1), map.get("age"));
+        assertEquals(Integer.valueOf(1), map.get("Age"));
+        assertNull(map.get("ages"));
+    }
+}
@@ -0,0 +1,55 @@
+package com.amobee.freebee.util;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class HistogramTest
+{
+    @Test
+    public void testPercentiles() throws Exception
+    {
+        final Histogram histogram = new Histogram();
+        assertEquals(0, histogram.getValueAtPercentile(99.0));
+
+        for (int value = 1; value <= 100; value++)
+        {
+            histogram.record(value);
+        }
+        assertEquals(100, histogram.getCount());
+        assertEquals(100, histogram.getMax());
+        assertEquals(50.5, histogram.getMean(), 0.0);
+
+        // values below 2^precisionBits are exact
+        assertEquals(1, histogram.getValueAtPercentile(0.0));
+        assertEquals(50, histogram.getValueAtPercentile(50.0));
+        assertEquals(99, histogram.getValueAtPercentile(99.0));
+        assertEquals(100, histogram.getValueAtPercentile(100.0));
+
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMax());
+    }
+
+    @Test
+    public void testPrecision() throws Exception
+    {
+        final Histogram histogram = new Histogram(7);
+        final long[] values = {0, 127, 128, 1000, 123_456, 98_765_432_101L, Long.MAX_VALUE};
+        for (final long value : values)
+        {
+            histogram.reset();
+            histogram.record(value);
+            histogram.record(Long.MAX_VALUE);
+            final long reported = histogram.getValueAtPercentile(50.0);
+            assertTrue(value + " reported as " + reported, reported >= value);
+            assertTrue(value + " reported as " + reported, reported - value <= value / 64);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeValue() throws Exception
+    {
+        new Histogram().record(-1);
+    }
+}
@@ -210,6 +210,25 @@ public class StringBitKeyAnalyzerTest
         assertFalse(keyAnalyzer.isBitSet(key, index));
     }
 
+    @Test
+    public void testIgnoreCase() throws Exception
+    {
+        final StringBitKeyAnalyzer keyAnalyzer = new StringBitKeyAnalyzer(true);
+
+        final String key = "Foo.COM";
+        final String foldedKey = "foo.com";
+        for (int i = 0; i < key.length(); i++)
+        {
+            assertEquals(foldedKey.charAt(i), keyAnalyzer.getElement(key, i));
+        }
+        for (int i = 0; i < keyAnalyzer.getLengthInBits(key); i++)
+        {
+            assertEquals(keyAnalyzer.isBitSet(foldedKey, i), keyAnalyzer.isBitSet(key, i));
+        }
+        assertEquals('F', new StringBitKeyAnalyzer().getElement(key, 0));
+        assertEquals('m', new ReverseStringBitKeyAnalyzer(true).getElement(key, 0));
+    }
+
     @Test
     public void testSerialization() throws Exception
     {
@@ -0,0 +1,126 @@
+package com.amobee.freebee.jmh;
+
+import com.amobee.freebee.evaluator.BEPostingList;
+import com.amobee.freebee.evaluator.evaluator.BEHybridEvaluator;
+import com.amobee.freebee.evaluator.evaluator.BEInput;
+import com.amobee.freebee.evaluator.evaluator.BEInputAttributeCategory;
+import com.amobee.freebee.evaluator.index.BEExpressionDataCodec;
+import com.amobee.freebee.evaluator.index.BEIndex;
+import com.amobee.freebee.evaluator.index.BEIndexAttributeCategory;
+import com.amobee.freebee.evaluator.index.BEIndexReader;
+import com.amobee.freebee.evaluator.index.BEIndexWriter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures looking up the postings of the input values of a single attribute category. The categories are taken from
+ * the default data type configuration of the {@code freebee-bench} module:
+ * <ul>
+ * <li>{@code country} - string values</li>
+ * <li>{@code dma} - int values</li>
+ * <li>{@code age} - int range values</li>
+ * <li>{@code domain} - partial (reverse) string values</li>
+ * </ul>
+ *
+ * Lookups are measured on the heap index and on the same index memory-mapped with {@link BEIndexReader#map(Path)}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class AttributeLookupBenchmark
+{
+    private static final int EXPRESSION_COUNT = 10000;
+    private static final int INPUT_COUNT = 1000;
+
+    @Param({"country", "dma", "age", "domain"})
+    protected String attributeCategory;
+
+    @Param({"false", "true"})
+    protected boolean mapped;
+
+    private BEIndexAttributeCategory indexAttributeCategory;
+    private List<BEInputAttributeCategory> inputAttributeCategories;
+    private int nextInput;
+    private final PostingCounter postingCounter = new PostingCounter();
+
+    @Setup
+    public void setup() throws IOException
+    {
+        final BenchmarkData data = new BenchmarkData(EXPRESSION_COUNT, INPUT_COUNT, false);
+        final BEHybridEvaluator<Integer> evaluator = (BEHybridEvaluator<Integer>) data.newEvaluator();
+        final BEIndex<Integer> index = this.mapped ? map(evaluator.getIndex()) : evaluator.getIndex();
+        this.indexAttributeCategory = index.getOrAddAttributeCategory(this.attributeCategory);
+
+        this.inputAttributeCategories = new ArrayList<>();
+        for (final BEInput input : data.getInputs())
+        {
+            final BEInputAttributeCategory inputAttributeCategory = input.getCategory(this.attributeCategory);
+            if (null != inputAttributeCategory)
+            {
+                this.inputAttributeCategories.add(inputAttributeCategory);
+            }
+        }
+        if (this.inputAttributeCategories.isEmpty())
+        {
+            throw new IllegalStateException("No inputs with values for attribute category " + this.attributeCategory);
+        }
+    }
+
+    @Benchmark
+    public int getPostings()
+    {
+        final BEInputAttributeCategory inputAttributeCategory = this.inputAttributeCategories.get(this.nextInput);
+        this.nextInput = (this.nextInput + 1) % this.inputAttributeCategories.size();
+
+        this.postingCounter.count = 0;
+        inputAttributeCategory.forEachMatchedPostings(this.indexAttributeCategory, this.postingCounter);
+        return this.postingCounter.count;
+    }
+
+    private static BEIndex<Integer> map(final BEIndex<Integer> index) throws IOException
+    {
+        final Path path = Files.createTempFile("freebee", ".index");
+        path.toFile().deleteOnExit();
+        try (OutputStream out = Files.newOutputStream(path))
+        {
+            new BEIndexWriter<>(BEExpressionDataCodec.INTEGER).write(index, out);
+        }
+        return new BEIndexReader<>(BEExpressionDataCodec.INTEGER).map(path);
+    }
+
+    /**
+     * Counts matched postings, reused between invocations so the benchmark itself doesn't allocate.
+     */
+    private static final class PostingCounter implements Consumer<BEPostingList>
+    {
+        private int count;
+
+        @Override
+        public void accept(final BEPostingList postings)
+        {
+            this.count += postings.size();
+        }
+    }
+}
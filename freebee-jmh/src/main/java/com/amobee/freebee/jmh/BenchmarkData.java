@@ -0,0 +1,84 @@
+package com.amobee.freebee.jmh;
+
+import com.amobee.freebee.bench.BenchmarkConfiguration;
+import com.amobee.freebee.bench.random.RandomBenchmarkConfiguration;
+import com.amobee.freebee.bench.random.RandomBenchmarkConfigurationProperties;
+import com.amobee.freebee.config.BEDataTypeConfig;
+import com.amobee.freebee.evaluator.evaluator.BEEvaluator;
+import com.amobee.freebee.evaluator.evaluator.BEEvaluatorBuilder;
+import com.amobee.freebee.evaluator.evaluator.BEInput;
+import com.amobee.freebee.evaluator.index.BEIndexBuilder;
+import com.amobee.freebee.expression.BENode;
+
+import java.util.List;
+
+/**
+ * Random expressions and inputs shared by the benchmarks, generated with the random generators of the
+ * {@code freebee-bench} module using a fixed seed so that runs are comparable.
+ */
+final class BenchmarkData
+{
+    private static final long RANDOM_SEED = 14888790436548L;
+    private static final int MAX_EXPRESSION_DEPTH = 4;
+    private static final int MAX_PREDICATES_PER_EXPRESSION = 5;
+    private static final int MAX_VALUES_PER_PREDICATE = 50;
+    private static final int MAX_VALUES_PER_INPUT = 100;
+
+    private final List<BEDataTypeConfig> dataTypeConfigs;
+    private final List<BENode> expressions;
+    private final List<BEInput> inputs;
+
+    BenchmarkData(final int expressionCount, final int inputCount, final boolean inputTrackingEnabled)
+    {
+        final RandomBenchmarkConfigurationProperties properties = new RandomBenchmarkConfigurationProperties()
+                .withRandomSeed(RANDOM_SEED)
+                .withMaxDepth(MAX_EXPRESSION_DEPTH)
+                .withMaxPredicatesPerExpression(MAX_PREDICATES_PER_EXPRESSION)
+                .withMaxValuesPerPredicate(MAX_VALUES_PER_PREDICATE)
+                .withMaxInputValues(MAX_VALUES_PER_INPUT)
+                .withInputTracingEnabled(inputTrackingEnabled);
+        final BenchmarkConfiguration configuration = new RandomBenchmarkConfiguration(properties);
+
+        this.dataTypeConfigs = configuration.dataTypeConfigurer().getDataTypeConfigs();
+        this.expressions = configuration.expressionGenerator().generateList(expressionCount);
+        this.inputs = configuration.inputGenerator().generateList(inputCount);
+    }
+
+    List<BENode> getExpressions()
+    {
+        return this.expressions;
+    }
+
+    List<BEInput> getInputs()
+    {
+        return this.inputs;
+    }
+
+    /**
+     * Creates an index builder containing all expressions, the data of each expression is its position.
+     */
+    BEIndexBuilder<Integer> newIndexBuilder()
+    {
+        final BEIndexBuilder<Integer> builder = new BEIndexBuilder<>();
+        builder.addDataTypeConfigs(this.dataTypeConfigs);
+        for (int i = 0; i < this.expressions.size(); i++)
+        {
+            builder.addExpression(i, this.expressions.get(i));
+        }
+        return builder;
+    }
+
+    /**
+     * Creates an evaluator for all expressions, the data of each expression is its position.
+     */
+    BEEvaluator<Integer> newEvaluator()
+    {
+        final BEEvaluatorBuilder<Integer> builder = new BEEvaluatorBuilder<>();
+        builder.addDataTypeConfigs(this.dataTypeConfigs);
+        for (int i = 0; i < this.expressions.size(); i++)
+        {
+            builder.addExpression(i, this.expressions.get(i));
+        }
+        return builder.build();
+    }
+}
@@ -0,0 +1,92 @@
+package com.amobee.freebee.jmh;
+
+import com.amobee.freebee.evaluator.evaluator.BEEvaluator;
+import com.amobee.freebee.evaluator.evaluator.BEEvaluatorResult;
+import com.amobee.freebee.evaluator.evaluator.BEHybridEvaluator;
+import com.amobee.freebee.evaluator.evaluator.BEInput;
+import com.amobee.freebee.evaluator.evaluator.BEInputSchema;
+import com.amobee.freebee.evaluator.index.BEEvaluationContext;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares {@link BEHybridEvaluator#evaluate(BEInput)}, evaluation with a caller owned {@link BEEvaluationContext} and
+ * {@link BEHybridEvaluator#evaluateAndTrack(BEInput)}. Each invocation evaluates the next input of a fixed set of
+ * random inputs, either by attribute category name or by ordinal of the evaluator's {@link BEInputSchema}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class EvaluateBenchmark
+{
+    private static final int INPUT_COUNT = 1000;
+
+    @Param({"1000", "10000"})
+    protected int expressionCount;
+
+    @Param({"false", "true"})
+    protected boolean inputSchema;
+
+    private BEHybridEvaluator<Integer> evaluator;
+    private BEEvaluationContext context;
+    private List<BEInput> inputs;
+    private int nextInput;
+
+    @Setup
+    public void setup()
+    {
+        final BenchmarkData data = new BenchmarkData(this.expressionCount, INPUT_COUNT, false);
+        final BEEvaluator<Integer> newEvaluator = data.newEvaluator();
+        this.evaluator = (BEHybridEvaluator<Integer>) newEvaluator;
+        this.context = new BEEvaluationContext();
+        this.inputs = data.getInputs();
+        if (this.inputSchema)
+        {
+            final BEInputSchema schema = this.evaluator.getInputSchema();
+            this.inputs = this.inputs.stream().map(input -> new BEInput(schema, input)).collect(Collectors.toList());
+        }
+    }
+
+    @Benchmark
+    public Set<Integer> evaluate()
+    {
+        return this.evaluator.evaluate(nextInput());
+    }
+
+    @Benchmark
+    public Set<Integer> evaluateWithContext()
+    {
+        return this.evaluator.evaluate(nextInput(), this.context);
+    }
+
+    @Benchmark
+    public BEEvaluatorResult<?> evaluateAndTrack()
+    {
+        return this.evaluator.evaluateAndTrack(nextInput());
+    }
+
+    private BEInput nextInput()
+    {
+        final BEInput input = this.inputs.get(this.nextInput);
+        this.nextInput = (this.nextInput + 1) % this.inputs.size();
+        return input;
+    }
+}
@@ -0,0 +1,50 @@
+package com.amobee.freebee.jmh;
+
+import com.amobee.freebee.evaluator.index.BEIndex;
+import com.amobee.freebee.evaluator.index.BEIndexBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures building an index with {@link BEIndexBuilder#build()}, serially and in parallel.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class IndexBuildBenchmark
+{
+    @Param({"1000", "10000"})
+    protected int expressionCount;
+
+    @Param({"1", "4"})
+    protected int parallelism;
+
+    private BEIndexBuilder<Integer> indexBuilder;
+
+    @Setup
+    public void setup()
+    {
+        this.indexBuilder = new BenchmarkData(this.expressionCount, 0, false).newIndexBuilder().parallelism(this.parallelism);
+    }
+
+    @Benchmark
+    public BEIndex<Integer> build()
+    {
+        return this.indexBuilder.build();
+    }
+}
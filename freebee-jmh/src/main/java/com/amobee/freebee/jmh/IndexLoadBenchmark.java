@@ -0,0 +1,78 @@
+package com.amobee.freebee.jmh;
+
+import com.amobee.freebee.evaluator.index.BEExpressionDataCodec;
+import com.amobee.freebee.evaluator.index.BEIndex;
+import com.amobee.freebee.evaluator.index.BEIndexReader;
+import com.amobee.freebee.evaluator.index.BEIndexWriter;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares loading an index from the binary index format with {@link BEIndexReader} to loading a Java serialized
+ * index with {@link ObjectInputStream}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class IndexLoadBenchmark
+{
+    @Param({"1000", "10000"})
+    protected int expressionCount;
+
+    private final BEIndexReader<Integer> reader = new BEIndexReader<>(BEExpressionDataCodec.INTEGER);
+    private byte[] binaryIndex;
+    private byte[] serializedIndex;
+
+    @Setup
+    public void setup() throws IOException
+    {
+        final BEIndex<Integer> index = new BenchmarkData(this.expressionCount, 0, false).newIndexBuilder().build();
+
+        final ByteArrayOutputStream binary = new ByteArrayOutputStream();
+        new BEIndexWriter<>(BEExpressionDataCodec.INTEGER).write(index, binary);
+        this.binaryIndex = binary.toByteArray();
+
+        final ByteArrayOutputStream serialized = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(serialized))
+        {
+            out.writeObject(index);
+        }
+        this.serializedIndex = serialized.toByteArray();
+    }
+
+    @Benchmark
+    public BEIndex<Integer> readBinary() throws IOException
+    {
+        return this.reader.read(ByteBuffer.wrap(this.binaryIndex));
+    }
+
+    @Benchmark
+    public Object readSerialized() throws IOException, ClassNotFoundException
+    {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(this.serializedIndex)))
+        {
+            return in.readObject();
+        }
+    }
+}
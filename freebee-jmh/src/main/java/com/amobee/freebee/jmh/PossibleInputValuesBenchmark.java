@@ -0,0 +1,73 @@
+package com.amobee.freebee.jmh;
+
+import com.amobee.freebee.evaluator.evaluator.BEEvaluator;
+import com.amobee.freebee.evaluator.evaluator.BEEvaluatorResult;
+import com.amobee.freebee.evaluator.evaluator.BEInput;
+import com.amobee.freebee.evaluator.evaluator.BEInputAttributeCategory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link BEEvaluatorResult#getPossibleInputValuesThatSatisfy(Object)} for expressions matched by tracked
+ * inputs. Each invocation expands the next matched expression of a fixed set of tracked results.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class PossibleInputValuesBenchmark
+{
+    private static final int INPUT_COUNT = 200;
+
+    @Param({"1000", "10000"})
+    protected int expressionCount;
+
+    private final List<BEEvaluatorResult<Integer>> results = new ArrayList<>();
+    private final List<Integer> matchedExpressions = new ArrayList<>();
+    private int nextMatch;
+
+    @Setup
+    public void setup()
+    {
+        final BenchmarkData data = new BenchmarkData(this.expressionCount, INPUT_COUNT, true);
+        final BEEvaluator<Integer> evaluator = data.newEvaluator();
+        for (final BEInput input : data.getInputs())
+        {
+            final BEEvaluatorResult<Integer> result = evaluator.evaluateAndTrack(input);
+            for (final Integer matchedExpression : result.getMatchedExpressions())
+            {
+                this.results.add(result);
+                this.matchedExpressions.add(matchedExpression);
+            }
+        }
+        if (this.matchedExpressions.isEmpty())
+        {
+            throw new IllegalStateException("No expressions matched");
+        }
+    }
+
+    @Benchmark
+    public Set<List<BEInputAttributeCategory>> getPossibleInputValuesThatSatisfy()
+    {
+        final int match = this.nextMatch;
+        this.nextMatch = (this.nextMatch + 1) % this.matchedExpressions.size();
+        return this.results.get(match).getPossibleInputValuesThatSatisfy(this.matchedExpressions.get(match));
+    }
+}